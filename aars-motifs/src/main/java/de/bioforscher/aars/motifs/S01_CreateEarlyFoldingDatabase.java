@@ -35,7 +35,7 @@ public class S01_CreateEarlyFoldingDatabase {
                 if (pdbId.equals(lastPdbId)) {
                     structure = lastStructure;
                 } else {
-                    structure = StructureParser.fromPdbId(pdbId).parse();
+                    structure = StructureParser.fromPdbId(pdbId).cachedMode().parse();
                 }
 
                 Chain chain = structure.select().chainId(chainId).asChain();
@@ -32,7 +32,7 @@ public class S02_ExtractEarlyFoldingMotifs {
                     String chainId = split[1];
 
                     try {
-                        Structure structure = StructureParser.fromPdbId(pdbId).parse();
+                        Structure structure = StructureParser.fromPdbId(pdbId).cachedMode().parse();
                         Chain chain = structure.select().chainId(chainId).asChain();
                         List<AminoAcid> aminoAcids = chain.getAminoAcids();
                         List<String> earlyFoldingPredictionLines = Files.readAllLines(earlyFoldingPredictionPath);
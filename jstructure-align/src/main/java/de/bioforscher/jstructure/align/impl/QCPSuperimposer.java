@@ -0,0 +1,379 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.SuperpositionResult;
+import de.bioforscher.jstructure.align.result.score.RootMeanSquareDeviation;
+import de.bioforscher.jstructure.mathematics.Transformation;
+import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.container.AtomContainer;
+
+import java.util.List;
+
+/**
+ * Computes the optimal superposition of equivalent positions and the resulting RMSD in-process by the quaternion
+ * characteristic polynomial (QCP) method: the largest eigenvalue of the key matrix is found by Newton-Raphson
+ * iteration on its characteristic polynomial, the rotation is derived from the corresponding eigenvector only when
+ * requested. Coordinates are given as primitive arrays of consecutive x, y, z triplets, position <code>i</code> of
+ * the reference is equivalent to position <code>i</code> of the query. Instances are stateless and can be shared
+ * between threads.
+ * <pre>
+ *     Theobald, D. L. (2005). Rapid calculation of RMSDs using a quaternion-based characteristic polynomial. Acta
+ *     Crystallographica Section A, 61(4), 478-480.
+ *     Liu, P., Agrafiotis, D. K., &amp; Theobald, D. L. (2010). Fast determination of the optimal rotational matrix
+ *     for macromolecular superpositions. Journal of Computational Chemistry, 31(7), 1561-1563.
+ * </pre>
+ */
+public class QCPSuperimposer {
+    private static final double EIGENVALUE_PRECISION = 1e-11;
+    private static final double EIGENVECTOR_PRECISION = 1e-6;
+    private static final int MAXIMUM_NUMBER_OF_ITERATIONS = 50;
+
+    /**
+     * Computes the RMSD of both coordinate sets after optimal superposition without determining the rotation itself.
+     * @param reference the reference coordinates as x, y, z triplets
+     * @param query the query coordinates as x, y, z triplets
+     * @return the minimal RMSD
+     */
+    public double computeRootMeanSquareDeviation(double[] reference, double[] query) {
+        InnerProduct innerProduct = new InnerProduct(reference, query, validate(reference, query));
+        return innerProduct.computeRootMeanSquareDeviation(innerProduct.computeMaximalEigenvalue());
+    }
+
+    /**
+     * Computes the optimal superposition of the query onto the reference.
+     * @param reference the reference coordinates as x, y, z triplets
+     * @param query the query coordinates as x, y, z triplets
+     * @return the RMSD and the transformation moving the query onto the reference
+     */
+    public SuperpositionResult superimpose(double[] reference, double[] query) {
+        int length = validate(reference, query);
+        InnerProduct innerProduct = new InnerProduct(reference, query, length);
+        double maximalEigenvalue = innerProduct.computeMaximalEigenvalue();
+        double[] rototranslation = new double[12];
+        innerProduct.computeRototranslation(maximalEigenvalue, rototranslation);
+        return new SuperpositionResult(length,
+                new RootMeanSquareDeviation(innerProduct.computeRootMeanSquareDeviation(maximalEigenvalue)),
+                toTransformation(rototranslation));
+    }
+
+    /**
+     * Computes the optimal superposition of the atoms of the query onto the atoms of the reference. Atoms are paired
+     * in the order provided by both containers, e.g. the alpha carbons of a reconstruction and its reference.
+     * @param reference the reference atoms
+     * @param query the query atoms
+     * @return the RMSD and the transformation moving the query onto the reference
+     * @throws AlignmentException if the containers differ in size or are empty
+     */
+    public SuperpositionResult superimpose(AtomContainer reference, AtomContainer query) throws AlignmentException {
+        List<Atom> referenceAtoms = reference.getAtoms();
+        List<Atom> queryAtoms = query.getAtoms();
+        if(referenceAtoms.size() != queryAtoms.size()) {
+            throw new AlignmentException("cannot superimpose containers of different size: " + reference.getIdentifier() +
+                    " has " + referenceAtoms.size() + " atoms, " + query.getIdentifier() + " has " + queryAtoms.size());
+        }
+        if(referenceAtoms.isEmpty()) {
+            throw new AlignmentException("cannot superimpose empty containers " + reference.getIdentifier() + " and " +
+                    query.getIdentifier());
+        }
+        return superimpose(toCoordinateArray(referenceAtoms), toCoordinateArray(queryAtoms));
+    }
+
+    /**
+     * Superimposes the first positions of both coordinate arrays without any validation or allocation of results.
+     * @param reference the reference coordinates as x, y, z triplets
+     * @param query the query coordinates as x, y, z triplets
+     * @param length the number of positions to consider
+     * @param rototranslation receives the rotation matrix in row-major order followed by the translation vector, so
+     *                        the query is moved onto the reference by <code>x' = R x + t</code>
+     * @return the minimal RMSD
+     */
+    double superimpose(double[] reference, double[] query, int length, double[] rototranslation) {
+        InnerProduct innerProduct = new InnerProduct(reference, query, length);
+        double maximalEigenvalue = innerProduct.computeMaximalEigenvalue();
+        innerProduct.computeRototranslation(maximalEigenvalue, rototranslation);
+        return innerProduct.computeRootMeanSquareDeviation(maximalEigenvalue);
+    }
+
+    private static int validate(double[] reference, double[] query) {
+        if(reference.length != query.length || reference.length % 3 != 0) {
+            throw new IllegalArgumentException("coordinate arrays must be x, y, z triplets of equal length, found " +
+                    reference.length + " and " + query.length + " values");
+        }
+        if(reference.length == 0) {
+            throw new IllegalArgumentException("cannot superimpose empty coordinate arrays");
+        }
+        return reference.length / 3;
+    }
+
+    /**
+     * Composes the transformation for a rotation matrix given in row-major order followed by the translation.
+     */
+    static Transformation toTransformation(double[] rototranslation) {
+        double[] translation = new double[] { rototranslation[9], rototranslation[10], rototranslation[11] };
+        // transformations multiply coordinates as row vectors, thus the rotation is stored transposed
+        double[][] rotation = new double[][] {
+                { rototranslation[0], rototranslation[3], rototranslation[6] },
+                { rototranslation[1], rototranslation[4], rototranslation[7] },
+                { rototranslation[2], rototranslation[5], rototranslation[8] }
+        };
+        return new Transformation(translation, rotation);
+    }
+
+    private static double[] toCoordinateArray(List<Atom> atoms) {
+        double[] coordinates = new double[3 * atoms.size()];
+        for(int i = 0; i < atoms.size(); i++) {
+            Atom atom = atoms.get(i);
+            coordinates[3 * i] = atom.getX();
+            coordinates[3 * i + 1] = atom.getY();
+            coordinates[3 * i + 2] = atom.getZ();
+        }
+        return coordinates;
+    }
+
+    /**
+     * The inner product of the centered coordinate sets and the derived coefficients of the characteristic polynomial.
+     */
+    private static class InnerProduct {
+        private final int length;
+        private final double[] referenceCentroid;
+        private final double[] queryCentroid;
+        private final double sxx, sxy, sxz, syx, syy, syz, szx, szy, szz;
+        /**
+         * Half the sum of the squared norms of both centered coordinate sets - an upper bound of the largest eigenvalue.
+         */
+        private final double e0;
+        private final double c0, c1, c2;
+
+        InnerProduct(double[] reference, double[] query, int length) {
+            this.length = length;
+            this.referenceCentroid = centroid(reference, length);
+            this.queryCentroid = centroid(query, length);
+
+            double sxx = 0, sxy = 0, sxz = 0, syx = 0, syy = 0, syz = 0, szx = 0, szy = 0, szz = 0;
+            double g1 = 0, g2 = 0;
+            for(int i = 0; i < 3 * length; i += 3) {
+                double x1 = reference[i] - referenceCentroid[0];
+                double y1 = reference[i + 1] - referenceCentroid[1];
+                double z1 = reference[i + 2] - referenceCentroid[2];
+                double x2 = query[i] - queryCentroid[0];
+                double y2 = query[i + 1] - queryCentroid[1];
+                double z2 = query[i + 2] - queryCentroid[2];
+                g1 += x1 * x1 + y1 * y1 + z1 * z1;
+                g2 += x2 * x2 + y2 * y2 + z2 * z2;
+                sxx += x1 * x2;
+                sxy += x1 * y2;
+                sxz += x1 * z2;
+                syx += y1 * x2;
+                syy += y1 * y2;
+                syz += y1 * z2;
+                szx += z1 * x2;
+                szy += z1 * y2;
+                szz += z1 * z2;
+            }
+            this.sxx = sxx;
+            this.sxy = sxy;
+            this.sxz = sxz;
+            this.syx = syx;
+            this.syy = syy;
+            this.syz = syz;
+            this.szx = szx;
+            this.szy = szy;
+            this.szz = szz;
+            this.e0 = 0.5 * (g1 + g2);
+
+            double sxx2 = sxx * sxx;
+            double syy2 = syy * syy;
+            double szz2 = szz * szz;
+            double sxy2 = sxy * sxy;
+            double syz2 = syz * syz;
+            double sxz2 = sxz * sxz;
+            double syx2 = syx * syx;
+            double szy2 = szy * szy;
+            double szx2 = szx * szx;
+
+            double syzSzymSyySzz2 = 2.0 * (syz * szy - syy * szz);
+            double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+
+            this.c2 = -2.0 * (sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2);
+            this.c1 = 8.0 * (sxx * syz * szy + syy * szx * sxz + szz * sxy * syx - sxx * syy * szz - syz * szx * sxy -
+                    szy * syx * sxz);
+
+            double sxzpSzx = sxz + szx;
+            double syzpSzy = syz + szy;
+            double sxypSyx = sxy + syx;
+            double syzmSzy = syz - szy;
+            double sxzmSzx = sxz - szx;
+            double sxymSyx = sxy - syx;
+            double sxxpSyy = sxx + syy;
+            double sxxmSyy = sxx - syy;
+            double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+
+            this.c0 = sxy2Sxz2Syx2Szx2 * sxy2Sxz2Syx2Szx2 +
+                    (sxx2Syy2Szz2Syz2Szy2 + syzSzymSyySzz2) * (sxx2Syy2Szz2Syz2Szy2 - syzSzymSyySzz2) +
+                    (-sxzpSzx * syzmSzy + sxymSyx * (sxxmSyy - szz)) * (-sxzmSzx * syzpSzy + sxymSyx * (sxxmSyy + szz)) +
+                    (-sxzpSzx * syzpSzy - sxypSyx * (sxxpSyy - szz)) * (-sxzmSzx * syzmSzy - sxypSyx * (sxxpSyy + szz)) +
+                    (sxypSyx * syzpSzy + sxzpSzx * (sxxmSyy + szz)) * (-sxymSyx * syzmSzy + sxzpSzx * (sxxpSyy + szz)) +
+                    (sxypSyx * syzmSzy + sxzmSzx * (sxxmSyy - szz)) * (-sxymSyx * syzpSzy + sxzmSzx * (sxxpSyy - szz));
+        }
+
+        private static double[] centroid(double[] coordinates, int length) {
+            double x = 0, y = 0, z = 0;
+            for(int i = 0; i < 3 * length; i += 3) {
+                x += coordinates[i];
+                y += coordinates[i + 1];
+                z += coordinates[i + 2];
+            }
+            return new double[] { x / length, y / length, z / length };
+        }
+
+        /**
+         * Newton-Raphson iteration on the characteristic polynomial, starting from its upper bound.
+         * @return the largest eigenvalue of the key matrix
+         */
+        double computeMaximalEigenvalue() {
+            double eigenvalue = e0;
+            for(int i = 0; i < MAXIMUM_NUMBER_OF_ITERATIONS; i++) {
+                double previousEigenvalue = eigenvalue;
+                double x2 = eigenvalue * eigenvalue;
+                double b = (x2 + c2) * eigenvalue;
+                double a = b + c1;
+                double delta = (a * eigenvalue + c0) / (2.0 * x2 * eigenvalue + b + a);
+                eigenvalue -= delta;
+                if(Math.abs(eigenvalue - previousEigenvalue) < Math.abs(EIGENVALUE_PRECISION * eigenvalue)) {
+                    break;
+                }
+            }
+            return eigenvalue;
+        }
+
+        double computeRootMeanSquareDeviation(double maximalEigenvalue) {
+            return Math.sqrt(Math.abs(2.0 * (e0 - maximalEigenvalue) / length));
+        }
+
+        /**
+         * Derives the rotation from the eigenvector of the largest eigenvalue, which is any non-vanishing column of the
+         * adjoint of the shifted key matrix.
+         * @param rototranslation receives the rotation in row-major order and the translation moving the query onto
+         *                        the reference
+         */
+        void computeRototranslation(double maximalEigenvalue, double[] rototranslation) {
+            double sxzpSzx = sxz + szx;
+            double syzpSzy = syz + szy;
+            double sxypSyx = sxy + syx;
+            double syzmSzy = syz - szy;
+            double sxzmSzx = sxz - szx;
+            double sxymSyx = sxy - syx;
+            double sxxpSyy = sxx + syy;
+            double sxxmSyy = sxx - syy;
+
+            double a11 = sxxpSyy + szz - maximalEigenvalue;
+            double a12 = syzmSzy;
+            double a13 = -sxzmSzx;
+            double a14 = sxymSyx;
+            double a21 = syzmSzy;
+            double a22 = sxxmSyy - szz - maximalEigenvalue;
+            double a23 = sxypSyx;
+            double a24 = sxzpSzx;
+            double a31 = a13;
+            double a32 = a23;
+            double a33 = syy - sxx - szz - maximalEigenvalue;
+            double a34 = syzpSzy;
+            double a41 = a14;
+            double a42 = a24;
+            double a43 = a34;
+            double a44 = szz - sxxpSyy - maximalEigenvalue;
+            double a3344_4334 = a33 * a44 - a43 * a34;
+            double a3244_4234 = a32 * a44 - a42 * a34;
+            double a3243_4233 = a32 * a43 - a42 * a33;
+            double a3143_4133 = a31 * a43 - a41 * a33;
+            double a3144_4134 = a31 * a44 - a41 * a34;
+            double a3142_4132 = a31 * a42 - a41 * a32;
+
+            double q1 = a22 * a3344_4334 - a23 * a3244_4234 + a24 * a3243_4233;
+            double q2 = -a21 * a3344_4334 + a23 * a3144_4134 - a24 * a3143_4133;
+            double q3 = a21 * a3244_4234 - a22 * a3144_4134 + a24 * a3142_4132;
+            double q4 = -a21 * a3243_4233 + a22 * a3143_4133 - a23 * a3142_4132;
+            double qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+            // the first column may vanish for degenerate cases, try the others
+            if(qsqr < EIGENVECTOR_PRECISION) {
+                q1 = a12 * a3344_4334 - a13 * a3244_4234 + a14 * a3243_4233;
+                q2 = -a11 * a3344_4334 + a13 * a3144_4134 - a14 * a3143_4133;
+                q3 = a11 * a3244_4234 - a12 * a3144_4134 + a14 * a3142_4132;
+                q4 = -a11 * a3243_4233 + a12 * a3143_4133 - a13 * a3142_4132;
+                qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+                if(qsqr < EIGENVECTOR_PRECISION) {
+                    double a1324_1423 = a13 * a24 - a14 * a23;
+                    double a1224_1422 = a12 * a24 - a14 * a22;
+                    double a1223_1322 = a12 * a23 - a13 * a22;
+                    double a1124_1421 = a11 * a24 - a14 * a21;
+                    double a1123_1321 = a11 * a23 - a13 * a21;
+                    double a1122_1221 = a11 * a22 - a12 * a21;
+
+                    q1 = a42 * a1324_1423 - a43 * a1224_1422 + a44 * a1223_1322;
+                    q2 = -a41 * a1324_1423 + a43 * a1124_1421 - a44 * a1123_1321;
+                    q3 = a41 * a1224_1422 - a42 * a1124_1421 + a44 * a1122_1221;
+                    q4 = -a41 * a1223_1322 + a42 * a1123_1321 - a43 * a1122_1221;
+                    qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+                    if(qsqr < EIGENVECTOR_PRECISION) {
+                        q1 = a32 * a1324_1423 - a33 * a1224_1422 + a34 * a1223_1322;
+                        q2 = -a31 * a1324_1423 + a33 * a1124_1421 - a34 * a1123_1321;
+                        q3 = a31 * a1224_1422 - a32 * a1124_1421 + a34 * a1122_1221;
+                        q4 = -a31 * a1223_1322 + a32 * a1123_1321 - a33 * a1122_1221;
+                        qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+                        if(qsqr < EIGENVECTOR_PRECISION) {
+                            // no rotation can be determined, e.g. for a single position
+                            setRototranslation(rototranslation, 1, 0, 0, 0, 1, 0, 0, 0, 1);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            double normq = Math.sqrt(qsqr);
+            q1 /= normq;
+            q2 /= normq;
+            q3 /= normq;
+            q4 /= normq;
+
+            double a2 = q1 * q1;
+            double x2 = q2 * q2;
+            double y2 = q3 * q3;
+            double z2 = q4 * q4;
+            double xy = q2 * q3;
+            double az = q1 * q4;
+            double zx = q4 * q2;
+            double ay = q1 * q3;
+            double yz = q3 * q4;
+            double ax = q1 * q2;
+
+            setRototranslation(rototranslation, a2 + x2 - y2 - z2, 2 * (xy + az), 2 * (zx - ay),
+                    2 * (xy - az), a2 - x2 + y2 - z2, 2 * (yz + ax),
+                    2 * (zx + ay), 2 * (yz - ax), a2 - x2 - y2 + z2);
+        }
+
+        private void setRototranslation(double[] rototranslation,
+                                        double r00, double r01, double r02,
+                                        double r10, double r11, double r12,
+                                        double r20, double r21, double r22) {
+            rototranslation[0] = r00;
+            rototranslation[1] = r01;
+            rototranslation[2] = r02;
+            rototranslation[3] = r10;
+            rototranslation[4] = r11;
+            rototranslation[5] = r12;
+            rototranslation[6] = r20;
+            rototranslation[7] = r21;
+            rototranslation[8] = r22;
+            rototranslation[9] = referenceCentroid[0] -
+                    (r00 * queryCentroid[0] + r01 * queryCentroid[1] + r02 * queryCentroid[2]);
+            rototranslation[10] = referenceCentroid[1] -
+                    (r10 * queryCentroid[0] + r11 * queryCentroid[1] + r12 * queryCentroid[2]);
+            rototranslation[11] = referenceCentroid[2] -
+                    (r20 * queryCentroid[0] + r21 * queryCentroid[1] + r22 * queryCentroid[2]);
+        }
+    }
+}
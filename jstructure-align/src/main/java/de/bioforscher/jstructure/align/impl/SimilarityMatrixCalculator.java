@@ -0,0 +1,369 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.SimilarityMatrix;
+import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
+import de.bioforscher.jstructure.model.structure.Chain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the TM-align scores of all pairs of a set of chains. Only the upper triangle is aligned. It is partitioned
+ * into square tiles, so the alpha carbon traces of a tile's rows and columns are reused while they are hot, and tiles
+ * are distributed on a fork-join pool. Results are either collected in a {@link SimilarityMatrix} or streamed to a
+ * file tile by tile. Streamed computations resume from the tiles already present in the file.
+ * <p>The file is tab-separated: a header listing the tile size and the chain identifiers, followed by records
+ * <code>i j rmsd tm-score_i tm-score_j</code>, each tile being terminated by a line <code>#tile row column</code>.</p>
+ */
+public class SimilarityMatrixCalculator {
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityMatrixCalculator.class);
+    private static final int DEFAULT_TILE_SIZE = 32;
+    private static final String TILE_SIZE_PREFIX = "#tile-size";
+    private static final String CHAINS_PREFIX = "#chains";
+    private static final String TILE_PREFIX = "#tile";
+    private static final String DELIMITER = "\t";
+    private final ForkJoinPool forkJoinPool;
+    private final int tileSize;
+
+    public SimilarityMatrixCalculator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs a calculator.
+     * @param forkJoinPool the pool to run alignments on
+     * @param tileSize the number of rows and columns of a tile
+     */
+    public SimilarityMatrixCalculator(ForkJoinPool forkJoinPool, int tileSize) {
+        if(tileSize < 1) {
+            throw new IllegalArgumentException("tile size must be positive - found " + tileSize);
+        }
+        this.forkJoinPool = forkJoinPool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Aligns all pairs of chains and keeps the scores in memory.
+     * @param chains the chains to compare
+     * @return the similarity matrix
+     */
+    public SimilarityMatrix compute(List<Chain> chains) {
+        SimilarityMatrix similarityMatrix = new SimilarityMatrix(getIdentifiers(chains));
+        compute(chains, Collections.emptySet(), (tile, results) -> {
+            for(PairResult result : results) {
+                similarityMatrix.set(result.i,
+                        result.j,
+                        result.rootMeanSquareDeviation,
+                        result.templateModelingScore1,
+                        result.templateModelingScore2);
+            }
+        });
+        return similarityMatrix;
+    }
+
+    /**
+     * Aligns all pairs of chains and appends the scores to a file. If the file already contains results of the same
+     * chains, only missing tiles are computed.
+     * @param chains the chains to compare
+     * @param outputPath the file to write to
+     */
+    public void compute(List<Chain> chains, Path outputPath) {
+        List<String> identifiers = getIdentifiers(chains);
+        try {
+            Set<Tile> completedTiles = new HashSet<>();
+            if(Files.exists(outputPath)) {
+                truncateIncompleteLine(outputPath);
+            }
+            if(Files.exists(outputPath) && hasCompleteHeader(outputPath)) {
+                completedTiles = readCompletedTiles(outputPath, identifiers);
+                logger.info("resuming computation of {} - {} tiles already completed",
+                        outputPath,
+                        completedTiles.size());
+            } else {
+                // new file or the header itself was interrupted - no tile can have been written yet
+                try(Writer writer = Files.newBufferedWriter(outputPath)) {
+                    writer.write(TILE_SIZE_PREFIX + DELIMITER + tileSize + System.lineSeparator());
+                    writer.write(CHAINS_PREFIX + DELIMITER + identifiers.stream()
+                            .collect(Collectors.joining(DELIMITER)) + System.lineSeparator());
+                }
+            }
+
+            try(Writer writer = Files.newBufferedWriter(outputPath, StandardOpenOption.APPEND)) {
+                compute(chains, completedTiles, (tile, results) -> {
+                    StringBuilder block = new StringBuilder();
+                    for(PairResult result : results) {
+                        block.append(result.i).append(DELIMITER)
+                                .append(result.j).append(DELIMITER)
+                                .append(result.rootMeanSquareDeviation).append(DELIMITER)
+                                .append(result.templateModelingScore1).append(DELIMITER)
+                                .append(result.templateModelingScore2).append(System.lineSeparator());
+                    }
+                    block.append(TILE_PREFIX).append(DELIMITER)
+                            .append(tile.row).append(DELIMITER)
+                            .append(tile.column).append(System.lineSeparator());
+                    // a tile is either written completely or recomputed when resuming
+                    synchronized (writer) {
+                        try {
+                            writer.write(block.toString());
+                            writer.flush();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a similarity matrix written by {@link #compute(List, Path)}. Pairs of incomplete computations are reported
+     * as {@link Double#NaN}.
+     * @param path the file to read
+     * @return the similarity matrix
+     */
+    public static SimilarityMatrix read(Path path) {
+        try(BufferedReader reader = Files.newBufferedReader(path)) {
+            SimilarityMatrix similarityMatrix = null;
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] split = line.split(DELIMITER);
+                if(line.startsWith(CHAINS_PREFIX)) {
+                    similarityMatrix = new SimilarityMatrix(Arrays.asList(split).subList(1, split.length));
+                    initializeMissing(similarityMatrix);
+                } else if(!line.startsWith("#") && split.length == 5 && similarityMatrix != null) {
+                    similarityMatrix.set(Integer.parseInt(split[0]),
+                            Integer.parseInt(split[1]),
+                            Double.parseDouble(split[2]),
+                            Double.parseDouble(split[3]),
+                            Double.parseDouble(split[4]));
+                }
+            }
+            if(similarityMatrix == null) {
+                throw new IllegalArgumentException(path + " does not contain a similarity matrix");
+            }
+            return similarityMatrix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void initializeMissing(SimilarityMatrix similarityMatrix) {
+        for(int i = 0; i < similarityMatrix.size(); i++) {
+            for(int j = i + 1; j < similarityMatrix.size(); j++) {
+                similarityMatrix.set(i, j, Double.NaN, Double.NaN, Double.NaN);
+            }
+        }
+    }
+
+    private void compute(List<Chain> chains, Set<Tile> completedTiles, TileConsumer tileConsumer) {
+        int numberOfTiles = (chains.size() + tileSize - 1) / tileSize;
+        List<Tile> tiles = new ArrayList<>();
+        for(int row = 0; row < numberOfTiles; row++) {
+            for(int column = row; column < numberOfTiles; column++) {
+                Tile tile = new Tile(row, column);
+                if(!completedTiles.contains(tile)) {
+                    tiles.add(tile);
+                }
+            }
+        }
+        if(tiles.isEmpty()) {
+            return;
+        }
+
+        // extract each alpha carbon trace once, chains which cannot be aligned are represented by null
+        TMAlignAlgorithm.Backbone[] backbones = new TMAlignAlgorithm.Backbone[chains.size()];
+        forkJoinPool.submit(() -> Arrays.parallelSetAll(backbones, index -> {
+            try {
+                return TMAlignAlgorithm.Backbone.of(chains.get(index));
+            } catch (AlignmentException e) {
+                logger.warn("cannot align {}", chains.get(index).getIdentifier(), e);
+                return null;
+            }
+        })).join();
+
+        logger.info("aligning {} chains in {} tiles", chains.size(), tiles.size());
+        forkJoinPool.invoke(new TileTask(tiles, 0, tiles.size(), backbones, tileConsumer));
+    }
+
+    private static List<String> getIdentifiers(List<Chain> chains) {
+        return chains.stream()
+                .map(Chain::getIdentifier)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Drops the trailing line of an interrupted write.
+     */
+    private static void truncateIncompleteLine(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            while(position > 0) {
+                buffer.clear();
+                channel.read(buffer, position - 1);
+                if(buffer.get(0) == '\n') {
+                    break;
+                }
+                position--;
+            }
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * Checks whether both header lines were written completely.
+     */
+    private static boolean hasCompleteHeader(Path path) throws IOException {
+        try(BufferedReader reader = Files.newBufferedReader(path)) {
+            String tileSizeLine = reader.readLine();
+            String chainsLine = reader.readLine();
+            return tileSizeLine != null && tileSizeLine.startsWith(TILE_SIZE_PREFIX) &&
+                    chainsLine != null && chainsLine.startsWith(CHAINS_PREFIX);
+        }
+    }
+
+    private Set<Tile> readCompletedTiles(Path path, List<String> identifiers) throws IOException {
+        Set<Tile> completedTiles = new HashSet<>();
+        try(BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] split = line.split(DELIMITER);
+                if(line.startsWith(TILE_SIZE_PREFIX)) {
+                    if(Integer.parseInt(split[1]) != tileSize) {
+                        throw new IllegalArgumentException(path + " was computed with tile size " + split[1] +
+                                " - cannot resume with tile size " + tileSize);
+                    }
+                } else if(line.startsWith(CHAINS_PREFIX)) {
+                    if(!Arrays.asList(split).subList(1, split.length).equals(identifiers)) {
+                        throw new IllegalArgumentException(path + " was computed for different chains");
+                    }
+                } else if(line.startsWith(TILE_PREFIX)) {
+                    completedTiles.add(new Tile(Integer.parseInt(split[1]), Integer.parseInt(split[2])));
+                }
+            }
+        }
+        return completedTiles;
+    }
+
+    /**
+     * Recursively splits the list of tiles until single tiles are aligned.
+     */
+    private class TileTask extends RecursiveAction {
+        private final List<Tile> tiles;
+        private final int from;
+        private final int to;
+        private final TMAlignAlgorithm.Backbone[] backbones;
+        private final TileConsumer tileConsumer;
+
+        TileTask(List<Tile> tiles, int from, int to, TMAlignAlgorithm.Backbone[] backbones, TileConsumer tileConsumer) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.backbones = backbones;
+            this.tileConsumer = tileConsumer;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, middle, backbones, tileConsumer),
+                        new TileTask(tiles, middle, to, backbones, tileConsumer));
+                return;
+            }
+
+            Tile tile = tiles.get(from);
+            int rowEnd = Math.min((tile.row + 1) * tileSize, backbones.length);
+            int columnEnd = Math.min((tile.column + 1) * tileSize, backbones.length);
+            List<PairResult> results = new ArrayList<>();
+            for(int i = tile.row * tileSize; i < rowEnd; i++) {
+                for(int j = Math.max(tile.column * tileSize, i + 1); j < columnEnd; j++) {
+                    results.add(align(i, j));
+                }
+            }
+            tileConsumer.accept(tile, results);
+        }
+
+        private PairResult align(int i, int j) {
+            if(backbones[i] == null || backbones[j] == null) {
+                return new PairResult(i, j, Double.NaN, Double.NaN, Double.NaN);
+            }
+            try {
+                TMAlignAlignmentResult result = TMAlignAlgorithm.getInstance().align(backbones[i], backbones[j]);
+                return new PairResult(i,
+                        j,
+                        result.getRootMeanSquareDeviation().getScore(),
+                        result.getTemplateModelingScore1().getScore(),
+                        result.getTemplateModelingScore2().getScore());
+            } catch (AlignmentException e) {
+                logger.warn("could not align pair {} and {}", i, j, e);
+                return new PairResult(i, j, Double.NaN, Double.NaN, Double.NaN);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface TileConsumer {
+        void accept(Tile tile, List<PairResult> results);
+    }
+
+    private static class PairResult {
+        private final int i;
+        private final int j;
+        private final double rootMeanSquareDeviation;
+        private final double templateModelingScore1;
+        private final double templateModelingScore2;
+
+        PairResult(int i, int j, double rootMeanSquareDeviation, double templateModelingScore1,
+                   double templateModelingScore2) {
+            this.i = i;
+            this.j = j;
+            this.rootMeanSquareDeviation = rootMeanSquareDeviation;
+            this.templateModelingScore1 = templateModelingScore1;
+            this.templateModelingScore2 = templateModelingScore2;
+        }
+    }
+
+    private static class Tile {
+        private final int row;
+        private final int column;
+
+        Tile(int row, int column) {
+            this.row = row;
+            this.column = column;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(this == other) {
+                return true;
+            }
+            if(other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            Tile tile = (Tile) other;
+            return row == tile.row && column == tile.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * row + column;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package de.bioforscher.jstructure.align.impl;
+
+/**
+ * Cheap global descriptors of an alpha carbon trace, combined into a vector of fixed length: the distribution of
+ * pairwise alpha carbon distances, the secondary structure composition, size and compactness (radius of gyration) as
+ * well as a histogram of hashed local fragment shapes. Each block is scaled by its weight, so that the L1 distance of
+ * two vectors directly expresses their dissimilarity.
+ */
+class StructuralDescriptor {
+    static final int DIMENSION = 64;
+    private static final int DISTANCE_BINS = 20;
+    private static final double DISTANCE_BIN_WIDTH = 2.0;
+    private static final int DISTANCE_OFFSET = 0;
+    private static final int SECONDARY_STRUCTURE_OFFSET = DISTANCE_OFFSET + DISTANCE_BINS;
+    private static final int SIZE_OFFSET = SECONDARY_STRUCTURE_OFFSET + 4;
+    private static final int FRAGMENT_OFFSET = SIZE_OFFSET + 2;
+    // d(i, i+2) and d(i, i+3) of 4 consecutive alpha carbons are hashed into 4 x 8 buckets
+    private static final int FRAGMENT_BINS_13 = 4;
+    private static final int FRAGMENT_BINS_14 = 8;
+    private static final double FRAGMENT_MIN_13 = 4.5;
+    private static final double FRAGMENT_WIDTH_13 = 0.75;
+    private static final double FRAGMENT_MIN_14 = 4.0;
+    private static final double FRAGMENT_WIDTH_14 = 1.0;
+    private static final double DISTANCE_WEIGHT = 1.0;
+    private static final double SECONDARY_STRUCTURE_WEIGHT = 1.0;
+    private static final double LENGTH_WEIGHT = 2.0;
+    private static final double COMPACTNESS_WEIGHT = 1.0;
+    private static final double FRAGMENT_WEIGHT = 1.0;
+
+    private StructuralDescriptor() {
+        // deny instantiation
+    }
+
+    static float[] compute(TMAlignAlgorithm.Backbone backbone) {
+        float[] descriptor = new float[DIMENSION];
+        int length = backbone.getLength();
+        double[] coordinates = backbone.getCoordinates();
+
+        // distance distribution - the last bin collects all larger distances
+        double pairWeight = DISTANCE_WEIGHT / ((double) length * (length - 1) / 2);
+        for(int i = 0; i < length; i++) {
+            for(int j = i + 1; j < length; j++) {
+                int bin = (int) (distance(coordinates, i, j) / DISTANCE_BIN_WIDTH);
+                descriptor[DISTANCE_OFFSET + Math.min(bin, DISTANCE_BINS - 1)] += pairWeight;
+            }
+        }
+
+        // secondary structure composition - states are numbered from 1 to 4
+        for(int state : backbone.getSecondaryStructure()) {
+            descriptor[SECONDARY_STRUCTURE_OFFSET + state - 1] += SECONDARY_STRUCTURE_WEIGHT / length;
+        }
+
+        // size and compactness - the radius of gyration of globular proteins scales with 2.2 * N^0.38
+        double[] centroid = new double[3];
+        for(int i = 0; i < length; i++) {
+            for(int k = 0; k < 3; k++) {
+                centroid[k] += coordinates[3 * i + k] / length;
+            }
+        }
+        double squaredRadius = 0;
+        for(int i = 0; i < length; i++) {
+            for(int k = 0; k < 3; k++) {
+                double delta = coordinates[3 * i + k] - centroid[k];
+                squaredRadius += delta * delta / length;
+            }
+        }
+        descriptor[SIZE_OFFSET] = (float) (LENGTH_WEIGHT * Math.log(length) / Math.log(1000));
+        descriptor[SIZE_OFFSET + 1] = (float) (COMPACTNESS_WEIGHT * Math.sqrt(squaredRadius) /
+                (2.2 * Math.pow(length, 0.38)));
+
+        // local fragment shapes
+        if(length > 3) {
+            double fragmentWeight = FRAGMENT_WEIGHT / (length - 3);
+            for(int i = 0; i + 3 < length; i++) {
+                int bin13 = bin(distance(coordinates, i, i + 2), FRAGMENT_MIN_13, FRAGMENT_WIDTH_13, FRAGMENT_BINS_13);
+                int bin14 = bin(distance(coordinates, i, i + 3), FRAGMENT_MIN_14, FRAGMENT_WIDTH_14, FRAGMENT_BINS_14);
+                descriptor[FRAGMENT_OFFSET + bin13 * FRAGMENT_BINS_14 + bin14] += fragmentWeight;
+            }
+        }
+
+        return descriptor;
+    }
+
+    private static int bin(double value, double minimum, double width, int numberOfBins) {
+        return Math.max(0, Math.min(numberOfBins - 1, (int) ((value - minimum) / width)));
+    }
+
+    private static double distance(double[] coordinates, int i, int j) {
+        double dx = coordinates[3 * i] - coordinates[3 * j];
+        double dy = coordinates[3 * i + 1] - coordinates[3 * j + 1];
+        double dz = coordinates[3 * i + 2] - coordinates[3 * j + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -0,0 +1,255 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.StructureIndexHit;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.container.AtomContainer;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A prefilter for structural similarity searches in large collections. Each chain is represented by a
+ * {@link StructuralDescriptor}, queries are answered by ranking all entries by the L1 distance of their descriptors.
+ * Only the top-ranked candidates should then be aligned by e.g. {@link TMAlignAlgorithm}.
+ * <p>The index is a memory-mapped file of fixed-size records, so it is persisted as entries are added and opened
+ * again without parsing. Adding an identifier which is already indexed replaces its entry. Instances are
+ * thread-safe: searches run concurrently, additions are exclusive.</p>
+ * <p>A mapped buffer cannot exceed 2 GB, which limits an index to {@link #MAXIMUM_CAPACITY} entries.</p>
+ */
+public class StructureIndex implements AutoCloseable {
+    private static final int MAGIC_NUMBER = 0x4A534958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 12;
+    private static final int MAXIMUM_IDENTIFIER_LENGTH = 62;
+    private static final int DESCRIPTOR_SIZE = 4 * StructuralDescriptor.DIMENSION;
+    private static final int RECORD_SIZE = DESCRIPTOR_SIZE + 2 + MAXIMUM_IDENTIFIER_LENGTH;
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The maximum number of entries, about 6.7 million, whose records still fit into one mapped buffer.
+     */
+    public static final int MAXIMUM_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Integer> indices;
+    private final ReadWriteLock lock;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private StructureIndex(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.indices = new HashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+        long fileSize = channel.size();
+        if(fileSize == 0) {
+            map(INITIAL_CAPACITY);
+            buffer.putInt(0, MAGIC_NUMBER);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, StructuralDescriptor.DIMENSION);
+            buffer.putInt(COUNT_OFFSET, 0);
+        } else {
+            map((int) Math.min(MAXIMUM_CAPACITY, Math.max(INITIAL_CAPACITY, (fileSize - HEADER_SIZE) / RECORD_SIZE)));
+            if(buffer.getInt(0) != MAGIC_NUMBER || buffer.getInt(4) != VERSION ||
+                    buffer.getInt(8) != StructuralDescriptor.DIMENSION) {
+                channel.close();
+                throw new IOException(path + " is no structure index of version " + VERSION);
+            }
+            this.size = buffer.getInt(COUNT_OFFSET);
+            for(int index = 0; index < size; index++) {
+                indices.put(getIdentifier(index), index);
+            }
+        }
+    }
+
+    /**
+     * Opens an index, which is created if the file does not exist.
+     * @param path the file backing the index
+     * @return the index
+     * @throws IOException if the file cannot be mapped or is no index
+     */
+    public static StructureIndex open(Path path) throws IOException {
+        return new StructureIndex(path);
+    }
+
+    /**
+     * Computes the position of a record. Positions are computed in <code>long</code> as the product overflows for
+     * indices beyond {@link #MAXIMUM_CAPACITY}, which are rejected.
+     */
+    private static int offset(int index) {
+        long offset = HEADER_SIZE + (long) index * RECORD_SIZE;
+        if(offset + RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("record " + index + " exceeds the capacity of " + MAXIMUM_CAPACITY +
+                    " entries");
+        }
+        return (int) offset;
+    }
+
+    private void map(int capacity) throws IOException {
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a chain by its identifier.
+     * @param chain the chain to index
+     * @throws AlignmentException if the chain does not contain enough residues
+     * @throws IOException if the index cannot grow
+     */
+    public void add(Chain chain) throws AlignmentException, IOException {
+        add(chain.getIdentifier(), chain);
+    }
+
+    /**
+     * Adds or replaces an entry.
+     * @param identifier the identifier reported by searches, at most 62 bytes when encoded as UTF-8
+     * @param atomContainer the structure to index
+     * @throws AlignmentException if the container does not contain enough residues
+     * @throws IOException if the index cannot grow, e.g. as it already holds {@link #MAXIMUM_CAPACITY} entries
+     */
+    public void add(String identifier, AtomContainer atomContainer) throws AlignmentException, IOException {
+        byte[] encodedIdentifier = identifier.getBytes(StandardCharsets.UTF_8);
+        if(encodedIdentifier.length > MAXIMUM_IDENTIFIER_LENGTH) {
+            throw new IllegalArgumentException("identifier '" + identifier + "' exceeds " +
+                    MAXIMUM_IDENTIFIER_LENGTH + " bytes");
+        }
+        float[] descriptor = StructuralDescriptor.compute(TMAlignAlgorithm.Backbone.of(atomContainer));
+
+        lock.writeLock().lock();
+        try {
+            Integer existingIndex = indices.get(identifier);
+            int index = existingIndex != null ? existingIndex : size;
+            if(index == capacity) {
+                if(capacity == MAXIMUM_CAPACITY) {
+                    throw new IOException(path + " already holds the maximum of " + MAXIMUM_CAPACITY + " entries");
+                }
+                map((int) Math.min(2L * capacity, MAXIMUM_CAPACITY));
+            }
+            int offset = offset(index);
+            for(int k = 0; k < descriptor.length; k++) {
+                buffer.putFloat(offset + 4 * k, descriptor[k]);
+            }
+            buffer.putShort(offset + DESCRIPTOR_SIZE, (short) encodedIdentifier.length);
+            for(int k = 0; k < encodedIdentifier.length; k++) {
+                buffer.put(offset + DESCRIPTOR_SIZE + 2 + k, encodedIdentifier[k]);
+            }
+            if(existingIndex == null) {
+                indices.put(identifier, index);
+                size++;
+                // the count is updated last, so a partially written record is never visible
+                buffer.putInt(COUNT_OFFSET, size);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks all entries by their similarity to the query.
+     * @param query the query structure
+     * @param numberOfHits the maximum number of candidates to report
+     * @return the most similar entries, ordered by increasing distance
+     * @throws AlignmentException if the query does not contain enough residues
+     */
+    public List<StructureIndexHit> search(AtomContainer query, int numberOfHits) throws AlignmentException {
+        float[] descriptor = StructuralDescriptor.compute(TMAlignAlgorithm.Backbone.of(query));
+
+        lock.readLock().lock();
+        try {
+            // the worst of the current candidates is on top
+            PriorityQueue<double[]> candidates = new PriorityQueue<>(numberOfHits + 1,
+                    (candidate1, candidate2) -> Double.compare(candidate2[0], candidate1[0]));
+            for(int index = 0; index < size; index++) {
+                int offset = offset(index);
+                double distance = 0;
+                for(int k = 0; k < descriptor.length; k++) {
+                    distance += Math.abs(descriptor[k] - buffer.getFloat(offset + 4 * k));
+                }
+                if(candidates.size() < numberOfHits) {
+                    candidates.add(new double[] { distance, index });
+                } else if(numberOfHits > 0 && distance < candidates.peek()[0]) {
+                    candidates.poll();
+                    candidates.add(new double[] { distance, index });
+                }
+            }
+
+            List<StructureIndexHit> hits = new ArrayList<>();
+            while(!candidates.isEmpty()) {
+                double[] candidate = candidates.poll();
+                hits.add(new StructureIndexHit(getIdentifier((int) candidate[1]), candidate[0]));
+            }
+            Collections.reverse(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String getIdentifier(int index) {
+        int offset = offset(index) + DESCRIPTOR_SIZE;
+        byte[] encodedIdentifier = new byte[buffer.getShort(offset)];
+        for(int k = 0; k < encodedIdentifier.length; k++) {
+            encodedIdentifier[k] = buffer.get(offset + 2 + k);
+        }
+        return new String(encodedIdentifier, StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(String identifier) {
+        lock.readLock().lock();
+        try {
+            return indices.containsKey(identifier);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes all changes to disk.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " path=" + path + " size=" + size();
+    }
+}
@@ -0,0 +1,1061 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.query.StructureAlignmentQuery;
+import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
+import de.bioforscher.jstructure.align.result.score.RootMeanSquareDeviation;
+import de.bioforscher.jstructure.align.result.score.TemplateModelingScore;
+import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
+import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.Group;
+import de.bioforscher.jstructure.model.structure.container.AtomContainer;
+import de.bioforscher.jstructure.model.structure.selection.CompiledSelection;
+import de.bioforscher.jstructure.model.structure.selection.Selection;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * In-process implementation of TM-score (superposition of residues with fixed equivalence) and TM-align (sequence
+ * independent structure alignment), following the search strategy of the reference implementation. Both operate on
+ * the alpha carbons of amino acids. All state of a computation is confined to the calling thread, so the instance can
+ * be used concurrently.
+ * <pre>
+ *     Zhang, Y., &amp; Skolnick, J. (2004). Scoring function for automated assessment of protein structure template
+ *     quality. Proteins, 57(4), 702-710.
+ *     Zhang, Y., &amp; Skolnick, J. (2005). TM-align: a protein structure alignment algorithm based on the TM-score.
+ *     Nucleic Acids Research, 33(7), 2302-2309.
+ * </pre>
+ */
+public class TMAlignAlgorithm {
+    private static final TMAlignAlgorithm INSTANCE = new TMAlignAlgorithm();
+    private static final QCPSuperimposer QCP_SUPERIMPOSER = new QCPSuperimposer();
+    private static final CompiledSelection ALPHA_CARBONS = Selection.template()
+            .aminoAcids()
+            .alphaCarbonAtoms()
+            .compile();
+    private static final int MINIMUM_NUMBER_OF_RESIDUES = 3;
+
+    private TMAlignAlgorithm() {
+    }
+
+    public static TMAlignAlgorithm getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Aligns the query to the reference independent of their sequences.
+     * @param structureAlignmentQuery the pair of structures
+     * @return the alignment with TM-score 1 normalized by the reference and TM-score 2 normalized by the query
+     * @throws AlignmentException if no alignment can be determined
+     */
+    public TMAlignAlignmentResult align(StructureAlignmentQuery structureAlignmentQuery) throws AlignmentException {
+        return align(structureAlignmentQuery.getReference(), structureAlignmentQuery.getQuery());
+    }
+
+    /**
+     * Aligns the query to the reference independent of their sequences. The reference corresponds to
+     * <tt>Chain_1</tt> of the TM-align program.
+     * @param reference the reference
+     * @param query the query
+     * @return the alignment with TM-score 1 normalized by the reference and TM-score 2 normalized by the query
+     * @throws AlignmentException if either container holds too few residues or no alignment can be determined
+     */
+    public TMAlignAlignmentResult align(AtomContainer reference, AtomContainer query) throws AlignmentException {
+        return align(Backbone.of(reference), Backbone.of(query));
+    }
+
+    /**
+     * Superimposes residues sharing the same residue identifier and scores the superposition. The TM-score 1 is
+     * normalized by the number of residues of the reference, the TM-score 2 by that of the query.
+     * @param reference the reference, e.g. the native structure
+     * @param query the query, e.g. a model or reconstruction
+     * @return the scores, aligned length refers to the number of equivalent residues
+     * @throws AlignmentException if the containers do not share any residue
+     */
+    public TMAlignAlignmentResult score(AtomContainer reference, AtomContainer query) throws AlignmentException {
+        Backbone referenceBackbone = Backbone.of(reference);
+        Backbone queryBackbone = Backbone.of(query);
+
+        Map<ResidueIdentifier, Integer> referenceIndices = new HashMap<>();
+        for(int i = 0; i < referenceBackbone.length; i++) {
+            referenceIndices.putIfAbsent(referenceBackbone.residueIdentifiers[i], i);
+        }
+        double[] queryCoordinates = new double[3 * Math.min(referenceBackbone.length, queryBackbone.length)];
+        double[] referenceCoordinates = new double[queryCoordinates.length];
+        int numberOfEquivalentResidues = 0;
+        int numberOfIdenticalResidues = 0;
+        for(int j = 0; j < queryBackbone.length && numberOfEquivalentResidues < referenceBackbone.length; j++) {
+            Integer i = referenceIndices.remove(queryBackbone.residueIdentifiers[j]);
+            if(i == null) {
+                continue;
+            }
+            System.arraycopy(queryBackbone.coordinates, 3 * j, queryCoordinates, 3 * numberOfEquivalentResidues, 3);
+            System.arraycopy(referenceBackbone.coordinates, 3 * i, referenceCoordinates, 3 * numberOfEquivalentResidues, 3);
+            if(queryBackbone.sequence[j] == referenceBackbone.sequence[i]) {
+                numberOfIdenticalResidues++;
+            }
+            numberOfEquivalentResidues++;
+        }
+        if(numberOfEquivalentResidues == 0) {
+            throw new AlignmentException("no equivalent residues in " + reference.getIdentifier() + " and " +
+                    query.getIdentifier());
+        }
+
+        Aligner aligner = new Aligner(queryBackbone, referenceBackbone);
+        double[] rototranslation = new double[12];
+        double rootMeanSquareDeviation = QCP_SUPERIMPOSER.superimpose(referenceCoordinates,
+                queryCoordinates,
+                numberOfEquivalentResidues,
+                rototranslation);
+        aligner.setFinalParameters(referenceBackbone.length);
+        double templateModelingScore1 = aligner.tmScore8Search(queryCoordinates,
+                referenceCoordinates,
+                numberOfEquivalentResidues,
+                rototranslation,
+                1,
+                0,
+                aligner.d0Search,
+                aligner.lNorm,
+                aligner.scoreD8,
+                aligner.d0);
+        aligner.setFinalParameters(queryBackbone.length);
+        double templateModelingScore2 = aligner.tmScore8Search(queryCoordinates,
+                referenceCoordinates,
+                numberOfEquivalentResidues,
+                rototranslation,
+                1,
+                0,
+                aligner.d0Search,
+                aligner.lNorm,
+                aligner.scoreD8,
+                aligner.d0);
+
+        return new TMAlignAlignmentResult(referenceBackbone.length,
+                queryBackbone.length,
+                numberOfEquivalentResidues,
+                new RootMeanSquareDeviation(rootMeanSquareDeviation),
+                numberOfIdenticalResidues / (double) numberOfEquivalentResidues,
+                new TemplateModelingScore(templateModelingScore1),
+                new TemplateModelingScore(templateModelingScore2));
+    }
+
+    /**
+     * Aligns two precomputed alpha carbon traces, see {@link #align(AtomContainer, AtomContainer)}.
+     */
+    TMAlignAlignmentResult align(Backbone reference, Backbone query) throws AlignmentException {
+        return new Aligner(reference, query).align();
+    }
+
+    /**
+     * The alpha carbon trace of a container and its secondary structure assignment. Instances are immutable and can be
+     * reused for any number of alignments.
+     */
+    static class Backbone {
+        private final int length;
+        private final double[] coordinates;
+        private final char[] sequence;
+        private final int[] residueNumbers;
+        private final ResidueIdentifier[] residueIdentifiers;
+        private final int[] secondaryStructure;
+
+        private Backbone(List<Atom> alphaCarbons) {
+            this.length = alphaCarbons.size();
+            this.coordinates = new double[3 * length];
+            this.sequence = new char[length];
+            this.residueNumbers = new int[length];
+            this.residueIdentifiers = new ResidueIdentifier[length];
+            for(int i = 0; i < length; i++) {
+                Atom alphaCarbon = alphaCarbons.get(i);
+                Group group = alphaCarbon.getParentGroup();
+                coordinates[3 * i] = alphaCarbon.getX();
+                coordinates[3 * i + 1] = alphaCarbon.getY();
+                coordinates[3 * i + 2] = alphaCarbon.getZ();
+                sequence[i] = group.getGroupPrototype().getOneLetterCode().orElse("X").charAt(0);
+                residueIdentifiers[i] = group.getResidueIdentifier();
+                residueNumbers[i] = residueIdentifiers[i].getResidueNumber();
+            }
+            this.secondaryStructure = Aligner.assignSecondaryStructure(coordinates, length);
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the coordinates as consecutive x, y, z triplets
+         */
+        double[] getCoordinates() {
+            return coordinates;
+        }
+
+        /**
+         * @return helix (2), strand (4), turn (3) or coil (1) for each residue
+         */
+        int[] getSecondaryStructure() {
+            return secondaryStructure;
+        }
+
+        static Backbone of(AtomContainer atomContainer) throws AlignmentException {
+            // a single alpha carbon per residue, alternative positions are ignored
+            Set<Group> groups = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<Atom> alphaCarbons = ALPHA_CARBONS.asFilteredAtoms(atomContainer)
+                    .filter(atom -> groups.add(atom.getParentGroup()))
+                    .collect(Collectors.toList());
+            if(alphaCarbons.size() < MINIMUM_NUMBER_OF_RESIDUES) {
+                throw new AlignmentException(atomContainer.getIdentifier() + " contains only " + alphaCarbons.size() +
+                        " residues with alpha carbon, at least " + MINIMUM_NUMBER_OF_RESIDUES + " are needed");
+            }
+            return new Backbone(alphaCarbons);
+        }
+    }
+
+    /**
+     * The state of a single alignment of structure x onto structure y, including all scratch buffers. Coordinates are
+     * stored as consecutive x, y, z triplets, positions are addressed by their index.
+     */
+    private static class Aligner {
+        private static final double DCU0 = 4.25;
+        private static final int SEARCH_STEP = 40;
+        private final Backbone backboneX;
+        private final Backbone backboneY;
+        private final double[] x;
+        private final double[] y;
+        private final int xlen;
+        private final int ylen;
+        // parameters of the current stage
+        private double d0Min;
+        private double lNorm;
+        private double d0;
+        private double d0Search;
+        private double scoreD8;
+        // scratch buffers
+        private final double[] xtm;
+        private final double[] ytm;
+        private final double[] xt;
+        private final double[] r1;
+        private final double[] r2;
+        private final double[] distances;
+        private final int[] iAli;
+        private final int[] kAli;
+        private final double[] point = new double[3];
+        private final double[] candidateRototranslation = new double[12];
+        private final double[] searchRototranslation = new double[12];
+        /**
+         * The rotation and translation of the current stage, row-major rotation followed by the translation.
+         */
+        private final double[] rototranslation = new double[12];
+        private double[][] scoreMatrix;
+        private double[][] val;
+        private boolean[][] path;
+        private double lastScore;
+
+        Aligner(Backbone backboneX, Backbone backboneY) {
+            this.backboneX = backboneX;
+            this.backboneY = backboneY;
+            this.x = backboneX.coordinates;
+            this.y = backboneY.coordinates;
+            this.xlen = backboneX.length;
+            this.ylen = backboneY.length;
+            int maximumLength = Math.max(xlen, ylen);
+            this.xtm = new double[3 * maximumLength];
+            this.ytm = new double[3 * maximumLength];
+            this.xt = new double[3 * maximumLength];
+            this.r1 = new double[3 * maximumLength];
+            this.r2 = new double[3 * maximumLength];
+            this.distances = new double[maximumLength];
+            this.iAli = new int[maximumLength];
+            this.kAli = new int[maximumLength];
+            this.scoreD8 = 1.5 * Math.pow(Math.min(xlen, ylen), 0.3) + 3.5;
+        }
+
+        TMAlignAlignmentResult align() throws AlignmentException {
+            setSearchParameters();
+            double localD0Search = d0Search;
+            double ddcc = lNorm <= 40 ? 0.1 : 0.4;
+            int[] invmap0 = new int[ylen];
+            int[] invmap = new int[ylen];
+            this.scoreMatrix = new double[xlen + 1][ylen + 1];
+            this.val = new double[xlen + 1][ylen + 1];
+            this.path = new boolean[xlen + 1][ylen + 1];
+
+            // 1: gapless threading
+            getInitial(invmap0);
+            double tmMax = detailedSearch(invmap0, SEARCH_STEP, 8, localD0Search);
+            double tm = dpIter(invmap, 0, 2, 30, localD0Search);
+            if(tm > tmMax) {
+                tmMax = tm;
+                System.arraycopy(invmap, 0, invmap0, 0, ylen);
+            }
+
+            // 2: secondary structure alignment
+            getInitialSecondaryStructure(invmap);
+            tm = detailedSearch(invmap, SEARCH_STEP, 8, localD0Search);
+            if(tm > tmMax) {
+                tmMax = tm;
+                System.arraycopy(invmap, 0, invmap0, 0, ylen);
+            }
+            if(tm > tmMax * 0.2) {
+                tm = dpIter(invmap, 0, 2, 30, localD0Search);
+                if(tm > tmMax) {
+                    tmMax = tm;
+                    System.arraycopy(invmap, 0, invmap0, 0, ylen);
+                }
+            }
+
+            // 3: local superposition of fragments
+            if(getInitialLocal(invmap)) {
+                tm = detailedSearch(invmap, SEARCH_STEP, 8, localD0Search);
+                if(tm > tmMax) {
+                    tmMax = tm;
+                    System.arraycopy(invmap, 0, invmap0, 0, ylen);
+                }
+                if(tm > tmMax * ddcc) {
+                    tm = dpIter(invmap, 0, 2, 2, localD0Search);
+                    if(tm > tmMax) {
+                        tmMax = tm;
+                        System.arraycopy(invmap, 0, invmap0, 0, ylen);
+                    }
+                }
+            }
+
+            // 4: secondary structure combined with the best alignment so far
+            getInitialSecondaryStructurePlus(invmap0, invmap);
+            tm = detailedSearch(invmap, SEARCH_STEP, 8, localD0Search);
+            if(tm > tmMax) {
+                tmMax = tm;
+                System.arraycopy(invmap, 0, invmap0, 0, ylen);
+            }
+            if(tm > tmMax * ddcc) {
+                tm = dpIter(invmap, 0, 2, 30, localD0Search);
+                if(tm > tmMax) {
+                    tmMax = tm;
+                    System.arraycopy(invmap, 0, invmap0, 0, ylen);
+                }
+            }
+
+            // 5: gapless threading of the longest continuous fragment
+            getInitialFragmentThreading(invmap);
+            tm = detailedSearch(invmap, SEARCH_STEP, 8, localD0Search);
+            if(tm > tmMax) {
+                tmMax = tm;
+                System.arraycopy(invmap, 0, invmap0, 0, ylen);
+            }
+            if(tm > tmMax * ddcc) {
+                tm = dpIter(invmap, 1, 2, 2, localD0Search);
+                if(tm > tmMax) {
+                    System.arraycopy(invmap, 0, invmap0, 0, ylen);
+                }
+            }
+
+            if(Arrays.stream(invmap0).allMatch(i -> i < 0)) {
+                throw new AlignmentException("could not determine initial alignment");
+            }
+
+            // refine the final alignment and drop distant pairs
+            detailedSearch(invmap0, 1, 8, localD0Search);
+            rotate(x, xlen, rototranslation, xt);
+            int nAli8 = 0;
+            int numberOfIdenticalResidues = 0;
+            for(int j = 0; j < ylen; j++) {
+                int i = invmap0[j];
+                if(i >= 0 && Math.sqrt(squaredDistance(xt, i, y, j)) <= scoreD8) {
+                    System.arraycopy(x, 3 * i, xtm, 3 * nAli8, 3);
+                    System.arraycopy(y, 3 * j, ytm, 3 * nAli8, 3);
+                    if(backboneX.sequence[i] == backboneY.sequence[j]) {
+                        numberOfIdenticalResidues++;
+                    }
+                    nAli8++;
+                }
+            }
+            if(nAli8 == 0) {
+                throw new AlignmentException("no aligned residues within " + scoreD8 + " A");
+            }
+            double rootMeanSquareDeviation = superimpose(xtm, ytm, nAli8, candidateRototranslation);
+
+            setFinalParameters(ylen);
+            double tmScoreY = tmScore8Search(xtm, ytm, nAli8, candidateRototranslation, 1, 0, d0Search, lNorm,
+                    scoreD8, d0);
+            setFinalParameters(xlen);
+            double tmScoreX = tmScore8Search(xtm, ytm, nAli8, candidateRototranslation, 1, 0, d0Search, lNorm,
+                    scoreD8, d0);
+
+            return new TMAlignAlignmentResult(xlen,
+                    ylen,
+                    nAli8,
+                    new RootMeanSquareDeviation(rootMeanSquareDeviation),
+                    numberOfIdenticalResidues / (double) nAli8,
+                    new TemplateModelingScore(tmScoreX),
+                    new TemplateModelingScore(tmScoreY));
+        }
+
+        private void setSearchParameters() {
+            lNorm = Math.min(xlen, ylen);
+            d0 = lNorm <= 19 ? 0.168 : 1.24 * Math.cbrt(lNorm - 15) - 1.8;
+            d0Min = d0 + 0.8;
+            d0 = d0Min;
+            d0Search = Math.min(8, Math.max(4.5, d0));
+        }
+
+        void setFinalParameters(double length) {
+            d0Min = 0.5;
+            lNorm = length;
+            d0 = lNorm <= 21 ? 0.5 : 1.24 * Math.cbrt(lNorm - 15) - 1.8;
+            d0 = Math.max(d0Min, d0);
+            d0Search = Math.min(8, Math.max(4.5, d0));
+        }
+
+        /**
+         * Superimposes the first positions of a onto those of b.
+         * @return the RMSD
+         */
+        private double superimpose(double[] a, double[] b, int length, double[] rototranslation) {
+            return QCP_SUPERIMPOSER.superimpose(b, a, length, rototranslation);
+        }
+
+        private static void transform(double[] rototranslation, double[] source, int index, double[] target,
+                                      int targetIndex) {
+            double px = source[3 * index];
+            double py = source[3 * index + 1];
+            double pz = source[3 * index + 2];
+            target[3 * targetIndex] = rototranslation[0] * px + rototranslation[1] * py + rototranslation[2] * pz +
+                    rototranslation[9];
+            target[3 * targetIndex + 1] = rototranslation[3] * px + rototranslation[4] * py +
+                    rototranslation[5] * pz + rototranslation[10];
+            target[3 * targetIndex + 2] = rototranslation[6] * px + rototranslation[7] * py +
+                    rototranslation[8] * pz + rototranslation[11];
+        }
+
+        private static void rotate(double[] source, int length, double[] rototranslation, double[] target) {
+            for(int i = 0; i < length; i++) {
+                transform(rototranslation, source, i, target, i);
+            }
+        }
+
+        private static double squaredDistance(double[] a, int i, double[] b, int j) {
+            double dx = a[3 * i] - b[3 * j];
+            double dy = a[3 * i + 1] - b[3 * j + 1];
+            double dz = a[3 * i + 2] - b[3 * j + 2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        /**
+         * Collects the pairs closer than d, the cutoff is relaxed until at least 3 pairs are found. The score is stored
+         * in {@link #lastScore}.
+         * @return the number of collected pairs
+         */
+        private int scoreFun8(double[] xa, double[] ya, int nAli, double d, int scoreSumMethod, double lNorm,
+                              double scoreD8, double d0) {
+            double dTmp = d * d;
+            double d02 = d0 * d0;
+            double scoreD8Cut = scoreD8 * scoreD8;
+            int increments = 0;
+            int nCut;
+            double scoreSum;
+            while(true) {
+                nCut = 0;
+                scoreSum = 0;
+                for(int i = 0; i < nAli; i++) {
+                    double di = squaredDistance(xa, i, ya, i);
+                    if(di < dTmp) {
+                        iAli[nCut] = i;
+                        nCut++;
+                    }
+                    if(scoreSumMethod != 8 || di <= scoreD8Cut) {
+                        scoreSum += 1 / (1 + di / d02);
+                    }
+                }
+                if(nCut < 3 && nAli > 3) {
+                    increments++;
+                    double dIncreased = d + increments * 0.5;
+                    dTmp = dIncreased * dIncreased;
+                } else {
+                    break;
+                }
+            }
+            lastScore = scoreSum / lNorm;
+            return nCut;
+        }
+
+        /**
+         * Finds the superposition of the aligned pairs maximizing the TM-score, starting from fragments of decreasing
+         * length which are extended iteratively by all pairs within the search distance.
+         * @param bestRototranslation receives the best superposition
+         * @return the maximal TM-score
+         */
+        double tmScore8Search(double[] xtm, double[] ytm, int lAli, double[] bestRototranslation, int simplifyStep,
+                              int scoreSumMethod, double localD0Search, double lNorm, double scoreD8, double d0) {
+            if(lAli == 0) {
+                return 0;
+            }
+            final int numberOfIterations = 20;
+            final int maximumNumberOfInitialFragments = 6;
+            int minimumInitialLength = Math.min(4, lAli);
+            int[] initialLengths = new int[maximumNumberOfInitialFragments];
+            int numberOfInitialFragments = 0;
+            int i;
+            for(i = 0; i < maximumNumberOfInitialFragments - 1; i++) {
+                numberOfInitialFragments++;
+                initialLengths[i] = (int) (lAli / Math.pow(2.0, i));
+                if(initialLengths[i] <= minimumInitialLength) {
+                    initialLengths[i] = minimumInitialLength;
+                    break;
+                }
+            }
+            if(i == maximumNumberOfInitialFragments - 1) {
+                numberOfInitialFragments++;
+                initialLengths[i] = minimumInitialLength;
+            }
+
+            double[] rototranslation = searchRototranslation;
+            double scoreMax = -1;
+            for(int initialFragment = 0; initialFragment < numberOfInitialFragments; initialFragment++) {
+                int initialLength = initialLengths[initialFragment];
+                int iLMax = lAli - initialLength + 1;
+                for(int iL = 0; iL < iLMax; iL += simplifyStep) {
+                    System.arraycopy(xtm, 3 * iL, r1, 0, 3 * initialLength);
+                    System.arraycopy(ytm, 3 * iL, r2, 0, 3 * initialLength);
+                    superimpose(r1, r2, initialLength, rototranslation);
+                    rotate(xtm, lAli, rototranslation, xt);
+                    int nCut = scoreFun8(xt, ytm, lAli, localD0Search - 1, scoreSumMethod, lNorm, scoreD8, d0);
+                    if(lastScore > scoreMax) {
+                        scoreMax = lastScore;
+                        System.arraycopy(rototranslation, 0, bestRototranslation, 0, 12);
+                    }
+
+                    // extend the superposition iteratively
+                    double d = localD0Search + 1;
+                    for(int iteration = 0; iteration < numberOfIterations && nCut > 0; iteration++) {
+                        int ka = 0;
+                        for(int k = 0; k < nCut; k++) {
+                            int m = iAli[k];
+                            System.arraycopy(xtm, 3 * m, r1, 3 * k, 3);
+                            System.arraycopy(ytm, 3 * m, r2, 3 * k, 3);
+                            kAli[ka] = m;
+                            ka++;
+                        }
+                        superimpose(r1, r2, nCut, rototranslation);
+                        rotate(xtm, lAli, rototranslation, xt);
+                        nCut = scoreFun8(xt, ytm, lAli, d, scoreSumMethod, lNorm, scoreD8, d0);
+                        if(lastScore > scoreMax) {
+                            scoreMax = lastScore;
+                            System.arraycopy(rototranslation, 0, bestRototranslation, 0, 12);
+                        }
+
+                        // converged when the same pairs were selected
+                        if(nCut == ka) {
+                            int k = 0;
+                            while(k < nCut && iAli[k] == kAli[k]) {
+                                k++;
+                            }
+                            if(k == nCut) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            return scoreMax;
+        }
+
+        /**
+         * Scores an alignment by the superposition search, the best superposition is kept as current one.
+         */
+        private double detailedSearch(int[] invmap, int simplifyStep, int scoreSumMethod, double localD0Search) {
+            int k = 0;
+            for(int j = 0; j < ylen; j++) {
+                int i = invmap[j];
+                if(i >= 0) {
+                    System.arraycopy(x, 3 * i, xtm, 3 * k, 3);
+                    System.arraycopy(y, 3 * j, ytm, 3 * k, 3);
+                    k++;
+                }
+            }
+            return tmScore8Search(xtm, ytm, k, rototranslation, simplifyStep, scoreSumMethod, localD0Search, lNorm,
+                    scoreD8, d0);
+        }
+
+        /**
+         * Quick estimate of the quality of an alignment by three rounds of superposition.
+         * @return the unnormalized score
+         */
+        private double getScoreFast(int[] invmap) {
+            int k = 0;
+            for(int j = 0; j < ylen; j++) {
+                int i = invmap[j];
+                if(i >= 0) {
+                    System.arraycopy(x, 3 * i, r1, 3 * k, 3);
+                    System.arraycopy(y, 3 * j, r2, 3 * k, 3);
+                    System.arraycopy(x, 3 * i, xtm, 3 * k, 3);
+                    System.arraycopy(y, 3 * j, ytm, 3 * k, 3);
+                    k++;
+                }
+            }
+            if(k == 0) {
+                return -1;
+            }
+            superimpose(r1, r2, k, rototranslation);
+
+            int nAli = k;
+            double d02 = d0 * d0;
+            double d002 = d0Search * d0Search;
+            double tmScore = 0;
+            for(k = 0; k < nAli; k++) {
+                transform(rototranslation, xtm, k, point, 0);
+                double di = squaredDistance(point, 0, ytm, k);
+                distances[k] = di;
+                tmScore += 1 / (1 + di / d02);
+            }
+
+            // second iteration
+            int j = selectClosePairs(nAli, d002);
+            double tmScore1;
+            double tmScore2;
+            if(nAli != j) {
+                superimpose(r1, r2, j, rototranslation);
+                tmScore1 = 0;
+                for(k = 0; k < nAli; k++) {
+                    transform(rototranslation, xtm, k, point, 0);
+                    double di = squaredDistance(point, 0, ytm, k);
+                    distances[k] = di;
+                    tmScore1 += 1 / (1 + di / d02);
+                }
+
+                // third iteration
+                j = selectClosePairs(nAli, d002 + 1);
+                superimpose(r1, r2, j, rototranslation);
+                tmScore2 = 0;
+                for(k = 0; k < nAli; k++) {
+                    transform(rototranslation, xtm, k, point, 0);
+                    double di = squaredDistance(point, 0, ytm, k);
+                    tmScore2 += 1 / (1 + di / d02);
+                }
+            } else {
+                tmScore1 = tmScore;
+                tmScore2 = tmScore;
+            }
+
+            return Math.max(tmScore, Math.max(tmScore1, tmScore2));
+        }
+
+        private int selectClosePairs(int nAli, double cutoff) {
+            int j;
+            while(true) {
+                j = 0;
+                for(int k = 0; k < nAli; k++) {
+                    if(distances[k] <= cutoff) {
+                        System.arraycopy(xtm, 3 * k, r1, 3 * j, 3);
+                        System.arraycopy(ytm, 3 * k, r2, 3 * j, 3);
+                        j++;
+                    }
+                }
+                if(j < 3 && nAli > 3) {
+                    cutoff += 0.5;
+                } else {
+                    return j;
+                }
+            }
+        }
+
+        /**
+         * Needleman-Wunsch without end gap penalties on the current score matrix, gaps are only penalized when opened.
+         * @param j2i receives the aligned position of x for each position of y or -1
+         */
+        private void nwdp(double gapOpen, int[] j2i) {
+            for(int i = 0; i <= xlen; i++) {
+                val[i][0] = 0;
+                path[i][0] = false;
+            }
+            for(int j = 0; j <= ylen; j++) {
+                val[0][j] = 0;
+                path[0][j] = false;
+            }
+            for(int i = 1; i <= xlen; i++) {
+                double[] previousRow = val[i - 1];
+                double[] row = val[i];
+                boolean[] previousPathRow = path[i - 1];
+                boolean[] pathRow = path[i];
+                double[] scoreRow = scoreMatrix[i];
+                for(int j = 1; j <= ylen; j++) {
+                    double d = previousRow[j - 1] + scoreRow[j];
+                    double h = previousRow[j];
+                    if(previousPathRow[j]) {
+                        h += gapOpen;
+                    }
+                    double v = row[j - 1];
+                    if(pathRow[j - 1]) {
+                        v += gapOpen;
+                    }
+                    if(d >= h && d >= v) {
+                        pathRow[j] = true;
+                        row[j] = d;
+                    } else {
+                        pathRow[j] = false;
+                        row[j] = v >= h ? v : h;
+                    }
+                }
+            }
+
+            Arrays.fill(j2i, -1);
+            int i = xlen;
+            int j = ylen;
+            while(i > 0 && j > 0) {
+                if(path[i][j]) {
+                    j2i[j - 1] = i - 1;
+                    i--;
+                    j--;
+                } else {
+                    double h = val[i - 1][j];
+                    if(path[i - 1][j]) {
+                        h += gapOpen;
+                    }
+                    double v = val[i][j - 1];
+                    if(path[i][j - 1]) {
+                        v += gapOpen;
+                    }
+                    if(v >= h) {
+                        j--;
+                    } else {
+                        i--;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Dynamic programming on the distances of y to x, superimposed by the given rototranslation.
+         */
+        private void nwdpByDistance(double[] rototranslation, double d02, double gapOpen, int[] j2i) {
+            rotate(x, xlen, rototranslation, xt);
+            for(int i = 0; i < xlen; i++) {
+                double[] scoreRow = scoreMatrix[i + 1];
+                for(int j = 0; j < ylen; j++) {
+                    scoreRow[j + 1] = 1 / (1 + squaredDistance(xt, i, y, j) / d02);
+                }
+            }
+            nwdp(gapOpen, j2i);
+        }
+
+        /**
+         * Alternates between dynamic programming on the current superposition and superposition search on the
+         * resulting alignment.
+         * @param invmap0 receives the best alignment
+         * @return the best TM-score
+         */
+        private double dpIter(int[] invmap0, int g1, int g2, int iterationMax, double localD0Search) {
+            final double[] gapOpen = { -0.6, 0 };
+            int[] invmap = new int[ylen];
+            double tmScoreMax = -1;
+            double tmScoreOld = 0;
+            double d02 = d0 * d0;
+            for(int g = g1; g < g2; g++) {
+                for(int iteration = 0; iteration < iterationMax; iteration++) {
+                    nwdpByDistance(rototranslation, d02, gapOpen[g], invmap);
+                    double tmScore = detailedSearch(invmap, SEARCH_STEP, 8, localD0Search);
+                    if(tmScore > tmScoreMax) {
+                        tmScoreMax = tmScore;
+                        System.arraycopy(invmap, 0, invmap0, 0, ylen);
+                    }
+                    if(iteration > 0 && Math.abs(tmScoreOld - tmScore) < 0.000001) {
+                        break;
+                    }
+                    tmScoreOld = tmScore;
+                }
+            }
+            return tmScoreMax;
+        }
+
+        /**
+         * Gapless threading of both structures.
+         */
+        private void getInitial(int[] y2x) {
+            int minimumLength = Math.min(xlen, ylen);
+            int minimumAlignedLength = Math.max(5, minimumLength / 2);
+            int n1 = -ylen + minimumAlignedLength;
+            int n2 = xlen - minimumAlignedLength;
+            double tmScoreMax = -1;
+            int bestShift = 0;
+            for(int k = n1; k <= n2; k++) {
+                threading(k, y2x);
+                double tmScore = getScoreFast(y2x);
+                if(tmScore >= tmScoreMax) {
+                    tmScoreMax = tmScore;
+                    bestShift = k;
+                }
+            }
+            threading(bestShift, y2x);
+        }
+
+        private void threading(int shift, int[] y2x) {
+            for(int j = 0; j < ylen; j++) {
+                int i = j + shift;
+                y2x[j] = i >= 0 && i < xlen ? i : -1;
+            }
+        }
+
+        /**
+         * Assigns helix (2), strand (4), turn (3) or coil (1) by the distances of the alpha carbons of surrounding
+         * residues.
+         */
+        private static int[] assignSecondaryStructure(double[] coordinates, int length) {
+            int[] secondaryStructure = new int[length];
+            for(int i = 0; i < length; i++) {
+                secondaryStructure[i] = 1;
+                int j1 = i - 2;
+                int j2 = i - 1;
+                int j3 = i;
+                int j4 = i + 1;
+                int j5 = i + 2;
+                if(j1 >= 0 && j5 < length) {
+                    double d13 = Math.sqrt(squaredDistance(coordinates, j1, coordinates, j3));
+                    double d14 = Math.sqrt(squaredDistance(coordinates, j1, coordinates, j4));
+                    double d15 = Math.sqrt(squaredDistance(coordinates, j1, coordinates, j5));
+                    double d24 = Math.sqrt(squaredDistance(coordinates, j2, coordinates, j4));
+                    double d25 = Math.sqrt(squaredDistance(coordinates, j2, coordinates, j5));
+                    double d35 = Math.sqrt(squaredDistance(coordinates, j3, coordinates, j5));
+                    secondaryStructure[i] = assignSecondaryStructure(d13, d14, d15, d24, d25, d35);
+                }
+            }
+            return secondaryStructure;
+        }
+
+        private static int assignSecondaryStructure(double d13, double d14, double d15, double d24, double d25,
+                                                    double d35) {
+            double delta = 2.1;
+            if(Math.abs(d15 - 6.37) < delta && Math.abs(d14 - 5.18) < delta && Math.abs(d25 - 5.18) < delta &&
+                    Math.abs(d13 - 5.45) < delta && Math.abs(d24 - 5.45) < delta && Math.abs(d35 - 5.45) < delta) {
+                return 2;
+            }
+            delta = 1.42;
+            if(Math.abs(d15 - 13) < delta && Math.abs(d14 - 10.4) < delta && Math.abs(d25 - 10.4) < delta &&
+                    Math.abs(d13 - 6.1) < delta && Math.abs(d24 - 6.1) < delta && Math.abs(d35 - 6.1) < delta) {
+                return 4;
+            }
+            if(d15 < 8) {
+                return 3;
+            }
+            return 1;
+        }
+
+        /**
+         * Alignment of the secondary structure assignments.
+         */
+        private void getInitialSecondaryStructure(int[] y2x) {
+            int[] secondaryStructureX = backboneX.secondaryStructure;
+            int[] secondaryStructureY = backboneY.secondaryStructure;
+            for(int i = 0; i < xlen; i++) {
+                for(int j = 0; j < ylen; j++) {
+                    scoreMatrix[i + 1][j + 1] = secondaryStructureX[i] == secondaryStructureY[j] ? 1 : 0;
+                }
+            }
+            nwdp(-1.0, y2x);
+        }
+
+        /**
+         * Dynamic programming on the superpositions of local fragments.
+         * @return <code>true</code> if an alignment was found
+         */
+        private boolean getInitialLocal(int[] y2x) {
+            double d01 = Math.max(d0Min, d0 + 1.5);
+            double d02 = d01 * d01;
+            double glMax = 0;
+            int aL = Math.min(xlen, ylen);
+            int[] invmap = new int[ylen];
+            double[] fragmentRototranslation = new double[12];
+
+            int nJump1 = Math.min(jumpLength(xlen), xlen / 3);
+            int nJump2 = Math.min(jumpLength(ylen), ylen / 3);
+            int[] nFrag = { Math.min(20, aL / 3), Math.min(100, aL / 2) };
+            // the threading steps degenerate for tiny structures
+            nJump1 = Math.max(1, nJump1);
+            nJump2 = Math.max(1, nJump2);
+
+            boolean found = false;
+            for(int fragmentLength : nFrag) {
+                if(fragmentLength < 1) {
+                    continue;
+                }
+                int m1 = xlen - fragmentLength + 1;
+                int m2 = ylen - fragmentLength + 1;
+                for(int i = 0; i < m1; i += nJump1) {
+                    for(int j = 0; j < m2; j += nJump2) {
+                        System.arraycopy(x, 3 * i, r1, 0, 3 * fragmentLength);
+                        System.arraycopy(y, 3 * j, r2, 0, 3 * fragmentLength);
+                        superimpose(r1, r2, fragmentLength, fragmentRototranslation);
+                        nwdpByDistance(fragmentRototranslation, d02, 0.0, invmap);
+                        double gl = getScoreFast(invmap);
+                        if(gl > glMax) {
+                            glMax = gl;
+                            System.arraycopy(invmap, 0, y2x, 0, ylen);
+                            found = true;
+                        }
+                    }
+                }
+            }
+            return found;
+        }
+
+        private static int jumpLength(int length) {
+            if(length > 250) {
+                return 45;
+            } else if(length > 200) {
+                return 35;
+            } else if(length > 150) {
+                return 25;
+            }
+            return 15;
+        }
+
+        /**
+         * Dynamic programming on the superposition of a previous alignment, favoring matching secondary structure.
+         */
+        private void getInitialSecondaryStructurePlus(int[] y2x0, int[] y2x) {
+            double d01 = Math.max(d0Min, d0 + 1.5);
+            double d02 = d01 * d01;
+            int k = 0;
+            for(int j = 0; j < ylen; j++) {
+                int i = y2x0[j];
+                if(i >= 0) {
+                    System.arraycopy(x, 3 * i, r1, 3 * k, 3);
+                    System.arraycopy(y, 3 * j, r2, 3 * k, 3);
+                    k++;
+                }
+            }
+            double[] alignmentRototranslation = new double[12];
+            superimpose(r1, r2, k, alignmentRototranslation);
+            int[] secondaryStructureX = backboneX.secondaryStructure;
+            int[] secondaryStructureY = backboneY.secondaryStructure;
+            for(int i = 0; i < xlen; i++) {
+                transform(alignmentRototranslation, x, i, point, 0);
+                for(int j = 0; j < ylen; j++) {
+                    double dij = squaredDistance(point, 0, y, j);
+                    scoreMatrix[i + 1][j + 1] = 1.0 / (1 + dij / d02) +
+                            (secondaryStructureX[i] == secondaryStructureY[j] ? 0.5 : 0);
+                }
+            }
+            nwdp(-1.0, y2x);
+        }
+
+        /**
+         * The longest fragment of consecutive residues, the distance criterion is relaxed for very fragmented
+         * structures.
+         * @return the first and last index of the fragment
+         */
+        private static int[] findMaximalFragment(double[] coordinates, int[] residueNumbers, int length) {
+            final int minimumFragmentLength = 4;
+            int minimumLength = Math.min(minimumFragmentLength, length / 3);
+            double dcu0Cut = DCU0 * DCU0;
+            double dcuCut = dcu0Cut;
+            int maximumLength = 0;
+            int startMax = 0;
+            int endMax = 0;
+            int increments = 0;
+            while(maximumLength < minimumLength) {
+                maximumLength = 0;
+                int j = 1;
+                int start = 0;
+                for(int i = 1; i < length; i++) {
+                    double d = squaredDistance(coordinates, i - 1, coordinates, i);
+                    boolean connected = false;
+                    if(dcuCut > dcu0Cut) {
+                        connected = d < dcuCut;
+                    } else if(residueNumbers[i] == residueNumbers[i - 1] + 1) {
+                        connected = d < dcuCut;
+                    }
+                    if(connected) {
+                        j++;
+                        if(i == length - 1) {
+                            if(j > maximumLength) {
+                                maximumLength = j;
+                                startMax = start;
+                                endMax = i;
+                            }
+                            j = 1;
+                        }
+                    } else {
+                        if(j > maximumLength) {
+                            maximumLength = j;
+                            startMax = start;
+                            endMax = i - 1;
+                        }
+                        j = 1;
+                        start = i;
+                    }
+                }
+                if(maximumLength < minimumLength) {
+                    increments++;
+                    double dIncreased = Math.pow(1.1, increments) * DCU0;
+                    dcuCut = dIncreased * dIncreased;
+                }
+            }
+            return new int[] { startMax, endMax };
+        }
+
+        /**
+         * Gapless threading of the longest continuous fragment of the smaller structure.
+         */
+        private void getInitialFragmentThreading(int[] y2x) {
+            final int minimumFragmentLength1 = 3;
+            int[] fragmentX = findMaximalFragment(x, backboneX.residueNumbers, xlen);
+            int[] fragmentY = findMaximalFragment(y, backboneY.residueNumbers, ylen);
+            int lx = fragmentX[1] - fragmentX[0] + 1;
+            int ly = fragmentY[1] - fragmentY[0] + 1;
+            int lFr = Math.min(lx, ly);
+            int[] ifr = new int[lFr];
+            boolean fragmentOfX = lx < ly || (lx == ly && xlen <= ylen);
+            for(int i = 0; i < lFr; i++) {
+                ifr[i] = (fragmentOfX ? fragmentX[0] : fragmentY[0]) + i;
+            }
+
+            // continuous structures were already threaded as a whole, use their central part only
+            int l0 = Math.min(xlen, ylen);
+            if(lFr == l0) {
+                int n1 = (int) (l0 * 0.1);
+                int n2 = (int) (l0 * 0.89);
+                int j = 0;
+                for(int i = n1; i <= n2; i++) {
+                    ifr[j] = ifr[i];
+                    j++;
+                }
+                lFr = j;
+            }
+
+            int[] candidate = new int[ylen];
+            double tmScoreMax = -1;
+            if(fragmentOfX) {
+                int minimumAlignedLength = Math.max(minimumFragmentLength1, (int) (Math.min(lFr, ylen) / 2.5));
+                int n1 = -ylen + minimumAlignedLength;
+                int n2 = lFr - minimumAlignedLength;
+                for(int k = n1; k <= n2; k++) {
+                    for(int j = 0; j < ylen; j++) {
+                        int i = j + k;
+                        candidate[j] = i >= 0 && i < lFr ? ifr[i] : -1;
+                    }
+                    double tmScore = getScoreFast(candidate);
+                    if(tmScore >= tmScoreMax) {
+                        tmScoreMax = tmScore;
+                        System.arraycopy(candidate, 0, y2x, 0, ylen);
+                    }
+                }
+            } else {
+                int minimumAlignedLength = Math.max(minimumFragmentLength1, (int) (Math.min(xlen, lFr) / 2.5));
+                int n1 = -lFr + minimumAlignedLength;
+                int n2 = xlen - minimumAlignedLength;
+                for(int k = n1; k <= n2; k++) {
+                    Arrays.fill(candidate, -1);
+                    for(int j = 0; j < lFr; j++) {
+                        int i = j + k;
+                        if(i >= 0 && i < xlen) {
+                            candidate[ifr[j]] = i;
+                        }
+                    }
+                    double tmScore = getScoreFast(candidate);
+                    if(tmScore >= tmScoreMax) {
+                        tmScoreMax = tmScore;
+                        System.arraycopy(candidate, 0, y2x, 0, ylen);
+                    }
+                }
+            }
+        }
+    }
+}
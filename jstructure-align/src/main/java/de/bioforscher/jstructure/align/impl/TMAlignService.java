@@ -6,59 +6,231 @@ import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
 import de.bioforscher.jstructure.align.result.score.RootMeanSquareDeviation;
 import de.bioforscher.jstructure.align.result.score.TemplateModelingScore;
 import de.bioforscher.jstructure.model.feature.ComputationException;
+import de.bioforscher.jstructure.model.structure.Structure;
 import de.bioforscher.jstructure.service.ExternalLocalService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Runs the external <tt>tmalign</tt> binary. At most {@link #getConcurrency()} processes are executed at a time,
+ * further callers wait for a free slot. Both output streams of each process are drained concurrently and closed, so
+ * neither blocked pipes nor leaked file descriptors accumulate. Processes exceeding the timeout are killed. Runs
+ * failing transiently (timeouts, failures to spawn or read the process) are retried with exponential backoff, whereas
+ * errors reported by <tt>tmalign</tt> itself (e.g. unreadable input files) fail immediately. Instances are thread-safe.
+ */
 public class TMAlignService extends ExternalLocalService {
     private static final Logger logger = LoggerFactory.getLogger(TMAlignService.class);
-    private static final TMAlignService INSTANCE = new TMAlignService();
     private static final String DEFAULT_SERVICE_LOCATION = "tmalign";
+    private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAXIMUM_NUMBER_OF_RETRIES = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final Path RAM_DISK = Paths.get("/dev/shm");
+    private static final ExecutorService STREAM_DRAINER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "tmalign-stream-drainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // created last - the constructor relies on the constants above
+    private static final TMAlignService INSTANCE = new TMAlignService();
+
+    private volatile Semaphore slots;
+    private volatile int concurrency;
+    private volatile long timeoutMillis;
+    private volatile Path temporaryDirectory;
+    private final AtomicLong executionCount;
+    private final AtomicLong retryCount;
+    private final AtomicLong timeoutCount;
+    private final AtomicLong queueWaitNanos;
+    private final AtomicLong runTimeNanos;
 
     private TMAlignService() {
         super(DEFAULT_SERVICE_LOCATION);
+        this.executionCount = new AtomicLong();
+        this.retryCount = new AtomicLong();
+        this.timeoutCount = new AtomicLong();
+        this.queueWaitNanos = new AtomicLong();
+        this.runTimeNanos = new AtomicLong();
+        this.timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        setConcurrency(Runtime.getRuntime().availableProcessors());
     }
 
     public static TMAlignService getInstance() {
         return INSTANCE;
     }
 
-    // added synchronized to address tmalign dying randomly reporting too many open files
-    public synchronized TMAlignAlignmentResult process(String[] arguments) throws AlignmentException {
-        return process(arguments, 1);
+    /**
+     * Sets the number of <tt>tmalign</tt> processes which may run at the same time. Processes already running or
+     * waiting for a slot are not affected.
+     * @param concurrency the maximum number of concurrent processes
+     */
+    public void setConcurrency(int concurrency) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive - found " + concurrency);
+        }
+        this.concurrency = concurrency;
+        this.slots = new Semaphore(concurrency, true);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the time after which a single <tt>tmalign</tt> process is killed. The run is retried afterwards.
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if(timeout < 1) {
+            throw new IllegalArgumentException("timeout must be positive - found " + timeout);
+        }
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the directory where structures are staged for <tt>tmalign</tt>.
+     * @param temporaryDirectory the directory or <code>null</code> to use the default temporary directory
+     */
+    public void setTemporaryDirectory(Path temporaryDirectory) {
+        this.temporaryDirectory = temporaryDirectory;
+    }
+
+    /**
+     * Stages structures on the memory-backed file system <tt>/dev/shm</tt> if it is available.
+     * @return <code>true</code> if the memory-backed file system is used
+     */
+    public boolean useRamDisk() {
+        if(Files.isDirectory(RAM_DISK) && Files.isWritable(RAM_DISK)) {
+            setTemporaryDirectory(RAM_DISK);
+            return true;
+        }
+        logger.warn("{} is not available - staging structures in the default temporary directory", RAM_DISK);
+        return false;
+    }
+
+    public Path getTemporaryDirectory() {
+        return temporaryDirectory;
+    }
+
+    public long getExecutionCount() {
+        return executionCount.get();
     }
 
-    private synchronized TMAlignAlignmentResult process(String[] arguments,
-                                           int run) throws AlignmentException {
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * The accumulated time callers waited for a free slot.
+     * @param unit the requested unit
+     * @return the total queue wait
+     */
+    public long getQueueWaitTime(TimeUnit unit) {
+        return unit.convert(queueWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The accumulated run time of all processes, including failed ones.
+     * @param unit the requested unit
+     * @return the total run time
+     */
+    public long getRunTime(TimeUnit unit) {
+        return unit.convert(runTimeNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public TMAlignAlignmentResult process(String[] arguments) throws AlignmentException {
+        for(int run = 0; ; run++) {
+            try {
+                return execute(arguments);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AlignmentException("interrupted while running tmalign", e);
+            } catch (ComputationException e) {
+                // tmalign reported an error - running it again with the same arguments will not help
+                logger.warn("tmalign computation failed:{}{}",
+                        System.lineSeparator(),
+                        Arrays.toString(arguments),
+                        e);
+                throw new AlignmentException("could not run tmalign",
+                        e);
+            } catch (Exception e) {
+                if(run >= MAXIMUM_NUMBER_OF_RETRIES) {
+                    logger.warn("tmalign computation finally failed:{}{}",
+                            System.lineSeparator(),
+                            Arrays.toString(arguments),
+                            e);
+                    throw new AlignmentException("could not run tmalign",
+                            e);
+                }
+                retryCount.incrementAndGet();
+                long backoff = INITIAL_BACKOFF_MILLIS << run;
+                logger.debug("tmalign run {} failed, retrying in {} ms", run + 1, backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new AlignmentException("interrupted while running tmalign", interruptedException);
+                }
+            }
+        }
+    }
+
+    private TMAlignAlignmentResult execute(String[] arguments) throws IOException, InterruptedException,
+            ExecutionException, TimeoutException {
+        Semaphore slots = this.slots;
+        long queueStart = System.nanoTime();
+        slots.acquire();
+        long runStart = System.nanoTime();
+        queueWaitNanos.addAndGet(runStart - queueStart);
+        Process process = null;
         try {
             logger.debug("spawning tmalign process with arguments:{}{}",
                     System.lineSeparator(),
                     arguments);
-            ProcessBuilder processBuilder = new ProcessBuilder(arguments);
-            Process process = processBuilder.start();
-
+            executionCount.incrementAndGet();
+            process = new ProcessBuilder(arguments).start();
+            process.getOutputStream().close();
+            // drain both streams concurrently - a full pipe would block the process
+            InputStream inputStream = process.getInputStream();
+            InputStream errorStream = process.getErrorStream();
+            Future<List<String>> outputLinesFuture = STREAM_DRAINER.submit(() -> readLines(inputStream));
+            Future<List<String>> errorLinesFuture = STREAM_DRAINER.submit(() -> readLines(errorStream));
+            long deadline = runStart + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
             List<String> outputLines;
-            try(BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                outputLines = br.lines()
-                        .collect(Collectors.toList());
-            }
             List<String> errorLines;
-            try(BufferedReader br = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                errorLines = br.lines()
-                        .collect(Collectors.toList());
+            try {
+                outputLines = outputLinesFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                errorLines = errorLinesFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if(!process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException();
+                }
+            } catch (TimeoutException e) {
+                timeoutCount.incrementAndGet();
+                throw new TimeoutException("tmalign did not finish within " + timeoutMillis + " ms");
             }
 
-            process.waitFor();
-
             if(outputLines.stream().anyMatch(line -> line.startsWith("Can not open file:"))) {
                 throw new ComputationException("error during tmalign execution:" + System.lineSeparator() +
                         outputLines.stream().collect(Collectors.joining(System.lineSeparator())));
@@ -69,74 +241,147 @@ public class TMAlignService extends ExternalLocalService {
                         errorLines.stream().collect(Collectors.joining(System.lineSeparator())));
             }
 
-            int length1 = 0;
-            int length2 = 0;
-            int alignedLength = 0;
-            RootMeanSquareDeviation rootMeanSquareDeviation = null;
-            double seqId = 0;
-            TemplateModelingScore templateModelingScore1 = null;
-            TemplateModelingScore templateModelingScore2 = null;
-            for(String outputLine : outputLines) {
-                if(outputLine.startsWith("Length of Chain_1")) {
-                    length1 = Integer.valueOf(outputLine.split(":")[1].trim().split("\\s+")[0]);
-                } else if(outputLine.startsWith("Length of Chain_2")) {
-                    length2 = Integer.valueOf(outputLine.split(":")[1].trim().split("\\s+")[0]);
-                } else if(outputLine.startsWith("Aligned length")) {
-                    String[] split = outputLine.split("=");
-                    alignedLength = Integer.valueOf(split[1].split(",")[0].trim());
-                    rootMeanSquareDeviation = new RootMeanSquareDeviation(Double.valueOf(split[2].split(",")[0].trim()));
-                    seqId = Double.valueOf(split[4].trim());
-                } else if(outputLine.startsWith("TM-score")) {
-                    double tmscore = Double.valueOf(outputLine.split("=")[1].split("\\(")[0].trim());
-                    TemplateModelingScore templateModelingScore = new TemplateModelingScore(tmscore);
-                    if(outputLine.contains("Chain_1")) {
-                        templateModelingScore1 = templateModelingScore;
-                    } else {
-                        templateModelingScore2 = templateModelingScore;
-                    }
-                }
+            return parseOutput(outputLines);
+        } finally {
+            if(process != null) {
+                // kills the process if still running and closes its pipes, which releases the drainers
+                process.destroyForcibly();
             }
+            runTimeNanos.addAndGet(System.nanoTime() - runStart);
+            slots.release();
+        }
+    }
 
-            return new TMAlignAlignmentResult(length1,
-                    length2,
-                    alignedLength,
-                    rootMeanSquareDeviation,
-                    seqId,
-                    templateModelingScore1,
-                    templateModelingScore2);
-        } catch (Exception e) {
-            if(run > 3) {
-                logger.warn("tmalign computation finally failed:{}{}",
-                        System.lineSeparator(),
-                        Arrays.toString(arguments),
-                        e);
-                throw new AlignmentException("could not run tmalign",
-                        e);
+    private static List<String> readLines(InputStream inputStream) throws IOException {
+        try(BufferedReader br = new BufferedReader(new InputStreamReader(inputStream))) {
+            return br.lines()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static TMAlignAlignmentResult parseOutput(List<String> outputLines) {
+        int length1 = 0;
+        int length2 = 0;
+        int alignedLength = 0;
+        RootMeanSquareDeviation rootMeanSquareDeviation = null;
+        double seqId = 0;
+        TemplateModelingScore templateModelingScore1 = null;
+        TemplateModelingScore templateModelingScore2 = null;
+        for(String outputLine : outputLines) {
+            if(outputLine.startsWith("Length of Chain_1")) {
+                length1 = Integer.valueOf(outputLine.split(":")[1].trim().split("\\s+")[0]);
+            } else if(outputLine.startsWith("Length of Chain_2")) {
+                length2 = Integer.valueOf(outputLine.split(":")[1].trim().split("\\s+")[0]);
+            } else if(outputLine.startsWith("Aligned length")) {
+                String[] split = outputLine.split("=");
+                alignedLength = Integer.valueOf(split[1].split(",")[0].trim());
+                rootMeanSquareDeviation = new RootMeanSquareDeviation(Double.valueOf(split[2].split(",")[0].trim()));
+                seqId = Double.valueOf(split[4].trim());
+            } else if(outputLine.startsWith("TM-score")) {
+                double tmscore = Double.valueOf(outputLine.split("=")[1].split("\\(")[0].trim());
+                TemplateModelingScore templateModelingScore = new TemplateModelingScore(tmscore);
+                if(outputLine.contains("Chain_1")) {
+                    templateModelingScore1 = templateModelingScore;
+                } else {
+                    templateModelingScore2 = templateModelingScore;
+                }
             }
-            return process(arguments, run + 1);
         }
+
+        if(rootMeanSquareDeviation == null || templateModelingScore1 == null || templateModelingScore2 == null) {
+            throw new ComputationException("could not parse tmalign output:" + System.lineSeparator() +
+                    outputLines.stream().collect(Collectors.joining(System.lineSeparator())));
+        }
+
+        return new TMAlignAlignmentResult(length1,
+                length2,
+                alignedLength,
+                rootMeanSquareDeviation,
+                seqId,
+                templateModelingScore1,
+                templateModelingScore2);
     }
 
     public TMAlignAlignmentResult process(StructureAlignmentQuery structureAlignmentQuery) throws AlignmentException {
-        try {
-            Path referencePath = writeStructureToTemporaryFile(structureAlignmentQuery.getReference());
-            Path queryPath = writeStructureToTemporaryFile(structureAlignmentQuery.getQuery());
-
-            String[] arguments = new String[] {
-                    getServiceLocation(),
-                    referencePath.toFile().toString(),
-                    queryPath.toFile().toString()
-            };
+        try(StagedStructure reference = stage(structureAlignmentQuery.getReference());
+            StagedStructure query = stage(structureAlignmentQuery.getQuery())) {
+            return process(reference, query);
+        }
+    }
 
-            TMAlignAlignmentResult result = process(arguments);
+    /**
+     * Aligns several queries to one reference. The reference is staged only once.
+     * @param reference the reference
+     * @param queries the queries
+     * @return the alignment results in the order of the queries
+     * @throws AlignmentException if any alignment fails
+     */
+    public List<TMAlignAlignmentResult> process(Structure reference, List<Structure> queries) throws AlignmentException {
+        List<TMAlignAlignmentResult> results = new ArrayList<>();
+        try(StagedStructure stagedReference = stage(reference)) {
+            for(Structure query : queries) {
+                try(StagedStructure stagedQuery = stage(query)) {
+                    results.add(process(stagedReference, stagedQuery));
+                }
+            }
+        }
+        return results;
+    }
 
-            Files.delete(referencePath);
-            Files.delete(queryPath);
+    public TMAlignAlignmentResult process(StagedStructure reference, StagedStructure query) throws AlignmentException {
+        return process(new String[] {
+                getServiceLocation(),
+                reference.getPath().toFile().toString(),
+                query.getPath().toFile().toString()
+        });
+    }
 
-            return result;
+    /**
+     * Writes a structure to the temporary directory, so that it can be aligned several times without being written
+     * again. The file is deleted when the returned handle is closed.
+     * @param structure the structure to stage
+     * @return the handle of the staged file
+     * @throws AlignmentException if the structure cannot be written
+     */
+    public StagedStructure stage(Structure structure) throws AlignmentException {
+        try {
+            Path temporaryDirectory = this.temporaryDirectory;
+            return new StagedStructure(temporaryDirectory == null ? writeStructureToTemporaryFile(structure) :
+                    writeStructureToTemporaryFile(structure, temporaryDirectory));
         } catch (IOException e) {
-            throw new AlignmentException("could not run tmalign",
+            throw new AlignmentException("could not stage structure " + structure.getProteinIdentifier(),
                     e);
         }
     }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " concurrency=" + getConcurrency() + " executions=" + getExecutionCount() +
+                " retries=" + getRetryCount() + " timeouts=" + getTimeoutCount() + " queueWait=" +
+                getQueueWaitTime(TimeUnit.MILLISECONDS) + "ms runTime=" + getRunTime(TimeUnit.MILLISECONDS) + "ms";
+    }
+
+    /**
+     * A structure written to a temporary file.
+     */
+    public static class StagedStructure implements AutoCloseable {
+        private final Path path;
+
+        StagedStructure(Path path) {
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("could not delete staged structure {}", path, e);
+            }
+        }
+    }
 }
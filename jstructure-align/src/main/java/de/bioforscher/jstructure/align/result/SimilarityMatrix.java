@@ -0,0 +1,94 @@
+package de.bioforscher.jstructure.align.result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pairwise structural similarity of a set of chains. Only the upper triangle is stored, scores of pairs which
+ * could not be aligned are reported as {@link Double#NaN}. Single precision suffices for the reported scores and
+ * halves the memory footprint.
+ */
+public class SimilarityMatrix {
+    private final List<String> identifiers;
+    private final int size;
+    private final float[] rootMeanSquareDeviations;
+    // normalized by the chain of the lower index
+    private final float[] templateModelingScores1;
+    // normalized by the chain of the higher index
+    private final float[] templateModelingScores2;
+
+    public SimilarityMatrix(List<String> identifiers) {
+        this.identifiers = new ArrayList<>(identifiers);
+        this.size = identifiers.size();
+        long numberOfPairs = (long) size * (size - 1) / 2;
+        if(numberOfPairs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(size + " chains exceed the capacity of an in-memory matrix - stream " +
+                    "the results to disk instead");
+        }
+        this.rootMeanSquareDeviations = new float[(int) numberOfPairs];
+        this.templateModelingScores1 = new float[(int) numberOfPairs];
+        this.templateModelingScores2 = new float[(int) numberOfPairs];
+    }
+
+    /**
+     * Registers the alignment of 2 chains.
+     * @param i the index of the reference
+     * @param j the index of the query
+     * @param rootMeanSquareDeviation the RMSD of the alignment
+     * @param templateModelingScore1 the TM-score normalized by the reference
+     * @param templateModelingScore2 the TM-score normalized by the query
+     */
+    public void set(int i, int j, double rootMeanSquareDeviation, double templateModelingScore1,
+                    double templateModelingScore2) {
+        if(i == j) {
+            throw new IllegalArgumentException("cannot set scores of the diagonal");
+        }
+        int index = index(i, j);
+        rootMeanSquareDeviations[index] = (float) rootMeanSquareDeviation;
+        templateModelingScores1[index] = (float) (i < j ? templateModelingScore1 : templateModelingScore2);
+        templateModelingScores2[index] = (float) (i < j ? templateModelingScore2 : templateModelingScore1);
+    }
+
+    private int index(int i, int j) {
+        if(i > j) {
+            return index(j, i);
+        }
+        return (int) ((long) i * size - (long) i * (i + 1) / 2 + j - i - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<String> getIdentifiers() {
+        return identifiers;
+    }
+
+    public double getRootMeanSquareDeviation(int i, int j) {
+        return i == j ? 0 : rootMeanSquareDeviations[index(i, j)];
+    }
+
+    /**
+     * The TM-score of 2 chains normalized by the length of the first one.
+     * @param i the chain whose length is used for normalization
+     * @param j the other chain
+     * @return the TM-score
+     */
+    public double getTemplateModelingScore(int i, int j) {
+        if(i == j) {
+            return 1;
+        }
+        return i < j ? templateModelingScores1[index(i, j)] : templateModelingScores2[index(i, j)];
+    }
+
+    public double getAverageTemplateModelingScore(int i, int j) {
+        return 0.5 * getTemplateModelingScore(i, j) + 0.5 * getTemplateModelingScore(j, i);
+    }
+
+    @Override
+    public String toString() {
+        return "SimilarityMatrix{" +
+                "size=" + size +
+                '}';
+    }
+}
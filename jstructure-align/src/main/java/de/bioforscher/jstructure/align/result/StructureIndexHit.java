@@ -0,0 +1,32 @@
+package de.bioforscher.jstructure.align.result;
+
+import de.bioforscher.jstructure.StandardFormat;
+
+/**
+ * A candidate reported by a structure index. Lower distances indicate more similar descriptors.
+ */
+public class StructureIndexHit implements AlignmentResult {
+    private final String identifier;
+    private final double distance;
+
+    public StructureIndexHit(String identifier, double distance) {
+        this.identifier = identifier;
+        this.distance = distance;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return "StructureIndexHit{" +
+                "identifier='" + identifier + '\'' +
+                ", distance=" + StandardFormat.format(distance) +
+                '}';
+    }
+}
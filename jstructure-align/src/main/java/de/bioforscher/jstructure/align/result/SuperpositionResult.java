@@ -0,0 +1,46 @@
+package de.bioforscher.jstructure.align.result;
+
+import de.bioforscher.jstructure.align.result.score.RootMeanSquareDeviation;
+import de.bioforscher.jstructure.mathematics.Transformation;
+
+/**
+ * The optimal superposition of a query onto a reference for a given set of equivalent positions.
+ */
+public class SuperpositionResult implements AlignmentResult {
+    private final int alignedLength;
+    private final RootMeanSquareDeviation rootMeanSquareDeviation;
+    private final Transformation transformation;
+
+    public SuperpositionResult(int alignedLength,
+                               RootMeanSquareDeviation rootMeanSquareDeviation,
+                               Transformation transformation) {
+        this.alignedLength = alignedLength;
+        this.rootMeanSquareDeviation = rootMeanSquareDeviation;
+        this.transformation = transformation;
+    }
+
+    public int getAlignedLength() {
+        return alignedLength;
+    }
+
+    public RootMeanSquareDeviation getRootMeanSquareDeviation() {
+        return rootMeanSquareDeviation;
+    }
+
+    /**
+     * The rototranslation moving the query onto the reference, apply e.g. by
+     * <code>query.calculate().transform(result.getTransformation())</code>.
+     * @return the transformation of the query
+     */
+    public Transformation getTransformation() {
+        return transformation;
+    }
+
+    @Override
+    public String toString() {
+        return "SuperpositionResult{" +
+                "alignedLength=" + alignedLength +
+                ", rootMeanSquareDeviation=" + rootMeanSquareDeviation +
+                '}';
+    }
+}
@@ -0,0 +1,163 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.SuperpositionResult;
+import de.bioforscher.jstructure.mathematics.Transformation;
+import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the QCP superposition to the SVD-based Kabsch algorithm.
+ */
+public class QCPSuperimposerTest {
+    private QCPSuperimposer instance;
+    private double[] reference;
+    private double[] query;
+
+    @Before
+    public void setup() {
+        Structure structure = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
+        Chain chainA = structure.select().chainName("A").asChain();
+        Chain chainB = structure.select().chainName("B").asChain();
+        // pair the alpha carbons of equivalent residues of both chains
+        List<Atom[]> pairs = chainA.aminoAcids()
+                .map(aminoAcid -> {
+                    Optional<Atom> alphaCarbon = aminoAcid.select().alphaCarbonAtoms().asOptionalAtom();
+                    Optional<Atom> equivalentAlphaCarbon = chainB.getGroup(aminoAcid.getResidueIdentifier())
+                            .flatMap(group -> group.select().alphaCarbonAtoms().asOptionalAtom());
+                    return alphaCarbon.isPresent() && equivalentAlphaCarbon.isPresent() ?
+                            new Atom[] { alphaCarbon.get(), equivalentAlphaCarbon.get() } : null;
+                })
+                .filter(pair -> pair != null)
+                .collect(Collectors.toList());
+        reference = new double[3 * pairs.size()];
+        query = new double[3 * pairs.size()];
+        for(int i = 0; i < pairs.size(); i++) {
+            System.arraycopy(pairs.get(i)[0].getCoordinates(), 0, reference, 3 * i, 3);
+            System.arraycopy(pairs.get(i)[1].getCoordinates(), 0, query, 3 * i, 3);
+        }
+        instance = new QCPSuperimposer();
+    }
+
+    @Test
+    public void shouldMatchKabschAlgorithm() {
+        SuperpositionResult superpositionResult = instance.superimpose(reference, query);
+        double expectedRmsd = computeKabschRmsd(reference, query);
+        Assert.assertTrue(expectedRmsd > 0.1);
+        Assert.assertEquals(expectedRmsd, superpositionResult.getRootMeanSquareDeviation().getScore(), 1e-6);
+        Assert.assertEquals(expectedRmsd, instance.computeRootMeanSquareDeviation(reference, query), 1e-6);
+        Assert.assertEquals(expectedRmsd,
+                computeRmsd(reference, transform(query, superpositionResult.getTransformation())),
+                1e-6);
+    }
+
+    @Test
+    public void shouldRecoverRigidBodyMotion() {
+        // chain B is a rotated copy of chain A in the crystal, apply some arbitrary motion on top
+        SuperpositionResult motion = instance.superimpose(query, reference);
+        double[] moved = transform(reference, motion.getTransformation());
+        SuperpositionResult superpositionResult = instance.superimpose(reference, moved);
+        Assert.assertEquals(0, superpositionResult.getRootMeanSquareDeviation().getScore(), 1e-4);
+        Assert.assertEquals(0, computeRmsd(reference, transform(moved, superpositionResult.getTransformation())), 1e-6);
+    }
+
+    @Test
+    public void shouldTransformAtomContainers() throws AlignmentException {
+        Structure structure = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
+        Structure copy = structure.createDeepCopy();
+        Chain chain = structure.getFirstChain();
+        Chain copiedChain = copy.getFirstChain();
+        copiedChain.calculate().transform(instance.superimpose(reference, query).getTransformation());
+
+        SuperpositionResult superpositionResult = instance.superimpose(chain, copiedChain);
+        Assert.assertEquals(chain.getAtoms().size(), superpositionResult.getAlignedLength());
+        // the RMSD of identical coordinate sets suffers from cancellation when computed from the eigenvalue
+        Assert.assertEquals(0, superpositionResult.getRootMeanSquareDeviation().getScore(), 1e-4);
+        copiedChain.calculate().transform(superpositionResult.getTransformation());
+        for(int i = 0; i < chain.getAtoms().size(); i++) {
+            Assert.assertArrayEquals(chain.getAtoms().get(i).getCoordinates(),
+                    copiedChain.getAtoms().get(i).getCoordinates(),
+                    1e-6);
+        }
+    }
+
+    @Test(expected = AlignmentException.class)
+    public void shouldRejectContainersOfDifferentSize() throws AlignmentException {
+        Structure structure = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
+        instance.superimpose(structure.getFirstChain(), structure.getFirstChain().getGroups().get(0));
+    }
+
+    private static double[] transform(double[] coordinates, Transformation transformation) {
+        double[][] rotation = transformation.getRotation();
+        double[] translation = transformation.getTranslation();
+        double[] transformed = new double[coordinates.length];
+        for(int i = 0; i < coordinates.length; i += 3) {
+            for(int j = 0; j < 3; j++) {
+                transformed[i + j] = rotation[0][j] * coordinates[i] + rotation[1][j] * coordinates[i + 1] +
+                        rotation[2][j] * coordinates[i + 2] + translation[j];
+            }
+        }
+        return transformed;
+    }
+
+    private static double computeRmsd(double[] coordinates1, double[] coordinates2) {
+        double sum = 0;
+        for(int i = 0; i < coordinates1.length; i++) {
+            sum += (coordinates1[i] - coordinates2[i]) * (coordinates1[i] - coordinates2[i]);
+        }
+        return Math.sqrt(sum / (coordinates1.length / 3));
+    }
+
+    private static double computeKabschRmsd(double[] reference, double[] query) {
+        RealMatrix centeredReference = center(reference);
+        RealMatrix centeredQuery = center(query);
+        SingularValueDecomposition svd = new SingularValueDecomposition(centeredQuery.transpose()
+                .multiply(centeredReference));
+        RealMatrix rotation = svd.getV().multiply(svd.getUT());
+        if(new LUDecomposition(rotation).getDeterminant() < 0) {
+            RealMatrix correction = MatrixUtils.createRealDiagonalMatrix(new double[] { 1, 1, -1 });
+            rotation = svd.getV().multiply(correction).multiply(svd.getUT());
+        }
+        RealMatrix rotatedQuery = centeredQuery.multiply(rotation.transpose());
+        double sum = 0;
+        for(int i = 0; i < rotatedQuery.getRowDimension(); i++) {
+            for(int j = 0; j < 3; j++) {
+                sum += Math.pow(rotatedQuery.getEntry(i, j) - centeredReference.getEntry(i, j), 2);
+            }
+        }
+        return Math.sqrt(sum / rotatedQuery.getRowDimension());
+    }
+
+    private static RealMatrix center(double[] coordinates) {
+        int length = coordinates.length / 3;
+        double[] centroid = new double[3];
+        for(int i = 0; i < coordinates.length; i++) {
+            centroid[i % 3] += coordinates[i] / length;
+        }
+        double[][] centered = new double[length][3];
+        for(int i = 0; i < coordinates.length; i++) {
+            centered[i / 3][i % 3] = coordinates[i] - centroid[i % 3];
+        }
+        return MatrixUtils.createRealMatrix(centered);
+    }
+}
@@ -0,0 +1,121 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.SimilarityMatrix;
+import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks the all-against-all computation in memory and streamed to disk.
+ */
+public class SimilarityMatrixCalculatorTest {
+    private List<Chain> chains;
+    private SimilarityMatrixCalculator instance;
+
+    @Before
+    public void setup() {
+        chains = Stream.of("pdb/1BRR.pdb", "pdb/1ACJ.pdb")
+                .map(TestUtils::getResourceAsInputStream)
+                .map(inputStream -> StructureParser.fromInputStream(inputStream)
+                        .minimalParsing(true)
+                        .parse())
+                .flatMap(Structure::chainsWithAminoAcids)
+                .collect(Collectors.toList());
+        // small tiles to cover tiles on and off the diagonal
+        instance = new SimilarityMatrixCalculator(new ForkJoinPool(2), 2);
+    }
+
+    @Test
+    public void shouldComputeAllPairs() throws AlignmentException {
+        SimilarityMatrix similarityMatrix = instance.compute(chains);
+        Assert.assertEquals(chains.size(), similarityMatrix.size());
+        for(int i = 0; i < chains.size(); i++) {
+            Assert.assertEquals(1, similarityMatrix.getTemplateModelingScore(i, i), 0);
+            for(int j = i + 1; j < chains.size(); j++) {
+                TMAlignAlignmentResult expected = TMAlignAlgorithm.getInstance().align(chains.get(i), chains.get(j));
+                Assert.assertEquals(expected.getRootMeanSquareDeviation().getScore(),
+                        similarityMatrix.getRootMeanSquareDeviation(j, i),
+                        TestUtils.TOLERANT_ERROR_MARGIN);
+                Assert.assertEquals(expected.getTemplateModelingScore1().getScore(),
+                        similarityMatrix.getTemplateModelingScore(i, j),
+                        TestUtils.TOLERANT_ERROR_MARGIN);
+                Assert.assertEquals(expected.getTemplateModelingScore2().getScore(),
+                        similarityMatrix.getTemplateModelingScore(j, i),
+                        TestUtils.TOLERANT_ERROR_MARGIN);
+            }
+        }
+    }
+
+    @Test
+    public void shouldResumeStreamedComputation() throws IOException {
+        Path outputPath = Files.createTempFile("similarity", ".tsv");
+        Files.delete(outputPath);
+        try {
+            instance.compute(chains, outputPath);
+            SimilarityMatrix expected = SimilarityMatrixCalculator.read(outputPath);
+
+            // simulate an interruption in the middle of the last tile
+            List<String> lines = Files.readAllLines(outputPath);
+            String[] lastRecord = lines.get(lines.size() - 2).split("\t");
+            String content = lines.subList(0, lines.size() - 2).stream()
+                    .collect(Collectors.joining(System.lineSeparator())) + System.lineSeparator() +
+                    lines.get(lines.size() - 2).substring(0, 3);
+            Files.write(outputPath, content.getBytes());
+            Assert.assertTrue(Double.isNaN(SimilarityMatrixCalculator.read(outputPath)
+                    .getRootMeanSquareDeviation(Integer.parseInt(lastRecord[0]), Integer.parseInt(lastRecord[1]))));
+
+            instance.compute(chains, outputPath);
+            SimilarityMatrix resumed = SimilarityMatrixCalculator.read(outputPath);
+            Assert.assertEquals(expected.getIdentifiers(), resumed.getIdentifiers());
+            for(int i = 0; i < chains.size(); i++) {
+                for(int j = 0; j < chains.size(); j++) {
+                    Assert.assertEquals(expected.getRootMeanSquareDeviation(i, j),
+                            resumed.getRootMeanSquareDeviation(i, j),
+                            0);
+                    Assert.assertEquals(expected.getTemplateModelingScore(i, j),
+                            resumed.getTemplateModelingScore(i, j),
+                            0);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(outputPath);
+        }
+    }
+
+    @Test
+    public void shouldResumeComputationInterruptedWithinHeader() throws IOException {
+        Path outputPath = Files.createTempFile("similarity", ".tsv");
+        Files.delete(outputPath);
+        try {
+            instance.compute(chains, outputPath);
+            SimilarityMatrix expected = SimilarityMatrixCalculator.read(outputPath);
+            List<String> lines = Files.readAllLines(outputPath);
+
+            // interrupted within the first and within the second line of the header
+            for(String content : new String[] { lines.get(0).substring(0, 4),
+                    lines.get(0) + System.lineSeparator() + lines.get(1).substring(0, 4) }) {
+                Files.write(outputPath, content.getBytes());
+                instance.compute(chains, outputPath);
+                SimilarityMatrix resumed = SimilarityMatrixCalculator.read(outputPath);
+                Assert.assertEquals(expected.getIdentifiers(), resumed.getIdentifiers());
+                Assert.assertEquals(expected.getTemplateModelingScore(0, 1), resumed.getTemplateModelingScore(0, 1), 0);
+            }
+        } finally {
+            Files.deleteIfExists(outputPath);
+        }
+    }
+}
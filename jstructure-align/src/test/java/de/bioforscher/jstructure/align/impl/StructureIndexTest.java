@@ -0,0 +1,83 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.StructureIndexHit;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks ranking, persistence and updates of the structure index.
+ */
+public class StructureIndexTest {
+    private List<Chain> chains;
+    private Path indexPath;
+
+    @Before
+    public void setup() throws IOException {
+        chains = Stream.of("pdb/1BRR.pdb", "pdb/1ACJ.pdb")
+                .map(TestUtils::getResourceAsInputStream)
+                .map(inputStream -> StructureParser.fromInputStream(inputStream)
+                        .minimalParsing(true)
+                        .parse())
+                .flatMap(Structure::chainsWithAminoAcids)
+                .collect(Collectors.toList());
+        indexPath = Files.createTempFile("structure", ".index");
+        Files.delete(indexPath);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(indexPath);
+    }
+
+    @Test
+    public void shouldRankSimilarChainsFirst() throws IOException, AlignmentException {
+        try(StructureIndex structureIndex = StructureIndex.open(indexPath)) {
+            for(Chain chain : chains) {
+                structureIndex.add(chain);
+            }
+            List<StructureIndexHit> hits = structureIndex.search(chains.get(0), 3);
+            Assert.assertEquals(3, hits.size());
+            Assert.assertEquals(chains.get(0).getIdentifier(), hits.get(0).getIdentifier());
+            Assert.assertEquals(0, hits.get(0).getDistance(), 0);
+            // chains B and C of 1BRR are copies of chain A
+            Assert.assertTrue(hits.stream()
+                    .map(StructureIndexHit::getIdentifier)
+                    .noneMatch(identifier -> identifier.startsWith("1acj")));
+            Assert.assertTrue(hits.get(1).getDistance() <= hits.get(2).getDistance());
+        }
+    }
+
+    @Test
+    public void shouldPersistAndUpdateEntries() throws IOException, AlignmentException {
+        try(StructureIndex structureIndex = StructureIndex.open(indexPath)) {
+            structureIndex.add(chains.get(0));
+            structureIndex.add(chains.get(1));
+        }
+
+        try(StructureIndex structureIndex = StructureIndex.open(indexPath)) {
+            Assert.assertEquals(2, structureIndex.size());
+            Assert.assertTrue(structureIndex.contains(chains.get(1).getIdentifier()));
+            // replace the entry of the first chain by the last one
+            structureIndex.add(chains.get(0).getIdentifier(), chains.get(chains.size() - 1));
+            structureIndex.add(chains.get(2));
+            Assert.assertEquals(3, structureIndex.size());
+            List<StructureIndexHit> hits = structureIndex.search(chains.get(chains.size() - 1), 1);
+            Assert.assertEquals(chains.get(0).getIdentifier(), hits.get(0).getIdentifier());
+            Assert.assertEquals(0, hits.get(0).getDistance(), 0);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.bioforscher.jstructure.align.impl;
+
+import de.bioforscher.jstructure.align.AlignmentException;
+import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
+import de.bioforscher.jstructure.mathematics.Transformation;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Checks the in-process TM-score and TM-align against the values reported by the reference implementation.
+ */
+public class TMAlignAlgorithmTest {
+    private Structure reference;
+    private Structure query;
+    private TMAlignAlgorithm instance;
+
+    @Before
+    public void setup() {
+        reference = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
+        query = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
+                .minimalParsing(true)
+                .parse();
+        instance = TMAlignAlgorithm.getInstance();
+    }
+
+    @Test
+    public void shouldAlignStructures() throws AlignmentException {
+        TMAlignAlignmentResult tmAlignAlignmentResult = instance.align(reference.getFirstChain(),
+                query.getFirstChain());
+        // the reference binary reports 6.36, 0.3763 and 0.2059 - small deviations stem from its additional heuristics
+        Assert.assertEquals("rmsd does not match",
+                6.36,
+                tmAlignAlignmentResult.getRootMeanSquareDeviation().getScore(),
+                0.1);
+        Assert.assertEquals("tmscore does not match",
+                0.3763,
+                tmAlignAlignmentResult.getTemplateModelingScore1().getScore(),
+                0.01);
+        Assert.assertEquals("tmscore does not match",
+                0.2059,
+                tmAlignAlignmentResult.getTemplateModelingScore2().getScore(),
+                0.01);
+    }
+
+    @Test
+    public void shouldAlignConcurrently() throws AlignmentException {
+        Chain referenceChain = reference.getFirstChain();
+        Chain queryChain = query.getFirstChain();
+        TMAlignAlignmentResult expected = instance.align(referenceChain, queryChain);
+        List<TMAlignAlignmentResult> results = IntStream.range(0, 4)
+                .parallel()
+                .mapToObj(i -> {
+                    try {
+                        return instance.align(referenceChain, queryChain);
+                    } catch (AlignmentException e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+        for(TMAlignAlignmentResult result : results) {
+            Assert.assertEquals(expected.getTemplateModelingScore1().getScore(),
+                    result.getTemplateModelingScore1().getScore(),
+                    0);
+            Assert.assertEquals(expected.getRootMeanSquareDeviation().getScore(),
+                    result.getRootMeanSquareDeviation().getScore(),
+                    0);
+        }
+    }
+
+    @Test
+    public void shouldScoreEquivalentResidues() throws AlignmentException {
+        Chain chain = reference.getFirstChain();
+        Structure copy = reference.createDeepCopy();
+        Chain copiedChain = copy.getFirstChain();
+        double angle = Math.toRadians(30);
+        copiedChain.calculate().transform(new Transformation(new double[] { 10, -5, 3 }, new double[][] {
+                { Math.cos(angle), -Math.sin(angle), 0 },
+                { Math.sin(angle), Math.cos(angle), 0 },
+                { 0, 0, 1 }
+        }));
+        TMAlignAlignmentResult tmAlignAlignmentResult = instance.score(chain, copiedChain);
+        Assert.assertEquals(1, tmAlignAlignmentResult.getTemplateModelingScore1().getScore(),
+                TestUtils.TOLERANT_ERROR_MARGIN);
+        Assert.assertEquals(0, tmAlignAlignmentResult.getRootMeanSquareDeviation().getScore(),
+                TestUtils.TOLERANT_ERROR_MARGIN);
+        Assert.assertEquals(1, tmAlignAlignmentResult.getSeqId(), 0);
+
+        // chains B and C are crystallographic copies of chain A
+        TMAlignAlignmentResult copyResult = instance.score(chain, reference.select().chainName("B").asChain());
+        Assert.assertTrue(copyResult.getTemplateModelingScore1().getScore() > 0.9);
+        Assert.assertTrue(copyResult.getRootMeanSquareDeviation().getScore() < 1);
+    }
+
+    @Test
+    public void shouldAlignChainToItself() throws AlignmentException {
+        Chain chain = reference.getFirstChain();
+        TMAlignAlignmentResult tmAlignAlignmentResult = instance.align(chain, chain);
+        Assert.assertEquals(1, tmAlignAlignmentResult.getTemplateModelingScore1().getScore(),
+                TestUtils.TOLERANT_ERROR_MARGIN);
+        Assert.assertEquals(1, tmAlignAlignmentResult.getTemplateModelingScore2().getScore(),
+                TestUtils.TOLERANT_ERROR_MARGIN);
+        Assert.assertEquals(0, tmAlignAlignmentResult.getRootMeanSquareDeviation().getScore(),
+                TestUtils.TOLERANT_ERROR_MARGIN);
+        Assert.assertEquals(tmAlignAlignmentResult.getLength1(), tmAlignAlignmentResult.getAlignedLength());
+    }
+}
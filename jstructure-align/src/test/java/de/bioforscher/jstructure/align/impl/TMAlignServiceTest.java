@@ -11,8 +11,14 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
-import static de.bioforscher.testutil.TestUtils.SupportedProtein.PDB_1ACJ;
-import static de.bioforscher.testutil.TestUtils.SupportedProtein.PDB_1BRR;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class TMAlignServiceTest {
     private Structure reference;
@@ -21,10 +27,10 @@ public class TMAlignServiceTest {
 
     @Before
     public void setup() {
-        reference = StructureParser.fromInputStream(TestUtils.getProteinInputStream(PDB_1BRR))
+        reference = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
                 .minimalParsing(true)
                 .parse();
-        query = StructureParser.fromInputStream(TestUtils.getProteinInputStream(PDB_1ACJ))
+        query = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
                 .minimalParsing(true)
                 .parse();
         instance = TMAlignService.getInstance();
@@ -57,4 +63,69 @@ public class TMAlignServiceTest {
     public void shouldReportException() throws AlignmentException {
         instance.process(new String[] { "tmalign", "invalid", "arguments" });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldRunConcurrentProcesses() throws IOException {
+        // replay recorded tmalign output instead of invoking the binary
+        Path output = Files.createTempFile("tmalign", ".out");
+        Files.write(output, Arrays.asList("Length of Chain_1:  230 residues",
+                "Length of Chain_2:  528 residues",
+                "",
+                "Aligned length=  165, RMSD=   6.36, Seq_ID=n_identical/n_aligned= 0.048",
+                "TM-score= 0.37630 (if normalized by length of Chain_1)",
+                "TM-score= 0.20590 (if normalized by length of Chain_2)"));
+        long executionCount = instance.getExecutionCount();
+        instance.setConcurrency(2);
+        try {
+            List<TMAlignAlignmentResult> results = IntStream.range(0, 8)
+                    .parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return instance.process(new String[] { "cat", output.toString() });
+                        } catch (AlignmentException e) {
+                            throw new RuntimeException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+            for(TMAlignAlignmentResult result : results) {
+                Assert.assertEquals(165, result.getAlignedLength());
+                Assert.assertEquals(6.36, result.getRootMeanSquareDeviation().getScore(), 0);
+                Assert.assertEquals(0.3763, result.getTemplateModelingScore1().getScore(), 0);
+                Assert.assertEquals(0.2059, result.getTemplateModelingScore2().getScore(), 0);
+            }
+            Assert.assertEquals(executionCount + 8, instance.getExecutionCount());
+        } finally {
+            instance.setConcurrency(Runtime.getRuntime().availableProcessors());
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void shouldRetryAndKillHangingProcesses() {
+        long retryCount = instance.getRetryCount();
+        long timeoutCount = instance.getTimeoutCount();
+        instance.setTimeout(50, TimeUnit.MILLISECONDS);
+        try {
+            instance.process(new String[] { "sleep", "10" });
+            Assert.fail("hanging process was not reported");
+        } catch (AlignmentException e) {
+            Assert.assertEquals(retryCount + 3, instance.getRetryCount());
+            Assert.assertEquals(timeoutCount + 4, instance.getTimeoutCount());
+        } finally {
+            instance.setTimeout(5, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void shouldNotRetryErrorsReportedByTmalign() {
+        long retryCount = instance.getRetryCount();
+        long executionCount = instance.getExecutionCount();
+        try {
+            instance.process(new String[] { "echo", "Can not open file: missing.pdb" });
+            Assert.fail("error of tmalign was not reported");
+        } catch (AlignmentException e) {
+            Assert.assertEquals(retryCount, instance.getRetryCount());
+            Assert.assertEquals(executionCount + 1, instance.getExecutionCount());
+        }
+    }
+}
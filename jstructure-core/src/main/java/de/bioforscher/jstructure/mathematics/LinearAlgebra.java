@@ -1,10 +1,13 @@
 package de.bioforscher.jstructure.mathematics;
 
 import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.CoordinateBlock;
+import de.bioforscher.jstructure.model.structure.Structure;
 import de.bioforscher.jstructure.model.structure.StructureCollectors;
 import de.bioforscher.jstructure.model.structure.container.AtomContainer;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
 
 import static de.bioforscher.jstructure.StandardFormat.format;
 
@@ -34,7 +37,7 @@ public class LinearAlgebra {
      * @return an wrapping instance for algebraic operations
      */
     public static PrimitiveDoubleArrayLinearAlgebra on(Atom atom) {
-        return new PrimitiveDoubleArrayLinearAlgebra(atom.getCoordinates());
+        return new PrimitiveDoubleArrayLinearAlgebra(atom.getX(), atom.getY(), atom.getZ());
     }
 
     /**
@@ -78,13 +81,19 @@ public class LinearAlgebra {
         private final double z;
 
         PrimitiveDoubleArrayLinearAlgebra(double... value) {
-            this.x = value[0];
-            this.y = value[1];
-            this.z = value[2];
+            this(value[0], value[1], value[2]);
+        }
+
+        PrimitiveDoubleArrayLinearAlgebra(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
         }
 
         public PrimitiveDoubleArrayLinearAlgebra add(Atom vectorToAdd) {
-            return add(vectorToAdd.getCoordinates());
+            return new PrimitiveDoubleArrayLinearAlgebra(x + vectorToAdd.getX(),
+                    y + vectorToAdd.getY(),
+                    z + vectorToAdd.getZ());
         }
 
         public PrimitiveDoubleArrayLinearAlgebra add(double[] vectorToAdd) {
@@ -123,7 +132,10 @@ public class LinearAlgebra {
         }
 
         public double distanceFast(Atom secondVector) {
-            return distanceFast(secondVector.getCoordinates());
+            double dx = x - secondVector.getX();
+            double dy = y - secondVector.getY();
+            double dz = z - secondVector.getZ();
+            return dx * dx + dy * dy + dz * dz;
         }
 
         public double distanceFast(double[] secondVector) {
@@ -143,7 +155,9 @@ public class LinearAlgebra {
         }
 
         public double dotProduct(Atom secondVector) {
-            return dotProduct(secondVector.getCoordinates());
+            return x * secondVector.getX() +
+                    y * secondVector.getY() +
+                    z * secondVector.getZ();
         }
 
         public double dotProduct(double[] secondVector) {
@@ -184,7 +198,9 @@ public class LinearAlgebra {
         }
 
         public PrimitiveDoubleArrayLinearAlgebra subtract(Atom vectorToSubtract) {
-            return subtract(vectorToSubtract.getCoordinates());
+            return new PrimitiveDoubleArrayLinearAlgebra(x - vectorToSubtract.getX(),
+                    y - vectorToSubtract.getY(),
+                    z - vectorToSubtract.getZ());
         }
 
         public PrimitiveDoubleArrayLinearAlgebra subtract(double[] vectorToSubtract) {
@@ -237,7 +253,7 @@ public class LinearAlgebra {
         public PrimitiveDoubleArrayLinearAlgebra center() {
             PrimitiveDoubleArrayLinearAlgebra centroid = centroid();
             // invert the centroid/shift vector as it will be added to the coordinates by the shift function
-            transform(centroid().multiply(-1).getValue());
+            transform(centroid.multiply(-1).getValue());
             return centroid;
         }
 
@@ -258,7 +274,22 @@ public class LinearAlgebra {
          * @return the coordinates of the centroid
          */
         public PrimitiveDoubleArrayLinearAlgebra centroid() {
-            return new PrimitiveDoubleArrayLinearAlgebra(atomContainer.atoms().collect(StructureCollectors.toCentroid()));
+            List<Atom> atoms = atomContainer.getAtoms();
+            if(atoms.isEmpty()) {
+                return new PrimitiveDoubleArrayLinearAlgebra(0, 0, 0);
+            }
+
+            double x = 0;
+            double y = 0;
+            double z = 0;
+            for(Atom atom : atoms) {
+                x += atom.getX();
+                y += atom.getY();
+                z += atom.getZ();
+            }
+            return new PrimitiveDoubleArrayLinearAlgebra(x / atoms.size(),
+                    y / atoms.size(),
+                    z / atoms.size());
         }
 
         /**
@@ -275,10 +306,17 @@ public class LinearAlgebra {
          * @return the maximal distance occurring between the centroid and any other atom
          */
         public double maximalExtent(final double[] centroid) {
-            return Math.sqrt(atomContainer.atoms()
-                    .mapToDouble(atom -> LinearAlgebra.on(atom.getCoordinates()).distanceFast(centroid))
-                    .max()
-                    .orElseThrow(() -> new IllegalArgumentException("cannot calculate maximal extent for single atom")));
+            List<Atom> atoms = atomContainer.getAtoms();
+            if(atoms.isEmpty()) {
+                throw new IllegalArgumentException("cannot calculate maximal extent for single atom");
+            }
+
+            PrimitiveDoubleArrayLinearAlgebra reference = LinearAlgebra.on(centroid);
+            double maximalExtent = 0;
+            for(Atom atom : atoms) {
+                maximalExtent = Math.max(maximalExtent, reference.distanceFast(atom));
+            }
+            return Math.sqrt(maximalExtent);
         }
 
         public AtomContainerLinearAlgebra transform(double[] translation) {
@@ -293,7 +331,21 @@ public class LinearAlgebra {
             return transform(new Transformation(translation, rotation));
         }
 
+        /**
+         * Transforms all atoms of this container. When the container is a structure whose atoms all share one
+         * {@link CoordinateBlock}, the block is transformed in a single pass.
+         * @param transformation the transformation to apply
+         * @return this instance
+         */
         public AtomContainerLinearAlgebra transform(Transformation transformation) {
+            if(atomContainer instanceof Structure) {
+                CoordinateBlock coordinateBlock = ((Structure) atomContainer).getCoordinateBlock().orElse(null);
+                if(coordinateBlock != null && atomContainer.atoms()
+                        .allMatch(atom -> atom.getCoordinateBlock().orElse(null) == coordinateBlock)) {
+                    transformation.transform(coordinateBlock);
+                    return this;
+                }
+            }
             atomContainer.atoms().forEach(transformation::transform);
             return this;
         }
@@ -2,6 +2,7 @@ package de.bioforscher.jstructure.mathematics;
 
 import de.bioforscher.jstructure.model.feature.FeatureContainerEntry;
 import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.CoordinateBlock;
 import de.bioforscher.jstructure.model.structure.container.AtomContainer;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.slf4j.Logger;
@@ -52,20 +53,34 @@ public class Transformation extends FeatureContainerEntry {
     }
 
     public Atom transform(Atom atom) {
-        double[] vector = atom.getCoordinates();
-        logger.trace("initial atom {}", atom.getPdbRepresentation());
+        if(logger.isTraceEnabled()) {
+            logger.trace("initial atom {}", atom.getPdbRepresentation());
+        }
 
+        double x = atom.getX();
+        double y = atom.getY();
+        double z = atom.getZ();
         // apply rotation if needed
         if(rotation != null) {
-            atom.setCoordinates(LinearAlgebra.on(vector).multiply(rotation).getValue());
+            double rotatedX = rotation[0][0] * x + rotation[1][0] * y + rotation[2][0] * z;
+            double rotatedY = rotation[0][1] * x + rotation[1][1] * y + rotation[2][1] * z;
+            double rotatedZ = rotation[0][2] * x + rotation[1][2] * y + rotation[2][2] * z;
+            x = rotatedX;
+            y = rotatedY;
+            z = rotatedZ;
         }
 
-        vector = atom.getCoordinates();
         // apply transformation if needed
         if(translation != null) {
-            atom.setCoordinates(LinearAlgebra.on(vector).add(translation).getValue());
+            x += translation[0];
+            y += translation[1];
+            z += translation[2];
+        }
+        atom.setCoordinates(x, y, z);
+
+        if(logger.isTraceEnabled()) {
+            logger.trace("transf. atom {}", atom.getPdbRepresentation());
         }
-        logger.trace("transf. atom {}", atom.getPdbRepresentation());
         return atom;
     }
 
@@ -73,6 +88,14 @@ public class Transformation extends FeatureContainerEntry {
         atomContainer.calculate().transform(this);
     }
 
+    /**
+     * Transforms all coordinates of a block in one pass.
+     * @param coordinateBlock the coordinates to transform
+     */
+    public void transform(CoordinateBlock coordinateBlock) {
+        coordinateBlock.transform(translation, rotation);
+    }
+
     public double[] getTranslation() {
         return translation;
     }
@@ -1,5 +1,9 @@
 package de.bioforscher.jstructure.model.feature;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * The abstract implementation of an entity capable of providing access to a feature container. Basically, the only
  * reasoning behind this class is to keep the implementation of other classes rather clean and separate the
@@ -7,14 +11,27 @@ package de.bioforscher.jstructure.model.feature;
  * Created by bittrich on 5/17/17.
  */
 public abstract class AbstractFeatureable implements Featureable {
-    private FeatureContainer featureContainer;
+    /**
+     * The container is only created when it is requested, as most entities (especially atoms) never carry features.
+     * Feature providers may request it concurrently, so it is created by double-checked locking.
+     */
+    private volatile FeatureContainer featureContainer;
 
     protected AbstractFeatureable() {
-        this.featureContainer = new FeatureContainer();
     }
 
     @Override
     public FeatureContainer getFeatureContainer() {
+        FeatureContainer featureContainer = this.featureContainer;
+        if(featureContainer == null) {
+            synchronized (this) {
+                featureContainer = this.featureContainer;
+                if(featureContainer == null) {
+                    featureContainer = new FeatureContainer();
+                    this.featureContainer = featureContainer;
+                }
+            }
+        }
         return featureContainer;
     }
 
@@ -22,4 +39,16 @@ public abstract class AbstractFeatureable implements Featureable {
     public void setFeatureContainer(FeatureContainer featureContainer) {
         this.featureContainer = featureContainer;
     }
+
+    @Override
+    public <C extends FeatureContainerEntry> Optional<C> getFeatureOptional(Class<C> contentClass) {
+        FeatureContainer featureContainer = this.featureContainer;
+        return featureContainer == null ? Optional.empty() : featureContainer.getFeatureOptional(contentClass);
+    }
+
+    @Override
+    public <C extends FeatureContainerEntry> List<C> getFeatures(Class<C> contentClass) {
+        FeatureContainer featureContainer = this.featureContainer;
+        return featureContainer == null ? Collections.emptyList() : featureContainer.getFeatures(contentClass);
+    }
 }
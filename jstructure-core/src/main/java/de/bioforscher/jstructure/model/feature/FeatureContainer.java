@@ -1,8 +1,6 @@
 package de.bioforscher.jstructure.model.feature;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -11,14 +9,20 @@ import java.util.stream.Stream;
  * Created by S on 28.04.2017.
  */
 public class FeatureContainer {
-    private List<FeatureContainerEntry> features;
+    /**
+     * The entries, lazily created as most instances never carry any feature.
+     */
+    private volatile FeatureList features;
 
     public FeatureContainer() {
-        this.features = new ArrayList<>();
     }
 
-    public void addFeature(FeatureContainerEntry entry) {
-        features.add(entry);
+    /**
+     * Attaches an entry. Feature providers processing a structure concurrently may add entries to the same container.
+     * @param entry the entry to add
+     */
+    public synchronized void addFeature(FeatureContainerEntry entry) {
+        getFeatures().add(entry);
     }
 
     /**
@@ -28,8 +32,11 @@ public class FeatureContainer {
      * @return the <b>first</b> relevant, wrapped as {@link Optional}
      */
     public <C extends FeatureContainerEntry> Optional<C> getFeatureOptional(Class<C> contentClass) {
-        return filterByContent(contentClass)
-                .findFirst();
+        FeatureList features = this.features;
+        if(features == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(features.findFirst(contentClass));
     }
 
     /**
@@ -43,24 +50,156 @@ public class FeatureContainer {
     }
 
     private <C extends FeatureContainerEntry> Stream<C> filterByContent(Class<C> contentClass) {
-        return features.stream()
-                .filter(contentClass::isInstance)
+        FeatureList features = this.features;
+        if(features == null) {
+            return Stream.empty();
+        }
+        return Arrays.stream(features.findAll(contentClass))
                 .map(contentClass::cast);
     }
 
     /**
-     * Low-level access to the entries.
+     * Low-level access to the entries. Single operations on the returned list are thread-safe, iterating it while other
+     * threads add entries is not.
      * @return the delegated list
      */
-    public List<FeatureContainerEntry> getFeatures() {
+    public synchronized List<FeatureContainerEntry> getFeatures() {
+        if(features == null) {
+            features = new FeatureList();
+        }
         return features;
     }
 
     /**
-     * Set the internal list to a specific value. Used after cloning of model instances.
+     * Set the internal list to a specific value. Used after cloning of model instances. Lists obtained by
+     * {@link #getFeatures()} are shared, all others are copied.
      * @param features the new value of the feature container
      */
     public void setFeatures(List<FeatureContainerEntry> features) {
-        this.features = features;
+        if(features instanceof FeatureList) {
+            this.features = (FeatureList) features;
+        } else {
+            this.features = new FeatureList();
+            this.features.addAll(features);
+        }
+    }
+
+    /**
+     * The list of entries backing a container. Keeps entries in insertion order in a plain array which is scanned for
+     * up to {@link #SCAN_THRESHOLD} entries. Larger lists memorize the entries matching each requested class, so
+     * repeated queries - including queries for super types - are answered by a single lookup. Any modification discards
+     * these results. All operations synchronize on the list, only lookups of memorized results do not lock.
+     */
+    private static class FeatureList extends AbstractList<FeatureContainerEntry> implements RandomAccess {
+        private static final FeatureContainerEntry[] EMPTY_ENTRIES = new FeatureContainerEntry[0];
+        private static final int SCAN_THRESHOLD = 2;
+        private FeatureContainerEntry[] entries = EMPTY_ENTRIES;
+        private int size;
+        /**
+         * The matching entries of each requested class, replaced as a whole when a class is added.
+         */
+        private volatile Map<Class<?>, FeatureContainerEntry[]> classIndex;
+
+        <C extends FeatureContainerEntry> C findFirst(Class<C> contentClass) {
+            synchronized (this) {
+                if(size <= SCAN_THRESHOLD) {
+                    for(int i = 0; i < size; i++) {
+                        if(contentClass.isInstance(entries[i])) {
+                            return contentClass.cast(entries[i]);
+                        }
+                    }
+                    return null;
+                }
+            }
+            FeatureContainerEntry[] matchingEntries = findAll(contentClass);
+            return matchingEntries.length == 0 ? null : contentClass.cast(matchingEntries[0]);
+        }
+
+        FeatureContainerEntry[] findAll(Class<?> contentClass) {
+            Map<Class<?>, FeatureContainerEntry[]> classIndex = this.classIndex;
+            FeatureContainerEntry[] matchingEntries = classIndex != null ? classIndex.get(contentClass) : null;
+            if(matchingEntries != null) {
+                return matchingEntries;
+            }
+            return scan(contentClass);
+        }
+
+        /**
+         * Collects the entries of a class. Holding the lock of all writers ensures that results are only memorized as
+         * long as they are consistent with the entries.
+         */
+        private synchronized FeatureContainerEntry[] scan(Class<?> contentClass) {
+            Map<Class<?>, FeatureContainerEntry[]> classIndex = this.classIndex;
+            FeatureContainerEntry[] matchingEntries = classIndex != null ? classIndex.get(contentClass) : null;
+            if(matchingEntries != null) {
+                return matchingEntries;
+            }
+
+            matchingEntries = Arrays.stream(entries, 0, size)
+                    .filter(contentClass::isInstance)
+                    .toArray(FeatureContainerEntry[]::new);
+            if(size > SCAN_THRESHOLD) {
+                Map<Class<?>, FeatureContainerEntry[]> updatedClassIndex = classIndex != null ?
+                        new HashMap<>(classIndex) :
+                        new HashMap<>();
+                updatedClassIndex.put(contentClass, matchingEntries);
+                this.classIndex = updatedClassIndex;
+            }
+            return matchingEntries;
+        }
+
+        @Override
+        public synchronized FeatureContainerEntry get(int index) {
+            checkIndex(index, size);
+            return entries[index];
+        }
+
+        @Override
+        public synchronized int size() {
+            return size;
+        }
+
+        @Override
+        public synchronized FeatureContainerEntry set(int index, FeatureContainerEntry element) {
+            checkIndex(index, size);
+            FeatureContainerEntry previousElement = entries[index];
+            entries[index] = element;
+            modified();
+            return previousElement;
+        }
+
+        @Override
+        public synchronized void add(int index, FeatureContainerEntry element) {
+            checkIndex(index, size + 1);
+            if(size == entries.length) {
+                // grow by one for the first entries, most instances carry very few features
+                entries = Arrays.copyOf(entries, size < SCAN_THRESHOLD ? size + 1 : 2 * size);
+            }
+            System.arraycopy(entries, index, entries, index + 1, size - index);
+            entries[index] = element;
+            size++;
+            modified();
+        }
+
+        @Override
+        public synchronized FeatureContainerEntry remove(int index) {
+            checkIndex(index, size);
+            FeatureContainerEntry previousElement = entries[index];
+            System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+            entries[--size] = null;
+            modified();
+            return previousElement;
+        }
+
+        private void modified() {
+            modCount++;
+            classIndex = null;
+        }
+
+        private static void checkIndex(int index, int bound) {
+            if(index < 0 || index >= bound) {
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + (bound - 1));
+            }
+        }
     }
 }
@@ -1,5 +1,8 @@
 package de.bioforscher.jstructure.model.feature;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * An entity providing access to {@link FeatureContainer}.
  * Created by S on 28.04.2017.
@@ -10,4 +13,25 @@ public interface Featureable {
     <C extends FeatureContainerEntry> C getFeature(Class<C> contentClass);
 
     void setFeatureContainer(FeatureContainer featureContainer);
+
+    /**
+     * Access to a feature which may not be present. In contrast to {@link #getFeature(Class)} this never triggers
+     * computations.
+     * @param contentClass the class of the content of interest
+     * @param <C> the class of the expected content
+     * @return the <b>first</b> relevant, wrapped as {@link Optional}
+     */
+    default <C extends FeatureContainerEntry> Optional<C> getFeatureOptional(Class<C> contentClass) {
+        return getFeatureContainer().getFeatureOptional(contentClass);
+    }
+
+    /**
+     * Returns all associated entries of a given type.
+     * @param contentClass the class of the content of interest
+     * @param <C> the class of the expected content
+     * @return a collection of relevant entries
+     */
+    default <C extends FeatureContainerEntry> List<C> getFeatures(Class<C> contentClass) {
+        return getFeatureContainer().getFeatures(contentClass);
+    }
 }
@@ -7,7 +7,7 @@ import de.bioforscher.jstructure.model.feature.AbstractFeatureable;
 import de.bioforscher.jstructure.model.structure.container.AtomContainer;
 import de.bioforscher.jstructure.model.structure.container.StructureContainer;
 
-import java.util.Arrays;
+import java.util.Optional;
 
 /**
  * The most fine-grained element describing a {@link Structure}.
@@ -23,7 +23,12 @@ public class Atom extends AbstractFeatureable implements AtomRecordWriter, Coord
     private Element element;
     private String name;
     private int pdbSerial;
+    /**
+     * The coordinates of this atom - <code>null</code> when they are stored in a {@link CoordinateBlock}.
+     */
     private double[] coordinates;
+    private CoordinateBlock coordinateBlock;
+    private int ordinal;
     private Group parentGroup;
     private float occupancy;
     private float bfactor;
@@ -95,7 +100,7 @@ public class Atom extends AbstractFeatureable implements AtomRecordWriter, Coord
         this.element = atom.element;
         this.name = atom.name;
         this.pdbSerial = atom.pdbSerial;
-        this.coordinates = Arrays.copyOf(atom.coordinates, 3);
+        this.coordinates = new double[] { atom.getX(), atom.getY(), atom.getZ() };
         this.occupancy = atom.occupancy;
         this.bfactor = atom.bfactor;
         this.virtual = atom.virtual;
@@ -118,12 +123,55 @@ public class Atom extends AbstractFeatureable implements AtomRecordWriter, Coord
     }
 
     /**
-     * Returns a 3D vector of the atom's spatial coordinates.
+     * Returns a 3D vector of the atom's spatial coordinates. The array is only live as long as this atom keeps its own
+     * coordinates: once they were moved to a {@link CoordinateBlock} by {@link Structure#compactCoordinates()}, a copy
+     * is returned and writes to it are lost. Always use {@link #setCoordinates(double, double, double)} or
+     * {@link #setCoordinates(double[])} to move an atom - this also invalidates derived data such as the
+     * {@link Structure#getSpatialIndex()}.
      * @return a 3D double[]
      */
     @Override
     public double[] getCoordinates() {
-        return coordinates;
+        return coordinateBlock == null ? coordinates : new double[] { getX(), getY(), getZ() };
+    }
+
+    public double getX() {
+        return coordinateBlock == null ? coordinates[0] : coordinateBlock.getXCoordinates()[ordinal];
+    }
+
+    public double getY() {
+        return coordinateBlock == null ? coordinates[1] : coordinateBlock.getYCoordinates()[ordinal];
+    }
+
+    public double getZ() {
+        return coordinateBlock == null ? coordinates[2] : coordinateBlock.getZCoordinates()[ordinal];
+    }
+
+    /**
+     * Moves the coordinates of this atom to a block.
+     * @param coordinateBlock the block to append to
+     */
+    void attachTo(CoordinateBlock coordinateBlock) {
+        int ordinal = coordinateBlock.add(getX(), getY(), getZ());
+        this.coordinateBlock = coordinateBlock;
+        this.ordinal = ordinal;
+        this.coordinates = null;
+    }
+
+    /**
+     * The block holding the coordinates of this atom.
+     * @return the block this atom was attached to by {@link Structure#compactCoordinates()}, if any
+     */
+    public Optional<CoordinateBlock> getCoordinateBlock() {
+        return Optional.ofNullable(coordinateBlock);
+    }
+
+    /**
+     * The index of this atom's coordinates in its {@link CoordinateBlock}.
+     * @return the ordinal, only meaningful for atoms attached to a block
+     */
+    public int getOrdinal() {
+        return ordinal;
     }
 
     /**
@@ -228,7 +276,27 @@ public class Atom extends AbstractFeatureable implements AtomRecordWriter, Coord
      */
     @Override
     public void setCoordinates(double[] coordinates) {
-        this.coordinates = coordinates;
+        if(coordinateBlock == null) {
+            this.coordinates = coordinates;
+        } else {
+            coordinateBlock.set(ordinal, coordinates[0], coordinates[1], coordinates[2]);
+        }
+        getParentStructure().registerModification();
+    }
+
+    /**
+     * Assign new coordinates to this atom without providing an array.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param z the z-coordinate
+     */
+    public void setCoordinates(double x, double y, double z) {
+        if(coordinateBlock == null) {
+            this.coordinates = new double[] { x, y, z };
+        } else {
+            coordinateBlock.set(ordinal, x, y, z);
+        }
+        getParentStructure().registerModification();
     }
 
     public void setBfactor(float bfactor) {
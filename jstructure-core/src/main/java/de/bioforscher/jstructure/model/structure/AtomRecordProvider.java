@@ -4,17 +4,20 @@ import de.bioforscher.jstructure.model.structure.aminoacid.NonStandardAminoAcid;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Locale;
 
 import static de.bioforscher.jstructure.model.structure.Atom.ATOM_PREFIX;
 import static de.bioforscher.jstructure.model.structure.Atom.HETATM_PREFIX;
 
 /**
- * Class to write <tt>ATOM</tt> records. BioJava-Code.
+ * Class to write <tt>ATOM</tt> records. BioJava-Code. Fields are formatted by hand into a {@link RecordBuilder} - the
+ * {@link DecimalFormat} instances are only consulted for values which cannot be formatted unambiguously (huge numbers,
+ * exact ties when rounding).
  * Created by bittrich on 5/23/17.
  */
 class AtomRecordProvider {
-    private static DecimalFormat d3 = (DecimalFormat) NumberFormat.getInstance(Locale.US);
+    private static final DecimalFormat d3 = (DecimalFormat) NumberFormat.getInstance(Locale.US);
 
     static {
         d3.setMaximumIntegerDigits(4);
@@ -23,7 +26,7 @@ class AtomRecordProvider {
         d3.setGroupingUsed(false);
     }
 
-    private static DecimalFormat d2 = (DecimalFormat) NumberFormat.getInstance(Locale.US);
+    private static final DecimalFormat d2 = (DecimalFormat) NumberFormat.getInstance(Locale.US);
 
     static {
         d2.setMaximumIntegerDigits(3);
@@ -32,84 +35,247 @@ class AtomRecordProvider {
         d2.setGroupingUsed(false);
     }
 
+    static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int RECORD_LENGTH = 80;
+    private static final String[] ELEMENT_NAMES = Arrays.stream(Element.values())
+            .map(element -> element.toString().toUpperCase())
+            .toArray(String[]::new);
+
     static String toPdbString(Atom atom) {
+        RecordBuilder recordBuilder = new RecordBuilder(RECORD_LENGTH);
+        appendAtomRecord(recordBuilder, atom);
+        return recordBuilder.toString();
+    }
+
+    /**
+     * Appends the <tt>ATOM</tt> or <tt>HETATM</tt> record of an atom without line separator.
+     * @param recordBuilder the target
+     * @param atom the atom to write
+     */
+    static void appendAtomRecord(RecordBuilder recordBuilder, Atom atom) {
         Group parentGroup = atom.getParentGroup();
         Chain parentChain = parentGroup.getParentChain();
+        int start = recordBuilder.length();
 
-        String chainId = parentChain.getChainIdentifier().getChainId();
-        String record = isHetAtm(parentGroup) ? HETATM_PREFIX : ATOM_PREFIX;
-        // format output ...
-        String resName = parentGroup.getThreeLetterCode();
-        String pdbcode = String.valueOf(parentGroup.getResidueIdentifier().getResidueNumber());
-
-        int seri = atom.getPdbSerial();
-        String serial = String.format("%5d", seri);
-        String fullName = formatAtomName(atom);
-
-        String altLoc = atom.hasAlternativeLocations() ? atom.getAlternativeLocation() : " ";
-        String resseq;
+        recordBuilder.append(isHetAtm(parentGroup) ? HETATM_PREFIX : ATOM_PREFIX)
+                .appendInt(atom.getPdbSerial(), 5)
+                .append(' ');
+        appendAtomName(recordBuilder, atom);
+        recordBuilder.append(atom.hasAlternativeLocations() ? atom.getAlternativeLocation() : " ")
+                .appendRightAligned(parentGroup.getThreeLetterCode(), 3)
+                .append(' ')
+                .append(parentChain.getChainIdentifier().getChainId())
+                .appendInt(parentGroup.getResidueIdentifier().getResidueNumber(), 4);
         if(parentGroup.getResidueIdentifier().hasInsertionCode()) {
-            // substring for safety
-            resseq = String.format("%4s", pdbcode) + parentGroup.getResidueIdentifier().getInsertionCode().substring(0, 1);
+            recordBuilder.append(parentGroup.getResidueIdentifier().getInsertionCode().charAt(0));
         } else {
-            resseq = String.format("%4s", pdbcode) + " ";
+            recordBuilder.append(' ');
         }
 
         double[] coordinates = atom.getCoordinates();
-        String x = String.format("%8s", d3.format(coordinates[0]));
-        String y = String.format("%8s", d3.format(coordinates[1]));
-        String z = String.format("%8s", d3.format(coordinates[2]));
-        String occupancy = String.format("%6s", d2.format(atom.getOccupancy()));
-        String bfactor = String.format("%6s", d2.format(atom.getBfactor()));
-        String leftResName = String.format("%3s", resName);
-
-        String s = record +
-                serial +
-                " " +
-                fullName +
-                altLoc +
-                leftResName +
-                " " +
-                chainId +
-                resseq +
-                "   " +
-                x +
-                y +
-                z +
-                occupancy +
-                bfactor;
-
-        String e = atom.getElement().toString().toUpperCase();
-
-        return String.format("%-76s%2s", s, e) + "  ";
+        recordBuilder.append("   ")
+                .appendDecimal(coordinates[0], 3, 4, 8, d3)
+                .appendDecimal(coordinates[1], 3, 4, 8, d3)
+                .appendDecimal(coordinates[2], 3, 4, 8, d3)
+                .appendDecimal(atom.getOccupancy(), 2, 3, 6, d2)
+                .appendDecimal(atom.getBfactor(), 2, 3, 6, d2)
+                .pad(start + 76)
+                .appendRightAligned(ELEMENT_NAMES[atom.getElement().ordinal()], 2)
+                .append("  ");
+    }
+
+    /**
+     * Appends a <tt>TER</tt> record including the line separator.
+     * @param recordBuilder the target
+     * @param chain the terminated chain
+     * @param previousGroup the last group of the chain
+     * @param previousPdbSerial the last serial written
+     */
+    static void appendTerminateRecord(RecordBuilder recordBuilder, Chain chain, Group previousGroup, int previousPdbSerial) {
+        // TER     961      ASP A  62
+        recordBuilder.append("TER   ")
+                .appendInt(previousPdbSerial + 1, 5)
+                .append("      ")
+                .append(previousGroup.getThreeLetterCode())
+                .append(' ')
+                .append(chain.getChainIdentifier().getChainId())
+                .appendInt(previousGroup.getResidueIdentifier().getResidueNumber(), 4)
+                .append(previousGroup.getResidueIdentifier().getInsertionCode())
+                .append(LINE_SEPARATOR);
     }
 
     private static boolean isHetAtm(Group parentGroup) {
         return parentGroup.isLigand() || parentGroup instanceof NonStandardAminoAcid;
     }
 
-    private static String formatAtomName(Atom atom) {
-        String fullName = null;
+    private static void appendAtomName(RecordBuilder recordBuilder, Atom atom) {
         String name = atom.getName();
-        String element = atom.getElement().toString().toUpperCase();
 
         // RULES FOR ATOM NAME PADDING: 4 columns in total: 13, 14, 15, 16
 
         // if length 4: nothing to do
         if (name.length() == 4) {
-            fullName = name;
+            recordBuilder.append(name);
         } else if (name.length() == 3) {
-            fullName = " " + name;
+            recordBuilder.append(' ').append(name);
         } else if (name.length() == 2) {
-            if (element.equals("C") || element.equals("N") || element.equals("O") || element.equals("P") || element.equals("S")) {
-                fullName = " " + name + " ";
-            } else {
-                fullName = name + "  ";
+            switch (atom.getElement()) {
+                case C: case N: case O: case P: case S:
+                    recordBuilder.append(' ').append(name).append(' ');
+                    break;
+                default:
+                    recordBuilder.append(name).append("  ");
             }
         } else if (name.length() == 1) {
-            fullName = " " + name + "  ";
+            recordBuilder.append(' ').append(name).append("  ");
+        } else {
+            // legacy behaviour for invalid names
+            recordBuilder.append("null");
+        }
+    }
+
+    /**
+     * A growable character buffer which formats fixed-width fields without creating intermediate strings.
+     */
+    static class RecordBuilder {
+        private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L };
+        /**
+         * Rounding is ambiguous when the scaled value is this close to a tie.
+         */
+        private static final double TIE_TOLERANCE = 1e-6;
+        private char[] chars;
+        private int length;
+
+        RecordBuilder(int capacity) {
+            this.chars = new char[capacity];
+        }
+
+        int length() {
+            return length;
+        }
+
+        char[] chars() {
+            return chars;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        private void ensureCapacity(int additional) {
+            if(length + additional > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + additional));
+            }
+        }
+
+        RecordBuilder append(char c) {
+            ensureCapacity(1);
+            chars[length++] = c;
+            return this;
+        }
+
+        RecordBuilder append(String string) {
+            int stringLength = string.length();
+            ensureCapacity(stringLength);
+            string.getChars(0, stringLength, chars, length);
+            length += stringLength;
+            return this;
+        }
+
+        /**
+         * Appends whitespaces till the given position is reached.
+         * @param position the position to fill to
+         * @return this builder
+         */
+        RecordBuilder pad(int position) {
+            ensureCapacity(position - length);
+            while(length < position) {
+                chars[length++] = ' ';
+            }
+            return this;
+        }
+
+        /**
+         * Equivalent to <code>String.format("%" + width + "s", string)</code>.
+         */
+        RecordBuilder appendRightAligned(String string, int width) {
+            return pad(length + width - string.length()).append(string);
+        }
+
+        /**
+         * Equivalent to <code>String.format("%" + width + "d", value)</code>.
+         */
+        RecordBuilder appendInt(int value, int width) {
+            long magnitude = Math.abs((long) value);
+            int digits = 1;
+            for(long remaining = magnitude; remaining >= 10; remaining /= 10) {
+                digits++;
+            }
+            int fieldLength = digits + (value < 0 ? 1 : 0);
+            pad(length + width - fieldLength);
+            ensureCapacity(fieldLength);
+            if(value < 0) {
+                chars[length++] = '-';
+            }
+            writeDigits(magnitude, digits);
+            return this;
         }
 
-        return fullName;
+        /**
+         * Equivalent to <code>String.format("%" + width + "s", format.format(value))</code> for a format with the
+         * given number of fraction and maximum integer digits, no grouping and half-even rounding.
+         */
+        RecordBuilder appendDecimal(double value,
+                                    int fractionDigits,
+                                    int maximumIntegerDigits,
+                                    int width,
+                                    DecimalFormat format) {
+            long scale = POWERS_OF_TEN[fractionDigits];
+            double scaled = Math.abs(value) * scale;
+            double floor = Math.floor(scaled);
+            double remainder = scaled - floor;
+            long rounded = (long) floor + (remainder > 0.5 ? 1 : 0);
+            long integerPart = rounded / scale;
+            if(Double.isNaN(value) ||
+                    Double.isInfinite(value) ||
+                    Math.abs(remainder - 0.5) < TIE_TOLERANCE ||
+                    integerPart >= POWERS_OF_TEN[maximumIntegerDigits]) {
+                String formatted;
+                synchronized (format) {
+                    formatted = format.format(value);
+                }
+                return appendRightAligned(formatted, width);
+            }
+
+            // DecimalFormat keeps the sign of negative values rounded to zero
+            boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+            int integerDigits = 1;
+            while(integerPart >= POWERS_OF_TEN[integerDigits]) {
+                integerDigits++;
+            }
+            int fieldLength = (negative ? 1 : 0) + integerDigits + 1 + fractionDigits;
+            pad(length + width - fieldLength);
+            ensureCapacity(fieldLength);
+            if(negative) {
+                chars[length++] = '-';
+            }
+            writeDigits(integerPart, integerDigits);
+            chars[length++] = '.';
+            writeDigits(rounded - integerPart * scale, fractionDigits);
+            return this;
+        }
+
+        private void writeDigits(long value, int digits) {
+            for(int i = length + digits - 1; i >= length; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
     }
 }
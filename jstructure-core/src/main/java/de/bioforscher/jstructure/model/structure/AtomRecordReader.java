@@ -0,0 +1,412 @@
+package de.bioforscher.jstructure.model.structure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Byte-level access to the lines of a <tt>PDB</tt> file. Lines are kept in a reusable buffer and individual fields of
+ * <tt>ATOM</tt> records are decoded directly from their fixed columns into primitives. Textual fields (atom names,
+ * residue names, ...) are resolved by lookup tables, so recurring values are represented by the same String instance
+ * and no intermediate objects are created for the majority of lines. Instances are not thread-safe.
+ */
+class AtomRecordReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Coordinates are stored with at most 3, occupancy and b-factor with 2 decimal places - longer fractions are
+     * handled by the fallback.
+     */
+    private static final double[] DOUBLE_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15 };
+    private static final float[] FLOAT_POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f };
+    /**
+     * Up to this number of digits the mantissa is guaranteed to be represented exactly as double respectively float.
+     */
+    private static final int MAXIMUM_DOUBLE_DIGITS = 15;
+    private static final int MAXIMUM_FLOAT_DIGITS = 7;
+    private static final int SPACE = ' ';
+    private final InputStream inputStream;
+    private final Charset charset;
+    private final byte[] buffer;
+    private int bufferPosition;
+    private int bufferLimit;
+    private boolean skipLineFeed;
+    private byte[] line;
+    private int lineLength;
+
+    private final TokenCache atomNames;
+    private final TokenCache residueNames;
+    private final TokenCache elementSymbols;
+    private final String[] singleCharacters;
+    private final String[] rawSingleCharacters;
+    private final Map<String, Element> elements;
+
+    AtomRecordReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+        // mimic the behaviour of an InputStreamReader without explicit charset
+        this.charset = Charset.defaultCharset();
+        this.buffer = new byte[BUFFER_SIZE];
+        this.line = new byte[128];
+        this.atomNames = new TokenCache();
+        this.residueNames = new TokenCache();
+        this.elementSymbols = new TokenCache();
+        this.singleCharacters = new String[256];
+        this.rawSingleCharacters = new String[256];
+        this.elements = new HashMap<>();
+    }
+
+    /**
+     * Moves to the next line of the input. Line terminators are '\n', '\r' or '\r\n' - same as
+     * {@link java.io.BufferedReader#readLine()}.
+     * @return <code>false</code> if the end of the input was reached
+     * @throws IOException if reading fails
+     */
+    boolean nextLine() throws IOException {
+        lineLength = 0;
+        boolean readAnything = false;
+        while(true) {
+            if(bufferPosition == bufferLimit) {
+                bufferLimit = inputStream.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if(bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    return readAnything;
+                }
+            }
+
+            byte b = buffer[bufferPosition++];
+            if(skipLineFeed) {
+                skipLineFeed = false;
+                if(b == '\n') {
+                    continue;
+                }
+            }
+
+            readAnything = true;
+            if(b == '\n') {
+                return true;
+            }
+            if(b == '\r') {
+                skipLineFeed = true;
+                return true;
+            }
+
+            if(lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+    }
+
+    int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * Tests whether the current line begins with the given (ASCII) prefix.
+     * @param prefix the record name to test for
+     * @return <code>true</code> if the line starts with this prefix
+     */
+    boolean startsWith(String prefix) {
+        int length = prefix.length();
+        if(lineLength < length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Composes the current line as String. Only used for rare records and reporting.
+     * @return the whole line
+     */
+    String getLine() {
+        return new String(line, 0, lineLength, charset);
+    }
+
+    /**
+     * Ensures that the current line covers the given column. Mimics the behaviour of {@link String#substring(int, int)}
+     * on too short lines.
+     * @param end the exclusive end index of the field to access
+     */
+    void requireLength(int end) {
+        if(end > lineLength) {
+            throw new StringIndexOutOfBoundsException("line of length " + lineLength + " does not cover column " + end);
+        }
+    }
+
+    String atomName(int start, int end) {
+        return atomNames.resolve(line, start, end);
+    }
+
+    String residueName(int start, int end) {
+        return residueNames.resolve(line, start, end);
+    }
+
+    /**
+     * Resolves the element of the symbol in the given columns.
+     * @return the element or <code>null</code> if the columns are blank
+     */
+    Element element(int start, int end) {
+        String symbol = elementSymbols.resolve(line, start, end);
+        if(symbol.isEmpty()) {
+            return null;
+        }
+        Element element = elements.get(symbol);
+        if(element == null) {
+            element = Element.resolveElementSymbol(symbol);
+            elements.put(symbol, element);
+        }
+        return element;
+    }
+
+    /**
+     * Resolves a single column such as the alternative location indicator or insertion code. Blank values are reported
+     * as empty String.
+     */
+    String character(int position) {
+        int b = line[position] & 0xFF;
+        String value = singleCharacters[b];
+        if(value == null) {
+            value = b <= ' ' ? "" : new String(line, position, 1, charset);
+            singleCharacters[b] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Resolves a single column without trimming, i.e. blanks are reported as is.
+     */
+    String rawCharacter(int position) {
+        int b = line[position] & 0xFF;
+        String value = rawSingleCharacters[b];
+        if(value == null) {
+            value = new String(line, position, 1, charset);
+            rawSingleCharacters[b] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Decodes an integer from the given columns, surrounding blanks are ignored.
+     * @throws NumberFormatException if the trimmed field is empty or contains anything but an optionally signed number
+     */
+    int parseInt(int start, int end) {
+        requireLength(end);
+        while(start < end && isBlank(line[start])) {
+            start++;
+        }
+        while(end > start && isBlank(line[end - 1])) {
+            end--;
+        }
+        if(start == end) {
+            throw new NumberFormatException("empty integer field");
+        }
+
+        boolean negative = false;
+        int position = start;
+        if(line[position] == '-' || line[position] == '+') {
+            negative = line[position] == '-';
+            position++;
+        }
+        if(position == end || end - position > 9) {
+            return Integer.parseInt(new String(line, start, end - start, charset));
+        }
+
+        int value = 0;
+        for(; position < end; position++) {
+            int digit = line[position] - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("invalid integer field '" + new String(line, start, end - start,
+                        charset) + "'");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes a fixed-point number from the given columns. As mantissa and power of ten are exactly representable and
+     * the division is correctly rounded, the result equals {@link Double#parseDouble(String)} of the trimmed field.
+     * @throws NumberFormatException if the trimmed field is no valid number
+     */
+    double parseDouble(int start, int end) {
+        requireLength(end);
+        while(start < end && isBlank(line[start])) {
+            start++;
+        }
+        while(end > start && isBlank(line[end - 1])) {
+            end--;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean negative = false;
+        int position = start;
+        if(position < end && (line[position] == '-' || line[position] == '+')) {
+            negative = line[position] == '-';
+            position++;
+        }
+        for(; position < end; position++) {
+            byte b = line[position];
+            if(b == '.' && fractionDigits == -1) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if(digit < 0 || digit > 9) {
+                return parseDoubleFallback(start, end);
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if(fractionDigits != -1) {
+                fractionDigits++;
+            }
+        }
+        if(digits == 0 || digits > MAXIMUM_DOUBLE_DIGITS) {
+            return parseDoubleFallback(start, end);
+        }
+
+        double value = fractionDigits > 0 ? mantissa / DOUBLE_POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static boolean isBlank(byte b) {
+        return (b & 0xFF) <= SPACE;
+    }
+
+    private double parseDoubleFallback(int start, int end) {
+        return Double.parseDouble(new String(line, start, end - start, charset));
+    }
+
+    /**
+     * Decodes a fixed-point number as float. Same contract as {@link #parseDouble(int, int)}, the result equals
+     * {@link Float#parseFloat(String)} of the trimmed field.
+     */
+    float parseFloat(int start, int end) {
+        requireLength(end);
+        while(start < end && isBlank(line[start])) {
+            start++;
+        }
+        while(end > start && isBlank(line[end - 1])) {
+            end--;
+        }
+
+        int mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean negative = false;
+        int position = start;
+        if(position < end && (line[position] == '-' || line[position] == '+')) {
+            negative = line[position] == '-';
+            position++;
+        }
+        for(; position < end; position++) {
+            byte b = line[position];
+            if(b == '.' && fractionDigits == -1) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if(digit < 0 || digit > 9) {
+                return parseFloatFallback(start, end);
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if(fractionDigits != -1) {
+                fractionDigits++;
+            }
+        }
+        if(digits == 0 || digits > MAXIMUM_FLOAT_DIGITS || fractionDigits >= FLOAT_POWERS_OF_TEN.length) {
+            return parseFloatFallback(start, end);
+        }
+
+        float value = fractionDigits > 0 ? mantissa / FLOAT_POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private float parseFloatFallback(int start, int end) {
+        return Float.parseFloat(new String(line, start, end - start, charset));
+    }
+
+    /**
+     * Maps the raw content of fields of at most 4 columns to their trimmed String representation. The raw bytes are
+     * packed into an int which is used as key of an open-addressing hash table. Each instance is expected to serve
+     * fields of one particular width.
+     */
+    static class TokenCache {
+        private int[] keys;
+        private String[] values;
+        private int size;
+
+        TokenCache() {
+            this.keys = new int[64];
+            this.values = new String[64];
+        }
+
+        String resolve(byte[] line, int start, int end) {
+            int key = 0;
+            for(int i = start; i < end; i++) {
+                key = (key << 8) | (line[i] & 0xFF);
+            }
+
+            int mask = keys.length - 1;
+            int index = mix(key) & mask;
+            while(values[index] != null) {
+                if(keys[index] == key) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+
+            int trimmedStart = start;
+            int trimmedEnd = end;
+            while(trimmedStart < trimmedEnd && isBlank(line[trimmedStart])) {
+                trimmedStart++;
+            }
+            while(trimmedEnd > trimmedStart && isBlank(line[trimmedEnd - 1])) {
+                trimmedEnd--;
+            }
+            String value = new String(line, trimmedStart, trimmedEnd - trimmedStart, Charset.defaultCharset());
+            keys[index] = key;
+            values[index] = value;
+            size++;
+            if(size * 2 > keys.length) {
+                grow();
+            }
+            return value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new String[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldValues[i] == null) {
+                    continue;
+                }
+                int index = mix(oldKeys[i]) & mask;
+                while(values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package de.bioforscher.jstructure.model.structure;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Row-wise access to the <tt>_atom_site</tt> category of <tt>mmCIF</tt> and <tt>BinaryCIF</tt> files. Implementations
+ * provide the header information of the entry as soon as they are instantiated and then iterate the atoms one by one,
+ * so {@link StructureParser} can assemble the same model as for <tt>PDB</tt> files. Instances are not thread-safe.
+ */
+abstract class AtomSiteReader implements Closeable {
+    /**
+     * Missing values are marked as '.' (inapplicable) or '?' (unknown) in <tt>CIF</tt> files.
+     */
+    static final String INAPPLICABLE = ".";
+    static final String UNKNOWN = "?";
+
+    /**
+     * Advances to the next row of the <tt>_atom_site</tt> category.
+     * @return <code>false</code> if there are no further atoms
+     * @throws IOException if reading fails
+     */
+    abstract boolean nextAtom() throws IOException;
+
+    /**
+     * The id of this entry, i.e. <tt>_entry.id</tt>.
+     * @return the id or <code>null</code> if it was not provided
+     */
+    abstract String getEntryId();
+
+    /**
+     * The title of this entry, i.e. <tt>_struct.title</tt>.
+     * @return the title or <code>null</code> if it was not provided
+     */
+    abstract String getTitle();
+
+    /**
+     * The classification of this entry, i.e. <tt>_struct_keywords.pdbx_keywords</tt>.
+     * @return the classification or <code>null</code> if it was not provided
+     */
+    abstract String getClassification();
+
+    /**
+     * The deposition date of this entry as <tt>yyyy-mm-dd</tt>, i.e.
+     * <tt>_pdbx_database_status.recvd_initial_deposition_date</tt>.
+     * @return the date or <code>null</code> if it was not provided
+     */
+    abstract String getDepositionDate();
+
+    /**
+     * @return <code>true</code> if the current atom is a <tt>HETATM</tt> record
+     */
+    abstract boolean isHetAtm();
+
+    abstract int getPdbSerial();
+
+    /**
+     * @return the element symbol or an empty String if not provided
+     */
+    abstract String getElementSymbol();
+
+    abstract String getAtomName();
+
+    /**
+     * @return the alternative location indicator or an empty String if there is none
+     */
+    abstract String getAlternativeLocation();
+
+    abstract String getResidueName();
+
+    /**
+     * The author-provided chain id (falling back to the label id), as used by the <tt>PDB</tt> format.
+     * @return the chain id
+     */
+    abstract String getChainId();
+
+    /**
+     * The author-provided residue number (falling back to the label sequence id), as used by the <tt>PDB</tt> format.
+     * @return the residue number
+     */
+    abstract int getResidueNumber();
+
+    /**
+     * @return the insertion code or an empty String if there is none
+     */
+    abstract String getInsertionCode();
+
+    /**
+     * Non-polymer entities (ligands and water) do not have a label sequence id.
+     * @return <code>true</code> if the current atom is part of a polymer
+     */
+    abstract boolean isPolymer();
+
+    abstract double getX();
+
+    abstract double getY();
+
+    abstract double getZ();
+
+    /**
+     * @return the occupancy or {@link Float#NaN} if not provided
+     */
+    abstract float getOccupancy();
+
+    /**
+     * @return the b-factor or {@link Float#NaN} if not provided
+     */
+    abstract float getBfactor();
+
+    /**
+     * @return the model number of the current atom, 1 if not provided
+     */
+    abstract int getModelNumber();
+
+    /**
+     * Tests whether a value is marked as missing.
+     * @param value the value to test
+     * @return <code>true</code> for <code>null</code>, '.' and '?'
+     */
+    static boolean isMissing(String value) {
+        return value == null || INAPPLICABLE.equals(value) || UNKNOWN.equals(value);
+    }
+}
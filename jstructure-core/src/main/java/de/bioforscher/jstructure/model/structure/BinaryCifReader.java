@@ -0,0 +1,621 @@
+package de.bioforscher.jstructure.model.structure;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for the <tt>_atom_site</tt> category of <tt>BinaryCIF</tt> files, i.e. <tt>MessagePack</tt>-encoded
+ * <tt>CIF</tt> data whose columns are compressed by a chain of encodings. Only the columns required to assemble a
+ * structure are decoded - into primitive arrays, so no objects are created per atom and row. The content is accessed
+ * through a {@link ByteBuffer} which may well be a memory-mapped file. Only the document outline (maps, arrays, strings
+ * and numbers) is materialized up front - binary data remains in the buffer and is decoded on demand, so the columns
+ * of other categories are never copied.
+ */
+class BinaryCifReader extends AtomSiteReader {
+    private static final int MASK_PRESENT = 0;
+    private final Map<String, Map<String, Object>> categories;
+    private final int rowCount;
+    private int row;
+
+    private final Column groupPdb;
+    private final Column id;
+    private final Column typeSymbol;
+    private final Column atomId;
+    private final Column authAtomId;
+    private final Column altId;
+    private final Column compId;
+    private final Column authCompId;
+    private final Column asymId;
+    private final Column authAsymId;
+    private final Column seqId;
+    private final Column authSeqId;
+    private final Column insCode;
+    private final Column x;
+    private final Column y;
+    private final Column z;
+    private final Column occupancy;
+    private final Column bfactor;
+    private final Column modelNumber;
+
+    @SuppressWarnings("unchecked")
+    BinaryCifReader(ByteBuffer byteBuffer) {
+        Object file = new MessagePack(byteBuffer).read();
+        if(!(file instanceof Map)) {
+            throw new ParsingException("no BinaryCIF content");
+        }
+        List<Object> dataBlocks = (List<Object>) ((Map<String, Object>) file).get("dataBlocks");
+        if(dataBlocks == null || dataBlocks.isEmpty()) {
+            throw new ParsingException("BinaryCIF file does not contain any data block");
+        }
+
+        this.categories = new HashMap<>();
+        Map<String, Object> dataBlock = (Map<String, Object>) dataBlocks.get(0);
+        for(Object category : (List<Object>) dataBlock.get("categories")) {
+            Map<String, Object> map = (Map<String, Object>) category;
+            categories.put((String) map.get("name"), map);
+        }
+
+        Map<String, Object> atomSite = categories.get("_atom_site");
+        this.rowCount = atomSite != null ? ((Number) atomSite.get("rowCount")).intValue() : 0;
+        this.row = -1;
+        this.groupPdb = column(atomSite, "group_PDB");
+        this.id = column(atomSite, "id");
+        this.typeSymbol = column(atomSite, "type_symbol");
+        this.atomId = column(atomSite, "label_atom_id");
+        this.authAtomId = column(atomSite, "auth_atom_id");
+        this.altId = column(atomSite, "label_alt_id");
+        this.compId = column(atomSite, "label_comp_id");
+        this.authCompId = column(atomSite, "auth_comp_id");
+        this.asymId = column(atomSite, "label_asym_id");
+        this.authAsymId = column(atomSite, "auth_asym_id");
+        this.seqId = column(atomSite, "label_seq_id");
+        this.authSeqId = column(atomSite, "auth_seq_id");
+        this.insCode = column(atomSite, "pdbx_PDB_ins_code");
+        this.x = column(atomSite, "Cartn_x");
+        this.y = column(atomSite, "Cartn_y");
+        this.z = column(atomSite, "Cartn_z");
+        this.occupancy = column(atomSite, "occupancy");
+        this.bfactor = column(atomSite, "B_iso_or_equiv");
+        this.modelNumber = column(atomSite, "pdbx_PDB_model_num");
+
+        if(rowCount > 0 && (x == null || y == null || z == null)) {
+            throw new ParsingException("_atom_site category lacks Cartesian coordinates");
+        }
+    }
+
+    /**
+     * Decodes a column of the given category.
+     * @return the column or <code>null</code> if it is absent
+     */
+    @SuppressWarnings("unchecked")
+    private static Column column(Map<String, Object> category, String name) {
+        if(category == null) {
+            return null;
+        }
+        for(Object column : (List<Object>) category.get("columns")) {
+            Map<String, Object> map = (Map<String, Object>) column;
+            if(name.equals(map.get("name"))) {
+                Object data = decode((Map<String, Object>) map.get("data"));
+                Object mask = map.get("mask");
+                return new Column(data, mask != null ? (int[]) decode((Map<String, Object>) mask) : null);
+            }
+        }
+        return null;
+    }
+
+    private String getHeaderValue(String categoryName, String columnName) {
+        Column column = column(categories.get(categoryName), columnName);
+        if(column == null || column.isMissing(0)) {
+            return null;
+        }
+        return column.getString(0);
+    }
+
+    @Override
+    boolean nextAtom() {
+        if(row + 1 >= rowCount) {
+            return false;
+        }
+        row++;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release - mapped buffers are unmapped once they are garbage collected
+    }
+
+    @Override
+    String getEntryId() {
+        return getHeaderValue("_entry", "id");
+    }
+
+    @Override
+    String getTitle() {
+        String title = getHeaderValue("_struct", "title");
+        return title != null ? title.trim() : null;
+    }
+
+    @Override
+    String getClassification() {
+        String classification = getHeaderValue("_struct_keywords", "pdbx_keywords");
+        return classification != null ? classification.trim() : null;
+    }
+
+    @Override
+    String getDepositionDate() {
+        return getHeaderValue("_pdbx_database_status", "recvd_initial_deposition_date");
+    }
+
+    private String getString(Column column) {
+        if(column == null || column.isMissing(row)) {
+            return null;
+        }
+        return column.getString(row);
+    }
+
+    private String getString(Column authorColumn, Column labelColumn) {
+        String value = getString(authorColumn);
+        return value != null ? value : getString(labelColumn);
+    }
+
+    private static boolean isMissing(Column column, int row) {
+        return column == null || column.isMissing(row);
+    }
+
+    @Override
+    boolean isHetAtm() {
+        return "HETATM".equals(getString(groupPdb));
+    }
+
+    @Override
+    int getPdbSerial() {
+        return isMissing(id, row) ? 0 : id.getInt(row);
+    }
+
+    @Override
+    String getElementSymbol() {
+        String value = getString(typeSymbol);
+        return value != null ? value : "";
+    }
+
+    @Override
+    String getAtomName() {
+        return getString(authAtomId, atomId);
+    }
+
+    @Override
+    String getAlternativeLocation() {
+        String value = getString(altId);
+        return value != null ? value : "";
+    }
+
+    @Override
+    String getResidueName() {
+        return getString(authCompId, compId);
+    }
+
+    @Override
+    String getChainId() {
+        return getString(authAsymId, asymId);
+    }
+
+    @Override
+    int getResidueNumber() {
+        Column column = isMissing(authSeqId, row) ? seqId : authSeqId;
+        if(isMissing(column, row)) {
+            throw new NumberFormatException("missing residue number");
+        }
+        return column.getInt(row);
+    }
+
+    @Override
+    String getInsertionCode() {
+        String value = getString(insCode);
+        return value != null ? value : "";
+    }
+
+    @Override
+    boolean isPolymer() {
+        return !isMissing(seqId, row);
+    }
+
+    @Override
+    double getX() {
+        return x.getDouble(row);
+    }
+
+    @Override
+    double getY() {
+        return y.getDouble(row);
+    }
+
+    @Override
+    double getZ() {
+        return z.getDouble(row);
+    }
+
+    @Override
+    float getOccupancy() {
+        return isMissing(occupancy, row) ? Float.NaN : (float) occupancy.getDouble(row);
+    }
+
+    @Override
+    float getBfactor() {
+        return isMissing(bfactor, row) ? Float.NaN : (float) bfactor.getDouble(row);
+    }
+
+    @Override
+    int getModelNumber() {
+        return isMissing(modelNumber, row) ? 1 : modelNumber.getInt(row);
+    }
+
+    /**
+     * A decoded column - the values are either an int[], a double[] or a String[].
+     */
+    static class Column {
+        private final Object values;
+        private final int[] mask;
+
+        Column(Object values, int[] mask) {
+            this.values = values;
+            this.mask = mask;
+        }
+
+        boolean isMissing(int row) {
+            if(mask != null && mask[row] != MASK_PRESENT) {
+                return true;
+            }
+            if(values instanceof String[]) {
+                String value = ((String[]) values)[row];
+                return AtomSiteReader.isMissing(value);
+            }
+            return false;
+        }
+
+        String getString(int row) {
+            if(values instanceof String[]) {
+                return ((String[]) values)[row];
+            }
+            if(values instanceof int[]) {
+                return String.valueOf(((int[]) values)[row]);
+            }
+            return String.valueOf(((double[]) values)[row]);
+        }
+
+        int getInt(int row) {
+            if(values instanceof int[]) {
+                return ((int[]) values)[row];
+            }
+            if(values instanceof double[]) {
+                return (int) ((double[]) values)[row];
+            }
+            return Integer.parseInt(((String[]) values)[row]);
+        }
+
+        double getDouble(int row) {
+            if(values instanceof double[]) {
+                return ((double[]) values)[row];
+            }
+            if(values instanceof int[]) {
+                return ((int[]) values)[row];
+            }
+            return Double.parseDouble(((String[]) values)[row]);
+        }
+    }
+
+    /**
+     * Reverts the encodings of a data object, which are applied in reverse order.
+     * @param encodedData the map of raw data and encodings
+     * @return the decoded values - either int[], double[] or String[]
+     */
+    @SuppressWarnings("unchecked")
+    static Object decode(Map<String, Object> encodedData) {
+        Object data = encodedData.get("data");
+        List<Object> encodings = (List<Object>) encodedData.get("encoding");
+        for(int i = encodings.size() - 1; i >= 0; i--) {
+            data = decode(data, (Map<String, Object>) encodings.get(i));
+        }
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object decode(Object data, Map<String, Object> encoding) {
+        String kind = (String) encoding.get("kind");
+        switch (kind) {
+            case "ByteArray":
+                return decodeByteArray((ByteBuffer) data, intValue(encoding, "type"));
+            case "FixedPoint":
+                return decodeFixedPoint((int[]) data, ((Number) encoding.get("factor")).doubleValue());
+            case "IntervalQuantization":
+                return decodeIntervalQuantization((int[]) data,
+                        ((Number) encoding.get("min")).doubleValue(),
+                        ((Number) encoding.get("max")).doubleValue(),
+                        intValue(encoding, "numSteps"));
+            case "RunLength":
+                return decodeRunLength((int[]) data, intValue(encoding, "srcSize"));
+            case "Delta":
+                return decodeDelta((int[]) data, intValue(encoding, "origin"));
+            case "IntegerPacking":
+                return decodeIntegerPacking((int[]) data,
+                        intValue(encoding, "byteCount"),
+                        (Boolean) encoding.get("isUnsigned"),
+                        intValue(encoding, "srcSize"));
+            case "StringArray":
+                return decodeStringArray(data, encoding);
+            default:
+                throw new ParsingException("unsupported BinaryCIF encoding '" + kind + "'");
+        }
+    }
+
+    private static int intValue(Map<String, Object> encoding, String key) {
+        return ((Number) encoding.get(key)).intValue();
+    }
+
+    private static Object decodeByteArray(ByteBuffer data, int type) {
+        // decoding must not move the position of the shared view
+        ByteBuffer buffer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int length = buffer.remaining();
+        switch (type) {
+            case 1: {
+                int[] values = new int[length];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = buffer.get();
+                }
+                return values;
+            } case 2: {
+                int[] values = new int[length / 2];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = buffer.getShort();
+                }
+                return values;
+            } case 3: {
+                int[] values = new int[length / 4];
+                buffer.asIntBuffer().get(values);
+                return values;
+            } case 4: {
+                int[] values = new int[length];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = buffer.get() & 0xFF;
+                }
+                return values;
+            } case 5: {
+                int[] values = new int[length / 2];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = buffer.getShort() & 0xFFFF;
+                }
+                return values;
+            } case 6: {
+                // values beyond the range of int are not expected for any column of interest
+                int[] values = new int[length / 4];
+                buffer.asIntBuffer().get(values);
+                return values;
+            } case 32: {
+                double[] values = new double[length / 4];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = buffer.getFloat();
+                }
+                return values;
+            } case 33: {
+                double[] values = new double[length / 8];
+                buffer.asDoubleBuffer().get(values);
+                return values;
+            } default:
+                throw new ParsingException("unsupported BinaryCIF data type " + type);
+        }
+    }
+
+    private static double[] decodeFixedPoint(int[] data, double factor) {
+        double[] values = new double[data.length];
+        for(int i = 0; i < data.length; i++) {
+            values[i] = data[i] / factor;
+        }
+        return values;
+    }
+
+    private static double[] decodeIntervalQuantization(int[] data, double min, double max, int numSteps) {
+        double delta = (max - min) / (numSteps - 1);
+        double[] values = new double[data.length];
+        for(int i = 0; i < data.length; i++) {
+            values[i] = min + delta * data[i];
+        }
+        return values;
+    }
+
+    private static int[] decodeRunLength(int[] data, int size) {
+        int[] values = new int[size];
+        int offset = 0;
+        for(int i = 0; i < data.length; i += 2) {
+            int value = data[i];
+            int count = data[i + 1];
+            for(int j = 0; j < count; j++) {
+                values[offset++] = value;
+            }
+        }
+        return values;
+    }
+
+    private static int[] decodeDelta(int[] data, int origin) {
+        int[] values = new int[data.length];
+        if(data.length == 0) {
+            return values;
+        }
+        values[0] = origin + data[0];
+        for(int i = 1; i < data.length; i++) {
+            values[i] = values[i - 1] + data[i];
+        }
+        return values;
+    }
+
+    private static int[] decodeIntegerPacking(int[] data, int byteCount, boolean unsigned, int size) {
+        int upperLimit;
+        int lowerLimit;
+        if(byteCount == 1) {
+            upperLimit = unsigned ? 0xFF : Byte.MAX_VALUE;
+            lowerLimit = unsigned ? 0 : Byte.MIN_VALUE;
+        } else {
+            upperLimit = unsigned ? 0xFFFF : Short.MAX_VALUE;
+            lowerLimit = unsigned ? 0 : Short.MIN_VALUE;
+        }
+
+        int[] values = new int[size];
+        int offset = 0;
+        int i = 0;
+        while(i < data.length) {
+            int value = 0;
+            int element = data[i];
+            // values exceeding the packed range are split into several elements
+            while(element == upperLimit || (!unsigned && element == lowerLimit)) {
+                value += element;
+                i++;
+                element = data[i];
+            }
+            value += element;
+            values[offset++] = value;
+            i++;
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String[] decodeStringArray(Object data, Map<String, Object> encoding) {
+        String stringData = (String) encoding.get("stringData");
+        Map<String, Object> offsetData = new HashMap<>();
+        offsetData.put("data", encoding.get("offsets"));
+        offsetData.put("encoding", encoding.get("offsetEncoding"));
+        int[] offsets = (int[]) decode(offsetData);
+
+        // each distinct string is instantiated once
+        String[] strings = new String[offsets.length - 1];
+        for(int i = 0; i < strings.length; i++) {
+            strings[i] = stringData.substring(offsets[i], offsets[i + 1]);
+        }
+
+        Map<String, Object> indexData = new HashMap<>();
+        indexData.put("data", data);
+        indexData.put("encoding", encoding.get("dataEncoding"));
+        int[] indices = (int[]) decode(indexData);
+        String[] values = new String[indices.length];
+        for(int i = 0; i < indices.length; i++) {
+            values[i] = indices[i] < 0 ? null : strings[indices[i]];
+        }
+        return values;
+    }
+
+    /**
+     * A minimal <tt>MessagePack</tt> decoder. Maps are represented as {@link Map}, arrays as {@link List} and binary
+     * data as {@link ByteBuffer} - a view of the decoded buffer, so binary content is not copied.
+     */
+    static class MessagePack {
+        private final ByteBuffer buffer;
+
+        MessagePack(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
+
+        Object read() {
+            int type = buffer.get() & 0xFF;
+            if(type <= 0x7F) {
+                return type;
+            }
+            if(type >= 0xE0) {
+                return (int) (byte) type;
+            }
+            if((type & 0xF0) == 0x80) {
+                return readMap(type & 0x0F);
+            }
+            if((type & 0xF0) == 0x90) {
+                return readArray(type & 0x0F);
+            }
+            if((type & 0xE0) == 0xA0) {
+                return readString(type & 0x1F);
+            }
+
+            switch (type) {
+                case 0xC0:
+                    return null;
+                case 0xC2:
+                    return false;
+                case 0xC3:
+                    return true;
+                case 0xC4:
+                    return readBinary(buffer.get() & 0xFF);
+                case 0xC5:
+                    return readBinary(buffer.getShort() & 0xFFFF);
+                case 0xC6:
+                    return readBinary(buffer.getInt());
+                case 0xCA:
+                    return (double) buffer.getFloat();
+                case 0xCB:
+                    return buffer.getDouble();
+                case 0xCC:
+                    return buffer.get() & 0xFF;
+                case 0xCD:
+                    return buffer.getShort() & 0xFFFF;
+                case 0xCE:
+                    return buffer.getInt() & 0xFFFFFFFFL;
+                case 0xCF:
+                    return buffer.getLong();
+                case 0xD0:
+                    return (int) buffer.get();
+                case 0xD1:
+                    return (int) buffer.getShort();
+                case 0xD2:
+                    return buffer.getInt();
+                case 0xD3:
+                    return buffer.getLong();
+                case 0xD9:
+                    return readString(buffer.get() & 0xFF);
+                case 0xDA:
+                    return readString(buffer.getShort() & 0xFFFF);
+                case 0xDB:
+                    return readString(buffer.getInt());
+                case 0xDC:
+                    return readArray(buffer.getShort() & 0xFFFF);
+                case 0xDD:
+                    return readArray(buffer.getInt());
+                case 0xDE:
+                    return readMap(buffer.getShort() & 0xFFFF);
+                case 0xDF:
+                    return readMap(buffer.getInt());
+                default:
+                    throw new ParsingException("unsupported MessagePack type 0x" + Integer.toHexString(type));
+            }
+        }
+
+        private Map<String, Object> readMap(int size) {
+            Map<String, Object> map = new HashMap<>();
+            for(int i = 0; i < size; i++) {
+                String key = String.valueOf(read());
+                map.put(key, read());
+            }
+            return map;
+        }
+
+        private List<Object> readArray(int size) {
+            List<Object> list = new ArrayList<>(size);
+            for(int i = 0; i < size; i++) {
+                list.add(read());
+            }
+            return list;
+        }
+
+        private String readString(int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer readBinary(int length) {
+            ByteBuffer binary = buffer.slice();
+            binary.limit(length);
+            buffer.position(buffer.position() + length);
+            return binary;
+        }
+    }
+}
@@ -3,12 +3,12 @@ package de.bioforscher.jstructure.model.structure;
 import de.bioforscher.jstructure.mathematics.LinearAlgebra;
 import de.bioforscher.jstructure.model.feature.AbstractFeatureable;
 import de.bioforscher.jstructure.model.identifier.ChainIdentifier;
+import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
 import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
 import de.bioforscher.jstructure.model.structure.container.GroupContainer;
 import de.bioforscher.jstructure.model.structure.selection.Selection;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +22,19 @@ public class Chain extends AbstractFeatureable implements GroupContainer {
     public static final Chain UNKNOWN_CHAIN = new Chain(ChainIdentifier.UNKNOWN_CHAIN_IDENTIFIER);
 
     private List<Group> groups;
+    /**
+     * The number of groups at the time positional indices were last assigned, -1 if they were invalidated.
+     */
+    private volatile int indexedGroupCount = -1;
+    /**
+     * The index of each group among all amino acids of this chain (-1 for other groups), ordered by residue index.
+     */
+    private int[] aminoAcidIndices;
+    /**
+     * The groups of this chain by residue number (in chain order), lazily created.
+     */
+    private volatile Map<Integer, List<Group>> residueNumberIndex;
+    private int residueNumberIndexGroupCount;
     /**
      * The unique chain name. Usually one character, e.g. 'A'.
      */
@@ -57,6 +70,7 @@ public class Chain extends AbstractFeatureable implements GroupContainer {
 
     public void setChainIdentifier(ChainIdentifier chainIdentifier) {
         this.chainIdentifier = chainIdentifier;
+        getParentStructure().invalidateChainIdIndex();
     }
 
     public Selection.GroupSelection select() {
@@ -74,6 +88,137 @@ public class Chain extends AbstractFeatureable implements GroupContainer {
     public void addGroup(Group group) {
         getGroups().add(group);
         group.setParentChain(this);
+        invalidatePositionalIndices();
+        getParentStructure().registerModification();
+    }
+
+    /**
+     * Removes a child. The parent reference of the group is not altered.
+     * @param group the residue to remove
+     * @return <code>true</code> if this chain contained the group
+     */
+    public boolean removeGroup(Group group) {
+        int residueIndex = getResidueIndex(group);
+        if(residueIndex == -1) {
+            return false;
+        }
+        getGroups().remove(residueIndex);
+        invalidatePositionalIndices();
+        getParentStructure().registerModification();
+        return true;
+    }
+
+    /**
+     * Returns the index of a group in this chain in constant time.
+     * @param group the group to locate
+     * @return the index of the group, starting with 0, or -1 if this chain does not contain it
+     */
+    public int getResidueIndex(Group group) {
+        if(indexedGroupCount == groups.size()) {
+            int residueIndex = group.residueIndex;
+            if(isValidResidueIndex(group, residueIndex)) {
+                return residueIndex;
+            }
+        }
+        // the list of groups was manipulated directly or this is the first request
+        return assignPositionalIndices(group);
+    }
+
+    /**
+     * Returns the index of a group among all amino acids of this chain in constant time.
+     * @param group the group to locate
+     * @return the index of the group, starting with 0, or -1 if this chain does not contain it or it is no amino acid
+     */
+    public int getAminoAcidIndex(Group group) {
+        int residueIndex = getResidueIndex(group);
+        return residueIndex == -1 ? -1 : aminoAcidIndices[residueIndex];
+    }
+
+    /**
+     * Navigates the sequence of this chain. Zero will return the given group, negative values will navigate towards
+     * the N-terminus, positive values to the C-terminus.
+     * @param group the reference group
+     * @param offset the number of positions to move
+     * @return an optional wrapping the group with the given offset, empty when the position is not occupied or this
+     * chain does not contain the reference group
+     */
+    public Optional<Group> getGroupWithOffset(Group group, int offset) {
+        int residueIndex = getResidueIndex(group);
+        if(residueIndex == -1) {
+            return Optional.empty();
+        }
+        int targetIndex = residueIndex + offset;
+        return targetIndex >= 0 && targetIndex < groups.size() ? Optional.of(groups.get(targetIndex)) : Optional.empty();
+    }
+
+    private boolean isValidResidueIndex(Group group, int residueIndex) {
+        return residueIndex >= 0 && residueIndex < groups.size() && groups.get(residueIndex) == group;
+    }
+
+    /**
+     * Retrieves all groups with a given residue number (regardless of insertion codes) in constant time.
+     * @param residueNumber the residue number of interest
+     * @return all groups with this residue number in their order in this chain, may be empty
+     */
+    public List<Group> getGroupsByResidueNumber(int residueNumber) {
+        Map<Integer, List<Group>> residueNumberIndex = this.residueNumberIndex;
+        if(residueNumberIndex == null || residueNumberIndexGroupCount != groups.size()) {
+            residueNumberIndex = createResidueNumberIndex();
+        }
+        return residueNumberIndex.getOrDefault(residueNumber, Collections.emptyList());
+    }
+
+    /**
+     * Retrieves the group with a given residue identifier in constant time.
+     * @param residueIdentifier the residue identifier of interest
+     * @return the first group with this identifier, empty if there is none
+     */
+    public Optional<Group> getGroup(ResidueIdentifier residueIdentifier) {
+        return getGroupsByResidueNumber(residueIdentifier.getResidueNumber()).stream()
+                .filter(group -> group.getResidueIdentifier().equals(residueIdentifier))
+                .findFirst();
+    }
+
+    private synchronized Map<Integer, List<Group>> createResidueNumberIndex() {
+        Map<Integer, List<Group>> residueNumberIndex = new HashMap<>();
+        for(Group group : groups) {
+            residueNumberIndex.computeIfAbsent(group.getResidueIdentifier().getResidueNumber(), key -> new ArrayList<>(1))
+                    .add(group);
+        }
+        this.residueNumberIndexGroupCount = groups.size();
+        this.residueNumberIndex = residueNumberIndex;
+        return residueNumberIndex;
+    }
+
+    private void invalidatePositionalIndices() {
+        indexedGroupCount = -1;
+        invalidateResidueNumberIndex();
+    }
+
+    void invalidateResidueNumberIndex() {
+        residueNumberIndex = null;
+    }
+
+    private synchronized int assignPositionalIndices(Group group) {
+        int residueIndex = group.residueIndex;
+        if(indexedGroupCount == groups.size() && isValidResidueIndex(group, residueIndex)) {
+            return residueIndex;
+        }
+
+        indexedGroupCount = -1;
+        int numberOfGroups = groups.size();
+        int[] aminoAcidIndices = new int[numberOfGroups];
+        int aminoAcidIndex = 0;
+        for(int i = 0; i < numberOfGroups; i++) {
+            Group currentGroup = groups.get(i);
+            currentGroup.residueIndex = i;
+            aminoAcidIndices[i] = currentGroup.isAminoAcid() ? aminoAcidIndex++ : -1;
+        }
+        this.aminoAcidIndices = aminoAcidIndices;
+        indexedGroupCount = numberOfGroups;
+
+        residueIndex = group.residueIndex;
+        return isValidResidueIndex(group, residueIndex) ? residueIndex : -1;
     }
 
     /**
@@ -0,0 +1,138 @@
+package de.bioforscher.jstructure.model.structure;
+
+import java.util.Arrays;
+
+/**
+ * Contiguous storage of atom coordinates as structure of arrays. Atoms attached to a block by
+ * {@link Structure#compactCoordinates()} do not keep their own <code>double[]</code>, they merely point to their
+ * ordinal in this block. The coordinate arrays are exposed directly, so geometric kernels can run over primitive arrays
+ * without touching {@link Atom} instances.
+ */
+public class CoordinateBlock {
+    private final Structure structure;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private int size;
+
+    CoordinateBlock(Structure structure, int capacity) {
+        this.structure = structure;
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+    }
+
+    /**
+     * Appends a coordinate.
+     * @return the ordinal of the new entry
+     */
+    int add(double xCoordinate, double yCoordinate, double zCoordinate) {
+        if(size == x.length) {
+            int capacity = Math.max(16, size * 2);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+        }
+        x[size] = xCoordinate;
+        y[size] = yCoordinate;
+        z[size] = zCoordinate;
+        return size++;
+    }
+
+    void set(int ordinal, double xCoordinate, double yCoordinate, double zCoordinate) {
+        x[ordinal] = xCoordinate;
+        y[ordinal] = yCoordinate;
+        z[ordinal] = zCoordinate;
+    }
+
+    /**
+     * The number of coordinates in this block.
+     * @return the number of attached atoms
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The x-coordinates of all attached atoms. The array is backing this block and may be larger than {@link #size()}.
+     * @return the x-coordinates indexed by atom ordinal
+     */
+    public double[] getXCoordinates() {
+        return x;
+    }
+
+    /**
+     * The y-coordinates of all attached atoms. The array is backing this block and may be larger than {@link #size()}.
+     * @return the y-coordinates indexed by atom ordinal
+     */
+    public double[] getYCoordinates() {
+        return y;
+    }
+
+    /**
+     * The z-coordinates of all attached atoms. The array is backing this block and may be larger than {@link #size()}.
+     * @return the z-coordinates indexed by atom ordinal
+     */
+    public double[] getZCoordinates() {
+        return z;
+    }
+
+    /**
+     * Computes the centroid of all coordinates in this block.
+     * @return the centroid
+     */
+    public double[] centroid() {
+        double xSum = 0;
+        double ySum = 0;
+        double zSum = 0;
+        for(int i = 0; i < size; i++) {
+            xSum += x[i];
+            ySum += y[i];
+            zSum += z[i];
+        }
+        return size > 0 ? new double[] { xSum / size, ySum / size, zSum / size } : new double[3];
+    }
+
+    /**
+     * Computes the maximal distance of any coordinate in this block to a point.
+     * @param point the reference point
+     * @return the maximal distance
+     */
+    public double maximalDistance(double[] point) {
+        double maximalSquaredDistance = 0;
+        for(int i = 0; i < size; i++) {
+            double dx = x[i] - point[0];
+            double dy = y[i] - point[1];
+            double dz = z[i] - point[2];
+            maximalSquaredDistance = Math.max(maximalSquaredDistance, dx * dx + dy * dy + dz * dz);
+        }
+        return Math.sqrt(maximalSquaredDistance);
+    }
+
+    /**
+     * Rotates and subsequently shifts all coordinates in this block. In contrast to direct manipulation of the
+     * coordinate arrays, this is registered as modification of the structure.
+     * @param translation the translation vector, may be <code>null</code>
+     * @param rotation the rotation matrix, may be <code>null</code>
+     */
+    public void transform(double[] translation, double[][] rotation) {
+        if(rotation != null) {
+            for(int i = 0; i < size; i++) {
+                double xCoordinate = x[i];
+                double yCoordinate = y[i];
+                double zCoordinate = z[i];
+                x[i] = xCoordinate * rotation[0][0] + yCoordinate * rotation[1][0] + zCoordinate * rotation[2][0];
+                y[i] = xCoordinate * rotation[0][1] + yCoordinate * rotation[1][1] + zCoordinate * rotation[2][1];
+                z[i] = xCoordinate * rotation[0][2] + yCoordinate * rotation[1][2] + zCoordinate * rotation[2][2];
+            }
+        }
+        if(translation != null) {
+            for(int i = 0; i < size; i++) {
+                x[i] += translation[0];
+                y[i] += translation[1];
+                z[i] += translation[2];
+            }
+        }
+        structure.registerModification();
+    }
+}
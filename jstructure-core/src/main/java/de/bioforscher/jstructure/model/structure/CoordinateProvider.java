@@ -6,7 +6,8 @@ package de.bioforscher.jstructure.model.structure;
  */
 public interface CoordinateProvider {
     /**
-     * The spatial coordinates of this entity.
+     * The spatial coordinates of this entity. Implementations may return a copy, so changes have to be applied by
+     * {@link #setCoordinates(double[])}.
      * @return a <code>double[]</code> of dimensionality 3 resembling this entities spatial position
      */
     double[] getCoordinates();
@@ -40,6 +40,10 @@ public class Group extends AbstractFeatureable implements AtomContainer {
     private boolean ligand;
     private List<Atom> atoms;
     private Chain parentChain;
+    /**
+     * The position of this group in its parent chain, maintained by {@link Chain#getResidueIndex(Group)}.
+     */
+    int residueIndex = -1;
     private String identifier;
 
     public Group(String threeLetterCode,
@@ -109,6 +113,7 @@ public class Group extends AbstractFeatureable implements AtomContainer {
 
     public void setResidueIdentifier(ResidueIdentifier residueIdentifier) {
         this.residueIdentifier = residueIdentifier;
+        getParentChain().invalidateResidueNumberIndex();
     }
 
     /**
@@ -118,13 +123,19 @@ public class Group extends AbstractFeatureable implements AtomContainer {
      */
     public int getResidueIndex() {
         //FIXME can result in false numbering if strange groups are present - see 1hrc ACE-0
-        return parentChain.getGroups().indexOf(this);
+        return getParentChain().getResidueIndex(this);
     }
 
     public GroupPrototype getGroupPrototype() {
         return groupPrototype;
     }
 
+    /**
+     * The atoms of this group. Use {@link #addAtom(Atom)} and {@link #removeAtom(Atom)} to alter them - changes applied
+     * to the returned list directly are not registered as modification of the structure, so derived data such as
+     * {@link Structure#getSpatialIndex()} will not reflect them.
+     * @return the live list of atoms
+     */
     public List<Atom> getAtoms() {
         return atoms;
     }
@@ -159,10 +170,24 @@ public class Group extends AbstractFeatureable implements AtomContainer {
         atoms.add(atom);
         // set reference to this as parent
         atom.setParentGroup(this);
+        getParentStructure().registerModification();
         // delegate to internal implementation, so that concrete impls such as an AminoAcid can infer their fields/getters correctly
         addAtomInternal(atom);
     }
 
+    /**
+     * Removes a child. The parent reference of the atom is not altered.
+     * @param atom the atom to remove
+     * @return <code>true</code> if this group contained the atom
+     */
+    public boolean removeAtom(Atom atom) {
+        if(!atoms.remove(atom)) {
+            return false;
+        }
+        getParentStructure().registerModification();
+        return true;
+    }
+
     /**
      * If the child class supports specific atom identified by name.
      * @param atom the atom to be handled - identified by its name, assigned to a particular field of the child class
@@ -102,6 +102,14 @@ public class GroupPrototype {
         return Optional.empty();
     }
 
+    /**
+     * The one-letter-code as provided by the definition file, without falling back to the parent compound.
+     * @return the one-letter-code, may be <code>null</code>
+     */
+    String getRawOneLetterCode() {
+        return oneLetterCode;
+    }
+
     public String getThreeLetterCode() {
         return threeLetterCode;
     }
@@ -291,6 +291,15 @@ public class GroupPrototypeParser {
         return FAST_INSTANCE;
     }
 
+    /**
+     * Looks up a prototype without creating it.
+     * @param id the id of the prototype
+     * @return the prototype if it was already loaded by this instance
+     */
+    Optional<GroupPrototype> getLoadedPrototype(String id) {
+        return Optional.ofNullable(prototypes.get(id));
+    }
+
     public GroupPrototype getPrototype(String id) {
         if(fastMode) {
             return prototypes.getOrDefault(id, unknownLigand);
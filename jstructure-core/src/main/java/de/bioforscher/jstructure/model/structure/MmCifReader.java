@@ -0,0 +1,658 @@
+package de.bioforscher.jstructure.model.structure;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader for the <tt>_atom_site</tt> category of text-based <tt>mmCIF</tt> files. The input is tokenized on
+ * the fly and only the tokens of the current row are kept in memory, so memory consumption does not depend on the size
+ * of the file. Header information of interest is collected while skipping to the <tt>_atom_site</tt> loop.
+ */
+class MmCifReader extends AtomSiteReader {
+    private static final String ATOM_SITE_PREFIX = "_atom_site.";
+    private static final String ENTRY_ID = "_entry.id";
+    private static final String STRUCT_TITLE = "_struct.title";
+    private static final String STRUCT_KEYWORDS = "_struct_keywords.pdbx_keywords";
+    private static final String DEPOSITION_DATE = "_pdbx_database_status.recvd_initial_deposition_date";
+    private static final String LOOP = "loop_";
+    private static final String DATA_PREFIX = "data_";
+    private static final String SAVE_PREFIX = "save_";
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15 };
+    private static final int MAXIMUM_DOUBLE_DIGITS = 15;
+
+    private final Tokenizer tokenizer;
+    private final TokenCache tokenCache;
+    private String entryId;
+    private String title;
+    private String classification;
+    private String depositionDate;
+
+    private int numberOfColumns;
+    private char[] row;
+    private int rowLength;
+    private int[] columnStarts;
+    private int[] columnEnds;
+    private boolean finished;
+
+    private int groupPdbColumn;
+    private int idColumn;
+    private int typeSymbolColumn;
+    private int atomIdColumn;
+    private int authAtomIdColumn;
+    private int altIdColumn;
+    private int compIdColumn;
+    private int authCompIdColumn;
+    private int asymIdColumn;
+    private int authAsymIdColumn;
+    private int seqIdColumn;
+    private int authSeqIdColumn;
+    private int insCodeColumn;
+    private int xColumn;
+    private int yColumn;
+    private int zColumn;
+    private int occupancyColumn;
+    private int bfactorColumn;
+    private int modelNumberColumn;
+
+    MmCifReader(Reader reader) throws IOException {
+        this.tokenizer = new Tokenizer(reader);
+        this.tokenCache = new TokenCache();
+        this.row = new char[256];
+        skipToAtomSite();
+    }
+
+    /**
+     * Processes all records up to the <tt>_atom_site</tt> loop. Relevant header items are stored, everything else is
+     * skipped.
+     * @throws IOException if reading fails
+     */
+    private void skipToAtomSite() throws IOException {
+        while(tokenizer.nextToken()) {
+            if(tokenizer.quoted) {
+                // dangling value of a skipped loop
+                continue;
+            }
+
+            if(tokenizer.is(LOOP)) {
+                List<String> tags = new ArrayList<>();
+                while(tokenizer.nextToken() && !tokenizer.quoted && tokenizer.startsWith("_")) {
+                    tags.add(tokenizer.getToken());
+                }
+                // the current token is the first value of the loop
+                tokenizer.pushBack();
+
+                if(!tags.isEmpty() && tags.get(0).startsWith(ATOM_SITE_PREFIX)) {
+                    registerColumns(tags);
+                    return;
+                }
+
+                // header items are occasionally provided as loop - use the first row, the remainder is skipped
+                for(String loopTag : tags) {
+                    if(!tokenizer.nextToken()) {
+                        break;
+                    }
+                    registerHeaderItem(loopTag, tokenizer.getToken());
+                }
+                continue;
+            }
+
+            if(tokenizer.startsWith("_")) {
+                String tag = tokenizer.getToken();
+                if(!tokenizer.nextToken()) {
+                    break;
+                }
+                registerHeaderItem(tag, tokenizer.getToken());
+            }
+        }
+
+        // no atoms present
+        finished = true;
+    }
+
+    private void registerHeaderItem(String tag, String value) {
+        if(isMissing(value)) {
+            return;
+        }
+        switch (tag) {
+            case ENTRY_ID:
+                entryId = value;
+                break;
+            case STRUCT_TITLE:
+                title = value.trim();
+                break;
+            case STRUCT_KEYWORDS:
+                classification = value.trim();
+                break;
+            case DEPOSITION_DATE:
+                depositionDate = value;
+                break;
+        }
+    }
+
+    private void registerColumns(List<String> tags) {
+        numberOfColumns = tags.size();
+        columnStarts = new int[numberOfColumns];
+        columnEnds = new int[numberOfColumns];
+        groupPdbColumn = tags.indexOf(ATOM_SITE_PREFIX + "group_PDB");
+        idColumn = tags.indexOf(ATOM_SITE_PREFIX + "id");
+        typeSymbolColumn = tags.indexOf(ATOM_SITE_PREFIX + "type_symbol");
+        atomIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "label_atom_id");
+        authAtomIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "auth_atom_id");
+        altIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "label_alt_id");
+        compIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "label_comp_id");
+        authCompIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "auth_comp_id");
+        asymIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "label_asym_id");
+        authAsymIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "auth_asym_id");
+        seqIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "label_seq_id");
+        authSeqIdColumn = tags.indexOf(ATOM_SITE_PREFIX + "auth_seq_id");
+        insCodeColumn = tags.indexOf(ATOM_SITE_PREFIX + "pdbx_PDB_ins_code");
+        xColumn = tags.indexOf(ATOM_SITE_PREFIX + "Cartn_x");
+        yColumn = tags.indexOf(ATOM_SITE_PREFIX + "Cartn_y");
+        zColumn = tags.indexOf(ATOM_SITE_PREFIX + "Cartn_z");
+        occupancyColumn = tags.indexOf(ATOM_SITE_PREFIX + "occupancy");
+        bfactorColumn = tags.indexOf(ATOM_SITE_PREFIX + "B_iso_or_equiv");
+        modelNumberColumn = tags.indexOf(ATOM_SITE_PREFIX + "pdbx_PDB_model_num");
+
+        if(xColumn == -1 || yColumn == -1 || zColumn == -1) {
+            throw new ParsingException("_atom_site category lacks Cartesian coordinates");
+        }
+    }
+
+    @Override
+    boolean nextAtom() throws IOException {
+        if(finished) {
+            return false;
+        }
+
+        rowLength = 0;
+        for(int column = 0; column < numberOfColumns; column++) {
+            if(!tokenizer.nextToken()) {
+                finished = true;
+                if(column == 0) {
+                    return false;
+                }
+                throw new ParsingException("incomplete row in _atom_site category");
+            }
+
+            if(column == 0 && !tokenizer.quoted && (tokenizer.startsWith("_") || tokenizer.is(LOOP) ||
+                    tokenizer.startsWith(DATA_PREFIX) || tokenizer.startsWith(SAVE_PREFIX))) {
+                // the loop ended - nothing of interest will follow
+                finished = true;
+                return false;
+            }
+
+            int length = tokenizer.tokenLength;
+            if(rowLength + length > row.length) {
+                row = Arrays.copyOf(row, Math.max(row.length * 2, rowLength + length));
+            }
+            System.arraycopy(tokenizer.token, 0, row, rowLength, length);
+            columnStarts[column] = rowLength;
+            rowLength += length;
+            columnEnds[column] = rowLength;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        tokenizer.reader.close();
+    }
+
+    @Override
+    String getEntryId() {
+        return entryId;
+    }
+
+    @Override
+    String getTitle() {
+        return title;
+    }
+
+    @Override
+    String getClassification() {
+        return classification;
+    }
+
+    @Override
+    String getDepositionDate() {
+        return depositionDate;
+    }
+
+    /**
+     * Resolves a column of the current row.
+     * @param column the index of the column
+     * @return the value, <code>null</code> if the column is absent or the value is missing
+     */
+    private String getString(int column) {
+        if(column == -1 || isMissing(column)) {
+            return null;
+        }
+        return tokenCache.resolve(row, columnStarts[column], columnEnds[column]);
+    }
+
+    private boolean isMissing(int column) {
+        return column == -1 || (columnEnds[column] - columnStarts[column] == 1 &&
+                (row[columnStarts[column]] == '.' || row[columnStarts[column]] == '?'));
+    }
+
+    private String getString(int authorColumn, int labelColumn) {
+        String value = getString(authorColumn);
+        return value != null ? value : getString(labelColumn);
+    }
+
+    @Override
+    boolean isHetAtm() {
+        String groupPdb = getString(groupPdbColumn);
+        return groupPdb != null && groupPdb.equals("HETATM");
+    }
+
+    @Override
+    int getPdbSerial() {
+        return isMissing(idColumn) ? 0 : parseInt(idColumn);
+    }
+
+    @Override
+    String getElementSymbol() {
+        String value = getString(typeSymbolColumn);
+        return value != null ? value : "";
+    }
+
+    @Override
+    String getAtomName() {
+        return getString(authAtomIdColumn, atomIdColumn);
+    }
+
+    @Override
+    String getAlternativeLocation() {
+        String value = getString(altIdColumn);
+        return value != null ? value : "";
+    }
+
+    @Override
+    String getResidueName() {
+        return getString(authCompIdColumn, compIdColumn);
+    }
+
+    @Override
+    String getChainId() {
+        return getString(authAsymIdColumn, asymIdColumn);
+    }
+
+    @Override
+    int getResidueNumber() {
+        return parseInt(isMissing(authSeqIdColumn) ? seqIdColumn : authSeqIdColumn);
+    }
+
+    @Override
+    String getInsertionCode() {
+        String value = getString(insCodeColumn);
+        return value != null ? value : "";
+    }
+
+    @Override
+    boolean isPolymer() {
+        return !isMissing(seqIdColumn);
+    }
+
+    @Override
+    double getX() {
+        return parseDouble(xColumn);
+    }
+
+    @Override
+    double getY() {
+        return parseDouble(yColumn);
+    }
+
+    @Override
+    double getZ() {
+        return parseDouble(zColumn);
+    }
+
+    @Override
+    float getOccupancy() {
+        return isMissing(occupancyColumn) ? Float.NaN : (float) parseDouble(occupancyColumn);
+    }
+
+    @Override
+    float getBfactor() {
+        return isMissing(bfactorColumn) ? Float.NaN : (float) parseDouble(bfactorColumn);
+    }
+
+    @Override
+    int getModelNumber() {
+        return isMissing(modelNumberColumn) ? 1 : parseInt(modelNumberColumn);
+    }
+
+    private int parseInt(int column) {
+        if(isMissing(column)) {
+            throw new NumberFormatException("missing integer value");
+        }
+        int start = columnStarts[column];
+        int end = columnEnds[column];
+        boolean negative = row[start] == '-';
+        int position = negative || row[start] == '+' ? start + 1 : start;
+        if(position == end || end - position > 9) {
+            return Integer.parseInt(new String(row, start, end - start));
+        }
+        int value = 0;
+        for(; position < end; position++) {
+            int digit = row[position] - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("invalid integer value '" + new String(row, start, end - start) + "'");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes fixed-point numbers without creating intermediate objects - other notations (e.g. exponents) are
+     * delegated to {@link Double#parseDouble(String)}.
+     */
+    private double parseDouble(int column) {
+        if(isMissing(column)) {
+            throw new NumberFormatException("missing floating point value");
+        }
+        int start = columnStarts[column];
+        int end = columnEnds[column];
+        boolean negative = row[start] == '-';
+        int position = negative || row[start] == '+' ? start + 1 : start;
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for(; position < end; position++) {
+            char c = row[position];
+            if(c == '.' && fractionDigits == -1) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if(digit < 0 || digit > 9) {
+                return Double.parseDouble(new String(row, start, end - start));
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if(fractionDigits != -1) {
+                fractionDigits++;
+            }
+        }
+        if(digits == 0 || digits > MAXIMUM_DOUBLE_DIGITS) {
+            return Double.parseDouble(new String(row, start, end - start));
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Splits the input into <tt>CIF</tt> tokens: unquoted and quoted strings as well as multi-line text fields
+     * delimited by semicolons at the beginning of a line. Comments are skipped.
+     */
+    static class Tokenizer {
+        private final Reader reader;
+        private final char[] buffer;
+        private int bufferPosition;
+        private int bufferLimit;
+        private boolean atLineStart;
+        char[] token;
+        int tokenLength;
+        boolean quoted;
+        private boolean pushedBack;
+
+        Tokenizer(Reader reader) {
+            this.reader = reader;
+            this.buffer = new char[1 << 16];
+            this.token = new char[128];
+            this.atLineStart = true;
+        }
+
+        private int read() throws IOException {
+            if(bufferPosition == bufferLimit) {
+                bufferLimit = reader.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if(bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    return -1;
+                }
+            }
+            return buffer[bufferPosition++];
+        }
+
+        private int peek() throws IOException {
+            if(bufferPosition == bufferLimit) {
+                bufferLimit = reader.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if(bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    return -1;
+                }
+            }
+            return buffer[bufferPosition];
+        }
+
+        private void append(int c) {
+            if(tokenLength == token.length) {
+                token = Arrays.copyOf(token, token.length * 2);
+            }
+            token[tokenLength++] = (char) c;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+        }
+
+        /**
+         * Marks the current token to be reported again by the next invocation of {@link #nextToken()}.
+         */
+        void pushBack() {
+            pushedBack = true;
+        }
+
+        /**
+         * Reads the next token.
+         * @return <code>false</code> if the end of the input was reached
+         * @throws IOException if reading fails
+         */
+        boolean nextToken() throws IOException {
+            if(pushedBack) {
+                pushedBack = false;
+                return tokenLength > 0 || quoted;
+            }
+
+            tokenLength = 0;
+            quoted = false;
+            int c;
+            // skip whitespace and comments
+            while(true) {
+                c = read();
+                if(c == -1) {
+                    return false;
+                }
+                if(c == '\n' || c == '\r') {
+                    atLineStart = true;
+                    continue;
+                }
+                if(isWhitespace(c)) {
+                    atLineStart = false;
+                    continue;
+                }
+                if(c == '#') {
+                    while(c != -1 && c != '\n' && c != '\r') {
+                        c = read();
+                    }
+                    atLineStart = true;
+                    if(c == -1) {
+                        return false;
+                    }
+                    continue;
+                }
+                break;
+            }
+
+            if(c == ';' && atLineStart) {
+                readTextField();
+                return true;
+            }
+            atLineStart = false;
+
+            if(c == '\'' || c == '"') {
+                quoted = true;
+                int quote = c;
+                while(true) {
+                    c = read();
+                    if(c == -1) {
+                        break;
+                    }
+                    if(c == quote) {
+                        int next = peek();
+                        if(next == -1 || isWhitespace(next)) {
+                            break;
+                        }
+                    }
+                    if(c == '\n' || c == '\r') {
+                        // quoted strings must not span multiple lines
+                        atLineStart = true;
+                        break;
+                    }
+                    append(c);
+                }
+                return true;
+            }
+
+            append(c);
+            while(true) {
+                c = peek();
+                if(c == -1 || isWhitespace(c)) {
+                    break;
+                }
+                append(read());
+            }
+            return true;
+        }
+
+        /**
+         * Reads a text field which is terminated by a line starting with a semicolon.
+         */
+        private void readTextField() throws IOException {
+            quoted = true;
+            boolean lineStart = false;
+            while(true) {
+                int c = read();
+                if(c == -1) {
+                    break;
+                }
+                if(lineStart && c == ';') {
+                    break;
+                }
+                lineStart = c == '\n' || c == '\r';
+                append(c);
+            }
+            // strip the line break preceding the terminating semicolon
+            while(tokenLength > 0 && (token[tokenLength - 1] == '\n' || token[tokenLength - 1] == '\r')) {
+                tokenLength--;
+            }
+            atLineStart = false;
+        }
+
+        boolean is(String value) {
+            return tokenLength == value.length() && startsWith(value);
+        }
+
+        boolean startsWith(String prefix) {
+            if(tokenLength < prefix.length()) {
+                return false;
+            }
+            for(int i = 0; i < prefix.length(); i++) {
+                if(token[i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String getToken() {
+            return new String(token, 0, tokenLength);
+        }
+    }
+
+    /**
+     * Maps character sequences to String instances, so recurring values (atom names, residue names, chain ids, ...)
+     * are represented by the same object.
+     */
+    static class TokenCache {
+        private static final int MAXIMUM_SIZE = 1 << 16;
+        private char[][] keys;
+        private String[] values;
+        private int size;
+
+        TokenCache() {
+            this.keys = new char[64][];
+            this.values = new String[64];
+        }
+
+        String resolve(char[] data, int start, int end) {
+            int hash = 0;
+            for(int i = start; i < end; i++) {
+                hash = 31 * hash + data[i];
+            }
+            int mask = keys.length - 1;
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while(keys[index] != null) {
+                char[] key = keys[index];
+                if(key.length == end - start && regionEquals(key, data, start)) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+
+            String value = new String(data, start, end - start);
+            if(size >= MAXIMUM_SIZE) {
+                // values are too diverse to benefit from caching
+                return value;
+            }
+            keys[index] = Arrays.copyOfRange(data, start, end);
+            values[index] = value;
+            size++;
+            if(size * 2 > keys.length) {
+                grow();
+            }
+            return value;
+        }
+
+        private static boolean regionEquals(char[] key, char[] data, int start) {
+            for(int i = 0; i < key.length; i++) {
+                if(key[i] != data[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            char[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new char[oldKeys.length * 2][];
+            values = new String[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] == null) {
+                    continue;
+                }
+                int hash = 0;
+                for(char c : oldKeys[i]) {
+                    hash = 31 * hash + c;
+                }
+                int index = (hash ^ (hash >>> 16)) & mask;
+                while(keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.mathematics.Pair;
+import de.bioforscher.jstructure.model.structure.container.AtomContainer;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * A cell list over a fixed collection of atoms which answers radius, k-nearest-neighbor and all-pairs-within-cutoff
+ * queries by visiting only the cells around the query point. Coordinates are copied to primitive arrays when the index
+ * is built. The index is rebuilt lazily, when any atom of the indexed structures was moved (see
+ * {@link Structure#getModificationCount()}). Atoms added to or removed from the structure afterwards are not reflected,
+ * use {@link Structure#getSpatialIndex()} to obtain an index which always covers the whole structure. Atoms without a
+ * parent structure are indexed at the coordinates they had when the index was created. Instances are
+ * thread-safe: a rebuild publishes a new immutable grid, so concurrent queries never observe a partially built one.
+ * <p>Indices over plain coordinates (see {@link #of(double[], double)}) are never rebuilt and only answer the
+ * index-based queries, i.e. {@link #forEachIndexWithin(double[], double, IntConsumer)} and
+ * {@link #forEachIndexPairWithin(double, IndexPairConsumer)}.</p>
+ */
+public class SpatialIndex {
+    /**
+     * The default edge length of a cell in Angstrom.
+     */
+    public static final double DEFAULT_CELL_SIZE = 4.0;
+    /**
+     * Sparse atom sets (e.g. two distant chains) would result in huge, empty grids - the cell size is increased till
+     * the grid consists of at most this many cells per atom.
+     */
+    private static final int MAXIMUM_CELLS_PER_ATOM = 8;
+    /**
+     * The indexed atoms, <code>null</code> when this index was created from plain coordinates.
+     */
+    private final List<Atom> atoms;
+    private final double requestedCellSize;
+    private final Structure[] structures;
+    /**
+     * The current state of the index - replaced as a whole when the indexed structures were modified, so concurrent
+     * queries always observe a consistent grid.
+     */
+    private volatile Grid grid;
+
+    SpatialIndex(List<Atom> atoms, double cellSize) {
+        checkCellSize(cellSize);
+        this.atoms = new ArrayList<>(atoms);
+        this.requestedCellSize = cellSize;
+        Map<Structure, Structure> distinctStructures = new IdentityHashMap<>();
+        this.atoms.forEach(atom -> distinctStructures.putIfAbsent(atom.getParentStructure(), atom.getParentStructure()));
+        this.structures = distinctStructures.keySet().toArray(new Structure[0]);
+        this.grid = build();
+    }
+
+    private SpatialIndex(double[] coordinates, double cellSize) {
+        checkCellSize(cellSize);
+        if(coordinates.length % 3 != 0) {
+            throw new IllegalArgumentException("coordinates must be stored as x, y, z triplets, found " +
+                    coordinates.length + " values");
+        }
+        this.atoms = null;
+        this.requestedCellSize = cellSize;
+        this.structures = new Structure[0];
+        int size = coordinates.length / 3;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        for(int i = 0; i < size; i++) {
+            x[i] = coordinates[3 * i];
+            y[i] = coordinates[3 * i + 1];
+            z[i] = coordinates[3 * i + 2];
+        }
+        this.grid = new Grid(x, y, z, cellSize, new int[0]);
+    }
+
+    private static void checkCellSize(double cellSize) {
+        if(cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive, found " + cellSize);
+        }
+    }
+
+    public static SpatialIndex of(AtomContainer atomContainer) {
+        return of(atomContainer.getAtoms());
+    }
+
+    public static SpatialIndex of(AtomContainer atomContainer, double cellSize) {
+        return of(atomContainer.getAtoms(), cellSize);
+    }
+
+    public static SpatialIndex of(List<Atom> atoms) {
+        return of(atoms, DEFAULT_CELL_SIZE);
+    }
+
+    public static SpatialIndex of(List<Atom> atoms, double cellSize) {
+        return new SpatialIndex(atoms, cellSize);
+    }
+
+    /**
+     * Creates an index over plain coordinates, which is not associated to any atom. Points are identified by their
+     * position in the array, points with non-finite coordinates are never reported. The coordinates are copied, so
+     * later changes of the array are not reflected.
+     * @param coordinates the points, stored as consecutive x, y, z triplets
+     * @param cellSize the edge length of a cell in Angstrom, ideally the radius of subsequent queries
+     * @return an index answering index-based queries
+     */
+    public static SpatialIndex of(double[] coordinates, double cellSize) {
+        return new SpatialIndex(coordinates, cellSize);
+    }
+
+    private Grid build() {
+        // modification counts are captured first - concurrent modifications will trigger another rebuild
+        int[] modificationCounts = new int[structures.length];
+        for(int i = 0; i < structures.length; i++) {
+            modificationCounts[i] = structures[i].getModificationCount();
+        }
+
+        int size = atoms.size();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        for(int i = 0; i < size; i++) {
+            Atom atom = atoms.get(i);
+            x[i] = atom.getX();
+            y[i] = atom.getY();
+            z[i] = atom.getZ();
+        }
+        return new Grid(x, y, z, requestedCellSize, modificationCounts);
+    }
+
+    /**
+     * Provides the grid reflecting the current coordinates of all indexed atoms.
+     * @return the up-to-date grid
+     */
+    private Grid grid() {
+        Grid grid = this.grid;
+        if(isUpToDate(grid)) {
+            return grid;
+        }
+        synchronized (this) {
+            grid = this.grid;
+            if(!isUpToDate(grid)) {
+                grid = build();
+                this.grid = grid;
+            }
+            return grid;
+        }
+    }
+
+    private boolean isUpToDate(Grid grid) {
+        for(int i = 0; i < structures.length; i++) {
+            if(structures[i].getModificationCount() != grid.modificationCounts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The atoms covered by this index.
+     * @return all atoms in their original order
+     */
+    public List<Atom> getAtoms() {
+        return Collections.unmodifiableList(atoms());
+    }
+
+    private List<Atom> atoms() {
+        if(atoms == null) {
+            throw new UnsupportedOperationException("spatial index was created from plain coordinates - use " +
+                    "index-based queries");
+        }
+        return atoms;
+    }
+
+    /**
+     * Collects all atoms whose distance to a point is at most the given radius.
+     * @param point the center of the query
+     * @param radius the radius in Angstrom
+     * @return the atoms in the sphere, in the order they were provided to this index
+     */
+    public List<Atom> getAtomsWithin(double[] point, double radius) {
+        List<Atom> atoms = atoms();
+        int[] indices = grid().indicesWithin(point[0], point[1], point[2], radius);
+        Arrays.sort(indices);
+        List<Atom> result = new ArrayList<>(indices.length);
+        for(int index : indices) {
+            result.add(atoms.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Collects all atoms whose distance to an atom is at most the given radius - this includes the atom itself, when
+     * it is part of this index.
+     * @param atom the center of the query
+     * @param radius the radius in Angstrom
+     * @return the atoms in the sphere, in the order they were provided to this index
+     */
+    public List<Atom> getAtomsWithin(Atom atom, double radius) {
+        return getAtomsWithin(new double[] { atom.getX(), atom.getY(), atom.getZ() }, radius);
+    }
+
+    /**
+     * Reports all atoms whose distance to a point is at most the given radius in no particular order.
+     * @param point the center of the query
+     * @param radius the radius in Angstrom
+     * @param consumer the callback
+     */
+    public void forEachAtomWithin(double[] point, double radius, Consumer<Atom> consumer) {
+        List<Atom> atoms = atoms();
+        grid().forEachIndexWithin(point[0], point[1], point[2], radius, index -> consumer.accept(atoms.get(index)));
+    }
+
+    /**
+     * Reports the positions (in the list this index was created from) of all atoms whose distance to a point is at most
+     * the given radius in no particular order. Allows callers to keep atom properties in primitive arrays.
+     * @param point the center of the query
+     * @param radius the radius in Angstrom
+     * @param consumer the callback
+     */
+    public void forEachIndexWithin(double[] point, double radius, IntConsumer consumer) {
+        grid().forEachIndexWithin(point[0], point[1], point[2], radius, consumer);
+    }
+
+    /**
+     * Determines the <code>k</code> atoms closest to a point.
+     * @param point the center of the query
+     * @param k the number of neighbors
+     * @return at most <code>k</code> atoms, ordered by ascending distance
+     */
+    public List<Atom> getNearestAtoms(double[] point, int k) {
+        List<Atom> atoms = atoms();
+        return Arrays.stream(grid().nearestIndices(point[0], point[1], point[2], k))
+                .mapToObj(atoms::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reports each pair of atoms whose distance is at most the cutoff exactly once. The first argument of the
+     * consumer is the atom which was provided earlier to this index.
+     * @param cutoff the distance cutoff in Angstrom
+     * @param consumer the callback
+     */
+    public void forEachPairWithin(double cutoff, BiConsumer<Atom, Atom> consumer) {
+        List<Atom> atoms = atoms();
+        grid().forEachPairWithin(cutoff, (index, neighborIndex) -> consumer.accept(atoms.get(index),
+                atoms.get(neighborIndex)));
+    }
+
+    /**
+     * Reports the positions of each pair of atoms (or points) whose distance is at most the cutoff exactly once, the
+     * lower position first. Allows callers to keep atom properties in primitive arrays.
+     * @param cutoff the distance cutoff in Angstrom
+     * @param consumer the callback
+     */
+    public void forEachIndexPairWithin(double cutoff, IndexPairConsumer consumer) {
+        grid().forEachPairWithin(cutoff, consumer);
+    }
+
+    /**
+     * Collects each pair of atoms whose distance is at most the cutoff exactly once.
+     * @param cutoff the distance cutoff in Angstrom
+     * @return all pairs in no particular order
+     * @see #forEachPairWithin(double, BiConsumer)
+     */
+    public List<Pair<Atom, Atom>> getPairsWithin(double cutoff) {
+        List<Pair<Atom, Atom>> pairs = new ArrayList<>();
+        forEachPairWithin(cutoff, (atom1, atom2) -> pairs.add(new Pair<>(atom1, atom2)));
+        return pairs;
+    }
+
+    /**
+     * An immutable cell list over primitive coordinates.
+     */
+    private static final class Grid {
+        private final int[] modificationCounts;
+        private final int size;
+        private final double[] x;
+        private final double[] y;
+        private final double[] z;
+        private final double cellSize;
+        private final double minX;
+        private final double minY;
+        private final double minZ;
+        private final double maxX;
+        private final double maxY;
+        private final double maxZ;
+        private final int cellsX;
+        private final int cellsY;
+        private final int cellsZ;
+        /**
+         * The atoms of cell <code>c</code> are <code>cellContent[cellStart[c]]</code> to
+         * <code>cellContent[cellStart[c + 1] - 1]</code>, each in ascending order.
+         */
+        private final int[] cellStart;
+        private final int[] cellContent;
+
+        Grid(double[] x, double[] y, double[] z, double requestedCellSize, int[] modificationCounts) {
+            this.modificationCounts = modificationCounts;
+            this.size = x.length;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double minZ = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            double maxZ = Double.NEGATIVE_INFINITY;
+            // points without finite coordinates are not sorted into any cell
+            boolean[] finite = new boolean[size];
+            int numberOfFinitePoints = 0;
+            for(int i = 0; i < size; i++) {
+                finite[i] = Double.isFinite(x[i]) && Double.isFinite(y[i]) && Double.isFinite(z[i]);
+                if(!finite[i]) {
+                    continue;
+                }
+                numberOfFinitePoints++;
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                minZ = Math.min(minZ, z[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+                maxZ = Math.max(maxZ, z[i]);
+            }
+            if(numberOfFinitePoints == 0) {
+                minX = minY = minZ = maxX = maxY = maxZ = 0;
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+
+            double cellSize = requestedCellSize;
+            long maximumCells = Math.max(64L, (long) MAXIMUM_CELLS_PER_ATOM * size);
+            long extentX;
+            long extentY;
+            long extentZ;
+            while(true) {
+                extentX = (long) ((maxX - minX) / cellSize) + 1;
+                extentY = (long) ((maxY - minY) / cellSize) + 1;
+                extentZ = (long) ((maxZ - minZ) / cellSize) + 1;
+                if(extentX * extentY * extentZ <= maximumCells) {
+                    break;
+                }
+                cellSize *= 2;
+            }
+            this.cellSize = cellSize;
+            this.cellsX = (int) extentX;
+            this.cellsY = (int) extentY;
+            this.cellsZ = (int) extentZ;
+
+            // counting sort of atoms by cell
+            int[] cellOfAtom = new int[size];
+            this.cellStart = new int[cellsX * cellsY * cellsZ + 1];
+            for(int i = 0; i < size; i++) {
+                if(!finite[i]) {
+                    continue;
+                }
+                cellOfAtom[i] = cellIndex(cell(x[i], minX, cellsX), cell(y[i], minY, cellsY), cell(z[i], minZ, cellsZ));
+                cellStart[cellOfAtom[i] + 1]++;
+            }
+            for(int cell = 0; cell < cellStart.length - 1; cell++) {
+                cellStart[cell + 1] += cellStart[cell];
+            }
+            int[] insertionPosition = Arrays.copyOf(cellStart, cellStart.length - 1);
+            this.cellContent = new int[numberOfFinitePoints];
+            for(int i = 0; i < size; i++) {
+                if(finite[i]) {
+                    cellContent[insertionPosition[cellOfAtom[i]]++] = i;
+                }
+            }
+        }
+
+        private int cell(double value, double min, int cells) {
+            int cell = (int) Math.floor((value - min) / cellSize);
+            return cell < 0 ? 0 : cell >= cells ? cells - 1 : cell;
+        }
+
+        private int cellIndex(int cellX, int cellY, int cellZ) {
+            return (cellX * cellsY + cellY) * cellsZ + cellZ;
+        }
+
+        /**
+         * Reports the indices of all atoms within a sphere, unordered.
+         */
+        void forEachIndexWithin(double pointX, double pointY, double pointZ, double radius, IntConsumer consumer) {
+            if(size == 0 ||
+                    pointX + radius < minX || pointX - radius > maxX ||
+                    pointY + radius < minY || pointY - radius > maxY ||
+                    pointZ + radius < minZ || pointZ - radius > maxZ) {
+                return;
+            }
+
+            double squaredRadius = radius * radius;
+            int lowerX = cell(pointX - radius, minX, cellsX);
+            int upperX = cell(pointX + radius, minX, cellsX);
+            int lowerY = cell(pointY - radius, minY, cellsY);
+            int upperY = cell(pointY + radius, minY, cellsY);
+            int lowerZ = cell(pointZ - radius, minZ, cellsZ);
+            int upperZ = cell(pointZ + radius, minZ, cellsZ);
+            for(int cellX = lowerX; cellX <= upperX; cellX++) {
+                for(int cellY = lowerY; cellY <= upperY; cellY++) {
+                    for(int cellZ = lowerZ; cellZ <= upperZ; cellZ++) {
+                        int cell = cellIndex(cellX, cellY, cellZ);
+                        for(int position = cellStart[cell]; position < cellStart[cell + 1]; position++) {
+                            int index = cellContent[position];
+                            double dx = x[index] - pointX;
+                            double dy = y[index] - pointY;
+                            double dz = z[index] - pointZ;
+                            if(dx * dx + dy * dy + dz * dz <= squaredRadius) {
+                                consumer.accept(index);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] indicesWithin(double pointX, double pointY, double pointZ, double radius) {
+            IndexBuffer indexBuffer = new IndexBuffer();
+            forEachIndexWithin(pointX, pointY, pointZ, radius, indexBuffer);
+            return indexBuffer.toArray();
+        }
+
+        /**
+         * Determines the indices of the <code>k</code> atoms closest to a point, ordered by ascending distance. Only
+         * the atoms gathered around the point are ranked, by a bounded max-heap of size <code>k</code>.
+         */
+        int[] nearestIndices(double pointX, double pointY, double pointZ, int k) {
+            if(k <= 0 || size == 0) {
+                return new int[0];
+            }
+
+            // the distance to the farthest corner of the bounding box - all atoms are within this radius
+            double farthestX = Math.max(Math.abs(pointX - minX), Math.abs(pointX - maxX));
+            double farthestY = Math.max(Math.abs(pointY - minY), Math.abs(pointY - maxY));
+            double farthestZ = Math.max(Math.abs(pointZ - minZ), Math.abs(pointZ - maxZ));
+            double coveringRadius = Math.sqrt(farthestX * farthestX + farthestY * farthestY + farthestZ * farthestZ);
+
+            double radius = cellSize;
+            int[] indices;
+            while(true) {
+                indices = indicesWithin(pointX, pointY, pointZ, radius);
+                // all atoms closer than radius are known, so the k closest of them are the k nearest atoms
+                if(indices.length >= k || radius >= coveringRadius) {
+                    break;
+                }
+                radius *= 2;
+            }
+
+            int capacity = Math.min(k, indices.length);
+            int[] heapIndices = new int[capacity];
+            double[] heapDistances = new double[capacity];
+            int heapSize = 0;
+            for(int index : indices) {
+                double dx = x[index] - pointX;
+                double dy = y[index] - pointY;
+                double dz = z[index] - pointZ;
+                double squaredDistance = dx * dx + dy * dy + dz * dz;
+                if(heapSize < capacity) {
+                    heapIndices[heapSize] = index;
+                    heapDistances[heapSize] = squaredDistance;
+                    siftUp(heapIndices, heapDistances, heapSize);
+                    heapSize++;
+                } else if(isCloser(squaredDistance, index, heapDistances[0], heapIndices[0])) {
+                    // replace the farthest of the current candidates
+                    heapIndices[0] = index;
+                    heapDistances[0] = squaredDistance;
+                    siftDown(heapIndices, heapDistances, heapSize);
+                }
+            }
+
+            // repeatedly remove the farthest candidate, filling the result from its end
+            int[] nearestIndices = new int[heapSize];
+            while(heapSize > 0) {
+                nearestIndices[heapSize - 1] = heapIndices[0];
+                heapSize--;
+                heapIndices[0] = heapIndices[heapSize];
+                heapDistances[0] = heapDistances[heapSize];
+                siftDown(heapIndices, heapDistances, heapSize);
+            }
+            return nearestIndices;
+        }
+
+        /**
+         * Orders atoms by distance, ties are resolved by their index.
+         */
+        private static boolean isCloser(double squaredDistance,
+                                        int index,
+                                        double otherSquaredDistance,
+                                        int otherIndex) {
+            return squaredDistance < otherSquaredDistance ||
+                    (squaredDistance == otherSquaredDistance && index < otherIndex);
+        }
+
+        private static void siftUp(int[] heapIndices, double[] heapDistances, int position) {
+            while(position > 0) {
+                int parent = (position - 1) / 2;
+                if(!isCloser(heapDistances[parent], heapIndices[parent],
+                        heapDistances[position], heapIndices[position])) {
+                    return;
+                }
+                swap(heapIndices, heapDistances, parent, position);
+                position = parent;
+            }
+        }
+
+        private static void siftDown(int[] heapIndices, double[] heapDistances, int heapSize) {
+            int position = 0;
+            while(true) {
+                int farthest = position;
+                for(int child = 2 * position + 1; child <= 2 * position + 2 && child < heapSize; child++) {
+                    if(isCloser(heapDistances[farthest], heapIndices[farthest],
+                            heapDistances[child], heapIndices[child])) {
+                        farthest = child;
+                    }
+                }
+                if(farthest == position) {
+                    return;
+                }
+                swap(heapIndices, heapDistances, position, farthest);
+                position = farthest;
+            }
+        }
+
+        private static void swap(int[] heapIndices, double[] heapDistances, int position1, int position2) {
+            int index = heapIndices[position1];
+            heapIndices[position1] = heapIndices[position2];
+            heapIndices[position2] = index;
+            double distance = heapDistances[position1];
+            heapDistances[position1] = heapDistances[position2];
+            heapDistances[position2] = distance;
+        }
+
+        /**
+         * Reports each pair of indices whose distance is at most the cutoff exactly once, the lower index first.
+         * Pairs within a cell are enumerated directly, pairs of distinct cells only from the cell preceding in the
+         * cell order, i.e. by the upper half of the neighbor stencil.
+         */
+        void forEachPairWithin(double cutoff, IndexPairConsumer consumer) {
+            double squaredCutoff = cutoff * cutoff;
+            int reach = (int) Math.ceil(cutoff / cellSize);
+            for(int cellX = 0; cellX < cellsX; cellX++) {
+                for(int cellY = 0; cellY < cellsY; cellY++) {
+                    for(int cellZ = 0; cellZ < cellsZ; cellZ++) {
+                        int cell = cellIndex(cellX, cellY, cellZ);
+                        if(cellStart[cell] == cellStart[cell + 1]) {
+                            continue;
+                        }
+                        for(int offsetX = 0; offsetX <= reach && cellX + offsetX < cellsX; offsetX++) {
+                            int neighborX = cellX + offsetX;
+                            int lowerY = offsetX == 0 ? cellY : Math.max(0, cellY - reach);
+                            int upperY = Math.min(cellsY - 1, cellY + reach);
+                            for(int neighborY = lowerY; neighborY <= upperY; neighborY++) {
+                                int lowerZ = offsetX == 0 && neighborY == cellY ? cellZ : Math.max(0, cellZ - reach);
+                                int upperZ = Math.min(cellsZ - 1, cellZ + reach);
+                                for(int neighborZ = lowerZ; neighborZ <= upperZ; neighborZ++) {
+                                    int neighborCell = cellIndex(neighborX, neighborY, neighborZ);
+                                    reportPairs(cell, neighborCell, squaredCutoff, consumer);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reports the pairs of atoms of two cells (or of one cell, when both are equal) within the cutoff.
+         */
+        private void reportPairs(int cell, int neighborCell, double squaredCutoff, IndexPairConsumer consumer) {
+            boolean sameCell = cell == neighborCell;
+            for(int position = cellStart[cell]; position < cellStart[cell + 1]; position++) {
+                int index = cellContent[position];
+                // atoms of a cell are sorted, so pairs within a cell start after the current atom
+                int neighborEnd = cellStart[neighborCell + 1];
+                for(int neighborPosition = sameCell ? position + 1 : cellStart[neighborCell];
+                    neighborPosition < neighborEnd;
+                    neighborPosition++) {
+                    int neighborIndex = cellContent[neighborPosition];
+                    double dx = x[index] - x[neighborIndex];
+                    double dy = y[index] - y[neighborIndex];
+                    double dz = z[index] - z[neighborIndex];
+                    if(dx * dx + dy * dy + dz * dz <= squaredCutoff) {
+                        if(index < neighborIndex) {
+                            consumer.accept(index, neighborIndex);
+                        } else {
+                            consumer.accept(neighborIndex, index);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the positions of both partners of a pair.
+     */
+    @FunctionalInterface
+    public interface IndexPairConsumer {
+        void accept(int index, int neighborIndex);
+    }
+
+    private static class IndexBuffer implements IntConsumer {
+        private int[] indices = new int[16];
+        private int size;
+
+        @Override
+        public void accept(int index) {
+            if(size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            indices[size++] = index;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(indices, size);
+        }
+    }
+}
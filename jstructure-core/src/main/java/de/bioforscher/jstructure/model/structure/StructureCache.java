@@ -0,0 +1,219 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.model.identifier.ProteinIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The bounded cache backing {@link StructureParser.OptionalSteps#cachedMode(int)}. Entries are identified by their
+ * <tt>PDB</tt> id and all parse options which influence the resulting model. The least recently used entry is evicted
+ * once the capacity is exceeded. Values are softly referenced, so the garbage collector may reclaim cached structures
+ * when memory runs low. Cached instances are never handed out directly - each request is answered by a deep copy, so
+ * callers cannot corrupt shared entries. Instances are thread-safe.
+ */
+public class StructureCache {
+    private static final Logger logger = LoggerFactory.getLogger(StructureCache.class);
+    private final LinkedHashMap<Key, SoftReference<Structure>> entries;
+    private int capacity;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
+
+    StructureCache(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("cache size must be positive - found " + capacity);
+        }
+        this.capacity = capacity;
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        // access-ordered map - the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Key, SoftReference<Structure>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<Structure>> eldest) {
+                boolean evict = size() > StructureCache.this.capacity;
+                if(evict) {
+                    evictionCount.incrementAndGet();
+                    logger.debug("evicting {} from structure cache", eldest.getKey());
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the cached structure or parses and registers it.
+     * @param key the key of the requested structure
+     * @param parser the function to invoke on cache misses
+     * @return the requested structure, which is never shared with other callers
+     */
+    Structure get(Key key, Supplier<Structure> parser) {
+        Structure cachedStructure = lookup(key);
+        if(cachedStructure != null) {
+            hitCount.incrementAndGet();
+            return cachedStructure.createDeepCopy();
+        }
+
+        missCount.incrementAndGet();
+        // parse outside of the lock - concurrent misses of the same key will merely parse twice
+        Structure structure = parser.get();
+        synchronized (entries) {
+            entries.put(key, new SoftReference<>(structure.createDeepCopy()));
+        }
+        return structure;
+    }
+
+    private Structure lookup(Key key) {
+        synchronized (entries) {
+            SoftReference<Structure> reference = entries.get(key);
+            if(reference == null) {
+                return null;
+            }
+            Structure structure = reference.get();
+            if(structure == null) {
+                // reclaimed by the garbage collector
+                entries.remove(key);
+                evictionCount.incrementAndGet();
+            }
+            return structure;
+        }
+    }
+
+    /**
+     * Ensures that this cache can hold at least the given number of entries.
+     * @param capacity the requested capacity
+     */
+    void ensureCapacity(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("cache size must be positive - found " + capacity);
+        }
+        synchronized (entries) {
+            this.capacity = Math.max(this.capacity, capacity);
+        }
+    }
+
+    /**
+     * Removes all entries. Counters are not affected.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * The number of currently cached entries (some may have already been reclaimed by the garbage collector).
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity() {
+        synchronized (entries) {
+            return capacity;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * The number of entries dropped either due to the capacity limit or because the garbage collector reclaimed them.
+     * @return the number of evicted entries
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " size=" + size() + " capacity=" + getCapacity() + " hits=" +
+                getHitCount() + " misses=" + getMissCount() + " evictions=" + getEvictionCount();
+    }
+
+    /**
+     * Identifies an entry by <tt>PDB</tt> id, its source (the requested format and the local <tt>PDB</tt> mirror) and
+     * the parse options which affect the resulting structure.
+     */
+    static class Key {
+        private final String pdbId;
+        private final boolean skipHetAtms;
+        private final boolean skipHydrogenAtoms;
+        private final boolean minimalParsing;
+        private final boolean strictMode;
+        private final ProteinIdentifier forceProteinName;
+        private final StructureParser.Format format;
+        private final Path localPdbDirectory;
+
+        Key(String pdbId,
+            boolean skipHetAtms,
+            boolean skipHydrogenAtoms,
+            boolean minimalParsing,
+            boolean strictMode,
+            ProteinIdentifier forceProteinName,
+            StructureParser.Format format,
+            Path localPdbDirectory) {
+            this.pdbId = pdbId.toLowerCase();
+            this.skipHetAtms = skipHetAtms;
+            this.skipHydrogenAtoms = skipHydrogenAtoms;
+            this.minimalParsing = minimalParsing;
+            this.strictMode = strictMode;
+            this.forceProteinName = forceProteinName;
+            this.format = format;
+            this.localPdbDirectory = localPdbDirectory;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (other == null || getClass() != other.getClass()) return false;
+
+            Key that = (Key) other;
+
+            return skipHetAtms == that.skipHetAtms &&
+                    skipHydrogenAtoms == that.skipHydrogenAtoms &&
+                    minimalParsing == that.minimalParsing &&
+                    strictMode == that.strictMode &&
+                    pdbId.equals(that.pdbId) &&
+                    Objects.equals(forceProteinName, that.forceProteinName) &&
+                    format == that.format &&
+                    Objects.equals(localPdbDirectory, that.localPdbDirectory);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = pdbId.hashCode();
+            result = 31 * result + (skipHetAtms ? 1 : 0);
+            result = 31 * result + (skipHydrogenAtoms ? 1 : 0);
+            result = 31 * result + (minimalParsing ? 1 : 0);
+            result = 31 * result + (strictMode ? 1 : 0);
+            result = 31 * result + (forceProteinName != null ? forceProteinName.hashCode() : 0);
+            result = 31 * result + (format != null ? format.hashCode() : 0);
+            result = 31 * result + (localPdbDirectory != null ? localPdbDirectory.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return pdbId + " [skipHetAtms=" + skipHetAtms + ", skipHydrogenAtoms=" + skipHydrogenAtoms +
+                    ", minimalParsing=" + minimalParsing + ", strictMode=" + strictMode + ", format=" + format +
+                    ", localPdbDirectory=" + localPdbDirectory + "]";
+        }
+    }
+}
@@ -38,7 +38,9 @@ public class StructureCollectors {
 
         @Override
         public void accept(Atom atom) {
-            total = LinearAlgebra.on(total).add(atom.getCoordinates()).getValue();
+            total[0] += atom.getX();
+            total[1] += atom.getY();
+            total[2] += atom.getZ();
             count++;
         }
 
@@ -72,8 +74,11 @@ public class StructureCollectors {
 
         @Override
         public void accept(Atom atom) {
-            coordinate = LinearAlgebra.on(atom.getCoordinates()).multiply(atom.getElement().getAtomicMass()).add(coordinate).getValue();
-            mass += atom.getElement().getAtomicMass();
+            double atomicMass = atom.getElement().getAtomicMass();
+            coordinate[0] += atom.getX() * atomicMass;
+            coordinate[1] += atom.getY() * atomicMass;
+            coordinate[2] += atom.getZ() * atomicMass;
+            mass += atomicMass;
         }
 
         CenterOfMassAverage combine(CenterOfMassAverage other) {
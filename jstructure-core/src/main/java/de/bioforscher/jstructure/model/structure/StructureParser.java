@@ -12,17 +12,21 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.GZIPInputStream;
 
 /**
- * A minimalistic parser for structures in <tt>PDB</tt> format.
+ * A minimalistic parser for structures in <tt>PDB</tt>, <tt>mmCIF</tt> and <tt>BinaryCIF</tt> format.
  * Created by S on 29.09.2016.
  */
 public class StructureParser {
@@ -32,30 +36,53 @@ public class StructureParser {
     private static final String DEFAULT_PROTEIN_TITLE = "NO DESCRIPTION";
     private static final String END_MODEL_PREFIX = "ENDMDL";
     private static final String TER_PREFIX = "TER";
-    /**
-     * The PDB URL which can be used to fetch structures by ID (format this using the id and you are good to go).
-     */
-    private static final String PDB_FETCH_URL = "https://files.rcsb.org/download/%s.pdb";
+    private static final int NO_MODEL = Integer.MIN_VALUE;
 
     private boolean skipModels;
     private boolean skipHetAtms;
     private boolean strictMode;
     private boolean skipHydrogens;
     private boolean minimalParsing;
+    private boolean byteLevelParsing;
+    private final OptionalSteps builder;
 
     private Structure protein;
     private StringBuilder titleString;
     private Chain currentChain;
     private Group currentGroup;
     private List<Chain> terminatedChains;
-    private boolean passedFirstModel;
+    private boolean passedModel;
+
+    private BufferedReader bufferedReader;
+    private AtomRecordReader atomRecordReader;
+    private AtomSiteReader atomSiteReader;
+    /**
+     * The model number of the atoms currently parsed from an atom site reader.
+     */
+    private int currentModelNumber;
+    /**
+     * Set when the current row of the atom site reader belongs to the next model and has not been processed yet.
+     */
+    private boolean pendingAtom;
+    /**
+     * When models share their topology, the atoms of the first model in the order of their occurrence.
+     */
+    private List<Atom> sharedAtoms;
+    private boolean updatingSharedTopology;
+    private int sharedAtomIndex;
+    /**
+     * Set once the input is exhausted - no further models can be reported.
+     */
+    private boolean endOfInput;
 
     private StructureParser(OptionalSteps builder) {
+        this.builder = builder;
         skipHetAtms = builder.skipHetAtms;
         skipModels = builder.skipModels;
         strictMode = builder.strictMode;
         skipHydrogens = builder.skipHydrogenAtoms;
         minimalParsing = builder.minimalParsing;
+        byteLevelParsing = builder.byteLevelParsing;
 
         protein = new Structure(ProteinIdentifier.UNKNOWN_PROTEIN_IDENTIFIER);
         // 'initialize' title field as it tends to be split over multiple lines - thus, we have to append previous results when we find further entries
@@ -67,36 +94,270 @@ public class StructureParser {
 
         // keep track of processed TER records
         terminatedChains = new ArrayList<>();
+        currentModelNumber = NO_MODEL;
 
-        // parse file
         try {
-            try(InputStreamReader inputStreamReader = new InputStreamReader(builder.inputStream)) {
-                try(BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    bufferedReader.lines().forEach(this::parseLineChecked);
+            if(builder.format == Format.MMCIF) {
+                atomSiteReader = new MmCifReader(new InputStreamReader(builder.inputStream, StandardCharsets.UTF_8));
+            } else if(builder.format == Format.BINARY_CIF) {
+                atomSiteReader = new BinaryCifReader(builder.byteBuffer != null ? builder.byteBuffer :
+                        ByteBuffer.wrap(readFully(builder.inputStream)));
+            } else if(byteLevelParsing) {
+                atomRecordReader = new AtomRecordReader(builder.inputStream);
+            } else {
+                bufferedReader = new BufferedReader(new InputStreamReader(builder.inputStream));
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
 
-                    // if id is missing, use hinted fall back
-                    if(idIsMissing()) {
-                        updateProteinIdentifier(builder.hintProteinName);
-                    }
-                    protein.setTitle(titleString.length() > 0 ? titleString.toString() : DEFAULT_PROTEIN_TITLE);
-                }
+        if(atomSiteReader != null) {
+            parseAtomSiteHeader();
+        }
+    }
+
+    /**
+     * Reads the remaining content of a stream into memory - required for BinaryCIF data, which is decoded by random
+     * access.
+     */
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Assigns the header information provided by an atom site reader - the counterpart of the <tt>HEADER</tt> and
+     * <tt>TITLE</tt> records of <tt>PDB</tt> files.
+     */
+    private void parseAtomSiteHeader() {
+        String entryId = atomSiteReader.getEntryId();
+        if(entryId != null) {
+            protein.setProteinIdentifier(IdentifierFactory.createProteinIdentifier(entryId));
+        }
+
+        String classification = atomSiteReader.getClassification();
+        protein.setClassification(classification != null && !classification.isEmpty() ? classification :
+                ProteinIdentifier.UNKNOWN_PROTEIN_IDENTIFIER.getAdditionalName());
+
+        String depositionDate = atomSiteReader.getDepositionDate();
+        if(depositionDate != null) {
+            try {
+                protein.setDepositionDate(LocalDate.parse(depositionDate));
+            } catch (Exception e) {
+                logger.warn("failed to parse depositionDate '{}'", depositionDate, e);
             }
+        }
 
-            if(builder.forceProteinName != null) {
-                updateProteinIdentifier(builder.forceProteinName);
+        String title = atomSiteReader.getTitle();
+        if(title != null) {
+            titleString.append(title);
+        }
+    }
+
+    /**
+     * Parses the first model of the input, all further models are ignored.
+     * @return the parsed structure
+     */
+    private Structure parseFirstModel() {
+        try {
+            while(!passedModel && processNextLine()) {
+                // all work is done by processNextLine
             }
+            completeModel();
+            return protein;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         } finally {
-            try {
-                builder.inputStream.close();
-            } catch (IOException e) {
-               logger.warn("failed to close InputStream while parsing",
-                       e);
+            close();
+        }
+    }
+
+    /**
+     * Parses the next model of the input.
+     * @return the next model or <code>null</code> when the input contains no further atoms
+     * @throws IOException if reading fails
+     */
+    private Structure parseNextModel() throws IOException {
+        if(endOfInput) {
+            return null;
+        }
+
+        if(updatingSharedTopology) {
+            sharedAtomIndex = 0;
+        } else if(sharedAtoms == null && !protein.getChains().isEmpty()) {
+            // a previous model was reported - start over with a new instance sharing the header information
+            protein = protein.createShallowCopy();
+            currentChain = null;
+            currentGroup = null;
+            terminatedChains.clear();
+        }
+
+        while(!passedModel) {
+            if(!processNextLine()) {
+                endOfInput = true;
+                break;
+            }
+        }
+        passedModel = false;
+
+        if(updatingSharedTopology) {
+            if(sharedAtomIndex == 0) {
+                return null;
+            }
+            if(sharedAtomIndex != sharedAtoms.size()) {
+                throw new ParsingException("model contains " + sharedAtomIndex + " atoms whereas the shared topology " +
+                        "consists of " + sharedAtoms.size() + " atoms");
+            }
+            return protein;
+        }
+
+        if(protein.getChains().isEmpty()) {
+            return null;
+        }
+
+        completeModel();
+        if(sharedAtoms != null && !endOfInput) {
+            // all following models only update the coordinates of this instance
+            updatingSharedTopology = true;
+        }
+        return protein;
+    }
+
+    /**
+     * Reads and processes the next line of the input by the configured parsing engine.
+     * @return <code>false</code> if the end of the input was reached
+     * @throws IOException if reading fails
+     */
+    private boolean processNextLine() throws IOException {
+        if(atomSiteReader != null) {
+            return processNextAtom();
+        }
+
+        if(byteLevelParsing) {
+            if(!atomRecordReader.nextLine()) {
+                return false;
+            }
+            parseBytesChecked(atomRecordReader);
+        } else {
+            String line = bufferedReader.readLine();
+            if(line == null) {
+                return false;
             }
+            parseLineChecked(line);
+        }
+        return true;
+    }
+
+    /**
+     * Processes the next row of the atom site reader. A change of the model number marks the end of a model, the row is
+     * then kept for the next invocation.
+     * @return <code>false</code> if there are no further atoms
+     * @throws IOException if reading fails
+     */
+    private boolean processNextAtom() throws IOException {
+        if(!pendingAtom && !atomSiteReader.nextAtom()) {
+            return false;
+        }
+        pendingAtom = false;
+
+        int modelNumber = atomSiteReader.getModelNumber();
+        if(currentModelNumber == NO_MODEL) {
+            currentModelNumber = modelNumber;
+        } else if(modelNumber != currentModelNumber) {
+            currentModelNumber = modelNumber;
+            pendingAtom = true;
+            passedModel = true;
+            return true;
+        }
+
+        parseAtomSiteChecked();
+        return true;
+    }
+
+    /**
+     * Assigns information which is only available after all records of a model have been processed.
+     */
+    private void completeModel() {
+        // if id is missing, use hinted fall back
+        if(idIsMissing()) {
+            updateProteinIdentifier(builder.hintProteinName);
+        }
+        protein.setTitle(titleString.length() > 0 ? titleString.toString() : DEFAULT_PROTEIN_TITLE);
+
+        if(builder.forceProteinName != null) {
+            updateProteinIdentifier(builder.forceProteinName);
         }
     }
 
+    private void close() {
+        if(builder.inputStream == null) {
+            // memory-mapped input
+            return;
+        }
+
+        try {
+            builder.inputStream.close();
+        } catch (IOException e) {
+            logger.warn("failed to close InputStream while parsing",
+                    e);
+        }
+    }
+
+    /**
+     * Streams all models of the input. The input is read once and lazily, i.e. only one model is held in memory at
+     * any time as long as the consumer does not retain previous models.
+     * @param shareTopology if <code>true</code>, the first model is reused and all further models merely update its
+     *                      coordinates
+     * @return a stream of all models
+     */
+    private Stream<Structure> streamModels(boolean shareTopology) {
+        if(shareTopology) {
+            sharedAtoms = new ArrayList<>();
+        }
+
+        Iterator<Structure> iterator = new Iterator<Structure>() {
+            private Structure next;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if(next == null && !exhausted) {
+                    try {
+                        next = parseNextModel();
+                    } catch (IOException e) {
+                        close();
+                        throw new UncheckedIOException(e);
+                    }
+                    if(next == null) {
+                        exhausted = true;
+                        close();
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Structure next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Structure model = next;
+                next = null;
+                return model;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
     private void updateProteinIdentifier(ProteinIdentifier proteinIdentifier) {
         protein.setProteinIdentifier(proteinIdentifier);
         protein.chains().forEach(chain -> {
@@ -122,15 +383,265 @@ public class StructureParser {
         }
     }
 
+    /**
+     * The byte-level counterpart of {@link #parseLineChecked(String)}. <tt>ATOM</tt> and <tt>HETATM</tt> records are
+     * decoded directly from the line buffer, all other (considerably rarer) records are delegated to the String-based
+     * implementation.
+     * @param reader the reader pointing to the line to parse
+     */
+    private void parseBytesChecked(AtomRecordReader reader) {
+        boolean isAtomLine = reader.startsWith(Atom.ATOM_PREFIX);
+        boolean isHetAtmLine = !isAtomLine && reader.startsWith(Atom.HETATM_PREFIX);
+        if(!isAtomLine && !isHetAtmLine) {
+            parseLineChecked(reader.getLine());
+            return;
+        }
+
+        try {
+            parseAtomRecord(reader, isHetAtmLine);
+        } catch (StringIndexOutOfBoundsException | NumberFormatException e) {
+            if(strictMode) {
+                throw new ParsingException("PDB parsing failed for line:" + System.lineSeparator() + "'" +
+                        reader.getLine() + "'", e);
+            } else {
+                logger.debug("PDB parsing failed for line:{}'{}'{}cause: {}", System.lineSeparator(),
+                        reader.getLine(), System.lineSeparator(), e);
+            }
+        }
+    }
+
+    private void parseAtomSiteChecked() {
+        try {
+            parseAtomSite();
+        } catch (NumberFormatException e) {
+            if(strictMode) {
+                throw new ParsingException("parsing failed for atom " + atomSiteReader.getAtomName() + " of residue " +
+                        atomSiteReader.getResidueName(), e);
+            } else {
+                logger.debug("parsing failed for atom {} of residue {}, cause: {}", atomSiteReader.getAtomName(),
+                        atomSiteReader.getResidueName(), e);
+            }
+        }
+    }
+
+    /**
+     * Parses the current row of the atom site reader. Mirrors {@link #parseLine(String)}, however, ligands are
+     * recognized by the absence of a label sequence id rather than by <tt>TER</tt> records.
+     */
+    private void parseAtomSite() {
+        AtomSiteReader reader = atomSiteReader;
+        boolean isHetAtm = reader.isHetAtm();
+        if(skipHetAtms && isHetAtm) {
+            return;
+        }
+
+        String atomName = reader.getAtomName();
+        String pdbName = reader.getResidueName();
+        String elementSymbol = reader.getElementSymbol();
+        Element element;
+        if(elementSymbol.isEmpty()) {
+            element = Element.resolveFullAtomName(atomName, isHetAtm);
+        } else {
+            element = Element.resolveElementSymbol(elementSymbol);
+        }
+        if(skipHydrogens && element.isHydrogen()) {
+            return;
+        }
+
+        if(updatingSharedTopology) {
+            updateSharedAtom(atomName, reader.getResidueNumber(), reader.getX(), reader.getY(), reader.getZ());
+            return;
+        }
+
+        String rawChainId = reader.getChainId();
+        rawChainId = rawChainId == null ? Chain.UNKNOWN_CHAIN.getChainIdentifier().getChainId() : rawChainId;
+        selectGroup(rawChainId, reader.getResidueNumber(), reader.getInsertionCode(), pdbName, !reader.isPolymer());
+
+        float occupancy = reader.getOccupancy();
+        if(Float.isNaN(occupancy)) {
+            if(strictMode) {
+                throw new ParsingException("missing occupancy for atom " + atomName);
+            }
+            occupancy = Atom.DEFAULT_OCCUPANCY;
+        }
+
+        float bfactor = reader.getBfactor();
+        if(Float.isNaN(bfactor)) {
+            if(strictMode) {
+                throw new ParsingException("missing bfactor for atom " + atomName);
+            }
+            bfactor = Atom.DEFAULT_BFACTOR;
+        }
+
+        Atom atom = Atom.builder(element, new double[] { reader.getX(), reader.getY(), reader.getZ() })
+                .name(atomName)
+                .pdbSerial(reader.getPdbSerial())
+                .occupancy(occupancy)
+                .bfactor(bfactor)
+                .alternativeLocation(reader.getAlternativeLocation())
+                .build();
+
+        addAtom(atom);
+    }
+
+    /**
+     * Parses the current <tt>ATOM</tt> or <tt>HETATM</tt> record of a reader. Column layout and the order of
+     * evaluation mirror {@link #parseLine(String)}, so both parsing engines create identical structures.
+     * @param reader the reader pointing to the record
+     * @param isHetAtmLine <code>true</code> for <tt>HETATM</tt> records
+     */
+    private void parseAtomRecord(AtomRecordReader reader, boolean isHetAtmLine) {
+        if(skipHetAtms && isHetAtmLine) {
+            return;
+        }
+
+        reader.requireLength(78);
+        String atomName = reader.atomName(12, 16);
+        String pdbName = reader.residueName(17, 20);
+        Element element = reader.element(76, 78);
+        if(element == null) {
+            // fallback for PDB files lacking annotation of elements
+            element = Element.resolveFullAtomName(atomName, isHetAtmLine);
+        }
+        if(skipHydrogens && element.isHydrogen()) {
+            return;
+        }
+
+        if(updatingSharedTopology) {
+            updateSharedAtom(atomName,
+                    reader.parseInt(22, 26),
+                    reader.parseDouble(30, 38),
+                    reader.parseDouble(38, 46),
+                    reader.parseDouble(46, 54));
+            return;
+        }
+
+        String alternativeLocationIndicator = reader.character(16);
+        String rawChainId = reader.rawCharacter(21);
+        rawChainId = rawChainId.equals(" ") ? Chain.UNKNOWN_CHAIN.getChainIdentifier().getChainId() : rawChainId;
+        int resNum = reader.parseInt(22, 26);
+        String insertionCode = reader.character(26);
+
+        selectGroup(rawChainId, resNum, insertionCode, pdbName, false);
+
+        float occupancy;
+        try {
+            occupancy = reader.parseFloat(54, 60);
+        } catch (NumberFormatException e) {
+            if(strictMode) {
+                throw new ParsingException(e);
+            } else {
+                logger.debug("missing occupancy in line{}'{}'", System.lineSeparator(), reader.getLine());
+                occupancy = Atom.DEFAULT_OCCUPANCY;
+            }
+        }
+
+        float bfactor;
+        try {
+            bfactor = reader.parseFloat(60, 66);
+        } catch (NumberFormatException e) {
+            if(strictMode) {
+                throw new ParsingException(e);
+            } else {
+                logger.debug("missing bfactor in line{}'{}'", System.lineSeparator(), reader.getLine());
+                bfactor = Atom.DEFAULT_BFACTOR;
+            }
+        }
+
+        Atom atom = Atom.builder(element,
+                new double[] { reader.parseDouble(30, 38),
+                        reader.parseDouble(38, 46),
+                        reader.parseDouble(46, 54)
+                })
+                .name(atomName)
+                .pdbSerial(reader.parseInt(6, 11))
+                .occupancy(occupancy)
+                .bfactor(bfactor)
+                .alternativeLocation(alternativeLocationIndicator)
+                .build();
+
+        addAtom(atom);
+    }
+
+    /**
+     * Registers an atom to the current group.
+     * @param atom the parsed atom
+     */
+    private void addAtom(Atom atom) {
+        currentGroup.addAtom(atom);
+        if(sharedAtoms != null) {
+            sharedAtoms.add(atom);
+        }
+    }
+
+    /**
+     * Assigns the coordinates of an atom of the current model to the corresponding atom of the shared topology.
+     * @param atomName the parsed atom name
+     * @param resNum the parsed residue number
+     * @param x the parsed x coordinate
+     * @param y the parsed y coordinate
+     * @param z the parsed z coordinate
+     */
+    private void updateSharedAtom(String atomName, int resNum, double x, double y, double z) {
+        if(sharedAtomIndex == sharedAtoms.size()) {
+            throw new ParsingException("model contains more atoms than the shared topology");
+        }
+
+        Atom atom = sharedAtoms.get(sharedAtomIndex);
+        if(!atom.getName().equals(atomName) || atom.getParentGroup().getResidueIdentifier().getResidueNumber() != resNum) {
+            throw new ParsingException("model deviates from shared topology - expected " + atom + ", found " +
+                    atomName + " of residue " + resNum);
+        }
+
+        // coordinates of compacted atoms are updated in their block, registering the change for derived data
+        atom.setCoordinates(x, y, z);
+        sharedAtomIndex++;
+    }
+
+    /**
+     * Updates the references to the current chain and group. New model instances are created when either the chain or
+     * the residue changed.
+     * @param rawChainId the parsed chain id
+     * @param resNum the parsed residue number
+     * @param insertionCode the parsed insertion code
+     * @param pdbName the parsed three-letter-code of the group
+     * @param forceLigand <code>true</code> if the group is known to be a ligand, otherwise groups are considered ligands
+     *                    when they occur after the <tt>TER</tt> record of their chain
+     */
+    private void selectGroup(String rawChainId, int resNum, String insertionCode, String pdbName, boolean forceLigand) {
+        if(currentChain == null || !currentChain.getChainIdentifier().getChainId().equals(rawChainId) ||
+                !protein.getProteinIdentifier().equals(currentChain.getChainIdentifier().getProteinIdentifier())) {
+            ChainIdentifier chainId = IdentifierFactory.createChainIdentifier(protein.getProteinIdentifier(), rawChainId);
+            Optional<Chain> selectedChain = protein.select()
+                    .chainName(chainId.getChainId())
+                    .asOptionalChain();
+            if(selectedChain.isPresent()) {
+                // chain already present - just an het-group not directly connected
+                currentChain = selectedChain.get();
+            } else {
+                // chain changed - create new chain object and set reference
+                currentChain = new Chain(chainId);
+                protein.addChain(currentChain);
+            }
+        }
+
+        if(currentGroup == null || currentGroup.getResidueIdentifier().getResidueNumber() != resNum ||
+                !currentGroup.getResidueIdentifier().getInsertionCode().equals(insertionCode) ||
+                currentGroup.getParentChain() != currentChain) {
+            // residue changed - create new group object and set reference
+            currentGroup = createGroup(pdbName,
+                    IdentifierFactory.createResidueIdentifier(resNum, insertionCode),
+                    forceLigand || terminatedChains.contains(currentChain),
+                    minimalParsing);
+            currentChain.addGroup(currentGroup);
+        }
+    }
+
     /**
      * Parses a single line of a <tt>PDB</tt> file.
      * @param line the line to processUniProtId
      */
     private void parseLine(String line) {
-        //TODO this is kinda hacky, however that way only the first model is parsed in any case
-        if(passedFirstModel) {
-            return;
-        }
         // indices taken from: ftp://ftp.wwpdb.org/pub/pdb/doc/format_descriptions/Format_v33_Letter.pdf
         // their column definition has certain offset to the definition of String#substring(int, int)
 
@@ -245,37 +756,22 @@ public class StructureParser {
                 return;
             }
 
+            if(updatingSharedTopology) {
+                updateSharedAtom(atomName,
+                        Integer.parseInt(line.substring(22, 26).trim()),
+                        Double.valueOf(line.substring(30, 38).trim()),
+                        Double.valueOf(line.substring(38, 46).trim()),
+                        Double.valueOf(line.substring(46, 54).trim()));
+                return;
+            }
+
             String alternativeLocationIndicator = line.substring(16, 17).trim();
             String rawChainId = line.substring(21, 22);
             rawChainId = rawChainId.equals(" ") ? Chain.UNKNOWN_CHAIN.getChainIdentifier().getChainId() : rawChainId;
-            ChainIdentifier chainId = IdentifierFactory.createChainIdentifier(protein.getProteinIdentifier(), rawChainId);
             int resNum = Integer.parseInt(line.substring(22, 26).trim());
             String insertionCode = line.substring(26, 27).trim();
 
-            if(currentChain == null || !currentChain.getChainIdentifier().equals(chainId)) {
-                Optional<Chain> selectedChain = protein.select()
-                        .chainName(chainId.getChainId())
-                        .asOptionalChain();
-                if(selectedChain.isPresent()) {
-                    // chain already present - just an het-group not directly connected
-                    currentChain = selectedChain.get();
-                } else {
-                    // chain changed - create new chain object and set reference
-                    currentChain = new Chain(chainId);
-                    protein.addChain(currentChain);
-                }
-            }
-
-            if(currentGroup == null || currentGroup.getResidueIdentifier().getResidueNumber() != resNum ||
-                    !currentGroup.getResidueIdentifier().getInsertionCode().equals(insertionCode) ||
-                    !currentGroup.getParentChain().getChainIdentifier().equals(chainId)) {
-                    // residue changed - create new group object and set reference
-                    currentGroup = createGroup(pdbName,
-                            IdentifierFactory.createResidueIdentifier(resNum, insertionCode),
-                            terminatedChains.contains(currentChain),
-                            minimalParsing);
-                    currentChain.addGroup(currentGroup);
-            }
+            selectGroup(rawChainId, resNum, insertionCode, pdbName, false);
 
             float occupancy;
             try {
@@ -315,13 +811,12 @@ public class StructureParser {
                     .build();
 
             // 17/05/22 - stopping to skip alternative positions
-            currentGroup.addAtom(atom);
+            addAtom(atom);
         }
 
         if(line.startsWith(END_MODEL_PREFIX)) {
-            //TODO handling of multiple models
-            passedFirstModel = true;
-            logger.debug("skipping models for {}", protein.getProteinIdentifier().getFullName());
+            // further models are either ignored or handled by the streaming API
+            passedModel = true;
         }
     }
 
@@ -353,8 +848,59 @@ public class StructureParser {
         return group;
     }
 
-    Structure getProtein() {
-        return protein;
+    /**
+     * The supported file formats.
+     */
+    public enum Format {
+        PDB("https://files.rcsb.org/download/%s.pdb", "%1$s/pdb%2$s.ent.gz"),
+        MMCIF("https://files.rcsb.org/download/%s.cif", "mmCIF/%1$s/%2$s.cif.gz"),
+        BINARY_CIF("https://models.rcsb.org/%s.bcif", "bcif/%1$s/%2$s.bcif.gz");
+
+        /**
+         * The URL which can be used to fetch structures by ID (format this using the id and you are good to go).
+         */
+        private final String fetchUrl;
+        /**
+         * The path of files relative to the root of a local PDB mirror (format this using the middle characters and the
+         * lower case id). <tt>PDB</tt> files reside in the root of the divided layout, e.g. <tt>ac/pdb1acj.ent.gz</tt>,
+         * the other formats in subdirectories of the root, e.g. <tt>mmCIF/ac/1acj.cif.gz</tt>.
+         */
+        private final String localFilePath;
+
+        Format(String fetchUrl, String localFilePath) {
+            this.fetchUrl = fetchUrl;
+            this.localFilePath = localFilePath;
+        }
+
+        /**
+         * Resolves the location of an entry in a local PDB mirror.
+         * @param pdbDirectory the root directory of the mirror
+         * @param pdbId the lower case id
+         * @return the path of the gzipped file
+         */
+        Path resolveLocalFile(Path pdbDirectory, String pdbId) {
+            return pdbDirectory.resolve(String.format(localFilePath, pdbId.substring(1, 3), pdbId));
+        }
+
+        /**
+         * Guesses the format of a file by its extension (<tt>.cif</tt> and <tt>.bcif</tt> optionally followed by
+         * <tt>.gz</tt>), all other files are considered to be in <tt>PDB</tt> format.
+         * @param fileName the name of the file
+         * @return the format
+         */
+        static Format ofFileName(String fileName) {
+            String name = fileName.toLowerCase();
+            if(name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            if(name.endsWith(".bcif")) {
+                return BINARY_CIF;
+            }
+            if(name.endsWith(".cif")) {
+                return MMCIF;
+            }
+            return PDB;
+        }
     }
 
     public static OptionalSteps fromInputStream(InputStream inputStream) {
@@ -375,6 +921,8 @@ public class StructureParser {
 
     public static class OptionalSteps {
         InputStream inputStream;
+        ByteBuffer byteBuffer;
+        Format format;
         private String pdbId;
         private Path path;
         boolean skipHetAtms = false;
@@ -383,11 +931,14 @@ public class StructureParser {
         boolean skipHydrogenAtoms = false;
         boolean approximateMissingAtoms = false;
         boolean minimalParsing = false;
+        boolean byteLevelParsing = false;
         ProteinIdentifier forceProteinName;
         ProteinIdentifier hintProteinName;
         //TODO remove or place in global config
         private static Path localPdbDirectory = Paths.get("/var/local/pdb/");
         private static final int DEFAULT_CACHE_SIZE = 1000;
+        private static StructureCache structureCache;
+        private int cacheSize;
 
         public static void setLocalPdbDirectory(Path localPdbDirectory) {
             OptionalSteps.localPdbDirectory = localPdbDirectory;
@@ -397,6 +948,23 @@ public class StructureParser {
             return localPdbDirectory;
         }
 
+        /**
+         * Access to the cache shared by all parse invocations in cached mode, e.g. to query hit/miss/eviction counts.
+         * @return the cache or <code>null</code> if cached mode was never requested
+         */
+        public static synchronized StructureCache getStructureCache() {
+            return structureCache;
+        }
+
+        private static synchronized StructureCache acquireStructureCache(int cacheSize) {
+            if(structureCache == null) {
+                structureCache = new StructureCache(cacheSize);
+            } else {
+                structureCache.ensureCapacity(cacheSize);
+            }
+            return structureCache;
+        }
+
         OptionalSteps(InputStream inputStream) {
             this.inputStream = inputStream;
         }
@@ -424,6 +992,33 @@ public class StructureParser {
             return this;
         }
 
+        /**
+         * Switches to the byte-level parsing engine. <tt>ATOM</tt> and <tt>HETATM</tt> records are decoded directly
+         * from the raw input without creating intermediate String objects for each field. The resulting structure is
+         * identical to that of the default engine, however, parsing is about 1.6 (1ACJ) to 2.1 (3G1H) times faster,
+         * measured with minimal parsing - building the model itself is shared by both engines.
+         * @param byteLevelParsing <code>true</code> to employ the byte-level engine
+         * @return the builder
+         */
+        public OptionalSteps byteLevelParsing(boolean byteLevelParsing) {
+            this.byteLevelParsing = byteLevelParsing;
+            return this;
+        }
+
+        /**
+         * Sets the format of the input. When omitted, files are recognized by their extension, structures requested by
+         * id are looked up in all formats in the local PDB mirror and fetched in <tt>PDB</tt> format otherwise, and
+         * InputStreams are expected to provide <tt>PDB</tt> files. BinaryCIF data is decoded by random access, thus,
+         * BinaryCIF InputStreams (as well as gzipped or fetched BinaryCIF files) are read into memory entirely, whereas
+         * uncompressed files are mapped into memory.
+         * @param format the format of the input
+         * @return the builder
+         */
+        public OptionalSteps format(Format format) {
+            this.format = format;
+            return this;
+        }
+
         public OptionalSteps strictMode(boolean strictMode) {
             this.strictMode = strictMode;
             return this;
@@ -454,48 +1049,139 @@ public class StructureParser {
             return cachedMode(DEFAULT_CACHE_SIZE);
         }
 
+        /**
+         * Keeps parsed structures in a cache shared by all parse invocations, so subsequent requests of the same
+         * <tt>PDB</tt> id (and parse options) do not hit the file system or network again. Only affects structures
+         * requested by id. Each invocation returns its own deep copy of the cached entry.
+         * @param cacheSize the number of entries to keep at least
+         * @return the builder
+         */
         public OptionalSteps cachedMode(int cacheSize) {
-            //TODO impl: keep track of loaded entries, so 2nd invocation will return a map entry
+            if(cacheSize < 1) {
+                throw new IllegalArgumentException("cache size must be positive - found " + cacheSize);
+            }
+            this.cacheSize = cacheSize;
             return this;
         }
 
         public Structure parse() {
+            if(cacheSize > 0 && pdbId != null) {
+                StructureCache.Key key = new StructureCache.Key(pdbId,
+                        skipHetAtms,
+                        skipHydrogenAtoms,
+                        minimalParsing,
+                        strictMode,
+                        forceProteinName,
+                        format,
+                        OptionalSteps.localPdbDirectory);
+                return acquireStructureCache(cacheSize).get(key, this::parseInternal);
+            }
+
+            return parseInternal();
+        }
+
+        private Structure parseInternal() {
+            openInputStream();
+            return new StructureParser(this).parseFirstModel();
+        }
+
+        /**
+         * Lazily parses all models of the input (e.g. of NMR ensembles or trajectories), each reported as an
+         * individual {@link Structure}. The input is read once and only one model is kept in memory at any time (as
+         * long as the consumer does not retain them). The returned stream should be closed when it is not consumed
+         * completely.
+         * @return a stream of all models
+         */
+        public Stream<Structure> parseModels() {
+            return parseModels(false);
+        }
+
+        /**
+         * Lazily parses all models of the input. When the topology is shared, the first model is parsed as usual and
+         * every further model only updates the coordinates of this very instance, i.e. the stream repeatedly reports
+         * the same object and no further atoms, groups or chains are created. This requires all models to consist of
+         * the same atoms in the same order. Create a deep copy of a model to retain it.
+         * @param shareTopology <code>true</code> to reuse the chains, groups and atoms of the first model
+         * @return a stream of all models
+         */
+        public Stream<Structure> parseModels(boolean shareTopology) {
+            openInputStream();
+            return new StructureParser(this).streamModels(shareTopology);
+        }
+
+        private void openInputStream() {
             try {
                 if (pdbId != null) {
                     Path pdbDirectory = OptionalSteps.localPdbDirectory;
-                    try {
-                        if (pdbDirectory != null && Files.isDirectory(pdbDirectory)) {
-                            logger.debug("using local PDB to provide {}", pdbId);
-                            // use local PDB if setup
-                            pdbId = pdbId.toLowerCase();
-                            String middle = pdbId.substring(1, 3);
-                            this.inputStream = new GZIPInputStream(Files.newInputStream(pdbDirectory.resolve(middle).resolve("pdb" + pdbId + ".ent.gz")));
-                        }
-                    } catch (IOException e) {
-//                        logger.warn("did not find file {} in local PDB at {}", pdbId, pdbDirectory, e);
+                    if (pdbDirectory != null && Files.isDirectory(pdbDirectory)) {
+                        logger.debug("using local PDB to provide {}", pdbId);
+                        // use local PDB if setup
+                        openLocalFile(pdbDirectory);
                     }
                     if(this.inputStream == null) {
                         // no local PDB found - fetch from www
-                        this.inputStream = new URL(String.format(PDB_FETCH_URL, pdbId)).openStream();
+                        if(format == null) {
+                            format = Format.PDB;
+                        }
+                        this.inputStream = new URL(String.format(format.fetchUrl, pdbId)).openStream();
                     }
                 }
 
                 if (path != null) {
-                    this.inputStream = Files.newInputStream(path);
+                    String fileName = path.toFile().getName();
+                    if(format == null) {
+                        format = Format.ofFileName(fileName);
+                    }
+                    boolean compressed = fileName.toLowerCase().endsWith(".gz");
+                    if(format == Format.BINARY_CIF && !compressed) {
+                        // binary files are accessed directly by mapping them into memory
+                        try(FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                            this.byteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                        }
+                    } else {
+                        this.inputStream = compressed ? new GZIPInputStream(Files.newInputStream(path)) :
+                                Files.newInputStream(path);
+                    }
 
                     if(forceProteinName == null) {
-                        String fileName = path.toFile().getName();
+                        if(compressed) {
+                            fileName = fileName.substring(0, fileName.length() - 3);
+                        }
                         // will cause file names containing multiple '.' to drop information: pdbFile.getName().split("\\.")[0]
                         int end = fileName.lastIndexOf(".");
                         end = end != -1 ? end : fileName.length();
                         forceProteinName = IdentifierFactory.createProteinIdentifier("", fileName.substring(0, end));
                     }
                 }
+
+                if(format == null) {
+                    format = Format.PDB;
+                }
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
+        }
 
-            return new StructureParser(this).getProtein();
+        /**
+         * Looks up the requested id in a local PDB mirror - either in the requested format or, if none was specified,
+         * in any format.
+         * @param pdbDirectory the root directory of the mirror
+         */
+        private void openLocalFile(Path pdbDirectory) {
+            pdbId = pdbId.toLowerCase();
+            for(Format candidate : format != null ? new Format[] { format } : Format.values()) {
+                Path file = candidate.resolveLocalFile(pdbDirectory, pdbId);
+                if(!Files.exists(file)) {
+                    continue;
+                }
+                try {
+                    this.inputStream = new GZIPInputStream(Files.newInputStream(file));
+                    format = candidate;
+                    return;
+                } catch (IOException e) {
+                    logger.warn("failed to read {} from local PDB at {}", file, pdbDirectory, e);
+                }
+            }
         }
     }
 }
\ No newline at end of file
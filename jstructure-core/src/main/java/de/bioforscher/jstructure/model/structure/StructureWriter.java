@@ -0,0 +1,239 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.model.structure.container.AtomContainer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Streams the <tt>PDB</tt> representation of a container (<tt>HEADER</tt>, <tt>ATOM</tt>, <tt>HETATM</tt>,
+ * <tt>TER</tt> and <tt>END</tt> records) to a target without composing the whole file as {@link String}. The output is
+ * identical to {@link AtomContainer#getPdbRepresentation()}, byte-oriented targets are written in UTF-8.
+ */
+public class StructureWriter {
+    /**
+     * Records are collected till this many characters are buffered, then they are passed to the target.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private StructureWriter() {
+        // deny instantiation
+    }
+
+    /**
+     * Writes a container to a file.
+     * @param atomContainer the container to write
+     * @param path the output file
+     */
+    public static void write(AtomContainer atomContainer, Path path) {
+        try(OutputStream outputStream = Files.newOutputStream(path)) {
+            write(atomContainer, outputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a container to a stream. The stream is not closed.
+     * @param atomContainer the container to write
+     * @param outputStream the target
+     */
+    public static void write(AtomContainer atomContainer, OutputStream outputStream) {
+        ByteSink byteSink = new ByteSink() {
+            @Override
+            void write(byte[] bytes, int length) throws IOException {
+                outputStream.write(bytes, 0, length);
+            }
+        };
+        try {
+            write(atomContainer, byteSink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a container to a byte buffer, starting at its current position.
+     * @param atomContainer the container to write
+     * @param byteBuffer the target
+     * @throws BufferOverflowException if the buffer has insufficient remaining capacity
+     */
+    public static void write(AtomContainer atomContainer, ByteBuffer byteBuffer) {
+        ByteSink byteSink = new ByteSink() {
+            @Override
+            void write(byte[] bytes, int length) {
+                byteBuffer.put(bytes, 0, length);
+            }
+        };
+        try {
+            write(atomContainer, byteSink);
+        } catch (IOException e) {
+            // cannot happen for buffers
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a container to a writer. The writer is not closed.
+     * @param atomContainer the container to write
+     * @param writer the target
+     */
+    public static void write(AtomContainer atomContainer, Writer writer) {
+        try {
+            write(atomContainer, (chars, length) -> writer.write(chars, 0, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Composes the <tt>PDB</tt> representation of a container.
+     * @param atomContainer the container to write
+     * @return the whole file content
+     */
+    public static String toPdbString(AtomContainer atomContainer) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            write(atomContainer, (chars, length) -> stringBuilder.append(chars, 0, length));
+        } catch (IOException e) {
+            // cannot happen for string builders
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Composes the <tt>PDB</tt> representation of atoms which are already in their desired order.
+     * @param sortedAtoms the atoms to write
+     * @param structure the structure providing the <tt>HEADER</tt> record
+     * @return the whole file content
+     */
+    public static String toPdbString(List<Atom> sortedAtoms, Structure structure) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            write(sortedAtoms, structure, (chars, length) -> stringBuilder.append(chars, 0, length));
+        } catch (IOException e) {
+            // cannot happen for string builders
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder.toString();
+    }
+
+    private static void write(AtomContainer atomContainer, CharSink charSink) throws IOException {
+        List<Atom> atoms = atomContainer.getAtoms();
+        Structure structure;
+        try {
+            structure = atoms.get(0).getParentGroup().getParentChain().getParentStructure();
+        } catch (Exception e) {
+            structure = Structure.UNKNOWN_STRUCTURE;
+        }
+
+        // ensure ordering of atoms according to their pdbSerials
+        write(sortByPdbSerial(atoms), structure, charSink);
+    }
+
+    private static List<Atom> sortByPdbSerial(List<Atom> atoms) {
+        for(int i = 1; i < atoms.size(); i++) {
+            if(atoms.get(i - 1).getPdbSerial() > atoms.get(i).getPdbSerial()) {
+                List<Atom> sortedAtoms = new ArrayList<>(atoms);
+                sortedAtoms.sort(Comparator.comparingInt(Atom::getPdbSerial));
+                return sortedAtoms;
+            }
+        }
+        return atoms;
+    }
+
+    private static void write(List<Atom> sortedAtoms, Structure structure, CharSink charSink) throws IOException {
+        AtomRecordProvider.RecordBuilder recordBuilder = new AtomRecordProvider.RecordBuilder(BUFFER_SIZE + 256);
+        recordBuilder.append(structure.getHeader());
+
+        boolean containsPolymerAtoms = false;
+        for(Atom atom : sortedAtoms) {
+            if(!atom.getParentGroup().isLigand()) {
+                containsPolymerAtoms = true;
+                break;
+            }
+        }
+        int previousPdbSerial = 0;
+        Group previousGroup = null;
+        Chain previousChain = null;
+        Set<Chain> terminatedChains = new HashSet<>();
+        // whether a chain contains anything besides ligands - only polymer chains require a TER record
+        Map<Chain, Boolean> polymerChains = new HashMap<>();
+
+        for(Atom atom : sortedAtoms) {
+            Group currentGroup = atom.getParentGroup();
+            Chain currentChain = currentGroup.getParentChain();
+
+            // chain changed and previous chain was not yet terminated
+            if(previousChain != null) {
+                if (!currentChain.equals(previousChain) && !terminatedChains.contains(previousChain)) {
+                    terminatedChains.add(previousChain);
+                    AtomRecordProvider.appendTerminateRecord(recordBuilder, previousChain, previousGroup, previousPdbSerial);
+                    // the current group is a ligand, but the current chain was not yet terminated
+                } else if (currentGroup.isLigand() && !terminatedChains.contains(currentChain) && containsPolymerAtoms) {
+                    if(polymerChains.computeIfAbsent(currentChain, chain -> chain.groups().count() != chain.ligands().count())) {
+                        terminatedChains.add(currentChain);
+                        AtomRecordProvider.appendTerminateRecord(recordBuilder, currentChain, previousGroup, previousPdbSerial);
+                    }
+                }
+            }
+            previousPdbSerial = atom.getPdbSerial();
+            previousGroup = currentGroup;
+            previousChain = currentChain;
+
+            // print ATOM record as usual
+            AtomRecordProvider.appendAtomRecord(recordBuilder, atom);
+            recordBuilder.append(AtomRecordProvider.LINE_SEPARATOR);
+
+            if(recordBuilder.length() >= BUFFER_SIZE) {
+                charSink.write(recordBuilder.chars(), recordBuilder.length());
+                recordBuilder.clear();
+            }
+        }
+
+        recordBuilder.append("END")
+                .append(AtomRecordProvider.LINE_SEPARATOR);
+        charSink.write(recordBuilder.chars(), recordBuilder.length());
+    }
+
+    @FunctionalInterface
+    private interface CharSink {
+        void write(char[] chars, int length) throws IOException;
+    }
+
+    /**
+     * Encodes buffered records - which are usually plain ASCII - before passing them to a byte-oriented target.
+     */
+    private static abstract class ByteSink implements CharSink {
+        private byte[] bytes = new byte[BUFFER_SIZE + 256];
+
+        @Override
+        public void write(char[] chars, int length) throws IOException {
+            if(bytes.length < length) {
+                bytes = new byte[length];
+            }
+            for(int i = 0; i < length; i++) {
+                char c = chars[i];
+                if(c >= 0x80) {
+                    // records are flushed as a whole, so there are no split surrogate pairs
+                    byte[] encoded = new String(chars, 0, length).getBytes(StandardCharsets.UTF_8);
+                    write(encoded, encoded.length);
+                    return;
+                }
+                bytes[i] = (byte) c;
+            }
+            write(bytes, length);
+        }
+
+        abstract void write(byte[] bytes, int length) throws IOException;
+    }
+}
@@ -4,8 +4,11 @@ import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
 import de.bioforscher.jstructure.model.structure.*;
 
 import java.lang.reflect.Field;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -29,6 +32,12 @@ public abstract class AminoAcid extends Group implements StandardAminoAcidIndica
             BACKBONE_NITROGEN_NAME,
             BACKBONE_OXYGEN_NAME,
             BACKBONE_HYDROGEN_NAME).collect(Collectors.toSet());
+    private static final ClassValue<Map<String, Optional<Field>>> ATOM_FIELDS = new ClassValue<Map<String, Optional<Field>>>() {
+        @Override
+        protected Map<String, Optional<Field>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
     private static final Set<String> ASSIGNABLE_ATOM_NAMES = Stream.of("ca",
             "c",
             "n",
@@ -210,6 +219,13 @@ public abstract class AminoAcid extends Group implements StandardAminoAcidIndica
                 0.0,
                 0.0);
 
+        /**
+         * Three-letter-codes are resolved for every parsed group, so they are looked up in a map (first family wins).
+         */
+        private static final Map<String, Family> THREE_LETTER_CODES = Stream.of(values())
+                .collect(Collectors.toMap(family -> family.getThreeLetterCode().toUpperCase(),
+                        Function.identity(),
+                        (family1, family2) -> family1));
         private Class<? extends AminoAcid> representingClass;
         private GroupPrototype groupPrototype;
         private double maximumAccessibleSurfaceArea;
@@ -283,10 +299,7 @@ public abstract class AminoAcid extends Group implements StandardAminoAcidIndica
         }
 
         public static Family resolveThreeLetterCode(String threeLetterCode) {
-            return Stream.of(Family.values())
-                    .filter(aminoAcid -> threeLetterCode.equalsIgnoreCase(aminoAcid.getThreeLetterCode()))
-                    .findFirst()
-                    .orElse(Family.UNKNOWN_AMINO_ACID);
+            return THREE_LETTER_CODES.getOrDefault(threeLetterCode.toUpperCase(), Family.UNKNOWN_AMINO_ACID);
         }
 
         public static Family resolveGroupPrototype(GroupPrototype groupPrototype) {
@@ -341,13 +354,7 @@ public abstract class AminoAcid extends Group implements StandardAminoAcidIndica
      * @return
      */
     public int getAminoAcidIndex() {
-        // determine residue index and subtract number of non-amino acids
-        int residueIndex = getResidueIndex();
-        int offset = (int) getParentChain().groups()
-                .limit(residueIndex)
-                .filter(group -> !group.isAminoAcid())
-                .count();
-        return residueIndex - offset;
+        return getParentChain().getAminoAcidIndex(this);
     }
 
     AminoAcid(AminoAcid aminoAcid, boolean deep) {
@@ -444,29 +451,40 @@ public abstract class AminoAcid extends Group implements StandardAminoAcidIndica
             return;
         }
 
-        try {
-            // find field in AminoAcid or child classes
-            Field field = ASSIGNABLE_ATOM_NAMES.contains(fieldName) ?
-                    this.getClass().getSuperclass().getDeclaredField(fieldName) :
-                    this.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            Object fieldContent = field.get(this);
-
-            // protect already set fields
-            if (fieldContent != null) {
-                return;
-            }
-
-            field.set(this, atom);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
+        // find field in AminoAcid or child classes - lookups are cached per class as reflection is costly
+        Optional<Field> field = ATOM_FIELDS.get(getClass()).computeIfAbsent(fieldName, this::findAtomField);
+        if(!field.isPresent()) {
             if(!this.isStandardAminoAcid()) {
                 logger.warn("missing field for atom {} in class {} for group {}-{}",
                         atom.getName(),
                         this.getClass().getSimpleName(),
                         this.getThreeLetterCode(),
-                        this.getResidueIdentifier(),
-                        e);
+                        this.getResidueIdentifier());
             }
+            return;
+        }
+
+        try {
+            // protect already set fields
+            if (field.get().get(this) != null) {
+                return;
+            }
+
+            field.get().set(this, atom);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Optional<Field> findAtomField(String fieldName) {
+        try {
+            Field field = ASSIGNABLE_ATOM_NAMES.contains(fieldName) ?
+                    this.getClass().getSuperclass().getDeclaredField(fieldName) :
+                    this.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return Optional.of(field);
+        } catch (NoSuchFieldException e) {
+            return Optional.empty();
         }
     }
 
@@ -493,13 +511,9 @@ public abstract class AminoAcid extends Group implements StandardAminoAcidIndica
      * @return an optional wrapping the amino acid with the given offset
      */
     public Optional<AminoAcid> getAminoAcidWithOffset(int offset) {
-        try {
-            Chain chain = getParentChain();
-            int index = chain.getGroups().indexOf(this);
-            return Optional.of((AminoAcid) chain.getGroups().get(index + offset));
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+        return getParentChain().getGroupWithOffset(this, offset)
+                .filter(AminoAcid.class::isInstance)
+                .map(AminoAcid.class::cast);
     }
 
     /**
@@ -27,6 +27,12 @@ public class UnknownAminoAcid extends AminoAcid implements StandardAminoAcid {
         this(threeLetterCode, residueIdentifier, false);
     }
 
+    public UnknownAminoAcid(GroupPrototype groupPrototype,
+                            ResidueIdentifier residueIdentifier,
+                            boolean ligand) {
+        super(groupPrototype, residueIdentifier, ligand);
+    }
+
     public Atom getCg() {
         return cg;
     }
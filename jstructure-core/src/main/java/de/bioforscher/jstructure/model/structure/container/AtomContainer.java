@@ -3,16 +3,11 @@ package de.bioforscher.jstructure.model.structure.container;
 import de.bioforscher.jstructure.mathematics.Calculable;
 import de.bioforscher.jstructure.mathematics.LinearAlgebra;
 import de.bioforscher.jstructure.model.structure.Atom;
-import de.bioforscher.jstructure.model.structure.Chain;
-import de.bioforscher.jstructure.model.structure.Group;
 import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureWriter;
 import de.bioforscher.jstructure.model.structure.selection.Selectable;
 
-import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -36,87 +31,10 @@ public interface AtomContainer extends StructureContainer, Selectable,
     }
 
     default String getPdbRepresentation() {
-        Structure structure;
-        try {
-            structure = getAtoms().get(0).getParentGroup().getParentChain().getParentStructure();
-        } catch (Exception e) {
-            structure = Structure.UNKNOWN_STRUCTURE;
-        }
-
-        // ensure ordering of atoms according to their pdbSerials
-        List<Atom> sortedAtoms = atoms()
-                .sorted(Comparator.comparingInt(Atom::getPdbSerial))
-                .collect(Collectors.toList());
-//
-//        // implicitly renumber atoms
-//        for(int i = 0; i < sortedAtoms.size(); i++) {
-//            Atom atom = sortedAtoms.get(i);
-//            atom.setPdbSerial(i + 1);
-//        }
-
-        return getPdbRepresentation(sortedAtoms, structure);
-//        return getPdbRepresentation(getAtoms(), structure);
+        return StructureWriter.toPdbString(this);
     }
 
     static String getPdbRepresentation(List<Atom> sortedAtoms, Structure protein) {
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(protein.getHeader());
-
-        boolean containsPolymerAtoms = sortedAtoms.stream()
-                .map(Atom::getParentGroup)
-                .distinct()
-                .anyMatch(group -> !group.isLigand());
-        int previousPdbSerial = 0;
-        Group previousGroup = null;
-        Chain previousChain = null;
-        Set<Chain> terminatedChains = new HashSet<>();
-
-        for(Atom atom : sortedAtoms) {
-            Group currentGroup = atom.getParentGroup();
-            Chain currentChain = currentGroup.getParentChain();
-            boolean currentGroupIsInTerminatedChain = currentGroup.isLigand();
-            boolean previousChainIsNotMarkedAsTerminated = !terminatedChains.contains(previousChain);
-            boolean currentChainIsNotMarkedAsTerminated = !terminatedChains.contains(currentChain);
-
-            // chain changed and previous chain was not yet terminated
-            if(previousChain != null) {
-                if (!currentChain.equals(previousChain) && previousChainIsNotMarkedAsTerminated) {
-                    terminatedChains.add(previousChain);
-                    writeTerminateRecord(stringBuilder, previousChain, previousGroup, previousPdbSerial);
-                    // the current group is a ligand, but the current chain was not yet terminated
-                } else if (currentGroupIsInTerminatedChain && currentChainIsNotMarkedAsTerminated && containsPolymerAtoms) {
-                    // check if chain needs TER record (only polymer chains require it)
-                    if(currentChain.groups().count() != currentChain.ligands().count()) {
-                        terminatedChains.add(currentChain);
-                        writeTerminateRecord(stringBuilder, currentChain, previousGroup, previousPdbSerial);
-                    }
-                }
-            }
-            previousPdbSerial = atom.getPdbSerial();
-            previousGroup = currentGroup;
-            previousChain = currentChain;
-
-            // print ATOM record as usual
-            stringBuilder.append(atom.getPdbRepresentation())
-                    .append(System.lineSeparator());
-        }
-
-        stringBuilder.append("END")
-                .append(System.lineSeparator());
-
-        return stringBuilder.toString();
-    }
-
-    static void writeTerminateRecord(StringBuilder stringBuilder, Chain chain, Group previousGroup, int previousPdbSerial) {
-        // TER     961      ASP A  62
-        stringBuilder.append("TER   ")
-                .append(String.format("%5d", (previousPdbSerial + 1)))
-                .append("      ")
-                .append(previousGroup.getThreeLetterCode())
-                .append(" ")
-                .append(chain.getChainIdentifier().getChainId())
-                .append(String.format("%4d", previousGroup.getResidueIdentifier().getResidueNumber()))
-                .append(previousGroup.getResidueIdentifier().getInsertionCode())
-                .append(System.lineSeparator());
+        return StructureWriter.toPdbString(sortedAtoms, protein);
     }
-}
\ No newline at end of file
+}
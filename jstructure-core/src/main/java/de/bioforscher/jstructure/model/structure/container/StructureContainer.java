@@ -9,9 +9,9 @@ import de.bioforscher.jstructure.model.structure.Structure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -39,7 +39,7 @@ public interface StructureContainer extends Featureable, AtomRecordWriter, Copya
      */
     @Override
     default <C extends FeatureContainerEntry> C getFeature(Class<C> contentClass) {
-        Optional<C> optional = getFeatureContainer().getFeatureOptional(contentClass);
+        Optional<C> optional = getFeatureOptional(contentClass);
         if(optional.isPresent()) {
             return optional.get();
         } else {
@@ -48,7 +48,7 @@ public interface StructureContainer extends Featureable, AtomRecordWriter, Copya
                     contentClass.getSimpleName(),
                     featureProvider.getClass().getSimpleName());
             featureProvider.process(getParentStructure());
-            return getFeatureContainer().getFeatureOptional(contentClass).orElseThrow(() ->
+            return getFeatureOptional(contentClass).orElseThrow(() ->
                     new ComputationException("feature " + contentClass.getSimpleName() + " could not be computed by " +
                             featureProvider.getClass().getSimpleName()));
         }
@@ -56,30 +56,31 @@ public interface StructureContainer extends Featureable, AtomRecordWriter, Copya
 
     /**
      * Handles the resolution of feature providers. Contains a map of initialized feature provider instances which can,
-     * thus, be reused and must be stateless.
+     * thus, be reused and must be stateless. Resolution is thread-safe, so each provider is instantiated once even when
+     * features are requested concurrently.
      */
     class DefaultFeatureProviderMap {
         private static final Logger logger = LoggerFactory.getLogger(DefaultFeatureProviderMap.class);
-        private static final Map<Class<? extends FeatureContainerEntry>, FeatureProvider> featureProviderMap = new HashMap<>();
+        private static final Map<Class<? extends FeatureContainerEntry>, FeatureProvider> featureProviderMap = new ConcurrentHashMap<>();
 
         static FeatureProvider resolve(Class<? extends FeatureContainerEntry> featureContainerEntry) {
-            if(!featureProviderMap.containsKey(featureContainerEntry)) {
-                try {
-                    Class<? extends FeatureProvider> featureProviderClass = featureContainerEntry.getAnnotation(DefaultFeatureProvider.class).value();
-                    FeatureProvider featureProviderInstance = featureProviderClass.newInstance();
-                    featureProviderMap.put(featureContainerEntry, featureProviderInstance);
-                    logger.debug("establishing mapping {} => {}",
-                            featureContainerEntry.getSimpleName(),
-                            featureProviderInstance.getClass().getSimpleName());
-                    return featureProviderInstance;
-                } catch (NullPointerException e) {
-                    throw new ComputationException("missing DefaultFeatureProvider annotation for class " +
-                            featureContainerEntry.getSimpleName() + " - cannot resolve feature provider");
-                } catch (Exception e) {
-                    throw new ComputationException(e);
-                }
+            return featureProviderMap.computeIfAbsent(featureContainerEntry, DefaultFeatureProviderMap::createFeatureProvider);
+        }
+
+        private static FeatureProvider createFeatureProvider(Class<? extends FeatureContainerEntry> featureContainerEntry) {
+            try {
+                Class<? extends FeatureProvider> featureProviderClass = featureContainerEntry.getAnnotation(DefaultFeatureProvider.class).value();
+                FeatureProvider featureProviderInstance = featureProviderClass.newInstance();
+                logger.debug("establishing mapping {} => {}",
+                        featureContainerEntry.getSimpleName(),
+                        featureProviderInstance.getClass().getSimpleName());
+                return featureProviderInstance;
+            } catch (NullPointerException e) {
+                throw new ComputationException("missing DefaultFeatureProvider annotation for class " +
+                        featureContainerEntry.getSimpleName() + " - cannot resolve feature provider");
+            } catch (Exception e) {
+                throw new ComputationException(e);
             }
-            return featureProviderMap.get(featureContainerEntry);
         }
     }
 }
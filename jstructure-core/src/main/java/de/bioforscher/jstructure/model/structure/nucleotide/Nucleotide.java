@@ -4,8 +4,10 @@ import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
 import de.bioforscher.jstructure.model.structure.*;
 
 import java.lang.reflect.Field;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -105,6 +107,13 @@ public abstract class Nucleotide extends Group implements StandardNucleotideIndi
         UNKNOWN_NUCLEOTIDE(UnknownNucleotide.class,
                 UnknownNucleotide.GROUP_PROTOTYPE);
 
+        /**
+         * Three-letter-codes are resolved for every parsed group, so they are looked up in a map (first family wins).
+         */
+        private static final Map<String, Nucleotide.Family> THREE_LETTER_CODES = Stream.of(values())
+                .collect(Collectors.toMap(family -> family.getThreeLetterCode().toUpperCase(),
+                        Function.identity(),
+                        (family1, family2) -> family1));
         private Class<? extends Nucleotide> representingClass;
         private GroupPrototype groupPrototype;
 
@@ -153,10 +162,8 @@ public abstract class Nucleotide extends Group implements StandardNucleotideIndi
         }
 
         public static Nucleotide.Family resolveThreeLetterCode(String threeLetterCode) {
-            return Stream.of(Nucleotide.Family.values())
-                    .filter(nucleotide -> threeLetterCode.equalsIgnoreCase(nucleotide.getThreeLetterCode()))
-                    .findFirst()
-                    .orElse(Nucleotide.Family.UNKNOWN_NUCLEOTIDE);
+            return THREE_LETTER_CODES.getOrDefault(threeLetterCode.toUpperCase(),
+                    Nucleotide.Family.UNKNOWN_NUCLEOTIDE);
         }
 
         public static Nucleotide.Family resolveGroupPrototype(GroupPrototype groupPrototype) {
@@ -394,13 +401,9 @@ public abstract class Nucleotide extends Group implements StandardNucleotideIndi
      * @return an optional wrapping the nucleotide with the given offset
      */
     public Optional<Nucleotide> getNucleotideWithOffset(int offset) {
-        try {
-            Chain chain = getParentChain();
-            int index = chain.getGroups().indexOf(this);
-            return Optional.of((Nucleotide) chain.getGroups().get(index + offset));
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+        return getParentChain().getGroupWithOffset(this, offset)
+                .filter(Nucleotide.class::isInstance)
+                .map(Nucleotide.class::cast);
     }
 
     /**
@@ -25,4 +25,10 @@ public class UnknownNucleotide extends Nucleotide implements StandardNucleotide
                             ResidueIdentifier residueIdentifier) {
         this(threeLetterCode, residueIdentifier, false);
     }
+
+    public UnknownNucleotide(GroupPrototype groupPrototype,
+                             ResidueIdentifier residueIdentifier,
+                             boolean ligand) {
+        super(groupPrototype, residueIdentifier, ligand);
+    }
 }
@@ -0,0 +1,213 @@
+package de.bioforscher.jstructure.model.structure.selection;
+
+import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.Group;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.container.AtomContainer;
+import de.bioforscher.jstructure.model.structure.container.ChainContainer;
+import de.bioforscher.jstructure.model.structure.container.GroupContainer;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The immutable, evaluation-ready form of a selection. Chain and group predicates are evaluated before the atoms of a
+ * chain or group are visited, predicates of each level are ordered by their cost and index lookups of the container
+ * are employed where possible. As a compiled selection does not reference the container it was specified on, it can be
+ * stored and applied to arbitrary containers:
+ * <pre>
+ *     CompiledSelection alphaCarbons = Selection.template().aminoAcids().alphaCarbonAtoms().compile();
+ *     structures.forEach(structure -> alphaCarbons.asFilteredAtoms(structure)...);
+ * </pre>
+ */
+public class CompiledSelection {
+    private final Predicate<Atom> atomPredicate;
+    private final Predicate<Group> groupPredicate;
+    private final Predicate<Chain> chainPredicate;
+    private final boolean groupConstraints;
+    private final boolean chainConstraints;
+    private final int[] residueNumberLookup;
+    private final String[] chainIdLookup;
+    private final double[] neighborhoodCenter;
+    private final double neighborhoodRadius;
+    private final boolean groupNeighborhood;
+
+    CompiledSelection(Selection.AtomSelection selection) {
+        this.atomPredicate = Selection.compose(selection.atomPredicates);
+        this.groupPredicate = Selection.compose(selection.groupPredicates);
+        this.chainPredicate = Selection.compose(selection.chainPredicates);
+        this.groupConstraints = !selection.groupPredicates.isEmpty();
+        this.chainConstraints = !selection.chainPredicates.isEmpty();
+        this.residueNumberLookup = selection.residueNumberLookup != null ? selection.residueNumberLookup.clone() : null;
+        this.chainIdLookup = selection.chainIdLookup != null ? selection.chainIdLookup.clone() : null;
+        this.neighborhoodCenter = selection.neighborhoodCenter != null ? selection.neighborhoodCenter.clone() : null;
+        this.neighborhoodRadius = selection.neighborhoodRadius;
+        this.groupNeighborhood = selection.groupNeighborhood;
+    }
+
+    /**
+     * Tests a single atom against all constraints of this selection, including those on its group and chain.
+     * @param atom the atom to test
+     * @return <code>true</code> iff the atom is selected
+     */
+    public boolean test(Atom atom) {
+        Group group = atom.getParentGroup();
+        return atomPredicate.test(atom) &&
+                (!groupConstraints || groupPredicate.test(group)) &&
+                (!chainConstraints || chainPredicate.test(group.getParentChain()));
+    }
+
+    public Stream<Atom> asFilteredAtoms(AtomContainer atomContainer) {
+        List<Atom> neighborhoodCandidates = getNeighborhoodCandidates(atomContainer);
+        if(neighborhoodCandidates != null) {
+            Stream<Atom> candidates = neighborhoodCandidates.stream();
+            if(groupNeighborhood) {
+                // all atoms of groups in the neighborhood are candidates
+                candidates = candidates.map(Atom::getParentGroup)
+                        .distinct()
+                        .filter(groupPredicate)
+                        .flatMap(Group::atoms);
+            } else if(groupConstraints) {
+                candidates = candidates.filter(atom -> groupPredicate.test(atom.getParentGroup()));
+            }
+            return candidates.filter(atomPredicate);
+        }
+
+        // pre-filter chains and groups, so atoms of rejected ones are never visited
+        if(atomContainer instanceof GroupContainer) {
+            return getCandidateGroups((GroupContainer) atomContainer)
+                    .filter(groupPredicate)
+                    .flatMap(Group::atoms)
+                    .filter(atomPredicate);
+        }
+
+        if(atomContainer instanceof Group) {
+            Group group = (Group) atomContainer;
+            if((groupConstraints && !groupPredicate.test(group)) ||
+                    (chainConstraints && !chainPredicate.test(group.getParentChain()))) {
+                return Stream.empty();
+            }
+            return group.atoms()
+                    .filter(atomPredicate);
+        }
+
+        // fallback, when no higher container is present
+        Stream<Atom> candidates = atomContainer.atoms();
+        if(groupConstraints) {
+            candidates = candidates.filter(atom -> groupPredicate.test(atom.getParentGroup()));
+        }
+        if(chainConstraints) {
+            candidates = candidates.filter(atom -> chainPredicate.test(atom.getParentGroup().getParentChain()));
+        }
+        return candidates.filter(atomPredicate);
+    }
+
+    public Stream<Group> asFilteredGroups(GroupContainer groupContainer) {
+        List<Atom> neighborhoodCandidates = groupNeighborhood ? getNeighborhoodCandidates(groupContainer) : null;
+        if(neighborhoodCandidates != null) {
+            return neighborhoodCandidates.stream()
+                    .map(Atom::getParentGroup)
+                    .distinct()
+                    .filter(groupPredicate);
+        }
+
+        return getCandidateGroups(groupContainer)
+                .filter(groupPredicate);
+    }
+
+    public Stream<Chain> asFilteredChains(ChainContainer chainContainer) {
+        return getCandidateChains(chainContainer);
+    }
+
+    /**
+     * Retrieves all atoms of the container which may satisfy the registered distance constraint from the spatial
+     * index of the associated structure.
+     * @return the candidates in their original order or <code>null</code> when no index can be employed
+     */
+    private List<Atom> getNeighborhoodCandidates(AtomContainer atomContainer) {
+        if(neighborhoodCenter == null) {
+            return null;
+        }
+
+        Stream<Atom> candidates;
+        if(atomContainer instanceof Structure) {
+            candidates = ((Structure) atomContainer).getSpatialIndex()
+                    .getAtomsWithin(neighborhoodCenter, neighborhoodRadius)
+                    .stream();
+        } else if(atomContainer instanceof Chain) {
+            Chain chain = (Chain) atomContainer;
+            Structure structure = chain.getParentStructure();
+            // the index of the structure only covers chains which are actually registered
+            if(structure.chains().noneMatch(registeredChain -> registeredChain == chain)) {
+                return null;
+            }
+            candidates = structure.getSpatialIndex()
+                    .getAtomsWithin(neighborhoodCenter, neighborhoodRadius)
+                    .stream()
+                    .filter(atom -> atom.getParentGroup().getParentChain() == chain);
+        } else {
+            return null;
+        }
+
+        if(chainConstraints) {
+            candidates = candidates.filter(atom -> chainPredicate.test(atom.getParentGroup().getParentChain()));
+        }
+        return candidates.collect(Collectors.toList());
+    }
+
+    /**
+     * All chains of the container which satisfy the chain predicates of this selection.
+     * @return the selected chains in their original order
+     */
+    private Stream<Chain> getCandidateChains(ChainContainer chainContainer) {
+        Stream<Chain> candidates;
+        if(chainIdLookup != null && chainIdLookup.length == 1 && chainContainer instanceof Structure) {
+            candidates = ((Structure) chainContainer).getChainsById(chainIdLookup[0]).stream();
+        } else {
+            candidates = chainContainer.chains();
+        }
+        return candidates.filter(chainPredicate);
+    }
+
+    /**
+     * All groups of the container which may satisfy the group predicates of this selection and which are part of
+     * selected chains.
+     * @return the candidate groups in their original order
+     */
+    private Stream<Group> getCandidateGroups(GroupContainer groupContainer) {
+        Stream<Chain> chains;
+        if(groupContainer instanceof ChainContainer) {
+            chains = getCandidateChains((ChainContainer) groupContainer);
+        } else if(groupContainer instanceof Chain) {
+            Chain chain = (Chain) groupContainer;
+            chains = !chainConstraints || chainPredicate.test(chain) ? Stream.of(chain) : Stream.empty();
+        } else {
+            Stream<Group> candidates = groupContainer.groups();
+            if(chainConstraints) {
+                candidates = candidates.filter(group -> chainPredicate.test(group.getParentChain()));
+            }
+            return candidates;
+        }
+
+        if(residueNumberLookup == null) {
+            return chains.flatMap(Chain::groups);
+        }
+        return chains.flatMap(this::lookupGroups);
+    }
+
+    private Stream<Group> lookupGroups(Chain chain) {
+        if(residueNumberLookup.length == 1) {
+            return chain.getGroupsByResidueNumber(residueNumberLookup[0]).stream();
+        }
+        return IntStream.of(residueNumberLookup)
+                .distinct()
+                .boxed()
+                .flatMap(residueNumber -> chain.getGroupsByResidueNumber(residueNumber).stream())
+                .sorted(Comparator.comparingInt(chain::getResidueIndex));
+    }
+}
@@ -2,7 +2,6 @@ package de.bioforscher.jstructure.model.structure.selection;
 
 import de.bioforscher.jstructure.mathematics.IntegerInterval;
 import de.bioforscher.jstructure.mathematics.LinearAlgebra;
-import de.bioforscher.jstructure.mathematics.Pair;
 import de.bioforscher.jstructure.model.identifier.ChainIdentifier;
 import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
 import de.bioforscher.jstructure.model.structure.*;
@@ -13,9 +12,9 @@ import de.bioforscher.jstructure.model.structure.container.GroupContainer;
 import de.bioforscher.jstructure.model.structure.container.StructureContainer;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -36,31 +35,140 @@ public class Selection {
     }
 
     /**
-     * Merges a collection of predicates by chaining them via {@link Predicate#and(Predicate)}.
+     * Starts a selection which is not bound to a particular container. Use {@link AtomSelection#compile()} to obtain a
+     * {@link CompiledSelection} which can be applied to any number of containers.
+     * @return a selection builder
+     */
+    public static ChainSelection template() {
+        return new ChainSelection(Structure.UNKNOWN_STRUCTURE);
+    }
+
+    /**
+     * Merges a collection of predicates. Cheap predicates are evaluated first, predicates of equal cost in the order
+     * they were registered.
      * @param predicates a number of predicates
      * @param <T> the type these predicates operate upon
      * @return a predicate which needs all predicates to evaluate to <code>true</code> - if no predicates were provided,
      *      the expression will evaluate to <code>true</code> by default
      */
-    private static <T> Predicate<T> compose(List<Pair<Predicate<T>, String>> predicates) {
-        return predicates.stream()
-                // the actual predicate is on the left
-                .map(Pair::getLeft)
-                .reduce(Predicate::and)
-                .orElse(x -> true);
+    static <T> Predicate<T> compose(List<SelectionPredicate<T>> predicates) {
+        List<Predicate<T>> orderedPredicates = predicates.stream()
+                .sorted(Comparator.comparingInt(SelectionPredicate::getCost))
+                .map(SelectionPredicate::getPredicate)
+                .collect(Collectors.toList());
+        switch(orderedPredicates.size()) {
+            case 0:
+                return x -> true;
+            case 1:
+                return orderedPredicates.get(0);
+            case 2:
+                Predicate<T> first = orderedPredicates.get(0);
+                Predicate<T> second = orderedPredicates.get(1);
+                return x -> first.test(x) && second.test(x);
+            default:
+                @SuppressWarnings("unchecked")
+                Predicate<T>[] predicateArray = orderedPredicates.toArray(new Predicate[orderedPredicates.size()]);
+                return x -> {
+                    for(Predicate<T> predicate : predicateArray) {
+                        if(!predicate.test(x)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+        }
+    }
+
+    /**
+     * A registered constraint of a selection.
+     * @param <T> the type this predicate operates upon
+     */
+    static class SelectionPredicate<T> {
+        /**
+         * Tests of stored properties such as names, elements or numbers.
+         */
+        static final int PROPERTY_COST = 0;
+        /**
+         * Tests of coordinates.
+         */
+        static final int GEOMETRIC_COST = 1;
+        /**
+         * Predicates provided by the user, their cost is unknown.
+         */
+        static final int CUSTOM_COST = 2;
+        private final Predicate<T> predicate;
+        private final String description;
+        private final int cost;
+
+        SelectionPredicate(Predicate<T> predicate, String description, int cost) {
+            this.predicate = predicate;
+            this.description = description;
+            this.cost = cost;
+        }
+
+        Predicate<T> getPredicate() {
+            return predicate;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        int getCost() {
+            return cost;
+        }
+    }
+
+    /**
+     * Matches a single name by equality and several names by a hash lookup.
+     * @param names the accepted names
+     * @param nameFunction the name of an instance
+     * @param <T> the type of the tested instances
+     * @return a predicate testing whether an instance has any of the given names
+     */
+    static <T> Predicate<T> nameMatcher(String[] names, Function<T, String> nameFunction) {
+        if(names.length == 1) {
+            String name = names[0];
+            return instance -> name.equals(nameFunction.apply(instance));
+        }
+        Set<String> nameSet = new HashSet<>(Arrays.asList(names));
+        return instance -> nameSet.contains(nameFunction.apply(instance));
+    }
+
+    static int[] sortedCopy(int[] values) {
+        int[] sortedValues = values.clone();
+        Arrays.sort(sortedValues);
+        return sortedValues;
     }
 
     public static class AtomSelection {
         AtomContainer atomContainer;
         GroupContainer groupContainer;
         ChainContainer chainContainer;
-        List<Pair<Predicate<Atom>, String>> atomPredicates;
-        List<Pair<Predicate<Group>, String>> groupPredicates;
-        List<Pair<Predicate<Chain>, String>> chainPredicates;
+        List<SelectionPredicate<Atom>> atomPredicates;
+        List<SelectionPredicate<Group>> groupPredicates;
+        List<SelectionPredicate<Chain>> chainPredicates;
         static final String CUSTOM_PREDICATE = "custom predicate";
         String specifiedName;
         String parentContainerName;
         boolean negationMode;
+        /**
+         * The first distance constraint of this selection - when present, candidates are retrieved from the
+         * {@link SpatialIndex} of the structure rather than by testing all atoms.
+         */
+        double[] neighborhoodCenter;
+        double neighborhoodRadius;
+        boolean groupNeighborhood;
+        /**
+         * The residue numbers of the first residue constraint of this selection - when present, candidate groups are
+         * retrieved from the residue number index of each chain rather than by testing all groups.
+         */
+        int[] residueNumberLookup;
+        /**
+         * The chain ids of the first chain constraint of this selection - when present, candidate chains are retrieved
+         * from the chain id index of the structure.
+         */
+        String[] chainIdLookup;
 
         AtomSelection(AtomContainer atomContainer) {
             this.atomPredicates = new ArrayList<>();
@@ -71,7 +179,7 @@ public class Selection {
         }
 
         public AtomSelection customAtomPredicate(Predicate<Atom> atomPredicate) {
-            registerAtomPredicate(atomPredicate, CUSTOM_PREDICATE);
+            registerAtomPredicate(atomPredicate, CUSTOM_PREDICATE, SelectionPredicate.CUSTOM_COST);
             return this;
         }
 
@@ -113,30 +221,51 @@ public class Selection {
             container.setIdentifier(parentContainerName);
         }
 
-        public Stream<Atom> asFilteredAtoms() {
-            Stream<Group> prefilteredGroupStream = null;
-            Stream<Atom> prefilteredAtomStream = null;
-            // pre-filter groups, when there are requirements on the chains
-            if(this instanceof ChainSelection) {
-                prefilteredGroupStream = chainContainer.chains().filter(Selection.compose(chainPredicates)).flatMap(Chain::groups);
+        /**
+         * Registers a distance constraint which can be answered by a spatial index. Negated constraints cannot.
+         */
+        void registerNeighborhood(double[] coordinates, double distanceCutoff, boolean groupNeighborhood) {
+            if(negationMode || neighborhoodCenter != null) {
+                return;
             }
+            this.neighborhoodCenter = coordinates;
+            this.neighborhoodRadius = distanceCutoff;
+            this.groupNeighborhood = groupNeighborhood;
+        }
 
-            if(this instanceof GroupSelection) {
-                // group selection, but no chain selection
-                if(prefilteredGroupStream == null) {
-                    prefilteredGroupStream = groupContainer.groups();
-                }
-
-                prefilteredAtomStream = prefilteredGroupStream.filter(Selection.compose(groupPredicates)).flatMap(Group::atoms);
+        /**
+         * Registers a residue number constraint which can be answered by the index of each chain. Negated constraints
+         * cannot.
+         */
+        void registerResidueNumberLookup(int... residueNumbers) {
+            if(negationMode || residueNumberLookup != null) {
+                return;
             }
+            this.residueNumberLookup = residueNumbers;
+        }
 
-            // fallback, when no higher container is present
-            if(prefilteredAtomStream == null) {
-                prefilteredAtomStream = atomContainer.atoms();
+        /**
+         * Registers a chain id constraint which can be answered by the index of the structure. Negated constraints
+         * cannot.
+         */
+        void registerChainIdLookup(String... chainIds) {
+            if(negationMode || chainIdLookup != null) {
+                return;
             }
+            this.chainIdLookup = chainIds;
+        }
 
-            return prefilteredAtomStream
-                    .filter(Selection.compose(atomPredicates));
+        /**
+         * Compiles the constraints registered so far. The result does not depend on the container of this selection
+         * and can be applied to arbitrary containers, e.g. stored once and reused for many structures.
+         * @return the compiled selection
+         */
+        public CompiledSelection compile() {
+            return new CompiledSelection(this);
+        }
+
+        public Stream<Atom> asFilteredAtoms() {
+            return compile().asFilteredAtoms(atomContainer);
         }
 
         /**
@@ -160,13 +289,14 @@ public class Selection {
                             groupPredicates,
                             chainPredicates)
                             .flatMap(Collection::stream)
-                            .map(Pair::getRight)
+                            .map(SelectionPredicate::getDescription)
                             .collect(Collectors.joining(", ", "[",  "]")) + " in " + atomContainer.getIdentifier()));
         }
 
-        private void registerAtomPredicate(Predicate<Atom> atomPredicate, String description) {
-            atomPredicates.add(new Pair<>(negationMode ? atomPredicate.negate() : atomPredicate,
-                    (negationMode ? "NOT: " : "") + description));
+        private void registerAtomPredicate(Predicate<Atom> atomPredicate, String description, int cost) {
+            atomPredicates.add(new SelectionPredicate<>(negationMode ? atomPredicate.negate() : atomPredicate,
+                    (negationMode ? "NOT: " : "") + description,
+                    cost));
         }
 
         public AtomSelection element(Collection<Element> elements) {
@@ -174,8 +304,11 @@ public class Selection {
         }
 
         public AtomSelection element(Element... elements) {
-            registerAtomPredicate(atom -> Stream.of(elements)
-                    .anyMatch(element -> atom.getElement().equals(element)), "element of: " + Arrays.toString(elements));
+            Set<Element> elementSet = elements.length == 0 ? EnumSet.noneOf(Element.class) :
+                    EnumSet.copyOf(Arrays.asList(elements));
+            registerAtomPredicate(atom -> elementSet.contains(atom.getElement()),
+                    "element of: " + Arrays.toString(elements),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
@@ -184,38 +317,45 @@ public class Selection {
         }
 
         public AtomSelection atomName(String... atomNames) {
-            registerAtomPredicate(atom -> Stream.of(atomNames)
-                    .anyMatch(atomName -> atomName.equals(atom.getName())), "atom name of: " + Arrays.toString(atomNames));
+            registerAtomPredicate(nameMatcher(atomNames, Atom::getName),
+                    "atom name of: " + Arrays.toString(atomNames),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection alphaCarbonAtoms() {
-            registerAtomPredicate(atom -> AminoAcid.ALPHA_CARBON_NAME.equals(atom.getName()), "alpha carbons");
+            registerAtomPredicate(atom -> AminoAcid.ALPHA_CARBON_NAME.equals(atom.getName()), "alpha carbons",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection backboneCarbonAtoms() {
-            registerAtomPredicate(atom -> AminoAcid.BACKBONE_CARBON_NAME.equals(atom.getName()), "backbone carbons");
+            registerAtomPredicate(atom -> AminoAcid.BACKBONE_CARBON_NAME.equals(atom.getName()), "backbone carbons",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection backboneNitrogenAtoms() {
-            registerAtomPredicate(atom -> AminoAcid.BACKBONE_NITROGEN_NAME.equals(atom.getName()), "backbone nitrogens");
+            registerAtomPredicate(atom -> AminoAcid.BACKBONE_NITROGEN_NAME.equals(atom.getName()), "backbone nitrogens",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection backboneOxygenAtoms() {
-            registerAtomPredicate(atom -> AminoAcid.BACKBONE_OXYGEN_NAME.equals(atom.getName()), "backbone oxygens");
+            registerAtomPredicate(atom -> AminoAcid.BACKBONE_OXYGEN_NAME.equals(atom.getName()), "backbone oxygens",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection betaCarbonAtoms() {
-            registerAtomPredicate(atom -> AminoAcid.BETA_CARBON_NAME.equals(atom.getName()), "beta carbons");
+            registerAtomPredicate(atom -> AminoAcid.BETA_CARBON_NAME.equals(atom.getName()), "beta carbons",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection hydrogenAtoms() {
-            registerAtomPredicate(atom -> Group.HYDROGEN_NAMES.contains(atom.getName()), "hydrogens");
+            registerAtomPredicate(atom -> Group.HYDROGEN_NAMES.contains(atom.getName()), "hydrogens",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
@@ -226,20 +366,24 @@ public class Selection {
         }
 
         public AtomSelection nonHydrogenAtoms() {
-            registerAtomPredicate(atom -> !Group.HYDROGEN_NAMES.contains(atom.getName()), "non-hydrogens");
+            registerAtomPredicate(atom -> !Group.HYDROGEN_NAMES.contains(atom.getName()), "non-hydrogens",
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection pdbSerial(int... pdbSerials) {
-            registerAtomPredicate(atom -> IntStream.of(pdbSerials).boxed().collect(Collectors.toList())
-                    .contains(atom.getPdbSerial()), "pdb-serials: " + Arrays.toString(pdbSerials));
+            int[] sortedPdbSerials = sortedCopy(pdbSerials);
+            registerAtomPredicate(atom -> Arrays.binarySearch(sortedPdbSerials, atom.getPdbSerial()) >= 0,
+                    "pdb-serials: " + Arrays.toString(pdbSerials),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public AtomSelection pdbSerial(IntegerInterval... pdbSerialRanges) {
             registerAtomPredicate(atom -> Stream.of(pdbSerialRanges)
                     .anyMatch(range -> range.getLeft() >= atom.getPdbSerial() && range.getRight() <= atom.getPdbSerial()),
-                    "pdb-serial ranges: " + Arrays.toString(pdbSerialRanges));
+                    "pdb-serial ranges: " + Arrays.toString(pdbSerialRanges),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
@@ -249,8 +393,10 @@ public class Selection {
 
         public AtomSelection atomDistance(double[] coordinates, double distanceCutoff) {
             double squaredDistanceCutoff = distanceCutoff * distanceCutoff;
-            registerAtomPredicate(atom -> LinearAlgebra.on(coordinates).distanceFast(atom.getCoordinates()) <
-                    squaredDistanceCutoff, distanceCutoff + " A around " + Arrays.toString(coordinates));
+            registerNeighborhood(coordinates, distanceCutoff, false);
+            registerAtomPredicate(atom -> LinearAlgebra.on(coordinates).distanceFast(atom) <
+                    squaredDistanceCutoff, distanceCutoff + " A around " + Arrays.toString(coordinates),
+                    SelectionPredicate.GEOMETRIC_COST);
             return this;
         }
     }
@@ -268,7 +414,7 @@ public class Selection {
         }
 
         public GroupSelection customGroupPredicate(Predicate<Group> groupPredicate) {
-            registerGroupPredicate(groupPredicate, CUSTOM_PREDICATE);
+            registerGroupPredicate(groupPredicate, CUSTOM_PREDICATE, SelectionPredicate.CUSTOM_COST);
             return this;
         }
 
@@ -291,18 +437,7 @@ public class Selection {
         }
 
         public Stream<Group> asFilteredGroups() {
-            Stream<Group> prefilteredGroupStream;
-            // pre-filter groups, when there are requirements on the chains
-            if(!(this instanceof ChainSelection)) {
-                prefilteredGroupStream = groupContainer.groups();
-            } else {
-                prefilteredGroupStream = chainContainer.chains()
-                        .filter(Selection.compose(chainPredicates))
-                        .flatMap(Chain::groups);
-            }
-
-            return prefilteredGroupStream
-                    .filter(Selection.compose(groupPredicates));
+            return compile().asFilteredGroups(groupContainer);
         }
 
         public Optional<Group> asOptionalGroup() {
@@ -327,7 +462,7 @@ public class Selection {
                     .orElseThrow(() -> new SelectionException("did not find group matching " + Stream.of(groupPredicates,
                             chainPredicates)
                             .flatMap(Collection::stream)
-                            .map(Pair::getRight)
+                            .map(SelectionPredicate::getDescription)
                             .collect(Collectors.joining(", ", "[",  "]")) + " in " + groupContainer.getIdentifier()));
         }
 
@@ -336,13 +471,15 @@ public class Selection {
                     .orElseThrow(() -> new SelectionException("did not find amino acid matching " + Stream.of(groupPredicates,
                             chainPredicates)
                             .flatMap(Collection::stream)
-                            .map(Pair::getRight)
+                            .map(SelectionPredicate::getDescription)
                             .collect(Collectors.joining(", ", "[",  "]")) + " in " + groupContainer.getIdentifier()));
 
         }
 
-        private void registerGroupPredicate(Predicate<Group> groupPredicate, String description) {
-            groupPredicates.add(new Pair<>(negationMode ? groupPredicate.negate() : groupPredicate, description));
+        private void registerGroupPredicate(Predicate<Group> groupPredicate, String description, int cost) {
+            groupPredicates.add(new SelectionPredicate<>(negationMode ? groupPredicate.negate() : groupPredicate,
+                    description,
+                    cost));
         }
 
         /**
@@ -350,39 +487,44 @@ public class Selection {
          * @return a stream of all entities which are part of the protein chain
          */
         public GroupSelection aminoAcids() {
-            registerGroupPredicate(Group::isAminoAcid, "amino acids");
+            registerGroupPredicate(Group::isAminoAcid, "amino acids", SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection nucleotides() {
-            registerGroupPredicate(Group::isNucleotide, "nucleotides");
+            registerGroupPredicate(Group::isNucleotide, "nucleotides", SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection hetatms() {
-            registerGroupPredicate(Group::isLigand, "ligands");
+            registerGroupPredicate(Group::isLigand, "ligands", SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection water() {
-            registerGroupPredicate(Group::isWater, "waters");
+            registerGroupPredicate(Group::isWater, "waters", SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection ligands() {
-            registerGroupPredicate(Group::isLigand, "ligands");
+            registerGroupPredicate(Group::isLigand, "ligands", SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection groupName(String... groupNames) {
-            registerGroupPredicate(group -> Stream.of(groupNames)
-                    .anyMatch(groupName -> groupName.equals(group.getThreeLetterCode())), "group names: " + Arrays.toString(groupNames));
+            registerGroupPredicate(nameMatcher(groupNames, Group::getThreeLetterCode),
+                    "group names: " + Arrays.toString(groupNames),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection residueNumber(int... residueNumbers) {
-            registerGroupPredicate(group -> IntStream.of(residueNumbers).boxed().collect(Collectors.toList())
-                    .contains(group.getResidueIdentifier().getResidueNumber()), "residue numbers: " + Arrays.toString(residueNumbers));
+            registerResidueNumberLookup(residueNumbers);
+            int[] sortedResidueNumbers = sortedCopy(residueNumbers);
+            registerGroupPredicate(group -> Arrays.binarySearch(sortedResidueNumbers,
+                    group.getResidueIdentifier().getResidueNumber()) >= 0,
+                    "residue numbers: " + Arrays.toString(residueNumbers),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
@@ -390,13 +532,16 @@ public class Selection {
             registerGroupPredicate(group -> Stream.of(residueNumberRanges)
                     .anyMatch(range -> group.getResidueIdentifier().getResidueNumber() >= range.getLeft() &&
                             group.getResidueIdentifier().getResidueNumber() <= range.getRight()),
-                    "residue ranges: " + Arrays.toString(residueNumberRanges));
+                    "residue ranges: " + Arrays.toString(residueNumberRanges),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public GroupSelection residueIdentifier(ResidueIdentifier residueIdentifier) {
+            registerResidueNumberLookup(residueIdentifier.getResidueNumber());
             registerGroupPredicate(group -> group.getResidueIdentifier().equals(residueIdentifier),
-                    "residueIdentifier: " + residueIdentifier);
+                    "residueIdentifier: " + residueIdentifier,
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
@@ -406,9 +551,11 @@ public class Selection {
 
         public GroupSelection groupDistance(double[] coordinates, double distanceCutoff) {
             double squaredDistanceCutoff = distanceCutoff * distanceCutoff;
+            registerNeighborhood(coordinates, distanceCutoff, true);
             registerGroupPredicate(group -> group.atoms()
-                    .anyMatch(atom -> LinearAlgebra.on(coordinates).distanceFast(atom.getCoordinates()) <
-                            squaredDistanceCutoff), distanceCutoff + " A around " + Arrays.toString(coordinates));
+                    .anyMatch(atom -> LinearAlgebra.on(coordinates).distanceFast(atom) <
+                            squaredDistanceCutoff), distanceCutoff + " A around " + Arrays.toString(coordinates),
+                    SelectionPredicate.GEOMETRIC_COST);
             return this;
         }
     }
@@ -425,7 +572,7 @@ public class Selection {
         }
 
         public ChainSelection customChainPredicate(Predicate<Chain> chainPredicate) {
-            registerChainPredicate(chainPredicate, CUSTOM_PREDICATE);
+            registerChainPredicate(chainPredicate, CUSTOM_PREDICATE, SelectionPredicate.CUSTOM_COST);
             return this;
         }
 
@@ -449,8 +596,7 @@ public class Selection {
 
 
         public Stream<Chain> asFilteredChains() {
-            return chainContainer.chains()
-                    .filter(Selection.compose(chainPredicates));
+            return compile().asFilteredChains(chainContainer);
         }
 
         public Optional<Chain> asOptionalChain() {
@@ -462,24 +608,29 @@ public class Selection {
             return asOptionalChain()
                     .orElseThrow(() -> new SelectionException("did not find chain matching " + Stream.of(chainPredicates)
                             .flatMap(Collection::stream)
-                            .map(Pair::getRight)
+                            .map(SelectionPredicate::getDescription)
                             .collect(Collectors.joining(", ", "[",  "]"))  + " in " + chainContainer.getIdentifier()));
         }
 
-        private void registerChainPredicate(Predicate<Chain> chainPredicate, String description) {
-            chainPredicates.add(new Pair<>(negationMode ? chainPredicate.negate() : chainPredicate, description));
+        private void registerChainPredicate(Predicate<Chain> chainPredicate, String description, int cost) {
+            chainPredicates.add(new SelectionPredicate<>(negationMode ? chainPredicate.negate() : chainPredicate,
+                    description,
+                    cost));
         }
 
         public ChainSelection chainName(String... chainIds) {
-            registerChainPredicate(chain -> Stream.of(chainIds)
-                    .anyMatch(chainName -> chainName.equals(chain.getChainIdentifier().getChainId())),
-                    "chain names: " + Arrays.toString(chainIds));
+            registerChainIdLookup(chainIds);
+            registerChainPredicate(nameMatcher(chainIds, chain -> chain.getChainIdentifier().getChainId()),
+                    "chain names: " + Arrays.toString(chainIds),
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
         public ChainSelection chainId(String chainId) {
+            registerChainIdLookup(chainId);
             registerChainPredicate(chain -> chain.getChainIdentifier().getChainId().equals(chainId),
-                    "chainId: " + chainId);
+                    "chainId: " + chainId,
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
@@ -488,7 +639,8 @@ public class Selection {
                     .map(ChainIdentifier::getChainId)
                     .collect(Collectors.toSet());
             registerChainPredicate(chain -> chainIds.contains(chain.getChainIdentifier().getChainId()),
-                    "chainIds: " + chainIds);
+                    "chainIds: " + chainIds,
+                    SelectionPredicate.PROPERTY_COST);
             return this;
         }
 
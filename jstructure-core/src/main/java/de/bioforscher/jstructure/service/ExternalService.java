@@ -1,6 +1,7 @@
 package de.bioforscher.jstructure.service;
 
 import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,7 +31,13 @@ public abstract class ExternalService implements Service {
 
     protected Path writeStructureToTemporaryFile(Structure structure) throws IOException {
         Path tmpFile = Files.createTempFile(servicePrefix, ".pdb");
-        Files.write(tmpFile, structure.getPdbRepresentation().getBytes());
+        StructureWriter.write(structure, tmpFile);
+        return tmpFile;
+    }
+
+    protected Path writeStructureToTemporaryFile(Structure structure, Path directory) throws IOException {
+        Path tmpFile = Files.createTempFile(directory, servicePrefix, ".pdb");
+        StructureWriter.write(structure, tmpFile);
         return tmpFile;
     }
 
@@ -0,0 +1,199 @@
+package de.bioforscher.jstructure.model.feature;
+
+import de.bioforscher.jstructure.mathematics.Pair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks type-based access to features in small and large containers.
+ */
+public class FeatureContainerTest {
+    private FeatureContainer featureContainer;
+
+    @Before
+    public void setup() {
+        featureContainer = new FeatureContainer();
+    }
+
+    @Test
+    public void shouldHandleEmptyContainer() {
+        Assert.assertFalse(featureContainer.getFeatureOptional(FeatureContainerEntry.class).isPresent());
+        Assert.assertTrue(featureContainer.getFeatures(FeatureContainerEntry.class).isEmpty());
+        Assert.assertTrue(featureContainer.getFeatures().isEmpty());
+    }
+
+    @Test
+    public void shouldResolveSubtypesInSmallAndLargeContainers() {
+        SpecificEntry specificEntry = new SpecificEntry();
+        featureContainer.addFeature(new OtherEntry());
+        featureContainer.addFeature(specificEntry);
+        Assert.assertSame(specificEntry, featureContainer.getFeatureOptional(GenericEntry.class).get());
+        Assert.assertSame(specificEntry, featureContainer.getFeatureOptional(SpecificEntry.class).get());
+
+        GenericEntry genericEntry = new GenericEntry();
+        for(int i = 0; i < 10; i++) {
+            featureContainer.addFeature(new OtherEntry());
+        }
+        featureContainer.addFeature(genericEntry);
+        Assert.assertSame(specificEntry, featureContainer.getFeatureOptional(GenericEntry.class).get());
+        Assert.assertEquals(Arrays.asList(specificEntry, genericEntry), featureContainer.getFeatures(GenericEntry.class));
+        Assert.assertEquals(Collections.singletonList(specificEntry), featureContainer.getFeatures(SpecificEntry.class));
+        Assert.assertEquals(11, featureContainer.getFeatures(OtherEntry.class).size());
+        Assert.assertEquals(13, featureContainer.getFeatures(FeatureContainerEntry.class).size());
+    }
+
+    @Test
+    public void shouldReflectModificationsOfDelegatedList() {
+        for(int i = 0; i < 5; i++) {
+            featureContainer.addFeature(new OtherEntry());
+        }
+        Assert.assertFalse(featureContainer.getFeatureOptional(GenericEntry.class).isPresent());
+
+        List<FeatureContainerEntry> features = featureContainer.getFeatures();
+        GenericEntry genericEntry = new GenericEntry();
+        features.add(0, genericEntry);
+        Assert.assertSame(genericEntry, featureContainer.getFeatureOptional(GenericEntry.class).get());
+
+        features.removeIf(GenericEntry.class::isInstance);
+        Assert.assertFalse(featureContainer.getFeatureOptional(GenericEntry.class).isPresent());
+        Assert.assertEquals(5, features.size());
+    }
+
+    @Test
+    public void shouldReflectConcurrentAdditions() throws Exception {
+        for(int i = 0; i < 5; i++) {
+            featureContainer.addFeature(new OtherEntry());
+        }
+        int numberOfWriters = 2;
+        int additionsPerWriter = 2000;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfWriters + 2);
+        try {
+            // readers constantly memorize the entries of the queried class
+            List<Future<?>> readers = new ArrayList<>();
+            for(int thread = 0; thread < 2; thread++) {
+                readers.add(executorService.submit(() -> {
+                    while(writing.get()) {
+                        featureContainer.getFeatures(GenericEntry.class);
+                        Assert.assertEquals(5, featureContainer.getFeatures(OtherEntry.class).size());
+                    }
+                }));
+            }
+            List<Future<?>> writers = new ArrayList<>();
+            for(int thread = 0; thread < numberOfWriters; thread++) {
+                writers.add(executorService.submit(() -> {
+                    for(int i = 0; i < additionsPerWriter; i++) {
+                        GenericEntry genericEntry = new GenericEntry();
+                        featureContainer.addFeature(genericEntry);
+                        // memorized results must never hide entries added before
+                        Assert.assertTrue(featureContainer.getFeatures(GenericEntry.class).contains(genericEntry));
+                    }
+                }));
+            }
+            try {
+                for(Future<?> writer : writers) {
+                    writer.get();
+                }
+            } finally {
+                writing.set(false);
+            }
+            for(Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(numberOfWriters * additionsPerWriter,
+                featureContainer.getFeatures(GenericEntry.class).size());
+    }
+
+    @Test
+    public void shouldShareFeaturesOfFlippedPairs() {
+        Pair<String, String> pair = new Pair<>("a", "b");
+        Pair<String, String> flippedPair = pair.flip();
+        GenericEntry genericEntry = new GenericEntry();
+        pair.addFeature(genericEntry);
+        Assert.assertSame(genericEntry, flippedPair.getFeatureOptional(GenericEntry.class).get());
+    }
+
+    @Test
+    public void shouldMaterializeContainerOnDemand() throws ReflectiveOperationException {
+        AbstractFeatureable featureable = new AbstractFeatureable() {
+            @Override
+            public <C extends FeatureContainerEntry> C getFeature(Class<C> contentClass) {
+                return getFeatureOptional(contentClass).get();
+            }
+        };
+        Field featureContainerField = AbstractFeatureable.class.getDeclaredField("featureContainer");
+        featureContainerField.setAccessible(true);
+
+        Assert.assertFalse(featureable.getFeatureOptional(GenericEntry.class).isPresent());
+        Assert.assertTrue(featureable.getFeatures(GenericEntry.class).isEmpty());
+        Assert.assertNull(featureContainerField.get(featureable));
+
+        GenericEntry genericEntry = new GenericEntry();
+        featureable.getFeatureContainer().addFeature(genericEntry);
+        Assert.assertSame(genericEntry, featureable.getFeature(GenericEntry.class));
+        Assert.assertEquals(Collections.singletonList(genericEntry), featureable.getFeatures(GenericEntry.class));
+    }
+
+    @Test
+    public void shouldMaterializeContainerOnceForConcurrentRequests() throws Exception {
+        int numberOfThreads = 4;
+        for(int run = 0; run < 100; run++) {
+            AbstractFeatureable featureable = new AbstractFeatureable() {
+                @Override
+                public <C extends FeatureContainerEntry> C getFeature(Class<C> contentClass) {
+                    return getFeatureOptional(contentClass).get();
+                }
+            };
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for(int thread = 0; thread < numberOfThreads; thread++) {
+                    futures.add(executorService.submit(() -> {
+                        start.await();
+                        featureable.getFeatureContainer().addFeature(new GenericEntry());
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for(Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executorService.shutdown();
+            }
+            // no entry was added to a container which got lost
+            Assert.assertEquals(numberOfThreads, featureable.getFeatures(GenericEntry.class).size());
+        }
+    }
+
+    static class GenericEntry extends FeatureContainerEntry {
+        GenericEntry() {
+            super(null);
+        }
+    }
+
+    static class SpecificEntry extends GenericEntry {
+    }
+
+    static class OtherEntry extends FeatureContainerEntry {
+        OtherEntry() {
+            super(null);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks whether structures parsed from <tt>mmCIF</tt> and <tt>BinaryCIF</tt> files resemble those parsed from the
+ * corresponding <tt>PDB</tt> file.
+ */
+public class AtomSiteReaderTest {
+    private Structure reference;
+
+    @Before
+    public void setup() {
+        reference = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+    }
+
+    @Test
+    public void shouldParseMmCif() {
+        Structure structure = StructureParser.fromInputStream(new ByteArrayInputStream(composeMmCif(reference)
+                .getBytes(StandardCharsets.UTF_8)))
+                .format(StructureParser.Format.MMCIF)
+                .minimalParsing(true)
+                .parse();
+        assertEqualStructures(reference, structure);
+        Assert.assertEquals("1acj", structure.getProteinIdentifier().getPdbId());
+        Assert.assertEquals(reference.getClassification(), structure.getClassification());
+        Assert.assertEquals(reference.getDepositionDate(), structure.getDepositionDate());
+        Assert.assertEquals("QUATERNARY LIGAND BINDING TO AROMATIC RESIDUES IN THE ACTIVE-SITE GORGE OF " +
+                "ACETYLCHOLINESTERASE", structure.getTitle());
+    }
+
+    @Test
+    public void shouldRecognizeCompressedMmCifFiles() throws IOException {
+        Path file = Files.createTempDirectory("cif").resolve("1acj.cif.gz");
+        try(OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+            outputStream.write(composeMmCif(reference).getBytes(StandardCharsets.UTF_8));
+        }
+        Structure structure = StructureParser.fromPath(file)
+                .minimalParsing(true)
+                .parse();
+        assertEqualStructures(reference, structure);
+        Assert.assertEquals("1acj", structure.getProteinIdentifier().getAdditionalName());
+    }
+
+    @Test
+    public void shouldFindMmCifInLocalMirror() throws IOException {
+        Path localPdbDirectory = Files.createTempDirectory("pdb");
+        Path file = Files.createDirectories(localPdbDirectory.resolve("mmCIF").resolve("ac")).resolve("1acj.cif.gz");
+        try(OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+            outputStream.write(composeMmCif(reference).getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(file, StructureParser.Format.MMCIF.resolveLocalFile(localPdbDirectory, "1acj"));
+        Assert.assertEquals(localPdbDirectory.resolve("ac").resolve("pdb1acj.ent.gz"),
+                StructureParser.Format.PDB.resolveLocalFile(localPdbDirectory, "1acj"));
+
+        Path previousLocalPdbDirectory = StructureParser.OptionalSteps.getLocalPdbDirectory();
+        StructureParser.OptionalSteps.setLocalPdbDirectory(localPdbDirectory);
+        try {
+            assertEqualStructures(reference, StructureParser.fromPdbId("1ACJ")
+                    .format(StructureParser.Format.MMCIF)
+                    .minimalParsing(true)
+                    .parse());
+            // without a requested format, all formats of the mirror are considered
+            assertEqualStructures(reference, StructureParser.fromPdbId("1acj")
+                    .minimalParsing(true)
+                    .parse());
+        } finally {
+            StructureParser.OptionalSteps.setLocalPdbDirectory(previousLocalPdbDirectory);
+        }
+    }
+
+    @Test
+    public void shouldStreamModelsOfMmCif() {
+        String mmCif = composeMmCif(reference);
+        // append a second model shifted by 1 A
+        String atomSite = mmCif.substring(mmCif.indexOf("ATOM "));
+        StringBuilder secondModel = new StringBuilder();
+        for(String line : atomSite.split("\n")) {
+            String[] split = line.split(" ");
+            split[9] = String.valueOf(Double.valueOf(split[9]) + 1);
+            split[split.length - 1] = "2";
+            secondModel.append(String.join(" ", split)).append("\n");
+        }
+
+        List<Structure> models = StructureParser.fromInputStream(new ByteArrayInputStream((mmCif + secondModel)
+                .getBytes(StandardCharsets.UTF_8)))
+                .format(StructureParser.Format.MMCIF)
+                .minimalParsing(true)
+                .parseModels()
+                .collect(Collectors.toList());
+        Assert.assertEquals(2, models.size());
+        Assert.assertEquals(reference.getAtoms().size(), models.get(1).getAtoms().size());
+        Assert.assertEquals(reference.getAtoms().get(0).getCoordinates()[0] + 1,
+                models.get(1).getAtoms().get(0).getCoordinates()[0],
+                1e-9);
+    }
+
+    @Test
+    public void shouldParseBinaryCif() throws IOException {
+        byte[] binaryCif = composeBinaryCif(reference);
+        Structure structure = StructureParser.fromInputStream(new ByteArrayInputStream(binaryCif))
+                .format(StructureParser.Format.BINARY_CIF)
+                .minimalParsing(true)
+                .parse();
+        assertEqualStructures(reference, structure);
+        Assert.assertEquals("1acj", structure.getProteinIdentifier().getPdbId());
+
+        // memory-mapped access
+        Path file = Files.createTempDirectory("bcif").resolve("1acj.bcif");
+        Files.write(file, binaryCif);
+        assertEqualStructures(reference, StructureParser.fromPath(file)
+                .minimalParsing(true)
+                .parse());
+    }
+
+    @Test
+    public void shouldDecodeBinaryCifEncodings() {
+        // delta encoded, run-length encoded, integer packed values
+        int[] expected = new int[] { 1, 2, 3, 3, 3, 400 };
+        Map<String, Object> encodedData = new HashMap<>();
+        // deltas: [1, 1, 1, 0, 0, 397] - run-length pairs: [1, 3, 0, 2, 397, 1] - packed: [1, 3, 0, 2, 255, 142, 1]
+        encodedData.put("data", ByteBuffer.wrap(new byte[] { 1, 3, 0, 2, (byte) 255, (byte) 142, 1 }));
+        encodedData.put("encoding", Arrays.asList(
+                encoding("Delta", "origin", 0),
+                encoding("RunLength", "srcSize", 6),
+                encoding("IntegerPacking", "byteCount", 1, "isUnsigned", true, "srcSize", 6),
+                encoding("ByteArray", "type", 4)));
+        Assert.assertArrayEquals(expected, (int[]) BinaryCifReader.decode(encodedData));
+
+        Map<String, Object> fixedPoint = new HashMap<>();
+        fixedPoint.put("data", ByteBuffer.wrap(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(-1234)
+                .putInt(5).array()));
+        fixedPoint.put("encoding", Arrays.asList(encoding("FixedPoint", "factor", 1000),
+                encoding("ByteArray", "type", 3)));
+        Assert.assertArrayEquals(new double[] { -1.234, 0.005 }, (double[]) BinaryCifReader.decode(fixedPoint), 0.0);
+    }
+
+    @Test
+    public void shouldParseWwPdbFiles() {
+        // the files as distributed by the RCSB - in contrast to the composed ones above
+        Structure pdb = StructureParser.fromPdbId("1acj")
+                .format(StructureParser.Format.PDB)
+                .minimalParsing(true)
+                .parse();
+        for(StructureParser.Format format : new StructureParser.Format[] { StructureParser.Format.MMCIF,
+                StructureParser.Format.BINARY_CIF }) {
+            Structure structure = StructureParser.fromPdbId("1acj")
+                    .format(format)
+                    .minimalParsing(true)
+                    .parse();
+            Assert.assertEquals("1acj", structure.getProteinIdentifier().getPdbId());
+            List<Atom> expectedAtoms = pdb.aminoAcids()
+                    .flatMap(Group::atoms)
+                    .collect(Collectors.toList());
+            List<Atom> actualAtoms = structure.aminoAcids()
+                    .flatMap(Group::atoms)
+                    .collect(Collectors.toList());
+            Assert.assertEquals("number of atoms differs for " + format, expectedAtoms.size(), actualAtoms.size());
+            for(int i = 0; i < expectedAtoms.size(); i++) {
+                Atom expectedAtom = expectedAtoms.get(i);
+                Atom actualAtom = actualAtoms.get(i);
+                Assert.assertEquals(expectedAtom.getName(), actualAtom.getName());
+                Assert.assertEquals(expectedAtom.getParentGroup().getResidueIdentifier(),
+                        actualAtom.getParentGroup().getResidueIdentifier());
+                Assert.assertArrayEquals(expectedAtom.getCoordinates(), actualAtom.getCoordinates(), 1e-3);
+            }
+        }
+    }
+
+    private static Map<String, Object> encoding(String kind, Object... keyValuePairs) {
+        Map<String, Object> encoding = new HashMap<>();
+        encoding.put("kind", kind);
+        for(int i = 0; i < keyValuePairs.length; i += 2) {
+            encoding.put((String) keyValuePairs[i], keyValuePairs[i + 1]);
+        }
+        return encoding;
+    }
+
+    private static void assertEqualStructures(Structure expected, Structure actual) {
+        List<Atom> expectedAtoms = expected.getAtoms();
+        List<Atom> actualAtoms = actual.getAtoms();
+        Assert.assertEquals("number of atoms differs", expectedAtoms.size(), actualAtoms.size());
+        Assert.assertEquals("number of groups differs", expected.getGroups().size(), actual.getGroups().size());
+        Assert.assertEquals("number of chains differs", expected.getChains().size(), actual.getChains().size());
+        for(int i = 0; i < expectedAtoms.size(); i++) {
+            Atom expectedAtom = expectedAtoms.get(i);
+            Atom actualAtom = actualAtoms.get(i);
+            Assert.assertEquals(expectedAtom.getName(), actualAtom.getName());
+            Assert.assertEquals(expectedAtom.getElement(), actualAtom.getElement());
+            Assert.assertEquals(expectedAtom.getPdbSerial(), actualAtom.getPdbSerial());
+            Assert.assertArrayEquals(expectedAtom.getCoordinates(), actualAtom.getCoordinates(), 0.0);
+            Assert.assertEquals(expectedAtom.getOccupancy(), actualAtom.getOccupancy(), 0.0);
+            Assert.assertEquals(expectedAtom.getBfactor(), actualAtom.getBfactor(), 0.0);
+            Group expectedGroup = expectedAtom.getParentGroup();
+            Group actualGroup = actualAtom.getParentGroup();
+            Assert.assertEquals(expectedGroup.getResidueIdentifier(), actualGroup.getResidueIdentifier());
+            Assert.assertEquals(expectedGroup.getThreeLetterCode(), actualGroup.getThreeLetterCode());
+            Assert.assertEquals(expectedGroup.getClass(), actualGroup.getClass());
+            Assert.assertEquals(expectedGroup.isLigand(), actualGroup.isLigand());
+            Assert.assertEquals(expectedGroup.getParentChain().getChainIdentifier().getChainId(),
+                    actualGroup.getParentChain().getChainIdentifier().getChainId());
+        }
+    }
+
+    private static final List<String> COLUMNS = Arrays.asList("group_PDB", "id", "type_symbol", "label_atom_id",
+            "label_alt_id", "label_comp_id", "label_asym_id", "label_seq_id", "pdbx_PDB_ins_code", "Cartn_x", "Cartn_y",
+            "Cartn_z", "occupancy", "B_iso_or_equiv", "auth_seq_id", "auth_asym_id", "pdbx_PDB_model_num");
+
+    /**
+     * Composes the values of the atom site category of a structure.
+     */
+    private static List<List<Object>> composeAtomSite(Structure structure) {
+        List<List<Object>> rows = new ArrayList<>();
+        for(Atom atom : structure.getAtoms()) {
+            Group group = atom.getParentGroup();
+            rows.add(Arrays.asList(group.isLigand() || group instanceof Water ? "HETATM" : "ATOM",
+                    atom.getPdbSerial(),
+                    atom.getElement().name(),
+                    atom.getName(),
+                    atom.getAlternativeLocation().isEmpty() ? "." : atom.getAlternativeLocation(),
+                    group.getThreeLetterCode(),
+                    group.getParentChain().getChainIdentifier().getChainId(),
+                    group.isLigand() ? "." : String.valueOf(group.getResidueIdentifier().getResidueNumber()),
+                    group.getResidueIdentifier().getInsertionCode().isEmpty() ? "?" :
+                            group.getResidueIdentifier().getInsertionCode(),
+                    atom.getCoordinates()[0],
+                    atom.getCoordinates()[1],
+                    atom.getCoordinates()[2],
+                    atom.getOccupancy(),
+                    atom.getBfactor(),
+                    group.getResidueIdentifier().getResidueNumber(),
+                    group.getParentChain().getChainIdentifier().getChainId(),
+                    1));
+        }
+        return rows;
+    }
+
+    private static String composeMmCif(Structure structure) {
+        StringBuilder builder = new StringBuilder("data_1ACJ\n" +
+                "# \n" +
+                "_entry.id   1ACJ \n" +
+                "# \n" +
+                "_struct.entry_id                  1ACJ \n" +
+                "_struct.title                     \n" +
+                ";QUATERNARY LIGAND BINDING TO AROMATIC RESIDUES IN THE ACTIVE-SITE GORGE OF ACETYLCHOLINESTERASE\n" +
+                ";\n" +
+                "# \n" +
+                "_struct_keywords.entry_id        1ACJ \n" +
+                "_struct_keywords.pdbx_keywords   '" + structure.getClassification() + "' \n" +
+                "# \n" +
+                "loop_\n" +
+                "_pdbx_database_status.entry_id\n" +
+                "_pdbx_database_status.recvd_initial_deposition_date\n" +
+                "1ACJ " + structure.getDepositionDate() + "\n" +
+                "# \n" +
+                "loop_\n");
+        COLUMNS.forEach(column -> builder.append("_atom_site.").append(column).append(" \n"));
+        for(List<Object> row : composeAtomSite(structure)) {
+            builder.append(row.stream()
+                    .map(String::valueOf)
+                    .map(value -> value.contains("'") ? "\"" + value + "\"" : value)
+                    .collect(Collectors.joining(" ")))
+                    .append("\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Composes a <tt>BinaryCIF</tt> file, all columns are merely encoded as byte arrays respectively string arrays.
+     */
+    private static byte[] composeBinaryCif(Structure structure) throws IOException {
+        List<List<Object>> rows = composeAtomSite(structure);
+        List<Object> columns = new ArrayList<>();
+        for(int column = 0; column < COLUMNS.size(); column++) {
+            int index = column;
+            List<Object> values = rows.stream().map(row -> row.get(index)).collect(Collectors.toList());
+            Map<String, Object> data;
+            Object mask = null;
+            if(values.get(0) instanceof Integer) {
+                data = encodeIntegers(values.stream().mapToInt(Integer.class::cast).toArray());
+            } else if(values.get(0) instanceof Number) {
+                ByteBuffer buffer = ByteBuffer.allocate(values.size() * 8).order(ByteOrder.LITTLE_ENDIAN);
+                values.forEach(value -> buffer.putDouble(((Number) value).doubleValue()));
+                data = map("data", buffer.array(), "encoding", Collections.singletonList(map("kind", "ByteArray", "type", 33)));
+            } else {
+                List<String> strings = values.stream().map(String.class::cast).collect(Collectors.toList());
+                if(strings.stream().anyMatch(AtomSiteReader::isMissing)) {
+                    mask = encodeIntegers(strings.stream()
+                            .mapToInt(value -> value.equals(".") ? 1 : value.equals("?") ? 2 : 0)
+                            .toArray());
+                }
+                data = encodeStrings(strings);
+            }
+            columns.add(map("name", COLUMNS.get(column), "data", data, "mask", mask));
+        }
+
+        Map<String, Object> atomSite = map("name", "_atom_site", "rowCount", rows.size(), "columns", columns);
+        Map<String, Object> entry = map("name", "_entry", "rowCount", 1, "columns", Collections.singletonList(
+                map("name", "id", "data", encodeStrings(Collections.singletonList("1ACJ")), "mask", null)));
+        Map<String, Object> file = map("version", "0.3.0", "encoder", "test", "dataBlocks", Collections.singletonList(
+                map("header", "1ACJ", "categories", Arrays.asList(entry, atomSite))));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeMessagePack(outputStream, file);
+        return outputStream.toByteArray();
+    }
+
+    private static Map<String, Object> encodeIntegers(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for(int value : values) {
+            buffer.putInt(value);
+        }
+        return map("data", buffer.array(), "encoding", Collections.singletonList(map("kind", "ByteArray", "type", 3)));
+    }
+
+    private static Map<String, Object> encodeStrings(List<String> values) {
+        List<String> distinctValues = new ArrayList<>(new LinkedHashSet<>(values));
+        Map<String, Integer> indices = distinctValues.stream()
+                .collect(Collectors.toMap(Function.identity(), distinctValues::indexOf));
+        int[] offsets = new int[distinctValues.size() + 1];
+        for(int i = 0; i < distinctValues.size(); i++) {
+            offsets[i + 1] = offsets[i] + distinctValues.get(i).length();
+        }
+        Map<String, Object> encodedOffsets = encodeIntegers(offsets);
+        Map<String, Object> encodedIndices = encodeIntegers(values.stream().mapToInt(indices::get).toArray());
+        return map("data", encodedIndices.get("data"),
+                "encoding", Collections.singletonList(map("kind", "StringArray",
+                        "dataEncoding", encodedIndices.get("encoding"),
+                        "stringData", String.join("", distinctValues),
+                        "offsetEncoding", encodedOffsets.get("encoding"),
+                        "offsets", encodedOffsets.get("data"))));
+    }
+
+    private static Map<String, Object> map(Object... keyValuePairs) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for(int i = 0; i < keyValuePairs.length; i += 2) {
+            map.put((String) keyValuePairs[i], keyValuePairs[i + 1]);
+        }
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeMessagePack(ByteArrayOutputStream outputStream, Object value) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(9);
+        if(value == null) {
+            outputStream.write(0xC0);
+        } else if(value instanceof Boolean) {
+            outputStream.write((Boolean) value ? 0xC3 : 0xC2);
+        } else if(value instanceof Integer) {
+            header.put((byte) 0xD2).putInt((Integer) value);
+            outputStream.write(header.array(), 0, 5);
+        } else if(value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            header.put((byte) 0xDB).putInt(bytes.length);
+            outputStream.write(header.array(), 0, 5);
+            outputStream.write(bytes);
+        } else if(value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            header.put((byte) 0xC6).putInt(bytes.length);
+            outputStream.write(header.array(), 0, 5);
+            outputStream.write(bytes);
+        } else if(value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            header.put((byte) 0xDD).putInt(list.size());
+            outputStream.write(header.array(), 0, 5);
+            for(Object element : list) {
+                writeMessagePack(outputStream, element);
+            }
+        } else if(value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            header.put((byte) 0xDF).putInt(map.size());
+            outputStream.write(header.array(), 0, 5);
+            for(Map.Entry<String, Object> entry : map.entrySet()) {
+                writeMessagePack(outputStream, entry.getKey());
+                writeMessagePack(outputStream, entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported type " + value.getClass());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the positional indices maintained by chains.
+ */
+public class ChainTest {
+    private Chain chain;
+
+    @Before
+    public void setup() {
+        chain = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse()
+                .getFirstChain();
+    }
+
+    @Test
+    public void shouldIndexGroups() {
+        List<Group> groups = chain.getGroups();
+        List<Group> aminoAcids = chain.aminoAcids().collect(Collectors.toList());
+        Assert.assertTrue(groups.size() > aminoAcids.size());
+        for(Group group : groups) {
+            Assert.assertEquals(groups.indexOf(group), group.getResidueIndex());
+            Assert.assertEquals(aminoAcids.indexOf(group), chain.getAminoAcidIndex(group));
+        }
+        for(Group aminoAcid : aminoAcids) {
+            Assert.assertEquals(aminoAcids.indexOf(aminoAcid), ((AminoAcid) aminoAcid).getAminoAcidIndex());
+        }
+    }
+
+    @Test
+    public void shouldNavigateSequence() {
+        List<AminoAcid> aminoAcids = chain.getAminoAcids();
+        AminoAcid first = aminoAcids.get(0);
+        AminoAcid second = aminoAcids.get(1);
+        Assert.assertEquals(Optional.empty(), first.getPreviousAminoAcid());
+        Assert.assertEquals(Optional.of(second), first.getNextAminoAcid());
+        Assert.assertEquals(Optional.of(first), second.getAminoAcidWithOffset(-1));
+        Assert.assertEquals(Optional.of(aminoAcids.get(10)), first.getAminoAcidWithOffset(10));
+        Assert.assertEquals(Optional.empty(), first.getAminoAcidWithOffset(chain.getGroups().size()));
+    }
+
+    @Test
+    public void shouldUpdateIndicesOnModification() {
+        Group first = chain.getGroups().get(0);
+        Group second = chain.getGroups().get(1);
+        Group last = chain.getGroups().get(chain.getGroups().size() - 1);
+        Assert.assertEquals(1, second.getResidueIndex());
+
+        Assert.assertTrue(chain.removeGroup(first));
+        Assert.assertFalse(chain.removeGroup(first));
+        Assert.assertEquals(0, second.getResidueIndex());
+        Assert.assertEquals(0, chain.getAminoAcidIndex(second));
+        Assert.assertEquals(-1, chain.getResidueIndex(first));
+
+        chain.addGroup(first);
+        Assert.assertEquals(chain.getGroups().size() - 1, first.getResidueIndex());
+        Assert.assertEquals(Optional.of(first), chain.getGroupWithOffset(last, 1));
+
+        // direct manipulation of the underlying list is detected as well
+        chain.getGroups().remove(second);
+        chain.getGroups().add(0, second);
+        Assert.assertEquals(0, second.getResidueIndex());
+    }
+}
@@ -0,0 +1,93 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.mathematics.Transformation;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Checks the contiguous coordinate storage of structures.
+ */
+public class CoordinateBlockTest {
+    private static final double[] TRANSLATION = { 1.5, -2.0, 0.25 };
+    private static final double[][] ROTATION = {
+            { 0.0, 1.0, 0.0 },
+            { -1.0, 0.0, 0.0 },
+            { 0.0, 0.0, 1.0 }
+    };
+    private Structure structure;
+
+    @Before
+    public void setup() {
+        structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+    }
+
+    @Test
+    public void shouldKeepCoordinatesWhenCompacting() {
+        String pdbRepresentation = structure.getPdbRepresentation();
+        double[] centroid = structure.calculate().centroid().getValue();
+
+        CoordinateBlock coordinateBlock = structure.compactCoordinates();
+
+        Assert.assertEquals(structure.getAtoms().size(), coordinateBlock.size());
+        Assert.assertSame(coordinateBlock, structure.getCoordinateBlock().get());
+        Assert.assertEquals(pdbRepresentation, structure.getPdbRepresentation());
+        Assert.assertArrayEquals(centroid, structure.calculate().centroid().getValue(), 0.0);
+        Assert.assertArrayEquals(centroid, coordinateBlock.centroid(), 1e-9);
+        Assert.assertEquals(structure.calculate().maximalExtent(), coordinateBlock.maximalDistance(centroid), 1e-9);
+    }
+
+    @Test
+    public void shouldWriteThroughToBlock() {
+        CoordinateBlock coordinateBlock = structure.compactCoordinates();
+        Atom atom = structure.getAtoms().get(10);
+
+        atom.setCoordinates(new double[] { 1, 2, 3 });
+        Assert.assertEquals(1, coordinateBlock.getXCoordinates()[atom.getOrdinal()], 0.0);
+        Assert.assertEquals(2, coordinateBlock.getYCoordinates()[atom.getOrdinal()], 0.0);
+        Assert.assertEquals(3, coordinateBlock.getZCoordinates()[atom.getOrdinal()], 0.0);
+
+        coordinateBlock.getXCoordinates()[atom.getOrdinal()] = 4;
+        Assert.assertArrayEquals(new double[] { 4, 2, 3 }, atom.getCoordinates(), 0.0);
+
+        // attached atoms report copies of their coordinates
+        atom.getCoordinates()[0] = 5;
+        Assert.assertEquals(4, atom.getX(), 0.0);
+    }
+
+    @Test
+    public void shouldTransformBlockLikeAtoms() {
+        Structure compactStructure = structure.createDeepCopy();
+        compactStructure.compactCoordinates();
+        Transformation transformation = new Transformation(TRANSLATION, ROTATION);
+
+        int modificationCount = compactStructure.getModificationCount();
+
+        structure.calculate().transform(transformation);
+        // compact structures are transformed by their block
+        compactStructure.calculate().transform(transformation);
+        Assert.assertNotEquals(modificationCount, compactStructure.getModificationCount());
+
+        List<Atom> expectedAtoms = structure.getAtoms();
+        List<Atom> actualAtoms = compactStructure.getAtoms();
+        for(int i = 0; i < expectedAtoms.size(); i++) {
+            Assert.assertArrayEquals(expectedAtoms.get(i).getCoordinates(), actualAtoms.get(i).getCoordinates(), 0.0);
+        }
+    }
+
+    @Test
+    public void shouldCompactDeepCopies() {
+        structure.compactCoordinates();
+        Structure copy = structure.createDeepCopy();
+
+        Assert.assertTrue(copy.getCoordinateBlock().isPresent());
+        Assert.assertNotSame(structure.getCoordinateBlock().get(), copy.getCoordinateBlock().get());
+        copy.getAtoms().get(0).setCoordinates(0, 0, 0);
+        Assert.assertNotEquals(0, structure.getAtoms().get(0).getX(), 0.0);
+    }
+}
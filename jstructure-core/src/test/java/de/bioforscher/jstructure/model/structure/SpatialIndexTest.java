@@ -0,0 +1,239 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.mathematics.LinearAlgebra;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the results of the spatial index to exhaustive computations.
+ */
+public class SpatialIndexTest {
+    private Structure structure;
+    private List<Atom> atoms;
+
+    @Before
+    public void setup() {
+        structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+        atoms = structure.getAtoms();
+    }
+
+    @Test
+    public void shouldFindAtomsWithinRadius() {
+        SpatialIndex spatialIndex = SpatialIndex.of(structure);
+        for(int i = 0; i < atoms.size(); i += 97) {
+            Atom reference = atoms.get(i);
+            for(double radius : new double[] { 0.5, 4.0, 8.5, 20.0 }) {
+                List<Atom> expected = atoms.stream()
+                        .filter(atom -> reference.calculate().distance(atom) <= radius)
+                        .collect(Collectors.toList());
+                Assert.assertEquals(expected, spatialIndex.getAtomsWithin(reference, radius));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindNearestAtoms() {
+        SpatialIndex spatialIndex = SpatialIndex.of(structure);
+        double[] point = { 100, -20, 5 };
+        for(int k : new int[] { 1, 10, 250 }) {
+            List<Double> expected = atoms.stream()
+                    .map(atom -> LinearAlgebra.on(point).distance(atom))
+                    .sorted()
+                    .limit(k)
+                    .collect(Collectors.toList());
+            List<Double> actual = spatialIndex.getNearestAtoms(point, k).stream()
+                    .map(atom -> LinearAlgebra.on(point).distance(atom))
+                    .collect(Collectors.toList());
+            Assert.assertEquals(expected, actual);
+        }
+        Assert.assertEquals(atoms.size(), spatialIndex.getNearestAtoms(point, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void shouldEnumeratePairsWithinCutoff() {
+        List<Atom> alphaCarbons = structure.select()
+                .alphaCarbonAtoms()
+                .asFilteredAtoms()
+                .collect(Collectors.toList());
+        double cutoff = 8.0;
+        int expected = 0;
+        for(int i = 0; i < alphaCarbons.size() - 1; i++) {
+            for(int j = i + 1; j < alphaCarbons.size(); j++) {
+                if(alphaCarbons.get(i).calculate().distance(alphaCarbons.get(j)) <= cutoff) {
+                    expected++;
+                }
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        SpatialIndex.of(alphaCarbons).forEachPairWithin(cutoff, (atom1, atom2) -> {
+            Assert.assertTrue(alphaCarbons.indexOf(atom1) < alphaCarbons.indexOf(atom2));
+            Assert.assertTrue(atom1.calculate().distance(atom2) <= cutoff);
+            count.incrementAndGet();
+        });
+        Assert.assertEquals(expected, count.get());
+    }
+
+    @Test
+    public void shouldIndexPlainCoordinates() {
+        double cutoff = 8.0;
+        // the last point lacks coordinates and must never be reported
+        double[] coordinates = new double[3 * (atoms.size() + 1)];
+        for(int i = 0; i < atoms.size(); i++) {
+            System.arraycopy(atoms.get(i).getCoordinates(), 0, coordinates, 3 * i, 3);
+        }
+        coordinates[3 * atoms.size()] = Double.NaN;
+        SpatialIndex spatialIndex = SpatialIndex.of(coordinates, cutoff);
+
+        Atom reference = atoms.get(1200);
+        List<Integer> expected = new ArrayList<>();
+        for(int i = 0; i < atoms.size(); i++) {
+            if(reference.calculate().distance(atoms.get(i)) <= cutoff) {
+                expected.add(i);
+            }
+        }
+        List<Integer> actual = new ArrayList<>();
+        spatialIndex.forEachIndexWithin(reference.getCoordinates(), cutoff, actual::add);
+        actual.sort(Comparator.naturalOrder());
+        Assert.assertEquals(expected, actual);
+
+        AtomicInteger count = new AtomicInteger();
+        spatialIndex.forEachIndexPairWithin(cutoff, (index, neighborIndex) -> {
+            Assert.assertTrue(index < neighborIndex);
+            Assert.assertTrue(neighborIndex < atoms.size());
+            count.incrementAndGet();
+        });
+        AtomicInteger expectedCount = new AtomicInteger();
+        SpatialIndex.of(atoms, cutoff).forEachPairWithin(cutoff, (atom1, atom2) -> expectedCount.incrementAndGet());
+        Assert.assertEquals(expectedCount.get(), count.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectAtomQueriesOnPlainCoordinates() {
+        SpatialIndex.of(new double[] { 0, 0, 0 }, SpatialIndex.DEFAULT_CELL_SIZE).getAtomsWithin(new double[3], 1);
+    }
+
+    @Test
+    public void shouldRebuildAfterCoordinateChanges() {
+        SpatialIndex spatialIndex = structure.getSpatialIndex();
+        Atom atom = atoms.get(0);
+        double[] target = { 500, 500, 500 };
+        Assert.assertTrue(spatialIndex.getAtomsWithin(target, 1).isEmpty());
+
+        atom.setCoordinates(target);
+
+        Assert.assertEquals(1, spatialIndex.getAtomsWithin(target, 1).size());
+        Assert.assertSame(structure.getSpatialIndex(), structure.getSpatialIndex());
+    }
+
+    @Test
+    public void shouldNotTrackOrphans() {
+        int modificationCount = Structure.UNKNOWN_STRUCTURE.getModificationCount();
+        Atom orphan = Atom.builder(Element.C, new double[] { 0, 0, 0 }).build();
+        orphan.setCoordinates(1, 1, 1);
+        Group group = new Group(atoms.get(0).getParentGroup().getGroupPrototype(),
+                atoms.get(0).getParentGroup().getResidueIdentifier(),
+                false);
+        group.addAtom(orphan);
+        Assert.assertEquals(modificationCount, Structure.UNKNOWN_STRUCTURE.getModificationCount());
+
+        // moving an atom of this structure still invalidates its index
+        int structureModificationCount = structure.getModificationCount();
+        atoms.get(0).setCoordinates(1, 1, 1);
+        Assert.assertNotEquals(structureModificationCount, structure.getModificationCount());
+    }
+
+    @Test
+    public void shouldReflectRemovedAtoms() {
+        Atom atom = atoms.get(0);
+        Assert.assertTrue(structure.getSpatialIndex().getAtomsWithin(atom, 0.1).contains(atom));
+
+        Assert.assertTrue(atom.getParentGroup().removeAtom(atom));
+
+        Assert.assertFalse(structure.getSpatialIndex().getAtomsWithin(atom, 0.1).contains(atom));
+        Assert.assertFalse(atom.getParentGroup().removeAtom(atom));
+    }
+
+    @Test
+    public void shouldAnswerQueriesWhileRebuilding() throws Exception {
+        SpatialIndex spatialIndex = structure.getSpatialIndex();
+        Atom movingAtom = atoms.get(0);
+        double[] origin = movingAtom.getCoordinates();
+        // a query far from both positions of the moving atom
+        Atom reference = atoms.get(atoms.size() / 2);
+        int expected = spatialIndex.getAtomsWithin(reference, 8.0).size();
+        Assert.assertTrue(LinearAlgebra.on(origin).distance(reference) > 20);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> queries = new ArrayList<>();
+            for(int thread = 0; thread < 3; thread++) {
+                queries.add(executorService.submit(() -> {
+                    for(int i = 0; i < 2000; i++) {
+                        Assert.assertEquals(expected, spatialIndex.getAtomsWithin(reference, 8.0).size());
+                    }
+                }));
+            }
+            Future<?> modifications = executorService.submit(() -> {
+                for(int i = 0; i < 2000; i++) {
+                    movingAtom.setCoordinates(i % 2 == 0 ? new double[] { 500, 500, 500 } : origin);
+                }
+            });
+            modifications.get();
+            for(Future<?> query : queries) {
+                query.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldSelectNeighborhoodLikeExhaustiveSearch() {
+        Atom reference = atoms.get(1200);
+        double cutoff = 6.0;
+        List<Atom> expectedAtoms = atoms.stream()
+                .filter(atom -> reference.calculate().distanceFast(atom) < cutoff * cutoff)
+                .collect(Collectors.toList());
+        Assert.assertEquals(expectedAtoms, structure.select()
+                .atomDistance(reference, cutoff)
+                .asFilteredAtoms()
+                .collect(Collectors.toList()));
+
+        Chain chain = structure.getFirstChain();
+        List<Group> expectedGroups = chain.groups()
+                .filter(Group::isAminoAcid)
+                .filter(group -> group.atoms().anyMatch(atom -> reference.calculate().distanceFast(atom) < cutoff * cutoff))
+                .collect(Collectors.toList());
+        Assert.assertEquals(expectedGroups, chain.select()
+                .aminoAcids()
+                .groupDistance(reference, cutoff)
+                .asFilteredGroups()
+                .collect(Collectors.toList()));
+        Assert.assertEquals(expectedGroups.stream().flatMap(Group::atoms).collect(Collectors.toList()), chain.select()
+                .aminoAcids()
+                .groupDistance(reference, cutoff)
+                .asFilteredAtoms()
+                .collect(Collectors.toList()));
+
+        // negated constraints are evaluated exhaustively
+        Assert.assertEquals(atoms.size() - expectedAtoms.size(), structure.select()
+                .negationModeEnter()
+                .atomDistance(reference, cutoff)
+                .asFilteredAtoms()
+                .count());
+    }
+}
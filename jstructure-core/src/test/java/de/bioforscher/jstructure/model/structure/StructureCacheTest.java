@@ -0,0 +1,140 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.testutil.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks the behaviour of the cached mode of the parser.
+ */
+public class StructureCacheTest {
+    private Path previousLocalPdbDirectory;
+    private Path localPdbDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        // mimic a local PDB mirror containing 1acj
+        previousLocalPdbDirectory = StructureParser.OptionalSteps.getLocalPdbDirectory();
+        localPdbDirectory = Files.createTempDirectory("pdb");
+        Path file = Files.createDirectories(localPdbDirectory.resolve("ac")).resolve("pdb1acj.ent.gz");
+        try(InputStream inputStream = TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ);
+            OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        StructureParser.OptionalSteps.setLocalPdbDirectory(localPdbDirectory);
+    }
+
+    @After
+    public void teardown() {
+        StructureParser.OptionalSteps.setLocalPdbDirectory(previousLocalPdbDirectory);
+        StructureParser.OptionalSteps.getStructureCache().clear();
+    }
+
+    @Test
+    public void shouldReturnIndependentCopiesOfCachedEntries() {
+        Structure first = StructureParser.fromPdbId("1acj")
+                .minimalParsing(true)
+                .cachedMode(10)
+                .parse();
+        StructureCache cache = StructureParser.OptionalSteps.getStructureCache();
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+
+        // manipulate the returned instance
+        Atom atom = first.getAtoms().get(0);
+        double[] originalCoordinates = atom.getCoordinates().clone();
+        atom.setCoordinates(new double[] { 0, 0, 0 });
+        first.getFirstChain().getGroups().remove(0);
+
+        Structure second = StructureParser.fromPdbId("1ACJ")
+                .minimalParsing(true)
+                .cachedMode(10)
+                .parse();
+
+        Assert.assertEquals("second request should be answered by the cache", hits + 1, cache.getHitCount());
+        Assert.assertEquals("second request should be answered by the cache", misses, cache.getMissCount());
+        Assert.assertNotSame(first, second);
+        Assert.assertArrayEquals("cached entry was corrupted",
+                originalCoordinates,
+                second.getAtoms().get(0).getCoordinates(),
+                0.0);
+        Assert.assertEquals("cached entry was corrupted",
+                first.getFirstChain().getGroups().size() + 1,
+                second.getFirstChain().getGroups().size());
+    }
+
+    @Test
+    public void shouldDistinguishParseOptions() {
+        Structure withLigands = StructureParser.fromPdbId("1acj")
+                .minimalParsing(true)
+                .cachedMode(10)
+                .parse();
+        Structure withoutLigands = StructureParser.fromPdbId("1acj")
+                .minimalParsing(true)
+                .skipHetAtms(true)
+                .cachedMode(10)
+                .parse();
+        Assert.assertNotEquals(withLigands.getAtoms().size(), withoutLigands.getAtoms().size());
+    }
+
+    @Test
+    public void shouldDistinguishSources() {
+        Path mirror = Paths.get("/var/local/pdb/");
+        StructureCache.Key key = new StructureCache.Key("1ACJ", false, false, true, false, null, null, mirror);
+        Assert.assertEquals(key, new StructureCache.Key("1acj", false, false, true, false, null, null, mirror));
+        Assert.assertEquals(key.hashCode(),
+                new StructureCache.Key("1acj", false, false, true, false, null, null, mirror).hashCode());
+        Assert.assertNotEquals(key, new StructureCache.Key("1acj", false, false, true, false, null,
+                StructureParser.Format.MMCIF, mirror));
+        Assert.assertNotEquals(key, new StructureCache.Key("1acj", false, false, true, false, null, null,
+                Paths.get("/tmp/pdb/")));
+    }
+
+    @Test
+    public void shouldDistinguishStrictMode() {
+        StructureCache.Key lenient = new StructureCache.Key("1acj", false, false, true, false, null, null, null);
+        StructureCache.Key strict = new StructureCache.Key("1acj", false, false, true, true, null, null, null);
+        Assert.assertNotEquals(lenient, strict);
+
+        StructureCache cache = new StructureCache(10);
+        Structure structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+        cache.get(lenient, () -> structure);
+        cache.get(strict, () -> structure);
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() {
+        StructureCache cache = new StructureCache(1);
+        Structure structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+        StructureCache.Key key1 = new StructureCache.Key("1acj", false, false, true, false, null, null, null);
+        StructureCache.Key key2 = new StructureCache.Key("1acj", true, false, true, false, null, null, null);
+
+        cache.get(key1, () -> structure);
+        cache.get(key2, () -> structure);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        cache.get(key1, () -> structure);
+        Assert.assertEquals(3, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+}
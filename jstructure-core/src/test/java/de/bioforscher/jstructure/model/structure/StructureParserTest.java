@@ -4,9 +4,16 @@ import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
 import de.bioforscher.jstructure.model.structure.nucleotide.Nucleotide;
 import de.bioforscher.testutil.TestUtils;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
-
-import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -19,6 +26,7 @@ import static org.hamcrest.CoreMatchers.startsWith;
  * Created by S on 29.09.2016.
  */
 public class StructureParserTest {
+    private static final Logger logger = LoggerFactory.getLogger(StructureParserTest.class);
     private static final String PDB_DIRECTORY = "parser/";
     private static final List<TestUtils.SupportedProtein> PDB_IDS = Stream.of(TestUtils.SupportedProtein.values())
         .collect(Collectors.toList());
@@ -239,6 +247,189 @@ public class StructureParserTest {
         }
     }
 
+    @Test
+    public void shouldCreateEqualStructuresWithByteLevelParsing() {
+        Stream.of(TestUtils.SupportedProtein.PDB_1ACJ, TestUtils.SupportedProtein.PDB_3G1H)
+                .forEach(supportedProtein -> {
+                    Structure expected = StructureParser.fromInputStream(TestUtils.getProteinInputStream(supportedProtein))
+                            .minimalParsing(true)
+                            .parse();
+                    Structure actual = StructureParser.fromInputStream(TestUtils.getProteinInputStream(supportedProtein))
+                            .minimalParsing(true)
+                            .byteLevelParsing(true)
+                            .parse();
+
+                    Assert.assertEquals("header does not match", expected.getHeader(), actual.getHeader());
+                    Assert.assertEquals("title does not match", expected.getTitle(), actual.getTitle());
+                    Assert.assertEquals("number of chains does not match", expected.getChains().size(), actual.getChains().size());
+                    Assert.assertEquals("number of groups does not match", expected.getGroups().size(), actual.getGroups().size());
+                    Assert.assertEquals("sequence does not match", expected.getAminoAcidSequence(), actual.getAminoAcidSequence());
+                    Assert.assertEquals("ligand annotation does not match", expected.ligands().count(), actual.ligands().count());
+                    Assert.assertEquals("ATOM records do not match", expected.getPdbRepresentation(), actual.getPdbRepresentation());
+                });
+    }
+
+    @Test
+    @Ignore("benchmark")
+    public void benchmarkByteLevelParsing() throws IOException {
+        for(TestUtils.SupportedProtein supportedProtein : new TestUtils.SupportedProtein[] {
+                TestUtils.SupportedProtein.PDB_1ACJ,
+                TestUtils.SupportedProtein.PDB_3G1H }) {
+            byte[] content;
+            try(InputStream inputStream = TestUtils.getProteinInputStream(supportedProtein)) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int length;
+                while((length = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, length);
+                }
+                content = outputStream.toByteArray();
+            }
+
+            for(boolean byteLevelParsing : new boolean[] { false, true }) {
+                int iterations = 200;
+                // warm-up
+                for(int iteration = 0; iteration < iterations; iteration++) {
+                    parse(content, byteLevelParsing);
+                }
+                long start = System.nanoTime();
+                for(int iteration = 0; iteration < iterations; iteration++) {
+                    parse(content, byteLevelParsing);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                logger.info(String.format(Locale.US, "%s byteLevelParsing=%b: %.2f ms/parse, %.1f MB/s",
+                        supportedProtein,
+                        byteLevelParsing,
+                        1000 * seconds / iterations,
+                        (double) content.length * iterations / seconds / 1e6));
+            }
+        }
+    }
+
+    private Structure parse(byte[] content, boolean byteLevelParsing) {
+        return StructureParser.fromInputStream(new ByteArrayInputStream(content))
+                .minimalParsing(true)
+                .byteLevelParsing(byteLevelParsing)
+                .parse();
+    }
+
+    @Test
+    public void shouldStreamModels() {
+        String ensemble = createEnsemble(3);
+        for(boolean byteLevelParsing : new boolean[] { false, true }) {
+            Structure firstModel = StructureParser.fromInputStream(new ByteArrayInputStream(ensemble.getBytes()))
+                    .minimalParsing(true)
+                    .byteLevelParsing(byteLevelParsing)
+                    .parse();
+            Assert.assertEquals("only the first model should be parsed", 50, firstModel.getAtoms().size());
+
+            List<Structure> models = StructureParser.fromInputStream(new ByteArrayInputStream(ensemble.getBytes()))
+                    .minimalParsing(true)
+                    .byteLevelParsing(byteLevelParsing)
+                    .parseModels()
+                    .collect(Collectors.toList());
+            Assert.assertEquals("number of models does not match", 3, models.size());
+            for(int modelIndex = 0; modelIndex < models.size(); modelIndex++) {
+                Structure model = models.get(modelIndex);
+                Assert.assertEquals(50, model.getAtoms().size());
+                Assert.assertEquals(firstModel.getHeader(), model.getHeader());
+                Assert.assertEquals(firstModel.getAtoms().get(0).getCoordinates()[0] + modelIndex,
+                        model.getAtoms().get(0).getCoordinates()[0],
+                        TestUtils.TOLERANT_ERROR_MARGIN);
+            }
+            Assert.assertNotSame(models.get(0), models.get(1));
+
+            // shared topology: the same instance is reported, only coordinates change
+            List<Double> xCoordinates = new ArrayList<>();
+            Set<Structure> instances = new HashSet<>();
+            StructureParser.fromInputStream(new ByteArrayInputStream(ensemble.getBytes()))
+                    .minimalParsing(true)
+                    .byteLevelParsing(byteLevelParsing)
+                    .parseModels(true)
+                    .forEach(model -> {
+                        instances.add(model);
+                        Assert.assertEquals(50, model.getAtoms().size());
+                        xCoordinates.add(model.getAtoms().get(0).getCoordinates()[0]);
+                    });
+            Assert.assertEquals(1, instances.size());
+            Assert.assertEquals(3, xCoordinates.size());
+            Assert.assertEquals(xCoordinates.get(0) + 2, xCoordinates.get(2), TestUtils.TOLERANT_ERROR_MARGIN);
+        }
+    }
+
+    @Test
+    public void shouldStreamSingleModel() {
+        // 1acj contains no MODEL/ENDMDL records, so the end of the input terminates the only model
+        for(boolean shareTopology : new boolean[] { false, true }) {
+            for(boolean byteLevelParsing : new boolean[] { false, true }) {
+                List<Structure> models = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                        .minimalParsing(true)
+                        .byteLevelParsing(byteLevelParsing)
+                        .parseModels(shareTopology)
+                        .limit(5)
+                        .collect(Collectors.toList());
+                Assert.assertEquals("single model should be reported once", 1, models.size());
+                Assert.assertFalse(models.get(0).getAtoms().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void shouldUpdateCompactedSharedTopology() {
+        String ensemble = createEnsemble(3);
+        for(boolean byteLevelParsing : new boolean[] { false, true }) {
+            List<Double> xCoordinates = new ArrayList<>();
+            StructureParser.fromInputStream(new ByteArrayInputStream(ensemble.getBytes()))
+                    .minimalParsing(true)
+                    .byteLevelParsing(byteLevelParsing)
+                    .parseModels(true)
+                    .forEach(model -> {
+                        if(!model.getCoordinateBlock().isPresent()) {
+                            model.compactCoordinates();
+                        }
+                        Atom reference = model.getAtoms().get(0);
+                        xCoordinates.add(reference.getX());
+
+                        // the spatial index has to reflect the coordinates of the current model
+                        double[] point = new double[] { reference.getX() + 2.5, reference.getY(), reference.getZ() };
+                        List<Atom> expected = model.atoms()
+                                .filter(atom -> atom.calculate().distance(point) < 4.0)
+                                .collect(Collectors.toList());
+                        List<Atom> actual = model.getSpatialIndex().getAtomsWithin(point, 4.0);
+                        Assert.assertFalse(expected.isEmpty());
+                        Assert.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+                    });
+            Assert.assertEquals(3, xCoordinates.size());
+            Assert.assertEquals(xCoordinates.get(0) + 1, xCoordinates.get(1), TestUtils.TOLERANT_ERROR_MARGIN);
+            Assert.assertEquals(xCoordinates.get(0) + 2, xCoordinates.get(2), TestUtils.TOLERANT_ERROR_MARGIN);
+        }
+    }
+
+    /**
+     * Composes an artificial ensemble from the first atoms of 1acj. Each model is shifted by 1 A along the x-axis.
+     */
+    private String createEnsemble(int numberOfModels) {
+        List<String> lines = TestUtils.getResourceAsLines("pdb/1acj.pdb");
+        List<String> atomLines = lines.stream()
+                .filter(line -> line.startsWith("ATOM"))
+                .limit(50)
+                .collect(Collectors.toList());
+        StringJoiner ensemble = new StringJoiner(System.lineSeparator(), "", System.lineSeparator());
+        lines.stream()
+                .filter(line -> line.startsWith("HEADER") || line.startsWith("TITLE"))
+                .forEach(ensemble::add);
+        for(int modelIndex = 0; modelIndex < numberOfModels; modelIndex++) {
+            ensemble.add(String.format("MODEL     %4d", modelIndex + 1));
+            for(String atomLine : atomLines) {
+                double x = Double.parseDouble(atomLine.substring(30, 38).trim()) + modelIndex;
+                ensemble.add(atomLine.substring(0, 30) + String.format(Locale.US, "%8.3f", x) + atomLine.substring(38));
+            }
+            ensemble.add("ENDMDL");
+        }
+        ensemble.add("END");
+        return ensemble.toString();
+    }
+
     @Test
     public void shouldHandleLargeCoordinatesFor3hqv() {
         Structure structure = StructureParser.fromPdbId("3hqv").parse();
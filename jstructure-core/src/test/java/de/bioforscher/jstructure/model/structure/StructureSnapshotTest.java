@@ -0,0 +1,128 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks whether snapshots restore the original structure.
+ */
+public class StructureSnapshotTest {
+    private static final Logger logger = LoggerFactory.getLogger(StructureSnapshotTest.class);
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRestoreStructureFromSnapshot() {
+        for(TestUtils.SupportedProtein protein : new TestUtils.SupportedProtein[] { TestUtils.SupportedProtein.PDB_1ACJ,
+                TestUtils.SupportedProtein.PDB_3G1H }) {
+            Structure structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(protein))
+                    .minimalParsing(true)
+                    .parse();
+            assertEqualStructures(structure, StructureSnapshot.read(StructureSnapshot.toByteArray(structure)));
+        }
+    }
+
+    @Test
+    public void shouldRestoreStructureFromMappedFile() throws IOException {
+        Structure structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+        Path file = temporaryFolder.newFile("1acj.snapshot").toPath();
+        StructureSnapshot.write(structure, file);
+        assertEqualStructures(structure, StructureSnapshot.read(file));
+        Assert.assertTrue("snapshot should be considerably smaller than the PDB representation",
+                Files.size(file) * 4 < structure.getPdbRepresentation().length());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void shouldRejectInvalidInput() {
+        StructureSnapshot.read(new byte[] { 1, 2, 3, 4, 5 });
+    }
+
+    @Test(expected = ParsingException.class)
+    public void shouldRejectSnapshotsOfPreviousVersion() {
+        // version 1 stored enum ordinals, which cannot be resolved reliably
+        StructureSnapshot.read(new byte[] { 0x4A, 0x53, 0x53, 0x4E, 1 });
+    }
+
+    @Test
+    @Ignore("benchmark")
+    public void benchmarkLoading() throws IOException {
+        for(TestUtils.SupportedProtein supportedProtein : new TestUtils.SupportedProtein[] {
+                TestUtils.SupportedProtein.PDB_1ACJ,
+                TestUtils.SupportedProtein.PDB_3G1H }) {
+            Structure structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(supportedProtein))
+                    .minimalParsing(true)
+                    .parse();
+            Path file = temporaryFolder.newFile(supportedProtein + ".snapshot").toPath();
+            StructureSnapshot.write(structure, file);
+
+            int iterations = 1000;
+            // warm-up
+            for(int iteration = 0; iteration < iterations; iteration++) {
+                StructureSnapshot.read(file);
+            }
+            long start = System.nanoTime();
+            for(int iteration = 0; iteration < iterations; iteration++) {
+                StructureSnapshot.read(file);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            logger.info(String.format(Locale.US, "%s (%d atoms, %d bytes): %.3f ms/load",
+                    supportedProtein,
+                    structure.getAtoms().size(),
+                    Files.size(file),
+                    1000 * seconds / iterations));
+        }
+    }
+
+    private static void assertEqualStructures(Structure expected, Structure actual) {
+        Assert.assertEquals(expected.getProteinIdentifier(), actual.getProteinIdentifier());
+        Assert.assertEquals(expected.getTitle(), actual.getTitle());
+        Assert.assertEquals(expected.getClassification(), actual.getClassification());
+        Assert.assertEquals(expected.getDepositionDate(), actual.getDepositionDate());
+        Assert.assertEquals(expected.getPdbRepresentation(), actual.getPdbRepresentation());
+
+        Assert.assertEquals(expected.getChains().size(), actual.getChains().size());
+        for(int i = 0; i < expected.getChains().size(); i++) {
+            Assert.assertEquals(expected.getChains().get(i).getChainIdentifier(),
+                    actual.getChains().get(i).getChainIdentifier());
+        }
+
+        List<Group> expectedGroups = expected.getGroups();
+        List<Group> actualGroups = actual.getGroups();
+        Assert.assertEquals(expectedGroups.size(), actualGroups.size());
+        for(int i = 0; i < expectedGroups.size(); i++) {
+            Group expectedGroup = expectedGroups.get(i);
+            Group actualGroup = actualGroups.get(i);
+            Assert.assertEquals(expectedGroup.getClass(), actualGroup.getClass());
+            Assert.assertEquals(expectedGroup.getIdentifier(), actualGroup.getIdentifier());
+            Assert.assertEquals(expectedGroup.isLigand(), actualGroup.isLigand());
+            Assert.assertSame(expectedGroup.getGroupPrototype(), actualGroup.getGroupPrototype());
+        }
+
+        List<Atom> expectedAtoms = expected.getAtoms();
+        List<Atom> actualAtoms = actual.getAtoms();
+        for(int i = 0; i < expectedAtoms.size(); i++) {
+            Atom expectedAtom = expectedAtoms.get(i);
+            Atom actualAtom = actualAtoms.get(i);
+            Assert.assertEquals(expectedAtom.getIdentifier(), actualAtom.getIdentifier());
+            Assert.assertEquals(expectedAtom.getElement(), actualAtom.getElement());
+            Assert.assertEquals(expectedAtom.getAlternativeLocation(), actualAtom.getAlternativeLocation());
+            Assert.assertArrayEquals(expectedAtom.getCoordinates(), actualAtom.getCoordinates(), 0.0);
+            Assert.assertEquals(expectedAtom.getOccupancy(), actualAtom.getOccupancy(), 0.0);
+            Assert.assertEquals(expectedAtom.getBfactor(), actualAtom.getBfactor(), 0.0);
+        }
+    }
+}
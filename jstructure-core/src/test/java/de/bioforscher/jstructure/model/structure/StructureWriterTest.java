@@ -0,0 +1,150 @@
+package de.bioforscher.jstructure.model.structure;
+
+import de.bioforscher.jstructure.model.structure.aminoacid.NonStandardAminoAcid;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks whether the streaming writer reproduces the former <tt>String.format</tt>-based output.
+ */
+public class StructureWriterTest {
+    private Structure structure;
+
+    @Before
+    public void setup() {
+        structure = StructureParser.fromInputStream(TestUtils.getProteinInputStream(TestUtils.SupportedProtein.PDB_1ACJ))
+                .minimalParsing(true)
+                .parse();
+    }
+
+    @Test
+    public void shouldWriteIdenticalRepresentationToAllTargets() throws IOException {
+        String pdbRepresentation = structure.getPdbRepresentation();
+        byte[] expected = pdbRepresentation.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        StructureWriter.write(structure, outputStream);
+        Assert.assertArrayEquals(expected, outputStream.toByteArray());
+
+        StringWriter writer = new StringWriter();
+        StructureWriter.write(structure, writer);
+        Assert.assertEquals(pdbRepresentation, writer.toString());
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(expected.length);
+        StructureWriter.write(structure, byteBuffer);
+        Assert.assertArrayEquals(expected, byteBuffer.array());
+
+        Path file = Files.createTempFile("1acj", ".pdb");
+        StructureWriter.write(structure.getFirstChain(), file);
+        Assert.assertArrayEquals(structure.getFirstChain().getPdbRepresentation().getBytes(StandardCharsets.UTF_8),
+                Files.readAllBytes(file));
+    }
+
+    @Test
+    public void shouldWriteAtomRecordsAsBefore() {
+        for(TestUtils.SupportedProtein protein : new TestUtils.SupportedProtein[] { TestUtils.SupportedProtein.PDB_1ACJ,
+                TestUtils.SupportedProtein.PDB_3G1H }) {
+            StructureParser.fromInputStream(TestUtils.getProteinInputStream(protein))
+                    .minimalParsing(true)
+                    .parse()
+                    .atoms()
+                    .forEach(atom -> Assert.assertEquals(legacyPdbString(atom), atom.getPdbRepresentation()));
+        }
+    }
+
+    @Test
+    public void shouldFormatDecimalsAsDecimalFormat() {
+        DecimalFormat d3 = decimalFormat(4, 3);
+        DecimalFormat d2 = decimalFormat(3, 2);
+        Random random = new Random(0);
+        double[] specialValues = { 0.0, -0.0, -0.0004, 0.0625, -0.0625, 0.1875, 1.005, 2.675, 9999.9996, -9999.9996,
+                10000.0, 12345.678, -123456.789, 999.995, 1e20, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY };
+        double[] randomValues = random.doubles(100000, -10500, 10500).toArray();
+        double[] quantizedValues = random.ints(100000, -10000000, 10000000).mapToDouble(value -> value / 16000.0).toArray();
+
+        for(double[] values : Arrays.asList(specialValues, randomValues, quantizedValues)) {
+            for(double value : values) {
+                Assert.assertEquals(String.format("%8s", d3.format(value)), format(value, 3, 4, 8, d3));
+                Assert.assertEquals(String.format("%6s", d2.format(value)), format(value, 2, 3, 6, d2));
+            }
+        }
+    }
+
+    private static String format(double value, int fractionDigits, int maximumIntegerDigits, int width, DecimalFormat format) {
+        return new AtomRecordProvider.RecordBuilder(4)
+                .appendDecimal(value, fractionDigits, maximumIntegerDigits, width, format)
+                .toString();
+    }
+
+    private static DecimalFormat decimalFormat(int maximumIntegerDigits, int fractionDigits) {
+        DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance(Locale.US);
+        decimalFormat.setMaximumIntegerDigits(maximumIntegerDigits);
+        decimalFormat.setMinimumFractionDigits(fractionDigits);
+        decimalFormat.setMaximumFractionDigits(fractionDigits);
+        decimalFormat.setGroupingUsed(false);
+        return decimalFormat;
+    }
+
+    /**
+     * The former implementation of {@link AtomRecordProvider#toPdbString(Atom)}.
+     */
+    private static String legacyPdbString(Atom atom) {
+        DecimalFormat d3 = decimalFormat(4, 3);
+        DecimalFormat d2 = decimalFormat(3, 2);
+        Group parentGroup = atom.getParentGroup();
+        String record = parentGroup.isLigand() || parentGroup instanceof NonStandardAminoAcid ? "HETATM" : "ATOM  ";
+        String pdbcode = String.valueOf(parentGroup.getResidueIdentifier().getResidueNumber());
+        String name = atom.getName();
+        String element = atom.getElement().toString().toUpperCase();
+        String fullName = null;
+        if (name.length() == 4) {
+            fullName = name;
+        } else if (name.length() == 3) {
+            fullName = " " + name;
+        } else if (name.length() == 2) {
+            if (element.equals("C") || element.equals("N") || element.equals("O") || element.equals("P") || element.equals("S")) {
+                fullName = " " + name + " ";
+            } else {
+                fullName = name + "  ";
+            }
+        } else if (name.length() == 1) {
+            fullName = " " + name + "  ";
+        }
+        String altLoc = atom.hasAlternativeLocations() ? atom.getAlternativeLocation() : " ";
+        String resseq = String.format("%4s", pdbcode) + (parentGroup.getResidueIdentifier().hasInsertionCode() ?
+                parentGroup.getResidueIdentifier().getInsertionCode().substring(0, 1) : " ");
+        double[] coordinates = atom.getCoordinates();
+        String s = record +
+                String.format("%5d", atom.getPdbSerial()) +
+                " " +
+                fullName +
+                altLoc +
+                String.format("%3s", parentGroup.getThreeLetterCode()) +
+                " " +
+                parentGroup.getParentChain().getChainIdentifier().getChainId() +
+                resseq +
+                "   " +
+                String.format("%8s", d3.format(coordinates[0])) +
+                String.format("%8s", d3.format(coordinates[1])) +
+                String.format("%8s", d3.format(coordinates[2])) +
+                String.format("%6s", d2.format(atom.getOccupancy())) +
+                String.format("%6s", d2.format(atom.getBfactor()));
+        return String.format("%-76s%2s", s, element) + "  ";
+    }
+}
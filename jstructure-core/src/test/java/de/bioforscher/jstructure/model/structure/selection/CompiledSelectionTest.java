@@ -0,0 +1,88 @@
+package de.bioforscher.jstructure.model.structure.selection;
+
+import de.bioforscher.jstructure.model.structure.*;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that compiled selections can be reused and agree with exhaustive predicate evaluation.
+ */
+public class CompiledSelectionTest {
+    private Structure protein1;
+    private Structure protein2;
+
+    @Before
+    public void setup() {
+        protein1 = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
+        protein2 = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
+                .minimalParsing(true)
+                .parse();
+    }
+
+    @Test
+    public void shouldApplyTemplateToSeveralContainers() {
+        CompiledSelection compiledSelection = Selection.template()
+                .aminoAcids()
+                .customAtomPredicate(atom -> atom.getPdbSerial() % 2 == 0)
+                .element(Element.C, Element.N)
+                .atomName("CA", "N", "CB")
+                .compile();
+        for(Structure protein : new Structure[] { protein1, protein2 }) {
+            List<Atom> expected = protein.atoms()
+                    .filter(atom -> atom.getParentGroup().isAminoAcid())
+                    .filter(atom -> atom.getElement() == Element.C || atom.getElement() == Element.N)
+                    .filter(atom -> atom.getName().equals("CA") || atom.getName().equals("N") ||
+                            atom.getName().equals("CB"))
+                    .filter(atom -> atom.getPdbSerial() % 2 == 0)
+                    .collect(Collectors.toList());
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertEquals(expected, compiledSelection.asFilteredAtoms(protein).collect(Collectors.toList()));
+            expected.forEach(atom -> Assert.assertTrue(compiledSelection.test(atom)));
+
+            // atom containers without hierarchy still respect group constraints
+            Group ligand = protein.select()
+                    .hetatms()
+                    .asGroup();
+            Assert.assertEquals(0, compiledSelection.asFilteredAtoms(ligand).count());
+
+            Chain chain = protein.getFirstChain();
+            Assert.assertEquals(expected.stream()
+                    .filter(atom -> atom.getParentGroup().getParentChain() == chain)
+                    .collect(Collectors.toList()),
+                    compiledSelection.asFilteredAtoms(chain).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void shouldPushChainAndGroupConstraintsDown() {
+        CompiledSelection compiledSelection = Selection.template()
+                .chainName("B", "C")
+                .groupName("LYS", "ARG")
+                .residueNumber(216, 82)
+                .compile();
+        List<Group> expected = protein1.groups()
+                .filter(group -> group.getParentChain().getChainIdentifier().getChainId().matches("[BC]"))
+                .filter(group -> group.getThreeLetterCode().equals("LYS") || group.getThreeLetterCode().equals("ARG"))
+                .filter(group -> group.getResidueIdentifier().getResidueNumber() == 216 ||
+                        group.getResidueIdentifier().getResidueNumber() == 82)
+                .collect(Collectors.toList());
+        Assert.assertEquals(4, expected.size());
+        Assert.assertEquals(expected, compiledSelection.asFilteredGroups(protein1).collect(Collectors.toList()));
+        Assert.assertEquals(expected.stream().flatMap(Group::atoms).collect(Collectors.toList()),
+                compiledSelection.asFilteredAtoms(protein1).collect(Collectors.toList()));
+        Assert.assertEquals(expected, protein1.select()
+                .chainName("B", "C")
+                .groupName("LYS", "ARG")
+                .residueNumber(216, 82)
+                .asFilteredGroups()
+                .collect(Collectors.toList()));
+        Assert.assertEquals(0, compiledSelection.asFilteredGroups(protein1.select().chainName("A").asChain()).count());
+    }
+}
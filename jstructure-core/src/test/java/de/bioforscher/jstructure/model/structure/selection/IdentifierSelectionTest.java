@@ -0,0 +1,92 @@
+package de.bioforscher.jstructure.model.structure.selection;
+
+import de.bioforscher.jstructure.model.identifier.IdentifierFactory;
+import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.Group;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that selections answered by identifier indices match exhaustive predicate evaluation.
+ */
+public class IdentifierSelectionTest {
+    private Structure protein;
+
+    @Before
+    public void setup() {
+        protein = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
+    }
+
+    @Test
+    public void shouldSelectByIdentifiersLikePredicateScan() {
+        List<Group> expected = protein.chains()
+                .filter(chain -> chain.getChainIdentifier().getChainId().equals("B"))
+                .flatMap(Chain::groups)
+                .filter(group -> group.getResidueIdentifier().getResidueNumber() == 100 ||
+                        group.getResidueIdentifier().getResidueNumber() == 20)
+                .collect(Collectors.toList());
+        Assert.assertEquals(2, expected.size());
+        Assert.assertEquals(expected, protein.select()
+                .chainName("B")
+                .residueNumber(100, 20)
+                .asFilteredGroups()
+                .collect(Collectors.toList()));
+        Assert.assertEquals(expected.stream().flatMap(Group::atoms).collect(Collectors.toList()), protein.select()
+                .chainName("B")
+                .residueNumber(100, 20)
+                .asFilteredAtoms()
+                .collect(Collectors.toList()));
+
+        List<Group> allChains = protein.groups()
+                .filter(group -> group.getResidueIdentifier().getResidueNumber() == 100)
+                .collect(Collectors.toList());
+        Assert.assertEquals(3, allChains.size());
+        Assert.assertEquals(allChains, protein.select()
+                .residueNumber(100)
+                .asFilteredGroups()
+                .collect(Collectors.toList()));
+
+        Group group = expected.get(1);
+        Assert.assertSame(group, protein.select()
+                .chainId("B")
+                .residueIdentifier(group.getResidueIdentifier())
+                .asGroup());
+        Assert.assertEquals(protein.getGroups().size() - allChains.size(), protein.select()
+                .negationModeEnter()
+                .residueNumber(100)
+                .asFilteredGroups()
+                .count());
+    }
+
+    @Test
+    public void shouldKeepIdentifierIndicesUpToDate() {
+        Chain chain = protein.select()
+                .chainName("A")
+                .asChain();
+        Group group = chain.getGroups().get(5);
+        ResidueIdentifier residueIdentifier = IdentifierFactory.createResidueIdentifier(9999);
+        Assert.assertFalse(chain.select().residueIdentifier(residueIdentifier).asOptionalGroup().isPresent());
+
+        group.setResidueIdentifier(residueIdentifier);
+        Assert.assertSame(group, chain.select().residueIdentifier(residueIdentifier).asGroup());
+        Assert.assertSame(group, chain.getGroup(residueIdentifier).get());
+
+        chain.setChainIdentifier(IdentifierFactory.createChainIdentifier(chain.getChainIdentifier().getProteinIdentifier(), "Z"));
+        Assert.assertSame(chain, protein.select().chainName("Z").asChain());
+        Assert.assertFalse(protein.select().chainName("A").asOptionalChain().isPresent());
+
+        Chain newChain = new Chain(IdentifierFactory.createChainIdentifier(chain.getChainIdentifier().getProteinIdentifier(), "A"));
+        protein.addChain(newChain);
+        Assert.assertSame(newChain, protein.select().chainName("A").asChain());
+    }
+}
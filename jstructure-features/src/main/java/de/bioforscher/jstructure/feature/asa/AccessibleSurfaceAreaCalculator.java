@@ -1,15 +1,17 @@
 package de.bioforscher.jstructure.feature.asa;
 
-import de.bioforscher.jstructure.mathematics.LinearAlgebra;
 import de.bioforscher.jstructure.model.feature.FeatureProvider;
 import de.bioforscher.jstructure.model.structure.*;
 import de.bioforscher.jstructure.model.structure.aminoacid.*;
+import de.bioforscher.jstructure.model.structure.selection.CompiledSelection;
+import de.bioforscher.jstructure.model.structure.selection.Selection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * <p>Computes the accessible surface area of each getResidue in a {@link Structure}.</p>
@@ -44,8 +46,24 @@ public class AccessibleSurfaceAreaCalculator extends FeatureProvider {
     private static final double SULFUR_VDW = 1.85;
     private static final double OXYGEN_VDW = 1.40;
 
+    /**
+     * Candidate neighbors are retrieved from the spatial index with this additional tolerance, the exact criterion is
+     * evaluated afterwards.
+     */
+    private static final double NEIGHBOR_QUERY_TOLERANCE = 1e-6;
+    private static final CompiledSelection AMINO_ACID_HEAVY_ATOMS = Selection.template()
+            .aminoAcids()
+            .nonHydrogenAtoms()
+            .compile();
+    private static final CompiledSelection HEAVY_ATOMS = Selection.template()
+            .nonHydrogenAtoms()
+            .compile();
+
     private final double probeSize;
-    private final List<double[]> spherePoints;
+    /**
+     * The coordinates of the unit sphere points, stored as consecutive x, y, z triplets.
+     */
+    private final double[] spherePoints;
     private final double cons;
 
     /**
@@ -67,68 +85,61 @@ public class AccessibleSurfaceAreaCalculator extends FeatureProvider {
         this(DEFAULT_N_SPHERE_POINTS, DEFAULT_PROBE_SIZE);
     }
 
-    private void assignRadius(Atom atom) {
-        atom.getFeatureContainer().addFeature(new AtomRadius(this, determineRadius(atom)));
-    }
-
-    private void assignSingleAsa(final AminoAcid group, final List<Atom> nonHydrogenAtoms) {
-        double asa = group.select()
-                .nonHydrogenAtoms()
-                .asFilteredAtoms()
-                .mapToDouble(atom -> calcSingleAsa(atom, nonHydrogenAtoms))
-                .sum();
-        double rasa = asa / group.getGroupPrototype().getMaximumAccessibleSurfaceArea();
-        group.getFeatureContainer().addFeature(new AccessibleSurfaceArea(this,
-                asa,
-                rasa));
-    }
-
     @Override
     protected void processInternally(Structure protein) {
-        List<Atom> nonHydrogenAtoms = protein.select()
-                .aminoAcids()
-                .nonHydrogenAtoms()
-                .asFilteredAtoms()
+        List<Atom> nonHydrogenAtoms = AMINO_ACID_HEAVY_ATOMS.asFilteredAtoms(protein)
                 .collect(Collectors.toList());
 
-        nonHydrogenAtoms.parallelStream()
-                .forEach(this::assignRadius);
-
-        protein.aminoAcids()
-                .parallel()
-                .forEach(group -> assignSingleAsa(group, nonHydrogenAtoms));
+        assignAsa(protein.aminoAcids(), nonHydrogenAtoms);
     }
 
     public void process(Chain chain) {
-        List<Atom> nonHydrogenAtoms = chain.select()
-                .aminoAcids()
-                .nonHydrogenAtoms()
-                .asFilteredAtoms()
+        List<Atom> nonHydrogenAtoms = AMINO_ACID_HEAVY_ATOMS.asFilteredAtoms(chain)
                 .collect(Collectors.toList());
 
-        nonHydrogenAtoms.parallelStream()
-                .forEach(this::assignRadius);
+        assignAsa(chain.aminoAcids(), nonHydrogenAtoms);
+    }
 
-        chain.aminoAcids()
+    private void assignAsa(Stream<AminoAcid> aminoAcids, List<Atom> nonHydrogenAtoms) {
+        AsaEngine asaEngine = new AsaEngine(nonHydrogenAtoms);
+        double[] atomAsa = new double[nonHydrogenAtoms.size()];
+        IntStream.range(0, nonHydrogenAtoms.size())
                 .parallel()
-                .forEach(group -> assignSingleAsa(group, nonHydrogenAtoms));
+                .forEach(atomIndex -> atomAsa[atomIndex] = asaEngine.calcSingleAsa(atomIndex));
+
+        Map<Atom, Integer> atomIndices = new IdentityHashMap<>();
+        for(int atomIndex = 0; atomIndex < nonHydrogenAtoms.size(); atomIndex++) {
+            atomIndices.put(nonHydrogenAtoms.get(atomIndex), atomIndex);
+        }
+
+        aminoAcids.parallel()
+                .forEach(group -> {
+                    double asa = HEAVY_ATOMS.asFilteredAtoms(group)
+                            .mapToDouble(atom -> atomAsa[atomIndices.get(atom)])
+                            .sum();
+                    double rasa = asa / group.getGroupPrototype().getMaximumAccessibleSurfaceArea();
+                    group.getFeatureContainer().addFeature(new AccessibleSurfaceArea(this,
+                            asa,
+                            rasa));
+                });
     }
 
     /**
-     * Returns list of 3D coordinates of points on a sphere using the
-     * Golden Section Spiral algorithm.
+     * Returns 3D coordinates of points on a sphere using the Golden Section Spiral algorithm.
      * @param nSpherePoints the number of points to be used in generating the spherical dot-density
-     * @return the collection of generated sphere points
+     * @return the generated sphere points as consecutive x, y, z triplets
      */
-    private List<double[]> generateSpherePoints(int nSpherePoints) {
-        List<double[]> points = new ArrayList<>();
+    private double[] generateSpherePoints(int nSpherePoints) {
+        double[] points = new double[3 * nSpherePoints];
         double inc = Math.PI * (3.0 - Math.sqrt(5.0));
         double offset = 2.0 / nSpherePoints;
         for (int k = 0 ; k < nSpherePoints; k++) {
             double y = k * offset - 1.0 + (offset / 2.0);
             double r = Math.sqrt(1.0 - y * y);
             double phi = k * inc;
-            points.add(new double[] { Math.cos(phi) * r, y, Math.sin(phi) * r });
+            points[3 * k] = Math.cos(phi) * r;
+            points[3 * k + 1] = y;
+            points[3 * k + 2] = Math.sin(phi) * r;
         }
         return points;
     }
@@ -182,46 +193,134 @@ public class AccessibleSurfaceAreaCalculator extends FeatureProvider {
     }
 
     /**
-     * Returns list of atoms within probe distance to a given atom.
-     * @param referenceAtom the atom whose neighbor shall be assessed
-     * @return all neighbored atoms
+     * Holds coordinates and radii of all considered atoms in primitive arrays and retrieves neighbors from a grid.
      */
-    private List<Atom> findNeighbors(Atom referenceAtom, List<Atom> nonHydrogenAtoms) {
-        final double cutoff = probeSize + probeSize + referenceAtom.getFeature(AtomRadius.class).getRadius();
+    private class AsaEngine {
+        private final double[] x;
+        private final double[] y;
+        private final double[] z;
+        private final double[] radii;
+        private final double maximalRadius;
+        private final SpatialIndex spatialIndex;
 
-        return nonHydrogenAtoms.stream()
-                .filter(atom -> !atom.equals(referenceAtom))
-                .filter(atom -> atom.calculate().distance(referenceAtom.getCoordinates()) < cutoff
-                        + atom.getFeature(AtomRadius.class).getRadius())
-                .collect(Collectors.toList());
+        AsaEngine(List<Atom> nonHydrogenAtoms) {
+            int numberOfAtoms = nonHydrogenAtoms.size();
+            this.x = new double[numberOfAtoms];
+            this.y = new double[numberOfAtoms];
+            this.z = new double[numberOfAtoms];
+            this.radii = new double[numberOfAtoms];
+            double maximalRadius = 0;
+            for(int atomIndex = 0; atomIndex < numberOfAtoms; atomIndex++) {
+                Atom atom = nonHydrogenAtoms.get(atomIndex);
+                x[atomIndex] = atom.getX();
+                y[atomIndex] = atom.getY();
+                z[atomIndex] = atom.getZ();
+                radii[atomIndex] = determineRadius(atom);
+                maximalRadius = Math.max(maximalRadius, radii[atomIndex]);
+                atom.getFeatureContainer().addFeature(new AtomRadius(AccessibleSurfaceAreaCalculator.this, radii[atomIndex]));
+            }
+            this.maximalRadius = maximalRadius;
+            this.spatialIndex = SpatialIndex.of(nonHydrogenAtoms);
+        }
+
+        /**
+         * Returns the atoms within probe distance to a given atom, closest atoms first.
+         * @param atomIndex the atom whose neighbors shall be assessed
+         * @return the indices of all neighbored atoms
+         */
+        private int[] findNeighbors(int atomIndex) {
+            final double cutoff = probeSize + probeSize + radii[atomIndex];
+            NeighborList neighbors = new NeighborList();
+            spatialIndex.forEachIndexWithin(new double[] { x[atomIndex], y[atomIndex], z[atomIndex] },
+                    cutoff + maximalRadius + NEIGHBOR_QUERY_TOLERANCE,
+                    neighborIndex -> {
+                        if(neighborIndex == atomIndex) {
+                            return;
+                        }
+                        double dx = x[neighborIndex] - x[atomIndex];
+                        double dy = y[neighborIndex] - y[atomIndex];
+                        double dz = z[neighborIndex] - z[atomIndex];
+                        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                        if(distance < cutoff + radii[neighborIndex]) {
+                            neighbors.insert(neighborIndex, distance);
+                        }
+                    });
+            return Arrays.copyOf(neighbors.indices, neighbors.size);
+        }
+
+        /**
+         * Calculates the accessible surface area (ASA) of an individual atom.
+         * @param atomIndex the atom to process
+         * @return this atom's ASA
+         */
+        double calcSingleAsa(int atomIndex) {
+            int[] neighbors = findNeighbors(atomIndex);
+            int numberOfNeighbors = neighbors.length;
+            double[] neighborX = new double[numberOfNeighbors];
+            double[] neighborY = new double[numberOfNeighbors];
+            double[] neighborZ = new double[numberOfNeighbors];
+            double[] neighborRadiusSquared = new double[numberOfNeighbors];
+            for(int i = 0; i < numberOfNeighbors; i++) {
+                int neighborIndex = neighbors[i];
+                neighborX[i] = x[neighborIndex];
+                neighborY[i] = y[neighborIndex];
+                neighborZ[i] = z[neighborIndex];
+                double neighborAtomRadius = radii[neighborIndex] + probeSize;
+                neighborRadiusSquared[i] = neighborAtomRadius * neighborAtomRadius;
+            }
+
+            double radius = probeSize + radii[atomIndex];
+            int accessiblePoints = 0;
+            // the neighbor which occluded the previous point is likely to occlude the next one as well
+            int lastOccluding = 0;
+
+            for (int pointOffset = 0; pointOffset < spherePoints.length; pointOffset += 3) {
+                double testPointX = spherePoints[pointOffset] * radius + x[atomIndex];
+                double testPointY = spherePoints[pointOffset + 1] * radius + y[atomIndex];
+                double testPointZ = spherePoints[pointOffset + 2] * radius + z[atomIndex];
+                boolean isAccessible = true;
+                for(int i = 0; i < numberOfNeighbors; i++) {
+                    int neighbor = i == 0 ? lastOccluding : i <= lastOccluding ? i - 1 : i;
+                    double dx = testPointX - neighborX[neighbor];
+                    double dy = testPointY - neighborY[neighbor];
+                    double dz = testPointZ - neighborZ[neighbor];
+                    if (dx * dx + dy * dy + dz * dz < neighborRadiusSquared[neighbor]) {
+                        isAccessible = false;
+                        lastOccluding = neighbor;
+                        break;
+                    }
+                }
+                if (isAccessible) {
+                    accessiblePoints++;
+                }
+            }
+
+            return cons * accessiblePoints * radius * radius;
+        }
     }
 
     /**
-     * Calculates the accessible surface area (ASA) of an individual atom.
-     * @param atom the atom to processUniProtId
-     * @return this atom's ASA
+     * The neighbors of an atom, sorted by ascending distance as close atoms are most likely to occlude sphere points.
      */
-    private double calcSingleAsa(final Atom atom, final List<Atom> nonHydrogenAtoms) {
-        List<Atom> neighborAtoms = findNeighbors(atom, nonHydrogenAtoms);
-        double radius = probeSize + atom.getFeature(AtomRadius.class).getRadius();
-        int accessiblePoints = 0;
-
-        for (double[] point : spherePoints) {
-            boolean isAccessible = true;
-            double[] testPoint = LinearAlgebra.on(point).multiply(radius).add(atom.getCoordinates()).getValue();
-            for(Atom neighborAtom : neighborAtoms) {
-                double neighborAtomRadius = neighborAtom.getFeature(AtomRadius.class).getRadius() + probeSize;
-                double differenceSquared = LinearAlgebra.on(testPoint).distanceFast(neighborAtom.getCoordinates());
-                if (differenceSquared < neighborAtomRadius * neighborAtomRadius) {
-                    isAccessible = false;
-                    break;
-                }
+    private static class NeighborList {
+        private int[] indices = new int[32];
+        private double[] distances = new double[32];
+        private int size;
+
+        void insert(int index, double distance) {
+            if(size == indices.length) {
+                indices = Arrays.copyOf(indices, 2 * size);
+                distances = Arrays.copyOf(distances, 2 * size);
             }
-            if (isAccessible) {
-                accessiblePoints++;
+            int position = size;
+            while(position > 0 && distances[position - 1] > distance) {
+                indices[position] = indices[position - 1];
+                distances[position] = distances[position - 1];
+                position--;
             }
+            indices[position] = index;
+            distances[position] = distance;
+            size++;
         }
-
-        return cons * accessiblePoints * radius * radius;
     }
-}
\ No newline at end of file
+}
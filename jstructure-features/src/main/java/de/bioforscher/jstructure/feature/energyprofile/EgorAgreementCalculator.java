@@ -43,7 +43,7 @@ public class EgorAgreementCalculator extends FeatureProvider {
     }
 
     private void processInternally(AminoAcid aminoAcid) {
-        List<EnergyProfile> energy = aminoAcid.getFeatureContainer().getFeatures(EnergyProfile.class);
+        List<EnergyProfile> energy = aminoAcid.getFeatures(EnergyProfile.class);
         double calculation = energy.stream()
                 .filter(energyProfile -> energyProfile.getFeatureProvider().getClass().isInstance(energyProfileCalculator))
                 .findFirst()
@@ -6,12 +6,15 @@ import de.bioforscher.jstructure.model.structure.container.AtomContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * Aligns two energy profiles and scores the resulting alignment by the dScore.
+ * Aligns two energy profiles and scores the resulting alignment by the dScore. The significance of an alignment is
+ * estimated by aligning permutations of both profiles, which are evaluated in parallel. Permutations are drawn from a
+ * seeded random number generator, so scores are reproducible and do not depend on the number of threads.
+ * <p>Instances are immutable and thus may be shared between threads. Only alignment scores are computed, so the
+ * dynamic programming keeps 2 rows, which are pooled per thread.</p>
  * Created by S on 20.01.2017.
  * @author originally written by Florian Heinke
  */
@@ -23,15 +26,19 @@ public class EnergyProfileAligner {
     private final int gapExtend;
     private static final int DEFAULT_NUMBER_OF_PERMUTATIONS = 50;
     private final int numberOfPermutations;
-    private boolean isSemiGlobal;
-
-    private int[][] pathMatrix;
-    private int[][] fMatrix;
-
-    private List<Integer> ei;
-    private List<Integer> ej;
-
-    private int scoreReal;
+    /**
+     * Alignments are not restricted to a band around the diagonal.
+     */
+    public static final int UNBANDED = Integer.MAX_VALUE;
+    private final int band;
+    private static final long DEFAULT_SEED = 42;
+    private final long seed;
+    private final boolean isSemiGlobal;
+    /**
+     * Marks cells outside of the band - small enough to never be chosen, large enough to not overflow.
+     */
+    private static final int OUTSIDE_OF_BAND = Integer.MIN_VALUE / 2;
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
 
     private static final double[] ENERGY_BOUNDARIES = { -Double.MAX_VALUE, -32.19657709214838, -28.360766398274798, -25.23929221080452, -22.328373156958044, -19.493175687527987, -16.62469913138201, -13.850806967402914,
             -11.369088398962608, -9.314490868789694, -7.6492841662922855, -6.298501258749379, -5.141137053601808, -4.1008253531444865, -3.1690257375033464, -2.27957855620535, -1.389078754253618,
@@ -42,22 +49,54 @@ public class EnergyProfileAligner {
     }
 
     public EnergyProfileAligner(int gapCost, int gapExtend, int numberOfPermutations) {
+        this(gapCost, gapExtend, numberOfPermutations, UNBANDED, DEFAULT_SEED);
+    }
+
+    /**
+     * The fine-grained constructor.
+     * @param gapCost the score of opening a gap
+     * @param gapExtend the score of extending a gap
+     * @param numberOfPermutations how many permutations to align to estimate the significance of an alignment
+     * @param band the maximal deviation of aligned positions from the diagonal - alignments of profiles of
+     *             different length are allowed to deviate by the difference of their lengths in addition
+     * @param seed the seed of the permutations
+     */
+    public EnergyProfileAligner(int gapCost, int gapExtend, int numberOfPermutations, int band, long seed) {
+        if(numberOfPermutations < 1) {
+            throw new IllegalArgumentException("number of permutations must be positive, found " + numberOfPermutations);
+        }
+        if(band < 0) {
+            throw new IllegalArgumentException("band must not be negative, found " + band);
+        }
         this.gapCost = gapCost;
         this.gapExtend = gapExtend;
         this.numberOfPermutations = numberOfPermutations;
+        this.band = band;
+        this.seed = seed;
         this.isSemiGlobal = false;
     }
 
     public double align(AtomContainer reference, AtomContainer query) {
-        return alignInternally(extractDiscreteEnergyProfile(reference), extractDiscreteEnergyProfile(query));
+        return align(extractDiscreteEnergyProfile(reference), extractDiscreteEnergyProfile(query));
     }
 
     public double align(List<Double> reference, List<Double> query) {
-        return alignInternally(extractDiscreteEnergyProfile(reference), extractDiscreteEnergyProfile(query));
+        return align(extractDiscreteEnergyProfile(reference), extractDiscreteEnergyProfile(query));
     }
 
-    private double alignInternally(List<Integer> referenceEnergyProfile, List<Integer> queryEnergyProfile) {
-        if(referenceEnergyProfile.size() > queryEnergyProfile.size()) {
+    /**
+     * Aligns 2 discrete energy profiles. The arrays are not modified.
+     * @param referenceEnergyProfile the intervals of the solvation energies of the reference
+     * @param queryEnergyProfile the intervals of the solvation energies of the query
+     * @return the dScore of this alignment, ranging from 0 (identical) to 5
+     */
+    public double align(int[] referenceEnergyProfile, int[] queryEnergyProfile) {
+        if(referenceEnergyProfile.length == 0 || queryEnergyProfile.length == 0) {
+            throw new IllegalArgumentException("cannot align empty energy profiles");
+        }
+        int[] ei;
+        int[] ej;
+        if(referenceEnergyProfile.length > queryEnergyProfile.length) {
             ei = referenceEnergyProfile;
             ej = queryEnergyProfile;
         } else {
@@ -65,85 +104,124 @@ public class EnergyProfileAligner {
             ej = referenceEnergyProfile;
         }
 
-        createFMatrix(ei.size(), ej.size());
-
-        scoreReal = calculateAlignment();
+        int scoreReal = calculateAlignment(ei, ej, ei.length, ej.length, WORKSPACES.get());
 
         // permutate alignment to obtain significance score
-        return calculateDistanceScore();
+        return calculateDistanceScore(ei, ej, scoreReal);
     }
 
-    private double calculateDistanceScore() {
-        double sum = 0;
-        for (int i = 0; i < numberOfPermutations; i++) {
-            permutate(ej);
-            permutate(ei);
-
-            sum += calculateAlignment();
-        }
-        double mean = sum / numberOfPermutations;
+    private double calculateDistanceScore(int[] ei, int[] ej, int scoreReal) {
+        long sum = IntStream.range(0, numberOfPermutations)
+                .parallel()
+                .mapToLong(permutation -> calculatePermutedAlignment(ei, ej, permutation))
+                .sum();
+        double mean = (double) sum / numberOfPermutations;
 
-        double distanceScore = -Math.log((scoreReal - mean) / (((ei.size() * 12 + ej.size() * 12) / 2) - mean));
+        double distanceScore = -Math.log((scoreReal - mean) / (((ei.length * 12 + ej.length * 12) / 2) - mean));
         if (Double.isNaN(distanceScore) || distanceScore > 5) {
             distanceScore = 5;
         }
         return distanceScore;
     }
 
-    private void permutate(List<Integer> list) {
-        List<Integer> permutationList = new ArrayList<>();
-        for (int permutation = 0; permutation < list.size(); permutation++) {
-            permutationList.add(permutation);
-        }
-        int k = 0;
-        while (permutationList.size() > 0) {
-            int pos = (int) (Math.random() * permutationList.size());
-            permutationList.remove(pos);
-            int e_1 = list.get(k);
-            int e_2 = list.get(pos);
-            list.set(pos, e_1);
-            list.set(k, e_2);
-            k++;
-        }
+    private int calculatePermutedAlignment(int[] ei, int[] ej, int permutation) {
+        Workspace workspace = WORKSPACES.get();
+        // each permutation draws from its own sequence, independent of the thread evaluating it
+        workspace.seed(seed, permutation);
+        int[] permutedEi = workspace.permute(ei, true);
+        int[] permutedEj = workspace.permute(ej, false);
+        return calculateAlignment(permutedEi, permutedEj, ei.length, ej.length, workspace);
     }
 
-    private int calculateAlignment() {
-        for (int i = 1; i < ei.size() + 1; i++) {
-            int eiEntry = ei.get(i - 1);
-            for (int j = 1; j < ej.size() + 1; j++) {
+    /**
+     * Computes the score of the global alignment of the first <code>n</code> and <code>m</code> entries of 2
+     * profiles. Rows are computed one after another, cells outside of the band are never visited.
+     */
+    private int calculateAlignment(int[] ei, int[] ej, int n, int m, Workspace workspace) {
+        workspace.ensureCapacity(m + 1);
+        int[] previousScores = workspace.previousScores;
+        int[] previousPath = workspace.previousPath;
+        int[] currentScores = workspace.currentScores;
+        int[] currentPath = workspace.currentPath;
+        // the longer profile may additionally deviate by the difference of the lengths
+        long lengthDifference = n - m;
+
+        // first row
+        previousScores[0] = 0;
+        previousPath[0] = 0;
+        for(int j = 1; j <= m; j++) {
+            if(j > band) {
+                previousScores[j] = OUTSIDE_OF_BAND;
+            } else if(isSemiGlobal) {
+                previousScores[j] = 0;
+            } else {
+                previousScores[j] = j == 1 ? gapCost : previousScores[j - 1] + gapExtend;
+            }
+            previousPath[j] = j == 1 ? 0 : -1;
+        }
 
+        for (int i = 1; i < n + 1; i++) {
+            int eiEntry = ei[i - 1];
+            int lower = (int) Math.max(1, i - band - lengthDifference);
+            int upper = (int) Math.min(m, (long) i + band);
+
+            // first column
+            if(i > band + lengthDifference) {
+                currentScores[0] = OUTSIDE_OF_BAND;
+            } else if(isSemiGlobal) {
+                currentScores[0] = 0;
+            } else {
+                currentScores[0] = i == 1 ? gapCost : previousScores[0] + gapExtend;
+            }
+            currentPath[0] = i == 1 ? 0 : 1;
+            // the neighbors of the band are read by this and the next row
+            if(lower > 1) {
+                currentScores[lower - 1] = OUTSIDE_OF_BAND;
+            }
+            if(upper < m) {
+                currentScores[upper + 1] = OUTSIDE_OF_BAND;
+            }
+
+            for (int j = lower; j <= upper; j++) {
                 int qdiag, qtop, qleft;
-                int ejEntry = ej.get(j - 1);
+                int ejEntry = ej[j - 1];
 
-                qdiag = fMatrix[i - 1][j - 1] + calcEScore(eiEntry, ejEntry);
+                qdiag = previousScores[j - 1] + calcEScore(eiEntry, ejEntry);
 
-                if (pathMatrix[i - 1][j] != 2) {
-                    qtop = fMatrix[i - 1][j] + gapExtend;
+                if (previousPath[j] != 2) {
+                    qtop = previousScores[j] + gapExtend;
                 } else {
-                    qtop = fMatrix[i - 1][j] + gapCost;
+                    qtop = previousScores[j] + gapCost;
                 }
 
-                if (pathMatrix[i][j - 1] != 2) {
-                    qleft = fMatrix[i][j - 1] + gapExtend;
+                if (currentPath[j - 1] != 2) {
+                    qleft = currentScores[j - 1] + gapExtend;
                 } else {
-                    qleft = fMatrix[i][j - 1] + gapCost;
+                    qleft = currentScores[j - 1] + gapCost;
                 }
 
                 int tempMax = Math.max(qdiag, qtop);
                 int max = Math.max(tempMax, qleft);
 
-                fMatrix[i][j] = max;
+                currentScores[j] = max;
 
                 if (max == qdiag) {
-                    pathMatrix[i][j] = 2;
+                    currentPath[j] = 2;
                 } else if (max == qtop) {
-                    pathMatrix[i][j] = 1;
+                    currentPath[j] = 1;
                 } else {
-                    pathMatrix[i][j] = -1;
+                    currentPath[j] = -1;
                 }
             }
+
+            int[] swap = previousScores;
+            previousScores = currentScores;
+            currentScores = swap;
+            swap = previousPath;
+            previousPath = currentPath;
+            currentPath = swap;
         }
-        return fMatrix[ei.size()][ej.size()];
+        return previousScores[m];
     }
 
     private int calcEScore(int e_i, int e_j) {
@@ -165,63 +243,27 @@ public class EnergyProfileAligner {
         }
     }
 
-
-    private void createFMatrix(int i, int j) {
-        fMatrix = new int[i + 1][j + 1];
-        pathMatrix = new int[i + 1][j + 1];
-
-        fMatrix[0][0] = 0;
-        if (isSemiGlobal) {
-            fMatrix[0][1] = 0;
-            fMatrix[1][0] = 0;
-        } else {
-            fMatrix[0][1] = gapCost;
-            fMatrix[1][0] = gapCost;
-        }
-
-        pathMatrix[0][0] = 0;
-
-        if (isSemiGlobal) {
-            for (int n = 2; n <= j; n++) {
-                fMatrix[0][n] = 0;
-                pathMatrix[0][n] = -1;
-            }
-            for (int n = 2; n <= i; n++) {
-                fMatrix[n][0] = 0;
-                pathMatrix[n][0] = 1;
-            }
-        } else {
-            for (int n = 2; n <= j; n++) {
-                fMatrix[0][n] = fMatrix[0][n - 1] + gapExtend;
-                pathMatrix[0][n] = -1;
-            }
-            for (int n = 2; n <= i; n++) {
-                fMatrix[n][0] = fMatrix[n - 1][0] + gapExtend;
-                pathMatrix[n][0] = 1;
-            }
-        }
-    }
-
     /**
      * Extracts the discrete energy profile for a given collection of residues.
      * @param container the container to processUniProtId
-     * @return a list of all discretized energy values
+     * @return all discretized energy values
      */
-    private List<Integer> extractDiscreteEnergyProfile(AtomContainer container) {
-        return extractDiscreteEnergyProfile(container.atoms()
+    public int[] extractDiscreteEnergyProfile(AtomContainer container) {
+        return container.atoms()
                 // map to group level - will still collect 'dangling' atoms into a group
                 .map(Atom::getParentGroup)
                 .distinct()
                 // ensure we are only dealing with amino acids
                 .filter(Group::isAminoAcid)
-                .map(this::getSolvationEnergy)
-                .collect(Collectors.toList()));
+                .mapToDouble(this::getSolvationEnergy)
+                .mapToInt(this::discretize)
+                .toArray();
     }
 
-    private List<Integer> extractDiscreteEnergyProfile(List<Double> energyProfile) {
+    private int[] extractDiscreteEnergyProfile(List<Double> energyProfile) {
         return energyProfile.stream()
-                .map(this::discretize)
-                .collect(Collectors.toList());
+                .mapToInt(this::discretize)
+                .toArray();
     }
 
     /**
@@ -247,4 +289,68 @@ public class EnergyProfileAligner {
     private double getSolvationEnergy(Group group) {
         return group.getFeature(EnergyProfile.class).getSolvationEnergy();
     }
+
+    /**
+     * The buffers of a thread: 2 rows of scores and paths as well as the permuted profiles. Buffers only grow.
+     */
+    private static class Workspace {
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+        private int[] previousScores = new int[0];
+        private int[] previousPath = new int[0];
+        private int[] currentScores = new int[0];
+        private int[] currentPath = new int[0];
+        private int[] permutedEi = new int[0];
+        private int[] permutedEj = new int[0];
+        private long randomState;
+
+        void ensureCapacity(int length) {
+            if(previousScores.length < length) {
+                previousScores = new int[length];
+                previousPath = new int[length];
+                currentScores = new int[length];
+                currentPath = new int[length];
+            }
+        }
+
+        void seed(long seed, int permutation) {
+            randomState = mix(seed + GOLDEN_GAMMA * (permutation + 1));
+        }
+
+        /**
+         * Shuffles a copy of a profile (Fisher-Yates).
+         */
+        int[] permute(int[] profile, boolean first) {
+            int[] permutedProfile = first ? permutedEi : permutedEj;
+            if(permutedProfile.length < profile.length) {
+                permutedProfile = new int[profile.length];
+                if(first) {
+                    permutedEi = permutedProfile;
+                } else {
+                    permutedEj = permutedProfile;
+                }
+            }
+            System.arraycopy(profile, 0, permutedProfile, 0, profile.length);
+            for(int i = profile.length - 1; i > 0; i--) {
+                int j = nextInt(i + 1);
+                int swap = permutedProfile[i];
+                permutedProfile[i] = permutedProfile[j];
+                permutedProfile[j] = swap;
+            }
+            return permutedProfile;
+        }
+
+        /**
+         * The next value of a SplitMix64 sequence, mapped to <code>[0, bound)</code>.
+         */
+        private int nextInt(int bound) {
+            randomState += GOLDEN_GAMMA;
+            return (int) (((mix(randomState) >>> 32) * bound) >>> 32);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
 }
@@ -1,13 +1,14 @@
 package de.bioforscher.jstructure.feature.energyprofile;
 
-import de.bioforscher.jstructure.mathematics.LinearAlgebra;
 import de.bioforscher.jstructure.model.feature.FeatureProvider;
 import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.SpatialIndex;
 import de.bioforscher.jstructure.model.structure.Structure;
 import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -40,7 +41,7 @@ public class EnergyProfileCalculator extends FeatureProvider {
     private static final double DEFAULT_INTERACTION_CUTOFF = 8.0;
     private static final String BASE_PATH = "energyprofile/";
     private static final String GLOBULAR_SOLVATION_PATH = BASE_PATH + "ep-solvation-globular.dat";
-    private static Map<String, Double> globularSolvationData;
+    private static volatile Map<String, Double> globularSolvationData;
 
     public EnergyProfileCalculator() {
         if(globularSolvationData == null) {
@@ -50,41 +51,79 @@ public class EnergyProfileCalculator extends FeatureProvider {
 
     @Override
     protected void processInternally(Structure protein) {
-        final double squaredDistanceCutoff = DEFAULT_INTERACTION_CUTOFF * DEFAULT_INTERACTION_CUTOFF;
         final List<AminoAcid> aminoAcids = protein.aminoAcids()
                 .collect(Collectors.toList());
+        final int size = aminoAcids.size();
 
-        for(AminoAcid currentGroup : aminoAcids) {
-            Optional<Atom> currentGroupBetaCarbon = currentGroup.select()
-                    .betaCarbonAtoms()
-                    .asOptionalAtom();
-            double[] currentGroupCoordinates = currentGroupBetaCarbon
-                    .map(Atom::getCoordinates)
-                    .orElseGet(() -> currentGroup.calculate().centroid().getValue());
-            double solvation = 0;
-            double currentGroupSolvationValue = resolve(globularSolvationData, currentGroup);
+        // representative coordinates and solvation values are resolved once per residue
+        double[] coordinates = new double[3 * size];
+        double[] solvationValues = new double[size];
+        for(int i = 0; i < size; i++) {
+            AminoAcid aminoAcid = aminoAcids.get(i);
+            System.arraycopy(getRepresentativeCoordinates(aminoAcid), 0, coordinates, 3 * i, 3);
+            solvationValues[i] = resolve(globularSolvationData, aminoAcid);
+        }
 
-            for(AminoAcid surroundingGroup : aminoAcids) {
-                if(currentGroup.equals(surroundingGroup)) {
-                    continue;
-                }
+        int[][] neighbors = findNeighbors(coordinates, DEFAULT_INTERACTION_CUTOFF);
+        for(int i = 0; i < size; i++) {
+            double solvation = 0;
+            for(int j : neighbors[i]) {
+                solvation += solvationValues[i] + solvationValues[j];
+            }
 
-                Optional<Atom> surroundingGroupBetaCarbon = surroundingGroup.select()
-                        .betaCarbonAtoms()
-                        .asOptionalAtom();
-                double[] surroundingGroupCoordinates = surroundingGroupBetaCarbon
-                        .map(Atom::getCoordinates)
-                        .orElseGet(() -> surroundingGroup.calculate().centroid().getValue());
+            aminoAcids.get(i).getFeatureContainer().addFeature(new EnergyProfile(this, solvation));
+        }
+    }
 
-                if(LinearAlgebra.on(currentGroupCoordinates).distanceFast(surroundingGroupCoordinates) > squaredDistanceCutoff) {
-                    continue;
-                }
+    /**
+     * The beta-carbon of a residue or its centroid, when there is no beta-carbon (e.g. for glycine).
+     * @param aminoAcid the residue
+     * @return the coordinates representing this residue
+     */
+    private double[] getRepresentativeCoordinates(AminoAcid aminoAcid) {
+        Optional<Atom> betaCarbon = aminoAcid.select()
+                .betaCarbonAtoms()
+                .asOptionalAtom();
+        return betaCarbon.map(Atom::getCoordinates)
+                .orElseGet(() -> aminoAcid.calculate().centroid().getValue());
+    }
 
-                solvation += currentGroupSolvationValue + resolve(globularSolvationData, surroundingGroup);
-            }
+    /**
+     * Finds all pairs of points which are at most the cutoff apart. Candidate pairs are enumerated by a
+     * {@link SpatialIndex} with cells of the size of the cutoff, each pair is evaluated once and registered for both
+     * points.
+     * @param coordinates the points, stored as consecutive x, y, z triplets
+     * @param cutoff the distance cutoff
+     * @return the indices of the neighbors of each point in ascending order
+     */
+    static int[][] findNeighbors(double[] coordinates, double cutoff) {
+        int size = coordinates.length / 3;
+        // points without coordinates (i.e. residues without atoms) are ignored by the index and have no neighbors
+        int[] numberOfNeighbors = new int[size];
+        PairBuffer pairs = new PairBuffer();
+        SpatialIndex.of(coordinates, cutoff).forEachIndexPairWithin(cutoff, (i, j) -> {
+            pairs.add(i, j);
+            numberOfNeighbors[i]++;
+            numberOfNeighbors[j]++;
+        });
 
-            currentGroup.getFeatureContainer().addFeature(new EnergyProfile(this, solvation));
+        // register each pair for both points
+        int[][] neighbors = new int[size][];
+        for(int i = 0; i < size; i++) {
+            neighbors[i] = new int[numberOfNeighbors[i]];
+            numberOfNeighbors[i] = 0;
+        }
+        for(int pair = 0; pair < pairs.size; pair++) {
+            int i = pairs.values[2 * pair];
+            int j = pairs.values[2 * pair + 1];
+            neighbors[i][numberOfNeighbors[i]++] = j;
+            neighbors[j][numberOfNeighbors[j]++] = i;
+        }
+        // sequence order keeps the summation order of the exhaustive search
+        for(int[] neighborsOfPoint : neighbors) {
+            Arrays.sort(neighborsOfPoint);
         }
+        return neighbors;
     }
 
     private double resolve(Map<String, Double> preferenceMap, AminoAcid group) {
@@ -103,7 +142,12 @@ public class EnergyProfileCalculator extends FeatureProvider {
         return preferenceMap.getOrDefault(fallback, preferenceMap.get("ALA"));
     }
 
-    private synchronized void initializeLibrary() {
+    private static synchronized void initializeLibrary() {
+        // instances may be created concurrently, only the first one parses the library
+        if(globularSolvationData != null) {
+            return;
+        }
+
         // parse globular solvation data
         globularSolvationData = getResourceAsStream(GLOBULAR_SOLVATION_PATH)
                 // skip header line
@@ -112,4 +156,18 @@ public class EnergyProfileCalculator extends FeatureProvider {
                 .collect(Collectors.toMap(key -> key[0],
                         value -> -Math.log(Double.valueOf(value[1]) / Double.valueOf(value[2]))));
     }
+
+    private static class PairBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int i, int j) {
+            if(2 * size == values.length) {
+                values = Arrays.copyOf(values, 2 * values.length);
+            }
+            values[2 * size] = i;
+            values[2 * size + 1] = j;
+            size++;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package de.bioforscher.jstructure.feature.interaction;
 
 import de.bioforscher.jstructure.model.identifier.ChainIdentifier;
 import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.StructureWriter;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
@@ -55,7 +56,7 @@ public class PLIPRestServiceQuery {
             String chainId = chain.getChainIdentifier().getChainId();
             // write PDB structure of data point to temporary file
             Path structureFilePath = Files.createTempFile("plip_", "_" + chainId + ".pdb");
-            Files.write(structureFilePath, chain.getPdbRepresentation().getBytes());
+            StructureWriter.write(chain, structureFilePath);
 
             // submit PLIP POST query
             String url = "https://biosciences.hs-mittweida.de/plip/interaction/calculate/intrachain/" + chainId;
@@ -74,7 +75,7 @@ public class PLIPRestServiceQuery {
         try {
             // write PDB structure of data point to temporary file
             Path structureFilePath = Files.createTempFile("plip_", "_" + chain.getChainIdentifier().getFullName() + ".pdb");
-            Files.write(structureFilePath, chain.getPdbRepresentation().getBytes());
+            StructureWriter.write(chain, structureFilePath);
 
             // submit PLIP POST query
             PLIPPostRequest plipPostRequest = new PLIPPostRequest("https://biosciences.hs-mittweida.de/plip/interaction/calculate/protein", secret, structureFilePath);
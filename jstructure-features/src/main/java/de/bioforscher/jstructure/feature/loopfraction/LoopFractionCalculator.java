@@ -71,7 +71,7 @@ public class LoopFractionCalculator extends FeatureProvider {
 
         // smooth values of start and end residues of the chain
         chain.aminoAcids()
-                .filter(group -> !group.getFeatureContainer().getFeatureOptional(LoopFraction.class).isPresent())
+                .filter(group -> !group.getFeatureOptional(LoopFraction.class).isPresent())
                 .forEach(group -> {
                     int residueNumber = group.getResidueIdentifier().getResidueNumber();
                     double smoothedValue = chain.select()
@@ -0,0 +1,319 @@
+package de.bioforscher.jstructure.feature.sse.dssp;
+
+import de.bioforscher.jstructure.mathematics.LinearAlgebra;
+import de.bioforscher.jstructure.model.structure.Atom;
+import de.bioforscher.jstructure.model.structure.SpatialIndex;
+import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
+import de.bioforscher.jstructure.model.structure.aminoacid.Proline;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The backbone hydrogen bond search of DSSP on primitive arrays. Only residues whose alpha carbons are at most 9
+ * &aring; apart can form bonds - these candidate pairs are enumerated by a {@link SpatialIndex} instead of testing all
+ * pairs of residues. Backbone coordinates and the 2 best acceptor and donor bonds of each residue are kept in arrays,
+ * {@link HBond} instances are only created by {@link #materialize(Function)}. Pairs are evaluated in the same order
+ * as by the exhaustive search, so ties are resolved identically.
+ * <p>Hydrogen atoms are usually missing in PDB files as only few experimental methods allow to resolve their location.
+ * Lacking backbone hydrogens are placed in the side-table of hydrogen coordinates of each residue, the structure
+ * itself is never modified.</p>
+ */
+class BackboneHydrogenBonds {
+    private static final int NO_PARTNER = -1;
+    private final List<AminoAcid> residues;
+    private final int size;
+    private final double[] n;
+    /**
+     * The resolved or approximated backbone hydrogen of each residue.
+     */
+    private final double[] h;
+    private final double[] c;
+    private final double[] o;
+    /**
+     * Proline and residues without backbone hydrogen or nitrogen cannot donate a hydrogen bond.
+     */
+    private final boolean[] donor;
+    private final boolean[] acceptor;
+    /**
+     * The candidates of residue <code>i</code> are <code>neighbors[neighborStart[i]]</code> to
+     * <code>neighbors[neighborStart[i + 1] - 1]</code>, all greater than <code>i</code> and in ascending order.
+     */
+    private final int[] neighborStart;
+    private final int[] neighbors;
+    private final double[] accept1Energy;
+    private final double[] accept2Energy;
+    private final double[] donor1Energy;
+    private final double[] donor2Energy;
+    private final int[] accept1Partner;
+    private final int[] accept2Partner;
+    private final int[] donor1Partner;
+    private final int[] donor2Partner;
+
+    /**
+     * Searches the bonds between all given residues.
+     * @param residues the residues, ordered by chain and sequence
+     * @param chainIndices the chain of each residue - hydrogens are only approximated from preceding residues of the
+     *                     same chain
+     */
+    BackboneHydrogenBonds(List<AminoAcid> residues, int[] chainIndices) {
+        this.residues = residues;
+        this.size = residues.size();
+        this.n = new double[3 * size];
+        this.h = new double[3 * size];
+        this.c = new double[3 * size];
+        this.o = new double[3 * size];
+        this.donor = new boolean[size];
+        this.acceptor = new boolean[size];
+        this.accept1Energy = new double[size];
+        this.accept2Energy = new double[size];
+        this.donor1Energy = new double[size];
+        this.donor2Energy = new double[size];
+        this.accept1Partner = filledPartners(size);
+        this.accept2Partner = filledPartners(size);
+        this.donor1Partner = filledPartners(size);
+        this.donor2Partner = filledPartners(size);
+
+        double[] alphaCarbons = new double[3 * size];
+        int[] alphaCarbonResidues = new int[size];
+        int numberOfAlphaCarbons = 0;
+        for(int i = 0; i < size; i++) {
+            AminoAcid residue = residues.get(i);
+            Optional<Atom> nitrogen = residue.getNOptional();
+            Optional<Atom> hydrogen = residue.getHOptional();
+            Optional<Atom> carbon = residue.getCOptional();
+            Optional<Atom> oxygen = residue.getOOptional();
+            if(nitrogen.isPresent() && !(residue instanceof Proline)) {
+                if(hydrogen.isPresent()) {
+                    donor[i] = true;
+                    System.arraycopy(hydrogen.get().getCoordinates(), 0, h, 3 * i, 3);
+                } else if(i > 0 && chainIndices[i - 1] == chainIndices[i]) {
+                    donor[i] = placeHydrogen(residues.get(i - 1), nitrogen.get(), i);
+                }
+                System.arraycopy(nitrogen.get().getCoordinates(), 0, n, 3 * i, 3);
+            }
+            if(carbon.isPresent() && oxygen.isPresent()) {
+                acceptor[i] = true;
+                System.arraycopy(carbon.get().getCoordinates(), 0, c, 3 * i, 3);
+                System.arraycopy(oxygen.get().getCoordinates(), 0, o, 3 * i, 3);
+            }
+            Optional<Atom> alphaCarbon = residue.getCaOptional();
+            if(alphaCarbon.isPresent()) {
+                alphaCarbonResidues[numberOfAlphaCarbons] = i;
+                System.arraycopy(alphaCarbon.get().getCoordinates(), 0, alphaCarbons, 3 * numberOfAlphaCarbons, 3);
+                numberOfAlphaCarbons++;
+            }
+        }
+
+        this.neighborStart = new int[size + 1];
+        this.neighbors = findNeighbors(Arrays.copyOf(alphaCarbons, 3 * numberOfAlphaCarbons), alphaCarbonResidues);
+        calculateHBonds();
+    }
+
+    /**
+     * Places a pseudo hydrogen atom bound to the nitrogen, opposite to the oxygen of the preceding peptide bond.
+     * @return <code>false</code> iff the preceding residue lacks backbone atoms
+     */
+    private boolean placeHydrogen(AminoAcid precedingResidue, Atom nitrogen, int i) {
+        Optional<Atom> carbon = precedingResidue.getCOptional();
+        Optional<Atom> oxygen = precedingResidue.getOOptional();
+        if(!carbon.isPresent() || !oxygen.isPresent()) {
+            return false;
+        }
+
+        double[] c = carbon.get().getCoordinates();
+        double[] o = oxygen.get().getCoordinates();
+        double[] xyz = LinearAlgebra.on(c)
+                .subtract(o)
+                .divide(LinearAlgebra.on(c).distance(o))
+                .add(nitrogen.getCoordinates())
+                .getValue();
+        System.arraycopy(xyz, 0, h, 3 * i, 3);
+        return true;
+    }
+
+    private static int[] filledPartners(int size) {
+        int[] partners = new int[size];
+        Arrays.fill(partners, NO_PARTNER);
+        return partners;
+    }
+
+    private int[] findNeighbors(double[] alphaCarbons, int[] alphaCarbonResidues) {
+        SpatialIndex spatialIndex = SpatialIndex.of(alphaCarbons, DictionaryOfProteinSecondaryStructure.CA_MIN_DIST);
+        int[][] neighborsOfResidue = new int[size][];
+        NeighborBuffer neighborBuffer = new NeighborBuffer();
+        double[] alphaCarbon = new double[3];
+        for(int k = 0; k < alphaCarbons.length / 3; k++) {
+            int residue = alphaCarbonResidues[k];
+            neighborBuffer.size = 0;
+            System.arraycopy(alphaCarbons, 3 * k, alphaCarbon, 0, 3);
+            spatialIndex.forEachIndexWithin(alphaCarbon,
+                    DictionaryOfProteinSecondaryStructure.CA_MIN_DIST,
+                    index -> {
+                        if(alphaCarbonResidues[index] > residue) {
+                            neighborBuffer.add(alphaCarbonResidues[index]);
+                        }
+                    });
+            int[] sortedNeighbors = Arrays.copyOf(neighborBuffer.values, neighborBuffer.size);
+            Arrays.sort(sortedNeighbors);
+            neighborsOfResidue[residue] = sortedNeighbors;
+        }
+
+        for(int i = 0; i < size; i++) {
+            neighborStart[i + 1] = neighborStart[i] + (neighborsOfResidue[i] == null ? 0 : neighborsOfResidue[i].length);
+        }
+        int[] neighbors = new int[neighborStart[size]];
+        for(int i = 0; i < size; i++) {
+            if(neighborsOfResidue[i] != null) {
+                System.arraycopy(neighborsOfResidue[i], 0, neighbors, neighborStart[i], neighborsOfResidue[i].length);
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Calculate the HBonds between different groups. see Creighton page 147 f
+     */
+    private void calculateHBonds() {
+        for(int i = 0; i < size; i++) {
+            for(int position = neighborStart[i]; position < neighborStart[i + 1]; position++) {
+                int j = neighbors[position];
+                checkAddHBond(i, j);
+                if(j != i + 1) {
+                    checkAddHBond(j, i);
+                }
+            }
+        }
+    }
+
+    private void checkAddHBond(int i, int j) {
+        if(!donor[i] || !acceptor[j]) {
+            return;
+        }
+        trackHBondEnergy(i, j, calculateHBondEnergy(i, j));
+    }
+
+    /**
+     * Store Hbonds in the Groups. DSSP allows two HBonds per amino acid to allow bifurcated bonds.
+     */
+    private void trackHBondEnergy(int i, int j, double energy) {
+        // Acceptor: N-H-->O
+        if(energy < accept1Energy[i]) {
+            accept2Energy[i] = accept1Energy[i];
+            accept2Partner[i] = accept1Partner[i];
+            accept1Energy[i] = energy;
+            accept1Partner[i] = j;
+        } else if(energy < accept2Energy[i]) {
+            accept2Energy[i] = energy;
+            accept2Partner[i] = j;
+        }
+
+        // The other side of the bond: donor O-->N-H
+        if(energy < donor1Energy[j]) {
+            donor2Energy[j] = donor1Energy[j];
+            donor2Partner[j] = donor1Partner[j];
+            donor1Energy[j] = energy;
+            donor1Partner[j] = i;
+        } else if(energy < donor2Energy[j]) {
+            donor2Energy[j] = energy;
+            donor2Partner[j] = i;
+        }
+    }
+
+    /**
+     * Calculate HBond energy of two groups in cal/mol see Creighton page 147 f
+     */
+    private double calculateHBondEnergy(int i, int j) {
+        double dno = distance(o, j, n, i);
+        double dhc = distance(c, j, h, i);
+        double dho = distance(o, j, h, i);
+        double dnc = distance(c, j, n, i);
+
+        // there seems to be a contact!
+        if((dno < DictionaryOfProteinSecondaryStructure.MINDIST) ||
+                (dhc < DictionaryOfProteinSecondaryStructure.MINDIST) ||
+                (dnc < DictionaryOfProteinSecondaryStructure.MINDIST)) {
+            return DictionaryOfProteinSecondaryStructure.HBONDLOWENERGY;
+        }
+
+        double e1 = DictionaryOfProteinSecondaryStructure.Q / dho - DictionaryOfProteinSecondaryStructure.Q / dhc;
+        double e2 = DictionaryOfProteinSecondaryStructure.Q / dnc - DictionaryOfProteinSecondaryStructure.Q / dno;
+
+        double energy = e1 + e2;
+
+        // Avoid too strong energy
+        if(energy > DictionaryOfProteinSecondaryStructure.HBONDLOWENERGY) {
+            return energy;
+        }
+
+        return DictionaryOfProteinSecondaryStructure.HBONDLOWENERGY;
+    }
+
+    private static double distance(double[] coordinates1, int i, double[] coordinates2, int j) {
+        double dx = coordinates1[3 * i] - coordinates2[3 * j];
+        double dy = coordinates1[3 * i + 1] - coordinates2[3 * j + 1];
+        double dz = coordinates1[3 * i + 2] - coordinates2[3 * j + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Reports each candidate pair <code>i &lt; j</code>, whose alpha carbons are at most 9 &aring; apart, ordered by
+     * <code>i</code> and <code>j</code>.
+     * @param consumer the callback
+     */
+    void forEachCandidatePair(CandidatePairConsumer consumer) {
+        for(int i = 0; i < size; i++) {
+            for(int position = neighborStart[i]; position < neighborStart[i + 1]; position++) {
+                consumer.accept(i, neighbors[position]);
+            }
+        }
+    }
+
+    /**
+     * Writes the detected bonds to the states of the residues.
+     * @param states the mapping of residues to their states
+     */
+    void materialize(Function<AminoAcid, DSSPSecondaryStructure> states) {
+        for(int i = 0; i < size; i++) {
+            DSSPSecondaryStructure state = states.apply(residues.get(i));
+            if(accept1Partner[i] != NO_PARTNER) {
+                state.setAccept1(createHBond(accept1Energy[i], accept1Partner[i]));
+            }
+            if(accept2Partner[i] != NO_PARTNER) {
+                state.setAccept2(createHBond(accept2Energy[i], accept2Partner[i]));
+            }
+            if(donor1Partner[i] != NO_PARTNER) {
+                state.setDonor1(createHBond(donor1Energy[i], donor1Partner[i]));
+            }
+            if(donor2Partner[i] != NO_PARTNER) {
+                state.setDonor2(createHBond(donor2Energy[i], donor2Partner[i]));
+            }
+        }
+    }
+
+    private HBond createHBond(double energy, int partner) {
+        HBond bond = new HBond();
+        bond.setEnergy(energy);
+        bond.setPartner(residues.get(partner));
+        return bond;
+    }
+
+    private static class NeighborBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if(size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+    }
+
+    @FunctionalInterface
+    interface CandidatePairConsumer {
+        void accept(int i, int j);
+    }
+}
@@ -5,13 +5,16 @@ import de.bioforscher.jstructure.mathematics.*;
 import de.bioforscher.jstructure.model.feature.FeatureProvider;
 import de.bioforscher.jstructure.model.structure.*;
 import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
-import de.bioforscher.jstructure.model.structure.aminoacid.Proline;
 import de.bioforscher.jstructure.model.structure.selection.SelectionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -48,11 +51,10 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
     private static final boolean DSSP_HELICES = true;
 
     /** min distance between two residues */
-    private static final double MINDIST = 0.5;
+    static final double MINDIST = 0.5;
 
     /** min distance of two CA atoms if H-bonds are allowed to form */
-    private static final double CA_MIN_DIST = 9.0;
-    private static final double CA_MIN_DIST_SQUARED = CA_MIN_DIST * CA_MIN_DIST;
+    static final double CA_MIN_DIST = 9.0;
 
     /** max distance CA atoms in peptide bond (backbone discontinuity) */
     private static final double MAX_PEPTIDE_BOND_LENGTH = 2.5;
@@ -60,7 +62,7 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
     private static final double MAX_PEPTIDE_BOND_LENGTH_SQUARED = MAX_PEPTIDE_BOND_LENGTH * MAX_PEPTIDE_BOND_LENGTH;
 
     /** Minimal H-bond energy in cal/mol */
-    private static final int HBONDLOWENERGY = -9900;
+    static final int HBONDLOWENERGY = -9900;
 
     /** higher limit for H-bond energy */
     private static final double HBONDHIGHENERGY = -500.0;
@@ -78,40 +80,121 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
      */
     public static final double Q = -27888.0;
 
+    private final boolean interChain;
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * Assigns the secondary structure of each chain independently. Chains are processed in parallel on the common pool.
+     */
+    public DictionaryOfProteinSecondaryStructure() {
+        this(false);
+    }
+
+    /**
+     * Chooses between per-chain and whole-structure assignment.
+     * @param interChain if <code>true</code>, hydrogen bonds and beta bridges between different chains are considered
+     *                   as well, e.g. for sheets spanning the interface of oligomers
+     */
+    public DictionaryOfProteinSecondaryStructure(boolean interChain) {
+        this(interChain, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The fine-grained constructor.
+     * @param interChain if <code>true</code>, hydrogen bonds and beta bridges between different chains are considered
+     * @param forkJoinPool the pool processing chains in parallel
+     */
+    public DictionaryOfProteinSecondaryStructure(boolean interChain, ForkJoinPool forkJoinPool) {
+        this.interChain = interChain;
+        this.forkJoinPool = forkJoinPool;
+    }
+
     @Override
     protected void processInternally(Structure protein) {
-        protein.chainsWithAminoAcids().forEach(this::processInternally);
+        List<List<AminoAcid>> chains = protein.chainsWithAminoAcids()
+                .map(chain -> chain.aminoAcids().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+
+        if(interChain) {
+            processInterChain(chains);
+        } else {
+            forEachChain(chains, this::processChain);
+        }
     }
 
-    private void processInternally(Chain chain) {
-        List<AminoAcid> residues = chain.aminoAcids()
-                .collect(Collectors.toList());
-        List<BetaBridge> bridges = new ArrayList<>();
-        List<Ladder> ladders = new ArrayList<>();
-        // init mapping as unassigned state (i.e. coil)
+    private void processChain(List<AminoAcid> residues) {
+        int[] chainIndices = new int[residues.size()];
+        initializeStates(residues);
+        BackboneHydrogenBonds hydrogenBonds = calculateHBonds(residues, chainIndices);
+        assignLocalStructure(residues);
+        detectStrands(residues, chainIndices, hydrogenBonds, new ArrayList<>(), new ArrayList<>());
+    }
+
+    private void processInterChain(List<List<AminoAcid>> chains) {
+        List<AminoAcid> residues = new ArrayList<>();
+        chains.forEach(residues::addAll);
+        int[] chainIndices = new int[residues.size()];
+        for(int chainIndex = 0, offset = 0; chainIndex < chains.size(); chainIndex++) {
+            int chainSize = chains.get(chainIndex).size();
+            Arrays.fill(chainIndices, offset, offset + chainSize, chainIndex);
+            offset += chainSize;
+        }
+
+        forEachChain(chains, this::initializeStates);
+        // one spatial index covers all chains, so bonds between chains compete with those within chains
+        BackboneHydrogenBonds hydrogenBonds = calculateHBonds(residues, chainIndices);
+        forEachChain(chains, this::assignLocalStructure);
+        detectStrands(residues, chainIndices, hydrogenBonds, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Init mapping as unassigned state (i.e. coil).
+     */
+    private void initializeStates(List<AminoAcid> residues) {
         residues.forEach(r -> r.getFeatureContainer().addFeature(new DSSPSecondaryStructure(this, SecondaryStructureType.COIL)));
+    }
 
-        calculateHAtoms(residues);
-        calculateHBonds(residues);
+    /**
+     * Turns, helices and bends only depend on the bonds within a chain.
+     */
+    private void assignLocalStructure(List<AminoAcid> residues) {
         calculateDihedralAngles(residues);
         calculateTurns(residues);
         buildHelices(residues);
         detectBends(residues);
-        detectStrands(residues, ladders, bridges);
     }
 
-    @Override
-    protected void postprocessInternally(Structure protein) {
-        protein.aminoAcids().forEach(aminoAcid -> aminoAcid.getAtoms().removeIf(Atom::isVirtual));
+    /**
+     * Runs an action for each chain in parallel. Actions only modify the states of the residues of their chain and never
+     * the structure itself, so the assignment does not depend on the number of threads.
+     */
+    private void forEachChain(List<List<AminoAcid>> chains, Consumer<List<AminoAcid>> action) {
+        if(chains.size() < 2) {
+            chains.forEach(action);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = chains.stream()
+                .map(residues -> ForkJoinTask.adapt(() -> action.accept(residues)))
+                .collect(Collectors.toList());
+        forkJoinPool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(tasks);
+        }));
     }
 
-    private void detectStrands(List<AminoAcid> residues, List<Ladder> ladders, List<BetaBridge> bridges) {
+    /**
+     * @param chainIndices the chain of each residue, ladders are only connected within chains
+     */
+    private void detectStrands(List<AminoAcid> residues,
+                               int[] chainIndices,
+                               BackboneHydrogenBonds hydrogenBonds,
+                               List<Ladder> ladders,
+                               List<BetaBridge> bridges) {
         // Find all the beta bridges of the structure
-        findBridges(residues, bridges);
+        findBridges(residues, chainIndices, hydrogenBonds, bridges);
         // Create Ladders
         createLadders(bridges, ladders);
         // Detect beta bulges between ladders
-        connectLadders(ladders);
+        connectLadders(chainIndices, ladders);
         // AND store SS assignments for Sheets, Strands and Bridges
         updateSheets(residues, ladders);
     }
@@ -174,11 +257,16 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
         }
     }
 
-    private void connectLadders(List<Ladder> ladders) {
+    private void connectLadders(int[] chainIndices, List<Ladder> ladders) {
         for(int i = 0; i < ladders.size(); i++) {
             for(int j = i; j < ladders.size(); j++) {
                 Ladder l1 = ladders.get(i);
                 Ladder l2 = ladders.get(j);
+                // both strands of a bulge must be in the same chain
+                if (chainIndices[l1.getFrom()] != chainIndices[l2.getFrom()] ||
+                        chainIndices[l1.getLfrom()] != chainIndices[l2.getLfrom()]) {
+                    continue;
+                }
                 if (hasBulge(l1, l2)) {
                     l1.setConnectedTo(j);
                     l2.setConnectedFrom(i);
@@ -307,67 +395,22 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
      *
      * Optimised to use the contact set
      */
-    private void findBridges(List<AminoAcid> residues, List<BetaBridge> bridges) {
+    private void findBridges(List<AminoAcid> residues,
+                             int[] chainIndices,
+                             BackboneHydrogenBonds hydrogenBonds,
+                             List<BetaBridge> bridges) {
+        // candidate pairs are reported ordered by i and j
         List<int[]> outList = new ArrayList<>();
-
-        for (int i = 0; i < residues.size() - 1; i++) {
-            for (int j = i + 1; j < residues.size(); j++) {
-                AminoAcid res1 = residues.get(i);
-                AminoAcid res2 = residues.get(j);
-                try {
-                    double distance = LinearAlgebra.on(res1.getCa().getCoordinates())
-                            .distanceFast(res2.getCa().getCoordinates());
-                    if (distance > CA_MIN_DIST_SQUARED) {
-                        continue;
-                    }
-                    // If i>j switch them over
-                    if (i > j) {
-                        // Switch them over
-                        int old = i;
-                        i = j;
-                        j = old;
-                    }
-                    // Only these
-                    if (j < i + 3) {
-                        continue;
-                    }
-                    // If it's the first
-                    if (i == 0) {
-                        continue;
-                    }
-                    if (j == 0) {
-                        continue;
-                    }
-                    // If it's the last
-                    if (i == residues.size() - 1) {
-                        continue;
-                    }
-                    if (j == residues.size() - 1) {
-                        continue;
-                    }
-
-                    int[] thisPair = new int[]{i, j};
-                    outList.add(thisPair);
-                } catch (SelectionException e) {
-                    logger.debug("missing alpha carbons for {} or {}", res1, res2);
-                }
+        hydrogenBonds.forEachCandidatePair((i, j) -> {
+            // Only these
+            if (chainIndices[i] == chainIndices[j] && j < i + 3) {
+                return;
             }
-        }
-
-        outList.sort((o1, o2) -> {
-            if (o1[0] < o2[0]) {
-                return -1;
-            } else if (o1[0] > o2[0]) {
-                return +1;
-            } else {
-                if (o1[1] < o2[1]) {
-                    return -1;
-                } else if (o1[1] > o2[1]) {
-                    return +1;
-                } else {
-                    return 0;
-                }
+            // If it's the first or the last of its chain
+            if (!isFlanked(chainIndices, i) || !isFlanked(chainIndices, j)) {
+                return;
             }
+            outList.add(new int[]{i, j});
         });
 
         for(int[] p : outList){
@@ -389,6 +432,15 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
         }
     }
 
+    /**
+     * <code>true</code> iff the preceding and the following residue are part of the same chain
+     */
+    private boolean isFlanked(int[] chainIndices, int i) {
+        return i > 0 && i < chainIndices.length - 1 &&
+                chainIndices[i - 1] == chainIndices[i] &&
+                chainIndices[i + 1] == chainIndices[i];
+    }
+
     private void registerBridge(List<AminoAcid> residues, List<BetaBridge> bridges, int i, int j, BridgeType btype) {
         BetaBridge bridge = new BetaBridge(i, j, btype);
 
@@ -630,216 +682,9 @@ public class DictionaryOfProteinSecondaryStructure extends FeatureProvider {
     /**
      * Calculate the HBonds between different groups. see Creighton page 147 f
      */
-    private void calculateHBonds(List<AminoAcid> residues) {
-        for (int i = 0; i < residues.size() - 1; i++) {
-            for (int j = i + 1; j < residues.size(); j++) {
-                AminoAcid res1 = residues.get(i);
-                AminoAcid res2 = residues.get(j);
-                try {
-                    double squaredDistance = LinearAlgebra.on(res1.getCa().getCoordinates())
-                            .distanceFast(res2.getCa().getCoordinates());
-                    if (squaredDistance > CA_MIN_DIST_SQUARED) {
-                        continue;
-                    }
-                    checkAddHBond(res1, res2);
-                    if (j != (i + 1)) {
-                        checkAddHBond(res2, res1);
-                    }
-                } catch (SelectionException e) {
-                    logger.debug("missing alpha carbons for {} or {}", res1, res2);
-                }
-            }
-        }
-    }
-
-    private void checkAddHBond(AminoAcid residue1, AminoAcid residue2) {
-        if (isProline(residue1)) {
-            logger.debug("Ignore: PRO {}", residue1.getResidueIdentifier());
-            return;
-        }
-
-        if (lacksBackboneHydrogen(residue1)) {
-            logger.debug("Residue {} has no H", residue1.getResidueIdentifier());
-            return;
-        }
-
-        try {
-            Pair<AminoAcid, AminoAcid> residuePair = new Pair<>(residue1, residue2);
-            trackHBondEnergy(residuePair, calculateHBondEnergy(residuePair));
-        } catch (Exception e) {
-            logger.debug("hbond energy calculation failed because of: {}", e.getMessage());
-        }
-    }
-
-    private boolean isProline(Group group) {
-        return group instanceof Proline;
-    }
-
-    /**
-     * Store Hbonds in the Groups. DSSP allows two HBonds per amino acid to
-     * allow bifurcated bonds.
-     */
-    private void trackHBondEnergy(Pair<AminoAcid, AminoAcid> residuePair, double energy) {
-        AminoAcid res1 = residuePair.getLeft();
-        AminoAcid res2 = residuePair.getRight();
-        if (isProline(res1)) {
-            logger.debug("Ignore: PRO {}", res1.getResidueIdentifier());
-            return;
-        }
-
-        // try to findAny entries or create new ones with coil secondary structure
-        DSSPSecondaryStructure state1 = getState(res1);
-        DSSPSecondaryStructure state2 = getState(res2);
-
-        double acc1e = state1.getAccept1().getEnergy();
-        double acc2e = state1.getAccept2().getEnergy();
-
-        double don1e = state2.getDonor1().getEnergy();
-        double don2e = state2.getDonor2().getEnergy();
-
-        // Acceptor: N-H-->O
-        if (energy < acc1e) {
-            logger.debug("{} < {}", energy, acc1e);
-            state1.setAccept2(state1.getAccept1());
-
-            HBond bond = new HBond();
-            bond.setEnergy(energy);
-            bond.setPartner(res2);
-
-            state1.setAccept1(bond);
-        } else if (energy < acc2e) {
-            logger.debug("{} < {}", energy, acc2e);
-
-            HBond bond = new HBond();
-            bond.setEnergy(energy);
-            bond.setPartner(res2);
-
-            state1.setAccept2(bond);
-        }
-
-        // The other side of the bond: donor O-->N-H
-        if (energy < don1e) {
-            logger.debug("{} < {}", energy, don1e);
-            state2.setDonor2(state2.getDonor1());
-
-            HBond bond = new HBond();
-            bond.setEnergy(energy);
-            bond.setPartner(res1);
-
-            state2.setDonor1(bond);
-        } else if (energy < don2e) {
-            logger.debug("{} < {}", energy, don2e);
-
-            HBond bond = new HBond();
-            bond.setEnergy(energy);
-            bond.setPartner(res1);
-
-            state2.setDonor2(bond);
-        }
-    }
-
-    /**
-     * Calculate HBond energy of two groups in cal/mol see Creighton page 147 f
-     * <p>
-     * Jeffrey, George A., An introduction to hydrogen bonding, Oxford
-     * University Press, 1997. categorizes hbonds with donor-acceptor distances
-     * of 2.2-2.5 &aring; as "strong, mostly covalent", 2.5-3.2 &aring; as
-     * "moderate, mostly electrostatic", 3.2-4.0 &aring; as "weak,
-     * electrostatic". Energies are given as 40-14, 15-4, and <4 kcal/mol
-     * respectively.
-     * @param residuePair
-     * @return the energy of this h-bond
-     */
-    private double calculateHBondEnergy(Pair<AminoAcid, AminoAcid> residuePair) {
-        AminoAcid res1 = residuePair.getLeft();
-        AminoAcid res2 = residuePair.getRight();
-        Atom nAtom = res1.getN();
-        double[] n = nAtom.getCoordinates();
-        double[] h = res1.getH().getCoordinates();
-
-        Atom oAtom = res2.getO();
-        double[] o = oAtom.getCoordinates();
-        double[] c = res2.getC().getCoordinates();
-
-        double dno = LinearAlgebra.on(o).distance(n);
-        double dhc = LinearAlgebra.on(c).distance(h);
-        double dho = LinearAlgebra.on(o).distance(h);
-        double dnc = LinearAlgebra.on(c).distance(n);
-
-//        logger.debug("     cccc: " + res1.getResidueIdentifier() + " " + res1.getAminoAcid() + " " +
-//                res2.getResidueIdentifier() + " " + res2.getAminoAcid() + String.format( " O (" + oAtom.getPdbSerial() +
-//                ")..N (" + nAtom.getPdbSerial() + "):%4.1f  |  ho:%4.1f - hc:%4.1f + nc:%4.1f - no:%4.1f ", dno, dho,
-//                dhc, dnc, dno));
-
-        // there seems to be a contact!
-        if ((dno < MINDIST) || (dhc < MINDIST) || (dnc < MINDIST) || (dno < MINDIST)) {
-            return HBONDLOWENERGY;
-        }
-
-        double e1 = Q / dho - Q / dhc;
-        double e2 = Q / dnc - Q / dno;
-
-        double energy = e1 + e2;
-
-//        logger.debug(String.format("      N (%d) O(%d): %4.1f : %4.2f ", nAtom.getPdbSerial(),
-//                oAtom.getPdbSerial(), (float) dno, energy));
-
-        // Avoid too strong energy
-        if (energy > HBONDLOWENERGY) {
-            return energy;
-        }
-
-        return HBONDLOWENERGY;
-    }
-
-    /**
-     * Calculate the coordinates of the H atoms. They are usually missing in the PDB files as only few experimental
-     * methods allow to resolve their location.
-     */
-    private void calculateHAtoms(List<AminoAcid> residues) {
-        SetOperations.fragmentsOf(residues, 2)
-                .filter(this::lacksBackboneHydrogen)
-                .forEach(this::calcSimpleH);
-    }
-
-    /**
-     * <code>true</code> iff the 2nd getResidue of this fragment lacks the backbone hydrogen
-     * @param fragmentOfSize2 2 consecutively connected residues
-     * @return true if no backbone hydrogen is present
-     */
-    private boolean lacksBackboneHydrogen(Fragment<AminoAcid> fragmentOfSize2) {
-        return lacksBackboneHydrogen(fragmentOfSize2.getElement(1));
-    }
-
-    /**
-     * <code>true</code> iff the 2nd getResidue of this fragment lacks the backbone hydrogen
-     * @param residue the getResidue to check
-     * @return true if no backbone hydrogen is present
-     */
-    private boolean lacksBackboneHydrogen(AminoAcid residue) {
-        return !residue.getHOptional().isPresent();
-    }
-
-    /**
-     * Places a pseudo hydrogen atoms between 2 residues, when it is lacking.
-     * @param fragmentOfSize2 the fragment where the atom shall be placed
-     */
-    void calcSimpleH(Fragment<AminoAcid> fragmentOfSize2) {
-        try {
-            double[] c = fragmentOfSize2.getElement(0).getC().getCoordinates();
-            double[] o = fragmentOfSize2.getElement(0).getO().getCoordinates();
-            double[] n = fragmentOfSize2.getElement(1).getN().getCoordinates();
-
-            double[] xyz = LinearAlgebra.on(c).subtract(o).divide(LinearAlgebra.on(c).distance(o)).add(n).getValue();
-
-            // pdbSerial of minimal int value flags them as pseudo-hydrogen
-            Atom atom = Atom.builder(Element.H, xyz).name("H").build();
-            fragmentOfSize2.getElement(1).addAtom(atom);
-        } catch (SelectionException e) {
-            //TODO consistent error-handling
-            logger.debug("missing backbone atoms for peptide bond between {} and {} - cannot approximate hydrogen atom position",
-                    fragmentOfSize2.getElement(0).getIdentifier(),
-                    fragmentOfSize2.getElement(1).getIdentifier());
-        }
+    private BackboneHydrogenBonds calculateHBonds(List<AminoAcid> residues, int[] chainIndices) {
+        BackboneHydrogenBonds hydrogenBonds = new BackboneHydrogenBonds(residues, chainIndices);
+        hydrogenBonds.materialize(this::getState);
+        return hydrogenBonds;
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,85 @@
 package de.bioforscher.jstructure.feature;
 
+import de.bioforscher.jstructure.feature.asa.AccessibleSurfaceArea;
+import de.bioforscher.jstructure.feature.asa.AccessibleSurfaceAreaCalculator;
+import de.bioforscher.jstructure.feature.energyprofile.EnergyProfile;
+import de.bioforscher.jstructure.feature.energyprofile.EnergyProfileCalculator;
+import de.bioforscher.jstructure.feature.sse.dssp.DSSPSecondaryStructure;
+import de.bioforscher.jstructure.feature.sse.dssp.DictionaryOfProteinSecondaryStructure;
+import de.bioforscher.jstructure.model.feature.FeatureProvider;
+import de.bioforscher.jstructure.model.structure.Structure;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
+import de.bioforscher.testutil.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 /**
  * Checks whether feature container capabilities are working.
  * Created by S on 25.10.2016.
  */
 public class FeatureContainerIntegrationTest {
-    //TODO reimpl
+    @Test
+    public void shouldRunFeatureProvidersConcurrentlyOnOneStructure() throws Exception {
+        Structure sequential = parse1acj();
+        Stream.of(new DictionaryOfProteinSecondaryStructure(),
+                new AccessibleSurfaceAreaCalculator(),
+                new EnergyProfileCalculator())
+                .forEach(featureProvider -> featureProvider.process(sequential));
+
+        Structure concurrent = parse1acj();
+        List<FeatureProvider> featureProviders = Stream.of(new DictionaryOfProteinSecondaryStructure(),
+                new AccessibleSurfaceAreaCalculator(),
+                new EnergyProfileCalculator())
+                .collect(Collectors.toList());
+        ExecutorService executorService = Executors.newFixedThreadPool(featureProviders.size());
+        try {
+            // release all providers at once to maximize their overlap
+            CyclicBarrier barrier = new CyclicBarrier(featureProviders.size());
+            List<Future<?>> futures = featureProviders.stream()
+                    .map(featureProvider -> executorService.submit(() -> {
+                        barrier.await();
+                        featureProvider.process(concurrent);
+                        return null;
+                    }))
+                    .collect(Collectors.toList());
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        List<AminoAcid> expected = sequential.aminoAcids().collect(Collectors.toList());
+        List<AminoAcid> actual = concurrent.aminoAcids().collect(Collectors.toList());
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            AminoAcid aminoAcid = actual.get(i);
+            Assert.assertEquals("features were lost or duplicated for " + aminoAcid,
+                    expected.get(i).getFeatureContainer().getFeatures().size(),
+                    aminoAcid.getFeatureContainer().getFeatures().size());
+            Assert.assertEquals(expected.get(i).getFeature(DSSPSecondaryStructure.class).getSecondaryStructure(),
+                    aminoAcid.getFeature(DSSPSecondaryStructure.class).getSecondaryStructure());
+            Assert.assertEquals(expected.get(i).getFeature(AccessibleSurfaceArea.class).getAccessibleSurfaceArea(),
+                    aminoAcid.getFeature(AccessibleSurfaceArea.class).getAccessibleSurfaceArea(),
+                    TestUtils.TOLERANT_ERROR_MARGIN);
+            Assert.assertEquals(expected.get(i).getFeature(EnergyProfile.class).getSolvationEnergy(),
+                    aminoAcid.getFeature(EnergyProfile.class).getSolvationEnergy(),
+                    TestUtils.TOLERANT_ERROR_MARGIN);
+        }
+    }
+
+    private Structure parse1acj() {
+        return StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
+                .minimalParsing(true)
+                .parse();
+    }
 }
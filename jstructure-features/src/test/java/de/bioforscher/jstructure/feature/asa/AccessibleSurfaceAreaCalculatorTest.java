@@ -1,8 +1,11 @@
 package de.bioforscher.jstructure.feature.asa;
 
+import de.bioforscher.jstructure.mathematics.LinearAlgebra;
 import de.bioforscher.jstructure.mathematics.SetOperations;
+import de.bioforscher.jstructure.model.structure.Atom;
 import de.bioforscher.jstructure.model.structure.Structure;
 import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
 import org.biojava.nbio.structure.StructureException;
 import org.biojava.nbio.structure.asa.AsaCalculator;
 import org.biojava.nbio.structure.asa.GroupAsa;
@@ -34,6 +37,73 @@ public class AccessibleSurfaceAreaCalculatorTest {
         );
     }
 
+    @Test
+    public void shouldMatchExhaustiveComputation() {
+        Structure protein = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
+                .minimalParsing(true)
+                .parse();
+        new AccessibleSurfaceAreaCalculator().process(protein);
+
+        List<Atom> nonHydrogenAtoms = protein.select()
+                .aminoAcids()
+                .nonHydrogenAtoms()
+                .asFilteredAtoms()
+                .collect(Collectors.toList());
+        double[][] spherePoints = generateSpherePoints(960);
+        protein.aminoAcids().forEach(aminoAcid -> {
+            double expected = aminoAcid.select()
+                    .nonHydrogenAtoms()
+                    .asFilteredAtoms()
+                    .mapToDouble(atom -> exhaustiveAsa(atom, nonHydrogenAtoms, spherePoints))
+                    .sum();
+            Assert.assertEquals(expected, aminoAcid.getFeature(AccessibleSurfaceArea.class).getAccessibleSurfaceArea(), 1e-6);
+        });
+    }
+
+    /**
+     * The former, exhaustive computation of the ASA of an individual atom.
+     */
+    private static double exhaustiveAsa(Atom atom, List<Atom> nonHydrogenAtoms, double[][] spherePoints) {
+        double probeSize = 1.4;
+        double atomRadius = atom.getFeature(AtomRadius.class).getRadius();
+        double cutoff = probeSize + probeSize + atomRadius;
+        List<Atom> neighborAtoms = nonHydrogenAtoms.stream()
+                .filter(neighbor -> neighbor != atom)
+                .filter(neighbor -> neighbor.calculate().distance(atom.getCoordinates()) < cutoff
+                        + neighbor.getFeature(AtomRadius.class).getRadius())
+                .collect(Collectors.toList());
+        double radius = probeSize + atomRadius;
+        int accessiblePoints = 0;
+        for(double[] point : spherePoints) {
+            boolean isAccessible = true;
+            double[] testPoint = LinearAlgebra.on(point).multiply(radius).add(atom.getCoordinates()).getValue();
+            for(Atom neighborAtom : neighborAtoms) {
+                double neighborAtomRadius = neighborAtom.getFeature(AtomRadius.class).getRadius() + probeSize;
+                if(LinearAlgebra.on(testPoint).distanceFast(neighborAtom.getCoordinates()) < neighborAtomRadius * neighborAtomRadius) {
+                    isAccessible = false;
+                    break;
+                }
+            }
+            if(isAccessible) {
+                accessiblePoints++;
+            }
+        }
+        return 4.0 * Math.PI / spherePoints.length * accessiblePoints * radius * radius;
+    }
+
+    private static double[][] generateSpherePoints(int nSpherePoints) {
+        double[][] points = new double[nSpherePoints][];
+        double inc = Math.PI * (3.0 - Math.sqrt(5.0));
+        double offset = 2.0 / nSpherePoints;
+        for(int k = 0; k < nSpherePoints; k++) {
+            double y = k * offset - 1.0 + (offset / 2.0);
+            double r = Math.sqrt(1.0 - y * y);
+            double phi = k * inc;
+            points[k] = new double[] { Math.cos(phi) * r, y, Math.sin(phi) * r };
+        }
+        return points;
+    }
+
     private static List<Double> getJStructureASA(String id) {
         // load structure
         Structure protein = StructureParser.fromPdbId(id).parse();
@@ -3,10 +3,18 @@ package de.bioforscher.jstructure.feature.energyprofile;
 import de.bioforscher.jstructure.model.feature.FeatureProvider;
 import de.bioforscher.jstructure.model.structure.Structure;
 import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Checks the functionality of the {@link EnergyProfileAligner}.
  * Created by bittrich on 1/23/17.
@@ -18,8 +26,12 @@ public class EnergyProfileAlignerTest {
 
     @Before
     public void setup() {
-        protein1acj = StructureParser.fromPdbId("1acj").parse();
-        protein1brr = StructureParser.fromPdbId("1brr").parse();
+        protein1acj = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
+                .minimalParsing(true)
+                .parse();
+        protein1brr = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse();
         FeatureProvider energyProfileCalculator = new EnergyProfileCalculator();
         energyProfileCalculator.process(protein1acj);
         energyProfileCalculator.process(protein1brr);
@@ -37,4 +49,41 @@ public class EnergyProfileAlignerTest {
         double distanceScore = energyProfileAligner.align(protein1acj, protein1brr);
         Assert.assertTrue(distanceScore > 0.0 && distanceScore < 5.0);
     }
+
+    @Test
+    public void shouldBeReproducible() {
+        double distanceScore = energyProfileAligner.align(protein1acj, protein1brr);
+        Assert.assertEquals(distanceScore, new EnergyProfileAligner().align(protein1acj, protein1brr), 0.0);
+    }
+
+    @Test
+    public void shouldAlignConcurrently() throws InterruptedException, ExecutionException {
+        double expectedDistanceScore = energyProfileAligner.align(protein1acj, protein1brr);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Double>> distanceScores = new ArrayList<>();
+            for(int i = 0; i < 16; i++) {
+                distanceScores.add(executorService.submit(() -> energyProfileAligner.align(protein1acj, protein1brr)));
+            }
+            for(Future<Double> distanceScore : distanceScores) {
+                Assert.assertEquals(expectedDistanceScore, distanceScore.get(), 0.0);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldMatchUnbandedAlignmentForWideBand() {
+        int[] reference = energyProfileAligner.extractDiscreteEnergyProfile(protein1acj);
+        int[] query = energyProfileAligner.extractDiscreteEnergyProfile(protein1brr);
+        int[] referenceCopy = reference.clone();
+        double distanceScore = energyProfileAligner.align(reference, query);
+
+        EnergyProfileAligner bandedAligner = new EnergyProfileAligner(-40, -7, 50, reference.length, 42);
+        Assert.assertEquals(distanceScore, bandedAligner.align(reference, query), 0.0);
+        Assert.assertArrayEquals("profiles must not be modified", referenceCopy, reference);
+        double narrowBandDistanceScore = new EnergyProfileAligner(-40, -7, 50, 5, 42).align(reference, query);
+        Assert.assertTrue(narrowBandDistanceScore >= 0.0 && narrowBandDistanceScore <= 5.0);
+    }
 }
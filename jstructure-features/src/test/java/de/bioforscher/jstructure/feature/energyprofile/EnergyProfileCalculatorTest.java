@@ -1,5 +1,6 @@
 package de.bioforscher.jstructure.feature.energyprofile;
 
+import de.bioforscher.jstructure.mathematics.LinearAlgebra;
 import de.bioforscher.jstructure.model.feature.FeatureProvider;
 import de.bioforscher.jstructure.model.structure.Group;
 import de.bioforscher.jstructure.model.structure.Structure;
@@ -13,9 +14,9 @@ import org.junit.Test;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -53,6 +54,31 @@ public class EnergyProfileCalculatorTest {
                 });
     }
 
+    @Test
+    public void shouldFindNeighborsOfExhaustiveSearch() {
+        Random random = new Random(42);
+        // a dense cluster and a few distant points, which enlarge the grid cells
+        double[] coordinates = new double[3 * 2000];
+        for(int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = i < 3 * 1990 ? 60 * random.nextDouble() : 5000 * random.nextDouble();
+        }
+
+        int[][] neighbors = EnergyProfileCalculator.findNeighbors(coordinates, 8.0);
+        for(int i = 0; i < 2000; i++) {
+            List<Integer> expectedNeighbors = new ArrayList<>();
+            for(int j = 0; j < 2000; j++) {
+                if(i == j) {
+                    continue;
+                }
+                if(LinearAlgebra.on(Arrays.copyOfRange(coordinates, 3 * i, 3 * i + 3))
+                        .distanceFast(Arrays.copyOfRange(coordinates, 3 * j, 3 * j + 3)) <= 64.0) {
+                    expectedNeighbors.add(j);
+                }
+            }
+            Assert.assertEquals(expectedNeighbors, IntStream.of(neighbors[i]).boxed().collect(Collectors.toList()));
+        }
+    }
+
     @Test
     public void shouldProcessStructureWithSelenomethionine() {
         Structure protein = StructureParser.fromPdbId("3TQO").parse();
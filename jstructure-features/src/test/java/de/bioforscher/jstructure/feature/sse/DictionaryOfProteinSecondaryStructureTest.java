@@ -2,8 +2,11 @@ package de.bioforscher.jstructure.feature.sse;
 
 import de.bioforscher.jstructure.feature.sse.dssp.DSSPSecondaryStructure;
 import de.bioforscher.jstructure.feature.sse.dssp.DictionaryOfProteinSecondaryStructure;
+import de.bioforscher.jstructure.feature.sse.dssp.HBond;
+import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
 import de.bioforscher.jstructure.model.structure.Structure;
 import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.testutil.TestUtils;
 import org.biojava.nbio.structure.Group;
 import org.biojava.nbio.structure.GroupType;
 import org.biojava.nbio.structure.StructureException;
@@ -15,6 +18,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -39,12 +44,104 @@ public class DictionaryOfProteinSecondaryStructureTest {
         Assert.assertFalse("pseudo-atoms were not removed!", containsPseudoHydrogenLine);
     }
 
+    @Test
+    public void shouldNotModifyStructure() {
+        Structure protein = parse1ar1();
+        String pdbRepresentation = protein.getPdbRepresentation();
+        featureProvider.process(protein);
+        Assert.assertEquals(pdbRepresentation, protein.getPdbRepresentation());
+        Assert.assertTrue("pseudo-atoms were assigned to residues",
+                protein.aminoAcids().noneMatch(aminoAcid -> aminoAcid.getHOptional().isPresent()));
+    }
+
     @Test
     public void testTorsionAngleComputationForResiduesInDifferentChains() {
         // should ignore amino acids in different chains
         featureProvider.process(StructureParser.fromPdbId("4cqn").parse());
     }
 
+    @Test
+    public void shouldAssignBridgesBetweenChains() {
+        // residues of subunit I and II of the cytochrome c oxidase form a bridge
+        Structure perChain = parse1ar1();
+        featureProvider.process(perChain);
+        Assert.assertEquals(SecondaryStructureType.COIL, getSecondaryStructure(perChain, "A", 367));
+
+        Structure interChain = parse1ar1();
+        new DictionaryOfProteinSecondaryStructure(true).process(interChain);
+        Assert.assertEquals(SecondaryStructureType.BRIDGE, getSecondaryStructure(interChain, "A", 367));
+        Assert.assertEquals(SecondaryStructureType.BRIDGE, getSecondaryStructure(interChain, "B", 61));
+    }
+
+    @Test
+    public void shouldAssignIndependentlyOfNumberOfThreads() {
+        Structure sequential = parse1ar1();
+        new DictionaryOfProteinSecondaryStructure(true, new ForkJoinPool(1)).process(sequential);
+        Structure parallel = parse1ar1();
+        new DictionaryOfProteinSecondaryStructure(true, new ForkJoinPool(4)).process(parallel);
+
+        Assert.assertEquals(getOneLetterRepresentation(sequential), getOneLetterRepresentation(parallel));
+    }
+
+    @Test
+    public void shouldReproduceReferenceAssignment() {
+        // reference states and hydrogen bonds of 1ACJ as recorded from the original implementation
+        List<String[]> reference = TestUtils.getResourceAsStream("dssp/1ACJ.dssp")
+                .filter(line -> !line.startsWith("#"))
+                .map(line -> line.split("\t"))
+                .collect(Collectors.toList());
+        Structure protein = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1ACJ.pdb"))
+                .minimalParsing(true)
+                .parse();
+        featureProvider.process(protein);
+        List<AminoAcid> aminoAcids = protein.aminoAcids().collect(Collectors.toList());
+
+        Assert.assertEquals(reference.size(), aminoAcids.size());
+        Assert.assertEquals(reference.stream()
+                        .map(values -> SecondaryStructureType.valueOf(values[1]).getOneLetterRepresentation())
+                        .collect(Collectors.joining()),
+                getOneLetterRepresentation(protein));
+        for(int i = 0; i < aminoAcids.size(); i++) {
+            String[] values = reference.get(i);
+            AminoAcid aminoAcid = aminoAcids.get(i);
+            DSSPSecondaryStructure secondaryStructure = aminoAcid.getFeature(DSSPSecondaryStructure.class);
+            Assert.assertEquals(values[0], aminoAcid.getIdentifier());
+            assertHydrogenBond(values[2], secondaryStructure.getAccept1());
+            assertHydrogenBond(values[3], secondaryStructure.getAccept2());
+            assertHydrogenBond(values[4], secondaryStructure.getDonor1());
+            assertHydrogenBond(values[5], secondaryStructure.getDonor2());
+        }
+    }
+
+    private void assertHydrogenBond(String expected, HBond hBond) {
+        String[] split = expected.split("/");
+        Assert.assertEquals(split[0], hBond.getPartner() == null ? "-" : hBond.getPartner().getIdentifier());
+        Assert.assertEquals(Double.parseDouble(split[1]), hBond.getEnergy(), TestUtils.TOLERANT_ERROR_MARGIN);
+    }
+
+    private Structure parse1ar1() {
+        return StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1AR1.pdb"))
+                .minimalParsing(true)
+                .parse();
+    }
+
+    private SecondaryStructureType getSecondaryStructure(Structure protein, String chainName, int residueNumber) {
+        return protein.select()
+                .chainName(chainName)
+                .residueNumber(residueNumber)
+                .asAminoAcid()
+                .getFeature(DSSPSecondaryStructure.class)
+                .getSecondaryStructure();
+    }
+
+    private String getOneLetterRepresentation(Structure protein) {
+        return protein.aminoAcids()
+                .map(aminoAcid -> aminoAcid.getFeature(DSSPSecondaryStructure.class))
+                .map(DSSPSecondaryStructure::getSecondaryStructure)
+                .map(SecondaryStructureType::getOneLetterRepresentation)
+                .collect(Collectors.joining());
+    }
+
     @Test
     public void checkAgreement() throws IOException, StructureException {
         checkAgreement(ID);
@@ -36,7 +36,7 @@ public class A01_SingleLinkageClusterer {
                     String[] split = line.split(";");
                     String entryId = split[0];
                     String pdbId = split[1];
-                    Structure structure = StructureParser.fromPdbId(pdbId).parse();
+                    Structure structure = StructureParser.fromPdbId(pdbId).cachedMode().parse();
                     return structure.chains().findFirst().get();
                 })
                 .collect(Collectors.toList());
@@ -231,7 +231,7 @@ public class Start2FoldXmlParser {
         try {
             // assign baseline resp. entry container for each residue if not already happened
             chain.aminoAcids()
-                    .filter(aminoAcid -> !aminoAcid.getFeatureContainer().getFeatureOptional(Start2FoldResidueAnnotation.class).isPresent())
+                    .filter(aminoAcid -> !aminoAcid.getFeatureOptional(Start2FoldResidueAnnotation.class).isPresent())
                     .forEach(aminoAcid -> aminoAcid.getFeatureContainer().addFeature(new Start2FoldResidueAnnotation()));
 
             Document document = Jsoup.parse(inputStream, "UTF-8", "/");
@@ -261,7 +261,7 @@ public class Start2FoldXmlParser {
         try {
             // assign baseline resp. entry container for each residue if not already happened
             chain.aminoAcids()
-                    .filter(aminoAcid -> !aminoAcid.getFeatureContainer().getFeatureOptional(Start2FoldResidueAnnotation.class).isPresent())
+                    .filter(aminoAcid -> !aminoAcid.getFeatureOptional(Start2FoldResidueAnnotation.class).isPresent())
                     .forEach(aminoAcid -> aminoAcid.getFeatureContainer().addFeature(new Start2FoldResidueAnnotation()));
 
             Document document = Jsoup.parse(inputStream, "UTF-8", "/");
@@ -9,9 +9,7 @@ import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleGraph;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +21,7 @@ public class ResidueGraph extends SimpleGraph<AminoAcid, DefaultEdge> {
     protected final List<Pair<AminoAcid, AminoAcid>> localContacts;
     protected final List<Pair<AminoAcid, AminoAcid>> longRangeContacts;
     protected final ContactDefinition contactDefinition;
+    private final Map<ResidueIdentifier, AminoAcid> residueIdentifierIndex;
 
     public static ResidueGraph createResidueGraph(Chain chain, ContactDefinition contactDefinition) {
         List<AminoAcid> aminoAcids = chain.aminoAcids().collect(Collectors.toList());
@@ -80,6 +79,8 @@ public class ResidueGraph extends SimpleGraph<AminoAcid, DefaultEdge> {
                 .filter(ResidueGraph::isLongRangeContact)
                 .collect(Collectors.toList());
         this.contactDefinition = contactDefinition;
+        this.residueIdentifierIndex = new HashMap<>();
+        aminoAcids.forEach(aminoAcid -> residueIdentifierIndex.putIfAbsent(aminoAcid.getResidueIdentifier(), aminoAcid));
     }
 
     public ContactDefinition getContactDefinition() {
@@ -154,9 +155,10 @@ public class ResidueGraph extends SimpleGraph<AminoAcid, DefaultEdge> {
     }
 
     private AminoAcid resolve(ResidueIdentifier residueIdentifier) {
-        return aminoAcids.stream()
-                .filter(aminoAcid -> aminoAcid.getResidueIdentifier().equals(residueIdentifier))
-                .findFirst()
-                .orElseThrow(() ->  new NoSuchElementException("did not find amino acid with id " + residueIdentifier));
+        AminoAcid aminoAcid = residueIdentifierIndex.get(residueIdentifier);
+        if(aminoAcid == null) {
+            throw new NoSuchElementException("did not find amino acid with id " + residueIdentifier);
+        }
+        return aminoAcid;
     }
 }
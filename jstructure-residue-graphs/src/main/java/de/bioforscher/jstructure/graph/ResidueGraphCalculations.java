@@ -5,10 +5,7 @@ import de.bioforscher.jstructure.mathematics.SetOperations;
 import de.bioforscher.jstructure.model.identifier.ResidueIdentifier;
 import de.bioforscher.jstructure.model.structure.Group;
 import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.interfaces.ShortestPathAlgorithm;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
-import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.Graphs;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -16,21 +13,136 @@ import java.util.stream.Collectors;
 public class ResidueGraphCalculations {
     private final ResidueGraph graph;
     private final List<AminoAcid> nodes;
-    private final Map<AminoAcid, ShortestPathAlgorithm.SingleSourcePaths<AminoAcid, DefaultEdge>> shortestPaths;
-    private final DijkstraShortestPath<AminoAcid, DefaultEdge> dijkstraShortestPath;
+    private final Map<AminoAcid, Integer> nodeIndices;
+    private final Map<ResidueIdentifier, AminoAcid> residueIdentifierIndex;
+    private final int[][] adjacency;
     private final int numberOfNodes;
     private final double numberOfNodePairs;
+    /**
+     * The sum of shortest path lengths from each node to all other nodes.
+     */
+    private final long[] pathLengthSums;
+    /**
+     * The number of nodes reachable from each node (including the node itself).
+     */
+    private final int[] reachableNodeCounts;
+    /**
+     * The number of shortest paths between unordered pairs of nodes passing through each node, endpoints included.
+     */
+    private final double[] nodeBetweenness;
+    /**
+     * The number of shortest paths between unordered pairs of nodes passing through each edge, keyed by
+     * {@link #edgeKey(int, int)}.
+     */
+    private final Map<Long, Double> edgeBetweenness;
 
     public ResidueGraphCalculations(ResidueGraph graph) {
         this.graph = graph;
         this.nodes = new ArrayList<>(graph.vertexSet());
-        this.shortestPaths = new HashMap<>();
-        this.dijkstraShortestPath = new DijkstraShortestPath<>(graph);
-        for(AminoAcid aminoAcid : graph.vertexSet()) {
-            this.shortestPaths.put(aminoAcid, dijkstraShortestPath.getPaths(aminoAcid));
-        }
-        this.numberOfNodes = graph.vertexSet().size();
+        this.numberOfNodes = nodes.size();
         this.numberOfNodePairs = numberOfNodes * (numberOfNodes - 1) * 0.5;
+        this.nodeIndices = new HashMap<>();
+        this.residueIdentifierIndex = new HashMap<>();
+        for(int i = 0; i < numberOfNodes; i++) {
+            nodeIndices.put(nodes.get(i), i);
+            residueIdentifierIndex.putIfAbsent(nodes.get(i).getResidueIdentifier(), nodes.get(i));
+        }
+        this.adjacency = new int[numberOfNodes][];
+        for(int i = 0; i < numberOfNodes; i++) {
+            adjacency[i] = Graphs.neighborListOf(graph, nodes.get(i)).stream()
+                    .mapToInt(nodeIndices::get)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        }
+        this.pathLengthSums = new long[numberOfNodes];
+        this.reachableNodeCounts = new int[numberOfNodes];
+        this.nodeBetweenness = new double[numberOfNodes];
+        this.edgeBetweenness = new HashMap<>();
+        computeShortestPathProperties();
+    }
+
+    /**
+     * Brandes' algorithm: one breadth-first search per source node yields path lengths as well as node and edge
+     * betweenness of all nodes at once. Ties are resolved by splitting each pair's contribution equally among all its
+     * shortest paths.
+     * See Brandes, 2001 for definition.
+     */
+    private void computeShortestPathProperties() {
+        int[] distances = new int[numberOfNodes];
+        double[] pathCounts = new double[numberOfNodes];
+        double[] dependencies = new double[numberOfNodes];
+        // nodes in order of discovery, serves as queue as well as stack
+        int[] order = new int[numberOfNodes];
+        // edge dependencies are stored with the adjacency of the node farther from the source
+        int[] edgeOffsets = new int[numberOfNodes + 1];
+        for(int i = 0; i < numberOfNodes; i++) {
+            edgeOffsets[i + 1] = edgeOffsets[i] + adjacency[i].length;
+        }
+        double[] edgeDependencies = new double[edgeOffsets[numberOfNodes]];
+
+        for(int source = 0; source < numberOfNodes; source++) {
+            Arrays.fill(distances, -1);
+            Arrays.fill(pathCounts, 0);
+            Arrays.fill(dependencies, 0);
+            distances[source] = 0;
+            pathCounts[source] = 1;
+            order[0] = source;
+            int head = 0;
+            int tail = 1;
+            long pathLengthSum = 0;
+            while(head < tail) {
+                int node = order[head++];
+                pathLengthSum += distances[node];
+                for(int neighbor : adjacency[node]) {
+                    if(distances[neighbor] < 0) {
+                        distances[neighbor] = distances[node] + 1;
+                        order[tail++] = neighbor;
+                    }
+                    if(distances[neighbor] == distances[node] + 1) {
+                        pathCounts[neighbor] += pathCounts[node];
+                    }
+                }
+            }
+            pathLengthSums[source] = pathLengthSum;
+            reachableNodeCounts[source] = tail;
+
+            // back-propagation of dependencies in order of decreasing distance
+            for(int i = tail - 1; i > 0; i--) {
+                int node = order[i];
+                for(int k = 0; k < adjacency[node].length; k++) {
+                    int predecessor = adjacency[node][k];
+                    if(distances[predecessor] == distances[node] - 1) {
+                        double contribution = pathCounts[predecessor] / pathCounts[node] * (1 + dependencies[node]);
+                        dependencies[predecessor] += contribution;
+                        edgeDependencies[edgeOffsets[node] + k] += contribution;
+                    }
+                }
+                nodeBetweenness[node] += dependencies[node];
+            }
+        }
+
+        for(int node = 0; node < numberOfNodes; node++) {
+            // each unordered pair was seen from both ends, endpoints are part of the path as well
+            nodeBetweenness[node] = 0.5 * nodeBetweenness[node] + (reachableNodeCounts[node] - 1);
+            for(int k = 0; k < adjacency[node].length; k++) {
+                int neighbor = adjacency[node][k];
+                // the edge is traversed from either side, so both accumulators contribute
+                edgeBetweenness.merge(edgeKey(node, neighbor), 0.5 * edgeDependencies[edgeOffsets[node] + k], Double::sum);
+            }
+        }
+    }
+
+    private long edgeKey(int node1, int node2) {
+        return node1 < node2 ? (long) node1 * numberOfNodes + node2 : (long) node2 * numberOfNodes + node1;
+    }
+
+    private int indexOf(AminoAcid node) {
+        Integer index = nodeIndices.get(node);
+        if(index == null) {
+            throw new NoSuchElementException("graph does not contain " + node);
+        }
+        return index;
     }
 
     /**
@@ -40,19 +152,16 @@ public class ResidueGraphCalculations {
      */
     public double averageGraphPathLength() {
         double np = numberOfNodes * (numberOfNodes - 1) * 0.5;
-        return 1 / np * graph.vertexSet()
-                .stream()
+        return 1 / np * nodes.stream()
                 .mapToDouble(this::averageGraphPathLength)
                 .average()
                 .orElseThrow(() -> new IllegalArgumentException("could not compute average path length"));
     }
 
     public double averageGraphPathLength(AminoAcid source) {
-        return graph.vertexSet()
-                .stream()
-                .mapToInt(target -> determineShortestPath(source, target).getLength())
-                .average()
-                .orElse(0);
+        int sourceIndex = indexOf(source);
+        ensureConnected(sourceIndex);
+        return pathLengthSums[sourceIndex] / (double) numberOfNodes;
     }
 
     /**
@@ -63,11 +172,12 @@ public class ResidueGraphCalculations {
      * @return the betweenness of this node
      */
     public double betweenness(AminoAcid node) {
-        return shortestPathsPassingThrough(node).size() / numberOfNodePairs;
+        return nodeBetweenness[indexOf(node)] / numberOfNodePairs;
     }
 
     public double betweenness(Pair<AminoAcid, AminoAcid> contact) {
-        return shortestPathsPassingThrough(contact).size() / numberOfNodePairs;
+        return edgeBetweenness.getOrDefault(edgeKey(indexOf(contact.getLeft()), indexOf(contact.getRight())), 0.0) /
+                numberOfNodePairs;
     }
 
     public double betweenness(ResidueIdentifier residueIdentifier) {
@@ -75,10 +185,11 @@ public class ResidueGraphCalculations {
     }
 
     private AminoAcid resolve(ResidueIdentifier residueIdentifier) {
-        return nodes.stream()
-                .filter(node -> node.getResidueIdentifier().equals(residueIdentifier))
-                .findFirst()
-                .orElseThrow(() -> new NoSuchElementException("did not find residue with id " + residueIdentifier));
+        AminoAcid node = residueIdentifierIndex.get(residueIdentifier);
+        if(node == null) {
+            throw new NoSuchElementException("did not find residue with id " + residueIdentifier);
+        }
+        return node;
     }
 
     /**
@@ -88,11 +199,9 @@ public class ResidueGraphCalculations {
      * @return the maximal path length involving this node
      */
     public double closeness(AminoAcid node) {
-        return 1 / graph.vertexSet().stream()
-                .map(target -> determineShortestPath(node, target))
-                .mapToInt(GraphPath::getLength)
-                .average()
-                .orElseThrow(() ->  new IllegalArgumentException("cannot evaluate closeness as graph is not fully connected"));
+        int nodeIndex = indexOf(node);
+        ensureConnected(nodeIndex);
+        return numberOfNodes / (double) pathLengthSums[nodeIndex];
     }
 
     public double closeness(ResidueIdentifier residueIdentifier) {
@@ -156,35 +265,9 @@ public class ResidueGraphCalculations {
         return distinctNeighborhoodCount(resolve(residueIdentifier));
     }
 
-    private List<GraphPath<AminoAcid, DefaultEdge>> shortestPathsPassingThrough(AminoAcid node) {
-        return SetOperations.unorderedPairsOf(nodes)
-                .map(pair -> shortestPaths.get(pair.getLeft()).getPath(pair.getRight()))
-                .filter(graphPath -> graphPath.getVertexList().contains(node))
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Determines the set of shortest paths passing through 1 particular edge.
-     * @param contact
-     * @return
-     */
-    private List<GraphPath<AminoAcid, DefaultEdge>> shortestPathsPassingThrough(Pair<AminoAcid, AminoAcid> contact) {
-        AminoAcid aminoAcid1 = contact.getLeft();
-        AminoAcid aminoAcid2 = contact.getRight();
-        return SetOperations.unorderedPairsOf(nodes)
-                .map(pair -> shortestPaths.get(pair.getLeft()).getPath(pair.getRight()))
-                .filter(graphPath -> {
-                    int index1 = graphPath.getVertexList().indexOf(aminoAcid1);
-                    int index2 = graphPath.getVertexList().indexOf(aminoAcid2);
-                    return index1 != -1 && index2 != -1 && Math.abs(index1 - index2) == 1;
-                })
-                .collect(Collectors.toList());
-    }
-
     private List<AminoAcid> getNeighborsFor(AminoAcid node) {
-        return graph.vertexSet()
-                .stream()
-                .filter(otherNode -> containsEdge(node, otherNode))
+        return Arrays.stream(adjacency[indexOf(node)])
+                .mapToObj(nodes::get)
                 .collect(Collectors.toList());
     }
 
@@ -192,12 +275,9 @@ public class ResidueGraphCalculations {
         return graph.containsEdge(v1, v2) || graph.containsEdge(v2, v1);
     }
 
-    private GraphPath<AminoAcid, DefaultEdge> determineShortestPath(AminoAcid source, AminoAcid target) {
-        try {
-            return shortestPaths.get(source).getPath(target);
-        } catch (NullPointerException e) {
-            e.printStackTrace();
-            return null;
+    private void ensureConnected(int nodeIndex) {
+        if(reachableNodeCounts[nodeIndex] < numberOfNodes) {
+            throw new IllegalArgumentException("cannot evaluate path lengths as graph is not fully connected");
         }
     }
 }
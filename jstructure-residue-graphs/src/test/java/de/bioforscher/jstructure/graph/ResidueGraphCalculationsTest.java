@@ -0,0 +1,130 @@
+package de.bioforscher.jstructure.graph;
+
+import de.bioforscher.jstructure.mathematics.Pair;
+import de.bioforscher.jstructure.model.structure.Chain;
+import de.bioforscher.jstructure.model.structure.StructureParser;
+import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
+import de.bioforscher.testutil.TestUtils;
+import org.jgrapht.alg.interfaces.ShortestPathAlgorithm;
+import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the traversal-based graph properties to exhaustive computations.
+ */
+public class ResidueGraphCalculationsTest {
+    private ResidueGraph graph;
+    private ResidueGraphCalculations calculations;
+    private List<AminoAcid> nodes;
+    private int[][] distances;
+    private double[][] pathCounts;
+
+    @Before
+    public void setup() {
+        Chain chain = StructureParser.fromInputStream(TestUtils.getResourceAsInputStream("pdb/1BRR.pdb"))
+                .minimalParsing(true)
+                .parse()
+                .getFirstChain();
+        graph = ResidueGraph.createDistanceResidueGraph(chain);
+        calculations = new ResidueGraphCalculations(graph);
+        nodes = new ArrayList<>(graph.vertexSet());
+
+        // number of shortest paths between all pairs of nodes
+        int numberOfNodes = nodes.size();
+        distances = new int[numberOfNodes][numberOfNodes];
+        pathCounts = new double[numberOfNodes][numberOfNodes];
+        for(int source = 0; source < numberOfNodes; source++) {
+            for(int target = 0; target < numberOfNodes; target++) {
+                distances[source][target] = source == target ? 0 : Integer.MAX_VALUE / 2;
+            }
+            pathCounts[source][source] = 1;
+            for(int distance = 0; distance < numberOfNodes; distance++) {
+                for(int node = 0; node < numberOfNodes; node++) {
+                    if(distances[source][node] != distance) {
+                        continue;
+                    }
+                    for(int neighbor = 0; neighbor < numberOfNodes; neighbor++) {
+                        if(!graph.containsEdge(nodes.get(node), nodes.get(neighbor)) ||
+                                distances[source][neighbor] < distance + 1) {
+                            continue;
+                        }
+                        distances[source][neighbor] = distance + 1;
+                        pathCounts[source][neighbor] += pathCounts[source][node];
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldComputePathLengthsLikeDijkstra() {
+        DijkstraShortestPath<AminoAcid, DefaultEdge> dijkstraShortestPath = new DijkstraShortestPath<>(graph);
+        double averageGraphPathLengthSum = 0;
+        for(AminoAcid source : nodes) {
+            ShortestPathAlgorithm.SingleSourcePaths<AminoAcid, DefaultEdge> paths = dijkstraShortestPath.getPaths(source);
+            double averageGraphPathLength = nodes.stream()
+                    .mapToInt(target -> paths.getPath(target).getLength())
+                    .average()
+                    .getAsDouble();
+            averageGraphPathLengthSum += averageGraphPathLength;
+            Assert.assertEquals(averageGraphPathLength, calculations.averageGraphPathLength(source), 1e-9);
+            Assert.assertEquals(1 / averageGraphPathLength, calculations.closeness(source), 1e-9);
+        }
+        Assert.assertEquals(averageGraphPathLengthSum / nodes.size() / (nodes.size() * (nodes.size() - 1) * 0.5),
+                calculations.averageGraphPathLength(),
+                1e-9);
+    }
+
+    @Test
+    public void shouldComputeNodeBetweenness() {
+        int numberOfNodes = nodes.size();
+        double numberOfNodePairs = numberOfNodes * (numberOfNodes - 1) * 0.5;
+        for(int node = 0; node < numberOfNodes; node += 7) {
+            double expected = 0;
+            for(int source = 0; source < numberOfNodes - 1; source++) {
+                for(int target = source + 1; target < numberOfNodes; target++) {
+                    if(distances[source][node] + distances[node][target] == distances[source][target]) {
+                        expected += pathCounts[source][node] * pathCounts[node][target] / pathCounts[source][target];
+                    }
+                }
+            }
+            Assert.assertEquals(expected / numberOfNodePairs, calculations.betweenness(nodes.get(node)), 1e-9);
+        }
+    }
+
+    @Test
+    public void shouldComputeEdgeBetweenness() {
+        int numberOfNodes = nodes.size();
+        double numberOfNodePairs = numberOfNodes * (numberOfNodes - 1) * 0.5;
+        graph.getContacts().stream()
+                .limit(50)
+                .forEach(contact -> {
+                    int node1 = nodes.indexOf(contact.getLeft());
+                    int node2 = nodes.indexOf(contact.getRight());
+                    double expected = 0;
+                    for(int source = 0; source < numberOfNodes - 1; source++) {
+                        for(int target = source + 1; target < numberOfNodes; target++) {
+                            expected += edgeDependency(source, target, node1, node2) +
+                                    edgeDependency(source, target, node2, node1);
+                        }
+                    }
+                    Assert.assertEquals(expected / numberOfNodePairs, calculations.betweenness(contact), 1e-9);
+                    Assert.assertEquals(calculations.betweenness(contact),
+                            calculations.betweenness(new Pair<>(contact.getRight(), contact.getLeft())),
+                            0.0);
+                });
+    }
+
+    private double edgeDependency(int source, int target, int node1, int node2) {
+        if(distances[source][node1] + 1 + distances[node2][target] != distances[source][target]) {
+            return 0;
+        }
+        return pathCounts[source][node1] * pathCounts[node2][target] / pathCounts[source][target];
+    }
+}
@@ -6,6 +6,7 @@ import de.bioforscher.jstructure.graph.contact.definition.ContactDefinitionFacto
 import de.bioforscher.jstructure.mathematics.Pair;
 import de.bioforscher.jstructure.model.structure.Chain;
 import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
+import de.bioforscher.jstructure.model.structure.StructureWriter;
 import de.bioforscher.jstructure.si.model.BaselineReconstruction;
 import de.bioforscher.jstructure.si.model.ContactTogglingReconstruction;
 import org.slf4j.Logger;
@@ -93,7 +94,7 @@ public class StructuralInformationService {
 
             // write reference structure
             Path referenceChainStructurePath = Files.createTempFile("confoldservice-ref", ".pdb");
-            Files.write(referenceChainStructurePath, referenceChain.getPdbRepresentation().getBytes());
+            StructureWriter.write(referenceChain, referenceChainStructurePath);
 
             // create outputDirectory
             Path reconstructionDirectory = outputDirectory.resolve(jobName);
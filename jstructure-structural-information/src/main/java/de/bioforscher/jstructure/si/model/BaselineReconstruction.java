@@ -2,7 +2,7 @@ package de.bioforscher.jstructure.si.model;
 
 import de.bioforscher.jstructure.StandardFormat;
 import de.bioforscher.jstructure.align.AlignmentException;
-import de.bioforscher.jstructure.align.impl.TMAlignService;
+import de.bioforscher.jstructure.align.impl.TMAlignAlgorithm;
 import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
 import de.bioforscher.jstructure.align.result.score.RootMeanSquareDeviation;
 import de.bioforscher.jstructure.align.result.score.TemplateModelingScore;
@@ -11,12 +11,11 @@ import de.bioforscher.jstructure.mathematics.Pair;
 import de.bioforscher.jstructure.model.feature.ComputationException;
 import de.bioforscher.jstructure.model.structure.Chain;
 import de.bioforscher.jstructure.model.structure.aminoacid.AminoAcid;
+import de.bioforscher.jstructure.model.structure.StructureWriter;
 import de.bioforscher.jstructure.si.ConfoldServiceWorker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,7 +25,7 @@ import java.util.stream.Collectors;
 
 public class BaselineReconstruction implements Callable<BaselineReconstruction> {
     private static final Logger logger = LoggerFactory.getLogger(BaselineReconstruction.class);
-    private static final TMAlignService TM_ALIGN_SERVICE = TMAlignService.getInstance();
+    private static final TMAlignAlgorithm TM_ALIGN_ALGORITHM = TMAlignAlgorithm.getInstance();
 
     private final int iteration;
     private final Path referenceChainPath;
@@ -94,8 +93,8 @@ public class BaselineReconstruction implements Callable<BaselineReconstruction>
         // write reconstruction files
         Path reconstructionDirectory = outputPath.resolve(jobname);
         for(int i = 1; i <= sampledReconstructions.size(); i++) {
-            Files.write(reconstructionDirectory.resolve("baseline-reconstruction-" + iteration + "-" + i + ".pdb"),
-                    sampledReconstructions.get(i - 1).getPdbRepresentation().getBytes());
+            StructureWriter.write(sampledReconstructions.get(i - 1),
+                    reconstructionDirectory.resolve("baseline-reconstruction-" + iteration + "-" + i + ".pdb"));
         }
 
         // score baseline models
@@ -104,24 +103,16 @@ public class BaselineReconstruction implements Callable<BaselineReconstruction>
         return this;
     }
 
-    private void computeBaselinePerformance(List<Chain> reconstructions) throws AlignmentException, IOException {
+    private void computeBaselinePerformance(List<Chain> reconstructions) throws AlignmentException {
         List<TMAlignAlignmentResult> alignmentResults = new ArrayList<>();
         List<ReconstructionContactMap> reconstructionContactMaps = new ArrayList<>();
-        List<Path> tmpFiles = new ArrayList<>();
 
         if(reconstructions.isEmpty()) {
             throw new ComputationException("reconstruction did not yield any reconstructs");
         }
 
         for(Chain reconstructedChain : reconstructions) {
-            Path reconstructPath = Files.createTempFile("confoldservice-recon", ".pdb");
-            tmpFiles.add(reconstructPath);
-            Files.write(reconstructPath, reconstructedChain.getPdbRepresentation().getBytes());
-            alignmentResults.add(TM_ALIGN_SERVICE.process(new String[] {
-                    tmalignPath,
-                    referenceChainPath.toFile().getAbsolutePath(),
-                    reconstructPath.toFile().getAbsolutePath()
-            }));
+            alignmentResults.add(TM_ALIGN_ALGORITHM.align(referenceChain, reconstructedChain));
             reconstructionContactMaps.add(ReconstructionContactMap.createReconstructionContactMap(reconstructedChain, fullMap.getContactDefinition()));
         }
 
@@ -149,11 +140,6 @@ public class BaselineReconstruction implements Callable<BaselineReconstruction>
                 StandardFormat.format(averageRmsd),
                 StandardFormat.format(averageTmScore),
                 StandardFormat.format(averageQ));
-
-        // cleanup
-        for(Path tmpFile : tmpFiles) {
-            Files.delete(tmpFile);
-        }
     }
 
     static double computeQ(ReconstructionContactMap referenceMap, ReconstructionContactMap reconstructMap) {
@@ -2,7 +2,7 @@ package de.bioforscher.jstructure.si.model;
 
 import de.bioforscher.jstructure.StandardFormat;
 import de.bioforscher.jstructure.align.AlignmentException;
-import de.bioforscher.jstructure.align.impl.TMAlignService;
+import de.bioforscher.jstructure.align.impl.TMAlignAlgorithm;
 import de.bioforscher.jstructure.align.result.TMAlignAlignmentResult;
 import de.bioforscher.jstructure.align.result.score.RootMeanSquareDeviation;
 import de.bioforscher.jstructure.align.result.score.TemplateModelingScore;
@@ -15,16 +15,13 @@ import de.bioforscher.jstructure.si.ConfoldServiceWorker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 
 public class ContactTogglingReconstruction implements Callable<ContactTogglingReconstruction> {
     private static final Logger logger = LoggerFactory.getLogger(ContactTogglingReconstruction.class);
-    private static final TMAlignService TM_ALIGN_SERVICE = TMAlignService.getInstance();
+    private static final TMAlignAlgorithm TM_ALIGN_ALGORITHM = TMAlignAlgorithm.getInstance();
 
     private final BaselineReconstruction baselineReconstruction;
     private final int counter;
@@ -70,20 +67,12 @@ public class ContactTogglingReconstruction implements Callable<ContactTogglingRe
         return this;
     }
 
-    private void computePerformance(List<Chain> reconstructions) throws AlignmentException, IOException {
+    private void computePerformance(List<Chain> reconstructions) throws AlignmentException {
         List<TMAlignAlignmentResult> alignmentResults = new ArrayList<>();
         List<ReconstructionContactMap> reconstructionContactMaps = new ArrayList<>();
-        List<Path> tmpFiles = new ArrayList<>();
 
         for(Chain reconstructedChain : reconstructions) {
-            Path reconstructPath = Files.createTempFile("confoldservice-recon", ".pdb");
-            tmpFiles.add(reconstructPath);
-            Files.write(reconstructPath, reconstructedChain.getPdbRepresentation().getBytes());
-            alignmentResults.add(TM_ALIGN_SERVICE.process(new String[] {
-                    baselineReconstruction.getTmalignPath(),
-                    baselineReconstruction.getReferenceChainPath().toFile().getAbsolutePath(),
-                    reconstructPath.toFile().getAbsolutePath()
-            }));
+            alignmentResults.add(TM_ALIGN_ALGORITHM.align(baselineReconstruction.getReferenceChain(), reconstructedChain));
             reconstructionContactMaps.add(ReconstructionContactMap.createReconstructionContactMap(reconstructedChain, baselineReconstruction.getFullMap().getContactDefinition()));
         }
 
@@ -130,11 +119,6 @@ public class ContactTogglingReconstruction implements Callable<ContactTogglingRe
                 StandardFormat.format(decreaseRmsd),
                 StandardFormat.format(increaseTMScore),
                 StandardFormat.format(increaseQ));
-
-        // cleanup
-        for(Path tmpFile : tmpFiles) {
-            Files.delete(tmpFile);
-        }
     }
 
     public BaselineReconstruction getBaselineReconstruction() {